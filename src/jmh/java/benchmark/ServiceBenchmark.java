@@ -0,0 +1,95 @@
+package benchmark;
+
+import config.PostgreSQLConnector;
+import config.api.IDatabaseConnector;
+import controller.service.AccountService;
+import controller.service.TransactionService;
+import controller.service.api.IAccountService;
+import controller.service.api.ITransactionService;
+import model.dto.StatementDto;
+import model.entity.Account;
+import org.openjdk.jmh.annotations.*;
+import utils.YmlFileReader;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of account and transaction services against local PostgreSQL. Database is configured with
+ * benchmark.db.url, benchmark.db.user and benchmark.db.password system properties.
+ * All changes are made in one database transaction which is rolled back after benchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    /** Id of account used in benchmarks */
+    private final long testAccountId = -1000;
+
+    /** Number of transactions of benchmarked account created before benchmark */
+    private final int testTransactions = 100;
+
+    /** Instance of database connection interface */
+    private IDatabaseConnector connector;
+
+    /** Instance of the class implementing operations with accounts in the database */
+    private IAccountService accountService;
+
+    /** Instance of the class implementing operations with transactions in the database */
+    private ITransactionService transactionService;
+
+    /** Creates services, test account and its transactions */
+    @Setup
+    public void setUp() throws SQLException {
+        Connection connection;
+
+        connector = new PostgreSQLConnector(System.getProperty("benchmark.db.url"),
+                System.getProperty("benchmark.db.user"), System.getProperty("benchmark.db.password"));
+        connection = connector.getConnection();
+        connection.setAutoCommit(false); // benchmarks have no effect on the database
+
+        accountService = new AccountService(connection, new YmlFileReader());
+        transactionService = new TransactionService(connection);
+        accountService.addAccount(testAccountId, 1, 1000.0, 1, Date.valueOf(LocalDate.now()));
+
+        for (int i = 0; i < testTransactions; i++) {
+            transactionService.addTransaction(1, 1.0, i % 2 == 0 ? testAccountId : 0,
+                    i % 2 == 0 ? 0 : testAccountId);
+        }
+    }
+
+    /** Rolls back all changes and closes database connection */
+    @TearDown
+    public void tearDown() throws SQLException {
+        connector.getConnection().rollback();
+        connector.getConnection().setAutoCommit(true);
+        connector.closeConnection();
+    }
+
+    /** Benchmarks reading account by id */
+    @Benchmark
+    public Account getAccount() {
+        return accountService.getAccount(testAccountId);
+    }
+
+    /** Benchmarks inserting transaction with autogenerated id */
+    @Benchmark
+    public long addTransaction() {
+        return transactionService.addTransaction(1, 1.0, testAccountId, 0);
+    }
+
+    /** Benchmarks reading transactions of the account for statement */
+    @Benchmark
+    public List<StatementDto> getTransactionListByTime() {
+        return transactionService.getTransactionListByTime(testAccountId, LocalDateTime.now().minusMonths(1));
+    }
+}
@@ -0,0 +1,86 @@
+package benchmark;
+
+import controller.service.memory.InMemoryBankService;
+import controller.service.memory.InMemoryUserService;
+import model.dto.StatementDto;
+import model.entity.Account;
+import org.openjdk.jmh.annotations.*;
+import view.CheckView;
+import view.TransactionStatementView;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Benchmarks of check and statement rendering without database */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ViewBenchmark {
+
+    /** Number of records in benchmarked statement */
+    @Param({"10", "1000"})
+    private int statementRecords;
+
+    /** Instance of CheckView class */
+    private CheckView checkView;
+
+    /** Instance of TransactionStatementView class */
+    private TransactionStatementView statementView;
+
+    /** Account for which statement is rendered */
+    private Account account;
+
+    /** Records of benchmarked statement */
+    private List<StatementDto> statementList;
+
+    /** Date and time of benchmarked check */
+    private final LocalDateTime checkTime = LocalDateTime.of(2023, 7, 24, 12, 30, 15);
+
+    /** Creates views with in-memory services and statement records */
+    @Setup
+    public void setUp() {
+        String[] names = {"Иван Иванов", "Пётр Петров", ""};
+        InMemoryBankService bankService = new InMemoryBankService();
+        InMemoryUserService userService = new InMemoryUserService();
+
+        bankService.addBank(1, "Clever-Bank");
+        bankService.addBank(2, "Alfa-Bank");
+        userService.addUser(1, names[0]);
+        checkView = new CheckView(bankService);
+        statementView = new TransactionStatementView(bankService, userService);
+        account = new Account(1, 1, 1234.56, 1, Date.valueOf(LocalDate.of(2020, 1, 1)));
+        statementList = new ArrayList<>();
+
+        for (int i = 0; i < statementRecords; i++) {
+            statementList.add(new StatementDto(checkTime.minusDays(i), names[i % 3], names[(i + 1) % 3],
+                    i * 10.25));
+        }
+    }
+
+    /** Benchmarks rendering of transfer check */
+    @Benchmark
+    public String getCheck() {
+        return checkView.getCheck(123456, checkTime.toLocalDate(), checkTime.toLocalTime(), 1, 2,
+                1001, 1002, 1500.75);
+    }
+
+    /** Benchmarks rendering of transaction statement */
+    @Benchmark
+    public String getStatement() {
+        return statementView.getStatement(account, statementList, LocalDate.of(2023, 1, 1));
+    }
+
+    /** Benchmarks rendering of check for replenishment */
+    @Benchmark
+    public CharSequence renderReplenishmentCheck() {
+        return checkView.renderCheck(123456, checkTime.toLocalDate(), LocalTime.NOON, 0, 1, 0, 1002, 20.5);
+    }
+}
@@ -0,0 +1,25 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import utils.YmlFileReader;
+
+import java.util.concurrent.TimeUnit;
+
+/** Benchmark of reading values from configuration file */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YmlFileReaderBenchmark {
+
+    /** Instance of YmlFileReader class */
+    private final YmlFileReader reader = new YmlFileReader();
+
+    /** Benchmarks reading of the interest rate used by monthly interest accrual */
+    @Benchmark
+    public String getStringValueFromFile() {
+        return reader.getStringValueFromFile("percentagePerMonth");
+    }
+}
@@ -1,7 +1,18 @@
+import config.CircuitBreaker;
+import config.CircuitBreakerConnector;
 import config.PostgreSQLConnector;
+import config.ReplicatedConnector;
+import config.ShardedConnector;
 import config.api.IDatabaseConnector;
 import controller.ApplicationController;
+import metrics.CircuitBreakerMetrics;
+import metrics.ServiceMetrics;
+import utils.YmlFileReader;
+import utils.api.IYmlFileReader;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 /** A class that represents application entry point functionality */
@@ -14,10 +25,94 @@ public class Main {
      */
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
-        IDatabaseConnector connector = new PostgreSQLConnector("jdbc:postgresql://127.0.0.1:5432/edu",
-                "postgres", "password");
-        ApplicationController controller = new ApplicationController(connector, scanner);
+        ServiceMetrics metrics = new ServiceMetrics();
+        IDatabaseConnector connector = createConnector(new YmlFileReader(), metrics.getCircuitBreakers());
+        ApplicationController controller = new ApplicationController(connector, scanner, metrics);
 
         controller.start();
     }
+
+    /**
+     * Creates connector of single database, connector of shards if sharding is enabled in YML file,
+     * or connector of primary with read replicas if replicas are enabled in YML file.
+     * Urls of shards and replicas are taken from YML file. Every database is protected by its own circuit breaker
+     *
+     * @param fileReader reader of configuration file
+     * @param breakerMetrics metrics of circuit breakers
+     *
+     * @return implementation of database connection interface
+     *
+     * @throws IllegalStateException if both sharding and read replicas are enabled
+     */
+    private static IDatabaseConnector createConnector(IYmlFileReader fileReader,
+                                                      CircuitBreakerMetrics breakerMetrics) {
+        IDatabaseConnector primary = createPostgreSQLConnector("jdbc:postgresql://127.0.0.1:5432/edu", fileReader,
+                breakerMetrics);
+        List<IDatabaseConnector> shards = new ArrayList<>();
+        List<IDatabaseConnector> replicas = new ArrayList<>();
+        boolean sharding = "true".equals(fileReader.getStringValueFromFile("sharding"));
+
+        if ("true".equals(fileReader.getStringValueFromFile("readReplicas"))) {
+            if (sharding) {
+                throw new IllegalStateException("readReplicas and sharding cannot be enabled together, "
+                        + "read replicas are supported only for single database");
+            }
+
+            for (String url : fileReader.getStringValueFromFile("replicaUrls").split(",")) {
+                replicas.add(createPostgreSQLConnector(url.trim(), fileReader, breakerMetrics));
+            }
+
+            return new ReplicatedConnector(primary, replicas,
+                    Duration.ofMillis(Long.parseLong(fileReader.getStringValueFromFile("replicaMaxStalenessMillis"))),
+                    Duration.ofMillis(Long.parseLong(fileReader.getStringValueFromFile("replicaLagCheckMillis"))));
+        }
+
+        if (!sharding) {
+            return primary;
+        }
+
+        for (String url : fileReader.getStringValueFromFile("shardUrls").split(",")) {
+            shards.add(createPostgreSQLConnector(url.trim(), fileReader, breakerMetrics));
+        }
+
+        return new ShardedConnector(shards);
+    }
+
+    /**
+     * Creates connector of PostgreSQL database with timeouts and circuit breaker taken from YML file.
+     * Missing timeouts and breaker settings get default values
+     *
+     * @param url database url
+     * @param fileReader reader of configuration file
+     * @param breakerMetrics metrics of circuit breakers
+     *
+     * @return connector of database
+     */
+    private static IDatabaseConnector createPostgreSQLConnector(String url, IYmlFileReader fileReader,
+                                                                CircuitBreakerMetrics breakerMetrics) {
+        IDatabaseConnector connector = new PostgreSQLConnector(url, "postgres", "password",
+                Duration.ofSeconds(readNumber(fileReader, "connectTimeoutSeconds", 10)),
+                Duration.ofSeconds(readNumber(fileReader, "socketTimeoutSeconds", 300)),
+                Duration.ofMillis(readNumber(fileReader, "queryTimeoutMillis", 30000)));
+
+        return new CircuitBreakerConnector(connector, new CircuitBreaker(url,
+                (int) readNumber(fileReader, "circuitBreakerFailureThreshold", 5),
+                Duration.ofMillis(readNumber(fileReader, "circuitBreakerOpenMillis", 5000)).toNanos(),
+                System::nanoTime, breakerMetrics));
+    }
+
+    /**
+     * Reads number from YML file
+     *
+     * @param fileReader reader of configuration file
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue value which is returned if file contains no mapping for the key
+     *
+     * @return number to which the specified key is mapped, or default value
+     */
+    private static long readNumber(IYmlFileReader fileReader, String key, long defaultValue) {
+        String value = fileReader.getStringValueFromFile(key);
+
+        return value == null || value.equals("null") ? defaultValue : Long.parseLong(value);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package config;
+
+import metrics.CircuitBreakerMetrics;
+
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * A class which stops calls to unavailable database. Breaker is closed while database works and opens after
+ * several consecutive connection failures. Open breaker rejects calls at once, so callers do not wait for
+ * timeouts of dead connections. When open interval passes, breaker becomes half-open and lets single probe
+ * call through. Successful probe closes breaker, failed probe opens it again. Probe without result
+ * is replaced with another one after open interval
+ */
+public class CircuitBreaker {
+
+    /** States of breaker */
+    public enum State {
+
+        /** Calls go to database */
+        CLOSED,
+
+        /** Calls are rejected */
+        OPEN,
+
+        /** Single probe call goes to database, other calls are rejected */
+        HALF_OPEN
+    }
+
+    /** Name of database used in metrics */
+    private final String name;
+
+    /** Number of consecutive failures which opens breaker */
+    private final int failureThreshold;
+
+    /** Time in nanoseconds after which open breaker lets probe call through */
+    private final long openNanos;
+
+    /** Source of current time in nanoseconds */
+    private final LongSupplier clock;
+
+    /** Metrics of breakers */
+    private final CircuitBreakerMetrics metrics;
+
+    /** Current state of breaker */
+    private volatile State state = State.CLOSED;
+
+    /** Number of consecutive failures */
+    private volatile int failures;
+
+    /** Time of the last opening of breaker or of the last probe in nanoseconds */
+    private long changedAt;
+
+    /**
+     * Constructor with parameters
+     *
+     * @param name name of database used in metrics
+     * @param failureThreshold number of consecutive failures which opens breaker
+     * @param openNanos time in nanoseconds after which open breaker lets probe call through
+     * @param clock source of current time in nanoseconds
+     * @param metrics metrics of breakers
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openNanos, LongSupplier clock,
+                          CircuitBreakerMetrics metrics) {
+        this.name = name;
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.openNanos = openNanos;
+        this.clock = clock;
+        this.metrics = metrics;
+        metrics.recordState(name, "closed");
+    }
+
+    /**
+     * Checks whether call may go to database. Call let through half-open breaker is a probe,
+     * its result must be recorded
+     *
+     * @return true if call may go to database, false if it must fail at once
+     */
+    public boolean allowRequest() {
+        long now;
+
+        if (state == State.CLOSED) {
+            return true;
+        }
+
+        now = clock.getAsLong();
+
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return true;
+            }
+
+            if (now - changedAt >= openNanos) {
+                changedAt = now;
+                setState(State.HALF_OPEN);
+
+                return true;
+            }
+        }
+
+        metrics.recordRejected(name);
+
+        return false;
+    }
+
+    /** Records call which reached database. Closes breaker */
+    public void recordSuccess() {
+        if (state == State.CLOSED && failures == 0) {
+            return;
+        }
+
+        synchronized (this) {
+            failures = 0;
+            setState(State.CLOSED);
+        }
+    }
+
+    /** Records call which failed because database is unreachable. Opens breaker after enough failures */
+    public synchronized void recordFailure() {
+        failures++;
+
+        if (state == State.HALF_OPEN || state == State.CLOSED && failures >= failureThreshold) {
+            changedAt = clock.getAsLong();
+            setState(State.OPEN);
+        }
+    }
+
+    /**
+     * Returns current state of breaker
+     *
+     * @return state of breaker
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Changes state of breaker and records it in metrics
+     *
+     * @param newState new state of breaker
+     */
+    private void setState(State newState) {
+        if (state != newState) {
+            state = newState;
+            metrics.recordState(name, newState.name().toLowerCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,497 @@
+package config;
+
+import config.api.IDatabaseConnector;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Class that protects callers from unavailable database with circuit breaker. Connection of connector never
+ * is null: while breaker is open its statement executions, commits and reconnects fail at once with
+ * SQLTransientConnectionException, and after connection failure it reconnects to database with probe call
+ * of half-open breaker, so services holding the connection recover without restart. Calls which do not reach
+ * database, like preparing of statements, are not checked, so they never spend the probe call of half-open
+ * breaker. Connections opened by the connector reconnect in the same way.
+ * Failure is an exception with SQL state of connection error or of server shutdown, other exceptions mean
+ * that database answered.
+ * <p>
+ * Connection which failed inside transaction is never replaced silently, because statements of the rest of
+ * the transaction would be committed one by one on the new connection. Every call except rollback, enabling
+ * of auto-commit and close fails until the caller ends the transaction, then the failed connection is closed,
+ * so the server rolls back whatever it received, and the next call reconnects
+ */
+public class CircuitBreakerConnector implements IDatabaseConnector {
+
+    /** SQL state of exception thrown when breaker is open or database is unreachable */
+    private static final String CONNECTION_UNAVAILABLE = "08001";
+
+    /** SQL state of exception thrown when connection failed inside transaction */
+    private static final String CONNECTION_FAILURE = "08006";
+
+    /** SQL state of exception thrown when connection is closed */
+    private static final String CONNECTION_CLOSED = "08003";
+
+    /** Methods of connection which work without database and are never rejected */
+    private static final Set<String> LOCAL_METHODS = Set.of("isClosed", "isValid", "abort", "unwrap",
+            "isWrapperFor");
+
+    /** Connector of protected database */
+    private final IDatabaseConnector connector;
+
+    /** Breaker of database */
+    private final CircuitBreaker breaker;
+
+    /** Handler of connection shared by users of connector */
+    private final ConnectionHandler sharedHandler = new ConnectionHandler(true, null);
+
+    /** Connection shared by users of connector */
+    private final Connection connection;
+
+    /**
+     * Constructor with parameters
+     *
+     * @param connector connector of protected database
+     * @param breaker breaker of database
+     */
+    public CircuitBreakerConnector(IDatabaseConnector connector, CircuitBreaker breaker) {
+        this.connector = connector;
+        this.breaker = breaker;
+        this.connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, sharedHandler);
+    }
+
+    /**
+     * Returns connection which connects to database on first call and reconnects after connection failures
+     *
+     * @return connection protected by breaker
+     */
+    @Override
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Creates new database connection which is not shared with other users of the connector.
+     * Connection reconnects after connection failures until it is closed
+     *
+     * @return new connection protected by breaker, null if breaker is open or connection failed
+     */
+    @Override
+    public Connection openConnection() {
+        Connection opened;
+
+        if (!breaker.allowRequest()) {
+            return null;
+        }
+
+        if ((opened = connector.openConnection()) == null) {
+            breaker.recordFailure();
+
+            return null;
+        }
+
+        breaker.recordSuccess();
+
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new ConnectionHandler(false, opened));
+    }
+
+    /** Closes existing database connection */
+    @Override
+    public void closeConnection() {
+        sharedHandler.discard();
+    }
+
+    /**
+     * Checks whether exception means that database is unreachable
+     *
+     * @param e exception thrown by call
+     *
+     * @return true if exception has SQL state of connection error or of server shutdown
+     */
+    private static boolean isConnectionFailure(SQLException e) {
+        String state = e.getSQLState();
+
+        return state != null && (state.startsWith("08") || state.startsWith("57P"));
+    }
+
+    /**
+     * Checks whether call ends transaction of connection
+     *
+     * @param method invoked method
+     * @param args arguments of the method
+     *
+     * @return true if call is rollback of the whole transaction or enabling of auto-commit
+     */
+    private static boolean isTransactionEnd(Method method, Object[] args) {
+        return method.getName().equals("rollback") && args == null
+                || method.getName().equals("setAutoCommit") && Boolean.TRUE.equals(args[0]);
+    }
+
+    /**
+     * Throws exception if breaker rejects call
+     *
+     * @throws SQLException if breaker is open
+     */
+    private void checkBreaker() throws SQLException {
+        if (!breaker.allowRequest()) {
+            throw new SQLTransientConnectionException("Circuit breaker of database is open", CONNECTION_UNAVAILABLE);
+        }
+    }
+
+    /** Handler of connection which checks breaker before calls, records their failures and reconnects */
+    private class ConnectionHandler implements InvocationHandler {
+
+        /** Whether handler uses shared connection of connector */
+        private final boolean shared;
+
+        /** Physical connection used by calls. Null if there is no connection or it failed */
+        private Connection target;
+
+        /** Whether caller disabled auto-commit. New physical connection gets the same mode */
+        private boolean manualCommit;
+
+        /** Whether connection failed inside transaction which caller did not end yet */
+        private boolean broken;
+
+        /** Whether connection was closed by its owner. Closed connection is not reopened */
+        private boolean closed;
+
+        /**
+         * Constructor with parameters
+         *
+         * @param shared whether handler uses shared connection of connector
+         * @param target physical connection used by calls, null if it is created by the first call
+         */
+        private ConnectionHandler(boolean shared, Connection target) {
+            this.shared = shared;
+            this.target = target;
+        }
+
+        /**
+         * Invokes method of connection. Commit is checked by breaker, other calls are checked only when they
+         * reconnect. Statements created by connection are wrapped, so their executions are checked and recorded
+         *
+         * @param proxy connection proxy
+         * @param method invoked method
+         * @param args arguments of the method
+         *
+         * @return result of the method
+         *
+         * @throws Throwable exception thrown by the method
+         */
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Connection used;
+            Object result;
+
+            switch (method.getName()) {
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "toString" -> {
+                    return "CircuitBreakerConnection";
+                }
+                case "close" -> {
+                    close();
+
+                    return null;
+                }
+                default -> {
+                }
+            }
+
+            if (LOCAL_METHODS.contains(method.getName())) {
+                used = current();
+
+                return used != null ? call(used, used, method, args)
+                        : method.getName().equals("isClosed") ? closed
+                        : method.getReturnType() == boolean.class ? false : null;
+            }
+
+            if (method.getName().equals("rollback") || method.getName().equals("setAutoCommit")) {
+                return endTransaction(method, args);
+            }
+
+            if (method.getName().equals("commit")) {
+                checkBreaker();
+            }
+
+            used = acquire();
+            result = call(used, used, method, args);
+
+            if (result instanceof Statement && method.getReturnType().isInterface()) {
+                return Proxy.newProxyInstance(method.getReturnType().getClassLoader(),
+                        new Class<?>[] {method.getReturnType()}, new StatementHandler(this, used, result));
+            }
+
+            return result;
+        }
+
+        /**
+         * Executes rollback or changes auto-commit. These calls are never rejected by breaker, so transaction
+         * cannot stay open on live connection. Without physical connection there is no transaction to roll back
+         * and auto-commit mode is applied to the next connection. Ending of transaction on failed connection
+         * closes it
+         *
+         * @param method invoked method
+         * @param args arguments of the method
+         *
+         * @return result of the method
+         *
+         * @throws Throwable exception thrown by the method
+         */
+        private Object endTransaction(Method method, Object[] args) throws Throwable {
+            Connection used;
+
+            synchronized (this) {
+                if (method.getName().equals("setAutoCommit")) {
+                    manualCommit = !(Boolean) args[0];
+                }
+
+                if (broken && isTransactionEnd(method, args)) {
+                    broken = false;
+                    discard();
+                }
+
+                if (broken) {
+                    throw new SQLTransientConnectionException("Connection failed inside transaction, "
+                            + "transaction must be rolled back", CONNECTION_FAILURE);
+                }
+
+                if ((used = target) == null) {
+                    return null;
+                }
+            }
+
+            return call(used, used, method, args);
+        }
+
+        /**
+         * Returns physical connection for call, reconnecting to database if connection failed.
+         * Reconnect is checked by breaker
+         *
+         * @return physical connection
+         *
+         * @throws SQLException if connection is closed, failed inside transaction or database is unreachable
+         */
+        private synchronized Connection acquire() throws SQLException {
+            if (closed) {
+                throw new SQLException("Connection is closed", CONNECTION_CLOSED);
+            }
+
+            if (broken) {
+                throw new SQLTransientConnectionException("Connection failed inside transaction, "
+                        + "transaction must be rolled back", CONNECTION_FAILURE);
+            }
+
+            if (target != null) {
+                return target;
+            }
+
+            checkBreaker();
+
+            if (shared) {
+                connector.closeConnection();
+                target = connector.getConnection();
+            } else {
+                target = connector.openConnection();
+            }
+
+            if (target == null) {
+                breaker.recordFailure();
+
+                throw new SQLTransientConnectionException("Database is unreachable", CONNECTION_UNAVAILABLE);
+            }
+
+            breaker.recordSuccess();
+
+            if (manualCommit) {
+                try {
+                    target.setAutoCommit(false);
+                } catch (SQLException e) {
+                    failed(target, e);
+
+                    throw e;
+                }
+            }
+
+            return target;
+        }
+
+        /**
+         * Returns current physical connection
+         *
+         * @return physical connection, null if there is no connection
+         */
+        private synchronized Connection current() {
+            return target;
+        }
+
+        /**
+         * Records failure of call made with connection. Failed connection is replaced by the next call,
+         * or after the end of transaction if it failed inside transaction
+         *
+         * @param used connection used by call
+         * @param e exception thrown by call
+         */
+        private synchronized void failed(Connection used, SQLException e) {
+            if (!isConnectionFailure(e)) {
+                breaker.recordSuccess();
+
+                return;
+            }
+
+            breaker.recordFailure();
+
+            if (used != target) {
+                return;
+            }
+
+            if (manualCommit) {
+                broken = true;
+            } else {
+                discard();
+            }
+        }
+
+        /**
+         * Checks that statement may be executed with connection
+         *
+         * @param used connection which created statement
+         *
+         * @throws SQLException if connection failed inside transaction
+         */
+        private synchronized void checkUsable(Connection used) throws SQLException {
+            if (broken && used == target) {
+                throw new SQLTransientConnectionException("Connection failed inside transaction, "
+                        + "transaction must be rolled back", CONNECTION_FAILURE);
+            }
+        }
+
+        /** Closes physical connection, so the next call reconnects. Errors of closing are ignored */
+        private synchronized void discard() {
+            Connection discarded = target;
+
+            target = null;
+
+            if (shared) {
+                connector.closeConnection();
+            } else if (discarded != null) {
+                try {
+                    discarded.close();
+                } catch (SQLException e) {
+                    // connection already failed
+                }
+            }
+        }
+
+        /**
+         * Closes connection. Shared connection reconnects on the next call, other connections stay closed
+         *
+         * @throws SQLException if physical connection cannot be closed
+         */
+        private synchronized void close() throws SQLException {
+            Connection closing = target;
+
+            target = null;
+            broken = false;
+            manualCommit = false;
+            closed = !shared;
+
+            if (shared) {
+                connector.closeConnection();
+            } else if (closing != null) {
+                closing.close();
+            }
+        }
+
+        /**
+         * Invokes method of wrapped object and records connection failures
+         *
+         * @param used connection used by call
+         * @param object wrapped object
+         * @param method invoked method
+         * @param args arguments of the method
+         *
+         * @return result of the method
+         *
+         * @throws Throwable exception thrown by the method
+         */
+        private Object call(Connection used, Object object, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(object, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException sqlException) {
+                    failed(used, sqlException);
+                }
+
+                throw e.getCause();
+            }
+        }
+    }
+
+    /** Handler of statement which checks breaker before executions and records their results */
+    private class StatementHandler implements InvocationHandler {
+
+        /** Handler of connection which created statement */
+        private final ConnectionHandler handler;
+
+        /** Physical connection which created statement */
+        private final Connection used;
+
+        /** Wrapped statement */
+        private final Object statement;
+
+        /**
+         * Constructor with parameters
+         *
+         * @param handler handler of connection which created statement
+         * @param used physical connection which created statement
+         * @param statement wrapped statement
+         */
+        private StatementHandler(ConnectionHandler handler, Connection used, Object statement) {
+            this.handler = handler;
+            this.used = used;
+            this.statement = statement;
+        }
+
+        /**
+         * Invokes method of statement. Execution is rejected if breaker is open or connection failed inside
+         * transaction, successful execution closes breaker
+         *
+         * @param proxy statement proxy
+         * @param method invoked method
+         * @param args arguments of the method
+         *
+         * @return result of the method
+         *
+         * @throws Throwable exception thrown by the method
+         */
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result;
+
+            if (!method.getName().startsWith("execute")) {
+                return handler.call(used, statement, method, args);
+            }
+
+            handler.checkUsable(used);
+            checkBreaker();
+            result = handler.call(used, statement, method, args);
+            breaker.recordSuccess();
+
+            return result;
+        }
+    }
+}
@@ -5,9 +5,13 @@ import config.api.IDatabaseConnector;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Properties;
 
 /**
- * Class that provides connection to database
+ * Class that provides connection to database. Connection attempt and every read from socket are bounded by
+ * timeouts, and statements of connections are executed with query timeouts of {@link QueryDeadline}, so
+ * driver cancels query on the server when its deadline passes
  *
  * @author Vadim Rataiko
  */
@@ -28,13 +32,55 @@ public class PostgreSQLConnector implements IDatabaseConnector {
      */
     private String password;
 
+    /**
+     * Properties of connections with user, password and timeouts
+     */
+    private final Properties properties = new Properties();
+
+    /**
+     * Timeout of statements executed without deadline of operation, zero if they have no timeout
+     */
+    private final Duration queryTimeout;
+
     private Connection connection;
 
     public PostgreSQLConnector(String url, String user, String password) {
+        this(url, user, password, Duration.ZERO, Duration.ZERO, Duration.ZERO);
+    }
+
+    /**
+     * Constructor with timeouts. Timeouts are rounded up to whole seconds, zero timeout means no timeout
+     *
+     * @param url database url
+     * @param user database user
+     * @param password database password
+     * @param connectTimeout timeout of connection attempt
+     * @param socketTimeout timeout of every read from socket, protects from unreachable server
+     * @param queryTimeout timeout of statements executed without deadline of operation
+     */
+    public PostgreSQLConnector(String url, String user, String password, Duration connectTimeout,
+                               Duration socketTimeout, Duration queryTimeout) {
         this.url = url;
         this.user = user;
         this.password = password;
+        this.queryTimeout = queryTimeout;
+        this.properties.setProperty("user", user);
+        this.properties.setProperty("password", password);
+        this.properties.setProperty("connectTimeout", String.valueOf(toSeconds(connectTimeout)));
+        this.properties.setProperty("socketTimeout", String.valueOf(toSeconds(socketTimeout)));
+    }
+
+    /**
+     * Rounds duration up to whole seconds
+     *
+     * @param duration rounded duration
+     *
+     * @return number of seconds
+     */
+    private static long toSeconds(Duration duration) {
+        return duration.plusNanos(999_999_999).getSeconds();
     }
+
     /**
      * Creates database connection, or returns existing connection
      *
@@ -47,7 +93,7 @@ public class PostgreSQLConnector implements IDatabaseConnector {
         }
 
         try {
-            connection = DriverManager.getConnection(url, user, password);
+            connection = QueryDeadline.withTimeouts(DriverManager.getConnection(url, properties), queryTimeout);
         } catch (SQLException e) {
             System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
         }
@@ -55,6 +101,24 @@ public class PostgreSQLConnector implements IDatabaseConnector {
         return connection;
     }
 
+    /**
+     * Creates new database connection which is not shared with other users of the connector
+     *
+     * @return new Connection object, null if connection failed
+     */
+    @Override
+    public Connection openConnection() {
+        Connection newConnection = null;
+
+        try {
+            newConnection = QueryDeadline.withTimeouts(DriverManager.getConnection(url, properties), queryTimeout);
+        } catch (SQLException e) {
+            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+        }
+
+        return newConnection;
+    }
+
     /** Closes existing database connection */
     @Override
     public void closeConnection() {
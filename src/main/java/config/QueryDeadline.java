@@ -0,0 +1,163 @@
+package config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * A class which bounds execution time of database queries. Operation may set deadline for the current thread,
+ * then every statement executed by the thread gets query timeout equal to time left until the deadline, and
+ * statement is not executed at all if deadline passed while thread waited for connection. Without deadline
+ * statement gets default timeout of connection. When timeout expires, driver cancels query on the server
+ * and execution fails with SQLException, so thread and connection are released
+ */
+public final class QueryDeadline {
+
+    /** SQL state of cancelled query */
+    private static final String QUERY_CANCELED = "57014";
+
+    /** Nanoseconds in one second */
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /** Deadline of operation of the current thread in nanoseconds, null if operation has no deadline */
+    private static final ThreadLocal<Long> deadline = new ThreadLocal<>();
+
+    /** Constructor is private because class has only static methods */
+    private QueryDeadline() {
+    }
+
+    /**
+     * Executes operation with deadline. Nested operation cannot extend deadline of outer operation
+     *
+     * @param timeout time given to operation, zero if operation has no own deadline
+     * @param operation executed operation
+     * @param <T> type of operation result
+     *
+     * @return result of operation
+     */
+    public static <T> T call(Duration timeout, Supplier<T> operation) {
+        Long outer = deadline.get();
+        long inner = System.nanoTime() + timeout.toNanos();
+
+        if (timeout.isZero()) {
+            return operation.get();
+        }
+
+        deadline.set(outer != null && outer - inner < 0 ? outer : inner);
+
+        try {
+            return operation.get();
+        } finally {
+            if (outer == null) {
+                deadline.remove();
+            } else {
+                deadline.set(outer);
+            }
+        }
+    }
+
+    /**
+     * Executes cleanup work of operation, such as compensation or rollback, without deadline of the current
+     * thread, so cleanup is not rejected when operation ran out of time. Statements of cleanup get default
+     * timeout. Deadline is restored afterwards
+     *
+     * @param cleanup executed cleanup work
+     * @param <T> type of cleanup result
+     *
+     * @return result of cleanup
+     */
+    public static <T> T withoutDeadline(Supplier<T> cleanup) {
+        Long outer = deadline.get();
+
+        deadline.remove();
+
+        try {
+            return cleanup.get();
+        } finally {
+            if (outer != null) {
+                deadline.set(outer);
+            }
+        }
+    }
+
+    /**
+     * Wraps connection, so statements created by it get query timeout before every execution
+     *
+     * @param connection wrapped connection
+     * @param defaultTimeout timeout of statements executed without deadline, zero if they have no timeout
+     *
+     * @return connection which sets query timeouts or null if connection is null
+     */
+    public static Connection withTimeouts(Connection connection, Duration defaultTimeout) {
+        if (connection == null) {
+            return null;
+        }
+
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+
+                    if (result instanceof Statement statement && method.getReturnType().isInterface()) {
+                        return Proxy.newProxyInstance(method.getReturnType().getClassLoader(),
+                                new Class<?>[] {method.getReturnType()},
+                                (statementProxy, statementMethod, statementArgs) -> {
+                                    if (statementMethod.getName().startsWith("execute")) {
+                                        setTimeout(statement, defaultTimeout);
+                                    }
+
+                                    return invoke(statement, statementMethod, statementArgs);
+                                });
+                    }
+
+                    return result;
+                });
+    }
+
+    /**
+     * Sets query timeout of statement to time left until deadline of the current thread or to default timeout.
+     * Timeout is rounded up to whole seconds
+     *
+     * @param statement executed statement
+     * @param defaultTimeout timeout of statements executed without deadline
+     *
+     * @throws SQLException if deadline passed or timeout cannot be set
+     */
+    private static void setTimeout(Statement statement, Duration defaultTimeout) throws SQLException {
+        Long current = deadline.get();
+        long remaining = current != null ? current - System.nanoTime() : defaultTimeout.toNanos();
+
+        if (current != null && remaining <= 0) {
+            throw new SQLTimeoutException("Deadline of operation passed before query execution", QUERY_CANCELED);
+        }
+
+        if (remaining > 0) {
+            statement.setQueryTimeout((int) Math.min((remaining + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND,
+                    Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Invokes method of wrapped object and rethrows its exceptions unwrapped
+     *
+     * @param target wrapped object
+     * @param method invoked method
+     * @param args arguments of the method
+     *
+     * @return result of the method
+     *
+     * @throws Throwable exception thrown by the method
+     */
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
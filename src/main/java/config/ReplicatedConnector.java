@@ -0,0 +1,184 @@
+package config;
+
+import config.api.IDatabaseConnector;
+import utils.StructuredLogger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class that provides connections to primary database and its read replicas. Writes and reads which must see
+ * the latest writes use connection of primary. Reads which tolerate stale data use connection of replica whose
+ * replication lag is within staleness bound. Lag of replica is measured with pg_last_xact_replay_timestamp
+ * not more often than once per check interval. Replica without running WAL receiver is stale whatever its lag,
+ * because it does not know how far primary moved. If no replica is fresh enough, primary is used
+ */
+public class ReplicatedConnector implements IDatabaseConnector {
+
+    /** Logger for errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** Connector of primary database */
+    private final IDatabaseConnector primary;
+
+    /** Connectors of read replicas */
+    private final List<IDatabaseConnector> replicas;
+
+    /** Maximum replication lag of replica used for reads in milliseconds */
+    private final long maxStalenessMillis;
+
+    /** Minimum interval between lag checks of replica in nanoseconds */
+    private final long checkIntervalNanos;
+
+    /** Time of the last lag check of every replica in nanoseconds */
+    private final long[] checkedAt;
+
+    /** Whether lag of every replica was within staleness bound at the last check */
+    private final boolean[] fresh;
+
+    /** Counter used for distributing reads between replicas in turn */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * A query for replication lag in milliseconds and state of WAL receiver. Lag is zero if replica replayed
+     * everything it received, so replica of idle primary stays fresh while it is streaming. Lag is null if database
+     * is not a replica. Status of WAL receiver is null for roles without pg_read_all_stats, so running receiver
+     * is accepted then
+     */
+    private final String lagStatement = "SELECT CASE WHEN NOT pg_is_in_recovery() THEN NULL " +
+            "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 END AS lag, " +
+            "EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status IS NULL OR status = 'streaming') AS receiving";
+
+    /**
+     * Constructor with parameters
+     *
+     * @param primary connector of primary database
+     * @param replicas connectors of read replicas
+     * @param maxStaleness maximum replication lag of replica used for reads
+     * @param checkInterval minimum interval between lag checks of replica
+     */
+    public ReplicatedConnector(IDatabaseConnector primary, List<? extends IDatabaseConnector> replicas,
+                               Duration maxStaleness, Duration checkInterval) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxStalenessMillis = maxStaleness.toMillis();
+        this.checkIntervalNanos = checkInterval.toNanos();
+        this.checkedAt = new long[replicas.size()];
+        this.fresh = new boolean[replicas.size()];
+    }
+
+    /**
+     * Returns connection for reads which tolerate stale data. Replicas are used in turn
+     *
+     * @return existing connection of fresh replica, or of primary if no replica is fresh enough
+     */
+    public Connection getReadConnection() {
+        int start = next.getAndIncrement();
+        int replica;
+        Connection connection;
+
+        for (int i = 0; i < replicas.size(); i++) {
+            replica = Math.floorMod(start + i, replicas.size());
+
+            if (isFresh(replica) && (connection = replicas.get(replica).getConnection()) != null) {
+                return connection;
+            }
+        }
+
+        return primary.getConnection();
+    }
+
+    /**
+     * Checks whether replica streams from primary and its replication lag is within staleness bound.
+     * Lag is measured again if check interval passed since the last check
+     *
+     * @param replica number of replica
+     *
+     * @return true if replica can be used for reads
+     */
+    private boolean isFresh(int replica) {
+        long now = System.nanoTime();
+        Connection connection;
+        ResultSet resultSet;
+        double lag;
+
+        synchronized (fresh) {
+            if (checkedAt[replica] != 0 && now - checkedAt[replica] < checkIntervalNanos) {
+                return fresh[replica];
+            }
+
+            checkedAt[replica] = now;
+            fresh[replica] = false;
+        }
+
+        if ((connection = replicas.get(replica).getConnection()) == null) {
+            return false;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(lagStatement)) {
+            synchronized (connection) {
+                resultSet = statement.executeQuery();
+                resultSet.next();
+                lag = resultSet.getDouble("lag");
+
+                if (resultSet.wasNull()) {
+                    logger.warn("checkReplicaLag", "Database is not a replica", "replica", replica);
+
+                    return false;
+                }
+
+                if (!resultSet.getBoolean("receiving")) {
+                    logger.warn("checkReplicaLag", "Replica is not streaming from primary", "replica", replica);
+
+                    return false;
+                }
+            }
+        } catch (SQLException e) {
+            logger.sqlError("checkReplicaLag", e, "replica", replica);
+
+            return false;
+        }
+
+        synchronized (fresh) {
+            fresh[replica] = lag <= maxStalenessMillis;
+
+            return fresh[replica];
+        }
+    }
+
+    /**
+     * Creates database connection to primary, or returns existing connection
+     *
+     * @return Connection object, null if connection failed
+     */
+    @Override
+    public Connection getConnection() {
+        return primary.getConnection();
+    }
+
+    /**
+     * Creates new database connection to primary which is not shared with other users of the connector
+     *
+     * @return new Connection object, null if connection failed
+     */
+    @Override
+    public Connection openConnection() {
+        return primary.openConnection();
+    }
+
+    /** Closes existing connections of primary and replicas */
+    @Override
+    public void closeConnection() {
+        primary.closeConnection();
+
+        for (IDatabaseConnector replica : replicas) {
+            replica.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package config;
+
+import config.api.IDatabaseConnector;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class that provides connections to several PostgreSQL databases (shards). Every shard owns a range of ids:
+ * ids of accounts and transactions created on shard number N begin with N in bits above {@link #ID_BITS},
+ * so the shard of any account or transaction is found from its id without lookups. Sequences of every shard
+ * except the first one must start at the beginning of its range:
+ * <pre>
+ * ALTER SEQUENCE clever_bank.account_id_seq RESTART WITH &lt;N * 2^40 + 1&gt;;
+ * ALTER SEQUENCE clever_bank.transaction_id_seq RESTART WITH &lt;N * 2^40 + 1&gt;;
+ * </pre>
+ * Existing database becomes the first shard without changes. Banks and users are reference data which must be
+ * present on every shard. Shard is added to configuration and used after restart of application: new accounts
+ * are placed on shards in turn, while existing accounts stay where they were created
+ */
+public class ShardedConnector implements IDatabaseConnector {
+
+    /** Number of low bits of id which are used inside shard range */
+    public static final int ID_BITS = 40;
+
+    /** Connectors of shards in order of shard number */
+    private final List<IDatabaseConnector> shards;
+
+    /** Counter used for placing new accounts on shards in turn */
+    private final AtomicInteger placement = new AtomicInteger();
+
+    /**
+     * Constructor with parameter
+     *
+     * @param shards connectors of shards in order of shard number. The first shard keeps existing data
+     */
+    public ShardedConnector(List<? extends IDatabaseConnector> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+
+        this.shards = List.copyOf(shards);
+    }
+
+    /**
+     * Returns number of shards
+     *
+     * @return number of shards
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Finds shard which owns account or transaction. Ids less than or equal to zero belong to the first shard
+     *
+     * @param id account or transaction id
+     *
+     * @return number of shard or -1 if shard with such range does not exist
+     */
+    public int getShard(long id) {
+        long shard = id <= 0 ? 0 : id >>> ID_BITS;
+
+        return shard < shards.size() ? (int) shard : -1;
+    }
+
+    /**
+     * Returns the smallest id in range of shard
+     *
+     * @param shard number of shard
+     *
+     * @return the first id of shard range
+     */
+    public static long getFirstId(int shard) {
+        return (long) shard << ID_BITS;
+    }
+
+    /**
+     * Chooses shard for a new account. Shards are chosen in turn
+     *
+     * @return number of shard
+     */
+    public int nextPlacementShard() {
+        return Math.floorMod(placement.getAndIncrement(), shards.size());
+    }
+
+    /**
+     * Returns connector of shard
+     *
+     * @param shard number of shard
+     *
+     * @return connector of shard
+     */
+    public IDatabaseConnector getConnector(int shard) {
+        return shards.get(shard);
+    }
+
+    /**
+     * Returns existing connection of the first shard, which keeps banks, users and other data without shard range
+     *
+     * @return Connection object, null if connection failed
+     */
+    @Override
+    public Connection getConnection() {
+        return shards.get(0).getConnection();
+    }
+
+    /**
+     * Creates new connection to the first shard which is not shared with other users of the connector
+     *
+     * @return new Connection object, null if connection failed
+     */
+    @Override
+    public Connection openConnection() {
+        return shards.get(0).openConnection();
+    }
+
+    /** Closes existing connections of all shards */
+    @Override
+    public void closeConnection() {
+        for (IDatabaseConnector shard : shards) {
+            shard.closeConnection();
+        }
+    }
+}
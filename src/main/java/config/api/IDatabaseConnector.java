@@ -16,6 +16,14 @@ public interface IDatabaseConnector {
      */
     Connection getConnection();
 
+    /**
+     * Creates new database connection which is not shared with other users of the connector.
+     * Caller is responsible for closing it
+     *
+     * @return new connection with database
+     */
+    Connection openConnection();
+
     /** Closes existing database connection */
     void closeConnection();
 }
\ No newline at end of file
@@ -1,28 +1,75 @@
 package controller;
 
+import config.QueryDeadline;
+import config.ReplicatedConnector;
+import config.ShardedConnector;
 import config.api.IDatabaseConnector;
 import controller.service.AccountService;
+import controller.service.BalanceProjection;
 import controller.service.BankService;
+import controller.service.EventSourcedAccountService;
+import controller.service.EventSourcedPaymentService;
+import controller.service.GroupCommitPaymentService;
+import controller.service.IdempotencyService;
+import controller.service.PaymentService;
 import controller.service.TransactionService;
 import controller.service.UserService;
+import controller.service.admission.AdaptiveConcurrencyLimiter;
+import controller.service.admission.AdmissionControlledPaymentService;
+import controller.service.admission.ClientRateLimiter;
 import controller.service.api.IAccountService;
 import controller.service.api.IBankService;
+import controller.service.api.IIdempotencyService;
+import controller.service.api.IPaymentService;
 import controller.service.api.ITransactionService;
 import controller.service.api.IUserService;
+import controller.service.async.AsyncAccountService;
+import controller.service.async.AsyncServicePool;
+import controller.service.ledger.Ledger;
+import controller.service.ledger.LedgerAccountService;
+import controller.service.ledger.LedgerPaymentService;
+import controller.service.ledger.LedgerTransactionService;
+import controller.service.limit.VelocityLimit;
+import controller.service.limit.VelocityLimitedPaymentService;
+import controller.service.limit.VelocityLimiter;
+import controller.service.shard.CrossShardTransferCoordinator;
+import controller.service.shard.ShardedAccountService;
+import controller.service.shard.ShardedPaymentService;
+import controller.service.shard.ShardedTransactionService;
+import metrics.CheckRenderEvent;
+import metrics.MetricsServer;
+import metrics.PaymentEvent;
+import metrics.ServiceMetrics;
+import metrics.StatementEvent;
+import model.dto.KeyReservation;
+import model.dto.PaymentResult;
 import model.dto.StatementDto;
 import model.entity.Account;
 import model.entity.Transaction;
+import utils.DocumentCompressor;
 import utils.DocumentFileWriter;
+import utils.StructuredLogger;
+import utils.TeeWriter;
 import utils.YmlFileReader;
+import utils.api.IYmlFileReader;
 import view.ApplicationView;
 import view.CheckView;
 import view.MoneyStatementView;
 import view.TransactionStatementView;
-
+import view.TransactionStatementWriter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Scanner;
+import java.util.function.Supplier;
 
 /** Class that controls the work of the application depending on user input */
 public class ApplicationController {
@@ -33,6 +80,9 @@ public class ApplicationController {
     /** Instance of IDatabaseConnector interface for database operations */
     private final IDatabaseConnector connector;
 
+    /** Connector of shards with accounts and transactions. Null if database is not sharded */
+    private final ShardedConnector shardedConnector;
+
     /** Instance of IAccountService interface for operations with accounts */
     private final IAccountService accountService;
 
@@ -45,6 +95,27 @@ public class ApplicationController {
     /** Instance of IUserService interface for operations with users */
     private final IUserService userService;
 
+    /** Instance of IPaymentService interface for money operations with accounts */
+    private final IPaymentService paymentService;
+
+    /** Service committing money operations in groups on its own connection. Null if group commit is disabled */
+    private final GroupCommitPaymentService groupCommitPaymentService;
+
+    /** Coordinator of transfers between shards. Null if database is not sharded */
+    private final CrossShardTransferCoordinator transferCoordinator;
+
+    /** Threads reading accounts in parallel on their own connections. Null if accounts are read sequentially */
+    private final AsyncServicePool<IAccountService> asyncAccountPool;
+
+    /** In-memory ledger with accounts and money operations. Null if ledger mode is disabled */
+    private final Ledger ledger;
+
+    /** Instance of IIdempotencyService interface for detecting repeated money operations */
+    private final IIdempotencyService idempotencyService;
+
+    /** Time given to every money operation for its queries, zero if operations have no deadline */
+    private final Duration operationTimeout;
+
     /** Scanner object for reading input from console */
     private final Scanner scanner;
 
@@ -60,6 +131,24 @@ public class ApplicationController {
     /** Instance of CheckFileWriter for saving check to file */
     private final DocumentFileWriter documentFileWriter;
 
+    /** Job which generates month-end statements for all accounts */
+    private final MonthEndStatementJob monthEndStatementJob;
+
+    /** Workers which generate checks from outbox table. Null if checks are generated by the caller */
+    private final CheckOutboxWorker checkOutboxWorker;
+
+    /** Logger for errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** Metrics of service calls */
+    private final ServiceMetrics metrics;
+
+    /** Server exposing metrics of service calls as text */
+    private final MetricsServer metricsServer;
+
+    /** Writer to the console used for streaming statements. Must be flushed after usage and never closed */
+    private final Writer console = new OutputStreamWriter(System.out);
+
     /**
      * Constructor with parameter for controller creation
      *
@@ -67,230 +156,662 @@ public class ApplicationController {
      * @param scanner text scanner for user console input
      */
     public ApplicationController(IDatabaseConnector connector, Scanner scanner) {
-        this.connector = connector;
+        this(connector, scanner, new ServiceMetrics());
+    }
+
+    /**
+     * Constructor with parameters for controller creation
+     *
+     * @param connector implementation of database connection interface
+     * @param scanner text scanner for user console input
+     * @param metrics metrics of service calls, shared with circuit breakers of connector
+     */
+    public ApplicationController(IDatabaseConnector connector, Scanner scanner, ServiceMetrics metrics) {
+        BalanceProjection projection;
+        ShardedAccountService shardedAccountService;
+        ShardedTransactionService shardedTransactionService;
+        Supplier<Connection> readConnection;
+        IPaymentService payments;
+
+        this.metrics = metrics;
+        this.metricsServer = new MetricsServer(metrics);
+        this.connector = metrics.instrument(connector);
+        this.shardedConnector = connector instanceof ShardedConnector sharded ? sharded : null;
         this.scanner = scanner;
-        userService = new UserService(this.connector.getConnection());
-        accountService = new AccountService(this.connector.getConnection(), new YmlFileReader());
-        transactionService = new TransactionService(this.connector.getConnection());
-        bankService = new BankService(this.connector.getConnection());
+        this.operationTimeout = Duration.ofMillis((long) readNumber(new YmlFileReader(), "operationTimeoutMillis", 0));
+        readConnection = connector instanceof ReplicatedConnector replicated
+                ? replicated::getReadConnection : this.connector::getConnection;
+        userService = metrics.instrument(IUserService.class,
+                new UserService(this.connector.getConnection(), readConnection));
+        bankService = metrics.instrument(IBankService.class,
+                new BankService(this.connector.getConnection(), readConnection));
+        ledger = createLedger(new YmlFileReader());
+
+        if (ledger != null) {
+            accountService = metrics.instrument(IAccountService.class,
+                    new LedgerAccountService(ledger, bankService, new YmlFileReader()));
+            transactionService = metrics.instrument(ITransactionService.class, new LedgerTransactionService(ledger,
+                    new TransactionService(this.connector.getConnection()), Duration.ofSeconds(10)));
+            groupCommitPaymentService = null;
+            transferCoordinator = null;
+            asyncAccountPool = null;
+            payments = metrics.instrument(IPaymentService.class, new LedgerPaymentService(ledger));
+        } else if (shardedConnector != null) {
+            shardedAccountService = new ShardedAccountService(shardedConnector, new YmlFileReader());
+            shardedTransactionService = new ShardedTransactionService(shardedConnector);
+            accountService = metrics.instrument(IAccountService.class, shardedAccountService);
+            transactionService = metrics.instrument(ITransactionService.class, shardedTransactionService);
+            groupCommitPaymentService = null;
+            asyncAccountPool = null;
+            transferCoordinator = new CrossShardTransferCoordinator(shardedConnector,
+                    Duration.ofSeconds((long) readNumber(new YmlFileReader(), "shardTransferRecoverySeconds", 60)));
+            payments = metrics.instrument(IPaymentService.class, new ShardedPaymentService(shardedConnector,
+                    shardedAccountService, shardedTransactionService, transferCoordinator));
+        } else if ("true".equals(new YmlFileReader().getStringValueFromFile("eventSourcing"))) {
+            projection = createBalanceProjection(new YmlFileReader());
+            transactionService = metrics.instrument(ITransactionService.class,
+                    new TransactionService(this.connector.getConnection(), readConnection));
+            accountService = metrics.instrument(IAccountService.class, new EventSourcedAccountService(
+                    this.connector.getConnection(), projection,
+                    new AccountService(this.connector.getConnection(), new YmlFileReader()), transactionService,
+                    new YmlFileReader()));
+            groupCommitPaymentService = null;
+            transferCoordinator = null;
+            asyncAccountPool = null;
+            payments = metrics.instrument(IPaymentService.class, new EventSourcedPaymentService(
+                    this.connector.getConnection(), projection, transactionService));
+        } else {
+            accountService = metrics.instrument(IAccountService.class,
+                    new AccountService(this.connector.getConnection(), new YmlFileReader()));
+            transactionService = metrics.instrument(ITransactionService.class,
+                    new TransactionService(this.connector.getConnection(), readConnection));
+            groupCommitPaymentService = createGroupCommitPaymentService(new YmlFileReader());
+            transferCoordinator = null;
+            asyncAccountPool = groupCommitPaymentService == null ? createAsyncAccountPool(new YmlFileReader()) : null;
+            payments = metrics.instrument(IPaymentService.class, groupCommitPaymentService != null
+                    ? groupCommitPaymentService
+                    : new PaymentService(this.connector.getConnection(), accountService, transactionService,
+                            (int) readNumber(new YmlFileReader(), "optimisticMaxAttempts", 5),
+                            Duration.ofMillis((long) readNumber(new YmlFileReader(), "optimisticBackoffMillis", 1)),
+                            metrics.getContention(),
+                            asyncAccountPool != null ? new AsyncAccountService(asyncAccountPool) : null));
+        }
+
+        paymentService = createAdmissionControlledPaymentService(
+                createVelocityLimitedPaymentService(payments, new YmlFileReader()), new YmlFileReader());
+        idempotencyService = metrics.instrument(IIdempotencyService.class,
+                new IdempotencyService(this.connector.getConnection(),
+                        Duration.ofHours((long) readNumber(new YmlFileReader(), "idempotencyKeyTtlHours", 24))));
         this.checkView = new CheckView(bankService);
         this.statementView = new TransactionStatementView(bankService, userService);
         this.moneyStatementView = new MoneyStatementView(bankService, userService);
-        this.documentFileWriter = new DocumentFileWriter();
+        this.documentFileWriter = createDocumentFileWriter(new YmlFileReader());
+        this.monthEndStatementJob = createMonthEndStatementJob(new YmlFileReader());
+        this.checkOutboxWorker = createCheckOutboxWorker(new YmlFileReader());
     }
 
     /**
-     * Starts the service based on user input.
-     * Checks in the second thread whether interest should be accrued to Clever-Bank users
+     * Creates writer of checks and statements. Documents are compressed with dictionary built from templates
+     * if compression is enabled in YML file
+     *
+     * @param fileReader reader of configuration file
+     *
+     * @return writer of documents
      */
-    public void start() {
-        int option;
-        Thread interestCheck = new Thread(accountService);
-        interestCheck.start();
+    private DocumentFileWriter createDocumentFileWriter(IYmlFileReader fileReader) {
+        if (!"true".equals(fileReader.getStringValueFromFile("documentCompression"))) {
+            return new DocumentFileWriter();
+        }
 
-        option = view.chooseOperation(scanner);
+        return new DocumentFileWriter(new DocumentCompressor(moneyStatementView.getTemplateText(),
+                statementView.getTemplateText(), checkView.getTemplateText()));
+    }
 
-        while (option != 6) {
-            switch (option) {
-                case 1 -> replenishAccount();
-                case 2 -> withdrawAccount();
-                case 3 -> transferToAnotherAccount();
-                case 4 -> getAccountStatement();
-                case 5 -> getMoneyStatement();
-            }
+    /**
+     * Creates in-memory ledger if ledger mode is enabled in YML file. Journal directory, segment size,
+     * flush and snapshot intervals are taken from YML file
+     *
+     * @param fileReader reader of configuration file
+     *
+     * @return ledger or null if ledger mode is disabled or ledger cannot be restored
+     */
+    private Ledger createLedger(IYmlFileReader fileReader) {
+        String directory = fileReader.getStringValueFromFile("ledgerDirectory");
+        Connection connection;
 
-            option = view.chooseOperation(scanner);
+        if (!"true".equals(fileReader.getStringValueFromFile("ledgerMode"))
+                || (connection = connector.openConnection()) == null) {
+            return null;
         }
 
-        interestCheck.interrupt();
-    }
+        try {
+            return new Ledger(Path.of(System.getProperty("user.dir"),
+                    directory == null || directory.equals("null") ? "ledger" : directory), connection,
+                    (int) readNumber(fileReader, "ledgerSegmentRecords", 1000000),
+                    Duration.ofMillis((long) readNumber(fileReader, "ledgerSyncIntervalMillis", 10)),
+                    Duration.ofSeconds((long) readNumber(fileReader, "ledgerSnapshotIntervalSeconds", 300)),
+                    (int) readNumber(fileReader, "ledgerReplicationBatch", 500));
+        } catch (SQLException e) {
+            logger.sqlError("createLedger", e);
+        } catch (IOException e) {
+            logger.error("createLedger", e.getMessage());
+        }
 
-    /** Replenishes user account and creates transaction record in database. Print messages in case of errors */
-    private void replenishAccount() {
-        Account account;
-        Transaction transaction;
-        String check;
-        long id;
-        double amount;
-        long transactionId;
+        return null;
+    }
 
-        id = view.getIdForReplenishmentFromUser(scanner);
-        amount = view.getAmountForReplenishmentFromUser(scanner);
-        account = accountService.getAccount(id);
+    /**
+     * Creates projection of balances from transactions and snapshots of accounts which have no snapshot yet.
+     * Number of transactions between snapshots is taken from YML file
+     *
+     * @param fileReader reader of configuration file
+     *
+     * @return projection of balances
+     */
+    private BalanceProjection createBalanceProjection(IYmlFileReader fileReader) {
+        Connection connection = connector.getConnection();
+        BalanceProjection projection = new BalanceProjection(connection,
+                (int) readNumber(fileReader, "balanceSnapshotInterval", 64));
 
-        if (account.getId() == 0) {
-            System.out.println("\nAccount with entered id doesn't exist\n");
-            return;
+        try {
+            synchronized (connection) {
+                projection.initializeSnapshots();
+            }
+        } catch (SQLException e) {
+            logger.sqlError("createBalanceProjection", e);
         }
 
-        account.setBalance(account.getBalance() + amount);
+        return projection;
+    }
 
-        if (accountService.updateAccount(account) != 1) {
-            System.out.println("\nAn error occurred while replenishing your account\n");
-            return;
+    /**
+     * Creates service committing money operations in groups if group commit is enabled in YML file.
+     * Group size and maximum delay of the first operation are taken from YML file
+     *
+     * @param fileReader reader of configuration file
+     *
+     * @return group commit service or null if group commit is disabled or its connection cannot be opened
+     */
+    private GroupCommitPaymentService createGroupCommitPaymentService(IYmlFileReader fileReader) {
+        Connection connection;
+
+        if (!"true".equals(fileReader.getStringValueFromFile("groupCommit"))
+                || (connection = connector.openConnection()) == null) {
+            return null;
         }
 
-        transactionId = transactionService.addTransaction(1, amount, 0, id);
+        try {
+            return new GroupCommitPaymentService(connection,
+                    (int) readNumber(fileReader, "groupCommitMaxBatch", 64),
+                    Duration.ofMillis((long) readNumber(fileReader, "groupCommitMaxDelayMillis", 5)));
+        } catch (SQLException e) {
+            logger.sqlError("createGroupCommitPaymentService", e);
+        }
 
-        if (transactionId == 0) {
-            System.out.println("\nAn error occurred while saving transaction information\n");
+        return null;
+    }
 
-            account.setBalance(account.getBalance() - amount); // rollback balance update
-            accountService.updateAccount(account);
+    /**
+     * Creates threads reading accounts in parallel if their number in YML file is bigger than zero.
+     * Every thread reads accounts on its own connection
+     *
+     * @param fileReader reader of configuration file
+     *
+     * @return pool of threads with account services or null if parallel reads are disabled
+     */
+    private AsyncServicePool<IAccountService> createAsyncAccountPool(IYmlFileReader fileReader) {
+        int threads = (int) readNumber(fileReader, "asyncServiceThreads", 0);
 
-            return;
+        if (threads <= 0) {
+            return null;
         }
 
-        transaction = transactionService.getTransaction(transactionId);
-        check = checkView.getCheck(transaction.getId(), transaction.getTime().toLocalDate(),
-                transaction.getTime().toLocalTime(), 0, account.getBankId(),
-                0, transaction.getReceiver(), transaction.getAmount());
+        return new AsyncServicePool<>(connector, connection -> metrics.instrument(IAccountService.class,
+                new AccountService(connection, new YmlFileReader())), accountService, threads, "async-account");
+    }
 
-        documentFileWriter.saveCheck(check, transaction);
-        System.out.println(check);
+    /**
+     * Wraps payment service, so money operations are admitted by rate limit of client and by concurrency limit
+     * adapting to latency if admission control is enabled in YML file. Limits are taken from YML file
+     *
+     * @param payments service executing money operations
+     * @param fileReader reader of configuration file
+     *
+     * @return service with admission control or the same service if admission control is disabled
+     */
+    private IPaymentService createAdmissionControlledPaymentService(IPaymentService payments,
+                                                                    IYmlFileReader fileReader) {
+        if (!"true".equals(fileReader.getStringValueFromFile("admissionControl"))) {
+            return payments;
+        }
+
+        return new AdmissionControlledPaymentService(payments,
+                new ClientRateLimiter(readNumber(fileReader, "admissionRatePerSecond", 5),
+                        readNumber(fileReader, "admissionBurst", 10),
+                        (int) readNumber(fileReader, "admissionMaxClients", 10000), System::nanoTime),
+                new AdaptiveConcurrencyLimiter((int) readNumber(fileReader, "admissionInitialLimit", 8),
+                        (int) readNumber(fileReader, "admissionMinLimit", 1),
+                        (int) readNumber(fileReader, "admissionMaxLimit", 64),
+                        Duration.ofMillis((long) readNumber(fileReader, "admissionLatencyTargetMillis", 50)).toNanos()),
+                System::nanoTime);
     }
 
-    /** Withdraws money from account and creates transaction record in database. Print messages in case of errors */
-    private void withdrawAccount() {
-        Account account;
-        Transaction transaction;
-        String check;
-        long id;
-        long transactionId;
-        double amount;
+    /**
+     * Wraps payment service, so withdrawals and transfers are checked against velocity limits of debited account
+     * if limits are enabled in YML file. Limits of number and amount of debits per minute, hour and day
+     * are taken from YML file and warmed up with debits of the last day
+     *
+     * @param payments service executing money operations
+     * @param fileReader reader of configuration file
+     *
+     * @return service checking velocity limits or the same service if limits are disabled
+     */
+    private IPaymentService createVelocityLimitedPaymentService(IPaymentService payments, IYmlFileReader fileReader) {
+        VelocityLimiter limiter;
 
-        id = view.getIdForWithdrawalFromUser(scanner);
-        amount = view.getAmountForWithdrawalFromUser(scanner);
-        account = accountService.getAccount(id);
+        if (!"true".equals(fileReader.getStringValueFromFile("velocityLimits"))) {
+            return payments;
+        }
 
-        if (account.getId() == 0) {
-            System.out.println("\nAccount with entered id doesn't exist\n");
+        limiter = new VelocityLimiter(List.of(
+                new VelocityLimit(Duration.ofMinutes(1), 6, (long) readNumber(fileReader, "velocityMinuteCount", 0),
+                        readNumber(fileReader, "velocityMinuteAmount", 0)),
+                new VelocityLimit(Duration.ofHours(1), 6, (long) readNumber(fileReader, "velocityHourCount", 0),
+                        readNumber(fileReader, "velocityHourAmount", 0)),
+                new VelocityLimit(Duration.ofDays(1), 24, (long) readNumber(fileReader, "velocityDayCount", 0),
+                        readNumber(fileReader, "velocityDayAmount", 0))),
+                (int) readNumber(fileReader, "velocityMaxAccounts", 16384), System::currentTimeMillis);
+        limiter.warmUp(connector.getConnection());
+
+        return new VelocityLimitedPaymentService(payments, limiter);
+    }
 
-            return;
+    /**
+     * Creates month-end statement job. Number of worker threads and throughput target are taken from YML file
+     *
+     * @param fileReader reader of configuration file
+     *
+     * @return job for generating statements of all accounts
+     */
+    private MonthEndStatementJob createMonthEndStatementJob(IYmlFileReader fileReader) {
+        return new MonthEndStatementJob(shardedConnector != null ? shardedConnector : connector, accountService,
+                transactionService, statementView, moneyStatementView, documentFileWriter,
+                (int) readNumber(fileReader, "statementJobParallelism", Runtime.getRuntime().availableProcessors()),
+                readNumber(fileReader, "statementJobThroughputTarget", 0),
+                Path.of(System.getProperty("user.dir"), "statement-job.checkpoint"));
+    }
+
+    /**
+     * Creates workers generating checks from outbox table if check outbox is enabled in YML file.
+     * Number of workers, size of claimed portion and poll interval are taken from YML file
+     *
+     * @param fileReader reader of configuration file
+     *
+     * @return check outbox workers or null if check outbox is disabled
+     */
+    private CheckOutboxWorker createCheckOutboxWorker(IYmlFileReader fileReader) {
+        if (!"true".equals(fileReader.getStringValueFromFile("checkOutbox"))) {
+            return null;
         }
 
-        if (account.getBalance() < amount) {
-            System.out.println("\nThere are not enough money on account balance\n");
+        return new CheckOutboxWorker(shardedConnector != null ? shardedConnector : connector, checkView,
+                documentFileWriter, (int) readNumber(fileReader, "checkOutboxWorkers", 2),
+                (int) readNumber(fileReader, "checkOutboxBatch", 100),
+                Duration.ofMillis((long) readNumber(fileReader, "checkOutboxPollMillis", 200)));
+    }
 
-            return;
+    /**
+     * Reads number from YML file
+     *
+     * @param fileReader reader of configuration file
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue value which is returned if file contains no mapping for the key
+     *
+     * @return number to which the specified key is mapped, or default value
+     */
+    private double readNumber(IYmlFileReader fileReader, String key, double defaultValue) {
+        String value = fileReader.getStringValueFromFile(key);
+
+        return value == null || value.equals("null") ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * Starts the service based on user input.
+     * Checks in the second thread whether interest should be accrued to Clever-Bank users.
+     * Metrics of service calls are exposed via JMX and, if port is configured in YML file, via HTTP
+     * on configured address, loopback by default
+     */
+    public void start() {
+        int option;
+        IYmlFileReader fileReader = new YmlFileReader();
+        int metricsPort = (int) readNumber(fileReader, "metricsPort", 0);
+        String metricsHost = fileReader.getStringValueFromFile("metricsHost");
+        Thread interestCheck = new Thread(accountService);
+        interestCheck.start();
+        metrics.registerInJmx();
+
+        if (metricsPort > 0) {
+            metricsServer.start(metricsHost == null || metricsHost.equals("null") ? "127.0.0.1" : metricsHost,
+                    metricsPort);
         }
 
-        account.setBalance(account.getBalance() - amount);
+        if (checkOutboxWorker != null) {
+            checkOutboxWorker.start();
+        }
 
-        if (accountService.updateAccount(account) != 1) {
-            System.out.println("\nAn error occurred during cash withdrawal\n");
+        option = view.chooseOperation(scanner);
 
-            return;
+        while (option != 7) {
+            switch (option) {
+                case 1 -> executeOnce(this::readReplenishment);
+                case 2 -> executeOnce(this::readWithdrawal);
+                case 3 -> executeOnce(this::readTransfer);
+                case 4 -> getAccountStatement();
+                case 5 -> getMoneyStatement();
+                case 6 -> monthEndStatementJob.run();
+            }
+
+            option = view.chooseOperation(scanner);
         }
 
-        transactionId = transactionService.addTransaction(1, amount, id, 0);
+        interestCheck.interrupt();
+        metricsServer.stop();
 
-        if (transactionId == 0) {
-            System.out.println("\nAn error occurred while saving transaction information\n");
+        if (checkOutboxWorker != null) {
+            checkOutboxWorker.close();
+        }
 
-            account.setBalance(account.getBalance() + amount); // rollback balance update
-            accountService.updateAccount(account);
+        if (groupCommitPaymentService != null) {
+            groupCommitPaymentService.close();
+        }
 
-            return;
+        if (transferCoordinator != null) {
+            transferCoordinator.close();
         }
 
-        transaction = transactionService.getTransaction(transactionId);
-        check = checkView.getCheck(transaction.getId(), transaction.getTime().toLocalDate(),
-                transaction.getTime().toLocalTime(), account.getBankId(), 0,
-                transaction.getSender(), 0, transaction.getAmount());
+        if (asyncAccountPool != null) {
+            asyncAccountPool.close();
+        }
 
-        documentFileWriter.saveCheck(check, transaction);
-        System.out.println(check);
+        if (ledger != null) {
+            ledger.close();
+        }
     }
 
     /**
-     * Transfers money from one account to another in single transaction and creates transaction record in database.
-     * Saves check in file. Prints message in case of errors
+     * Executes money operation once for every idempotency key entered by user. Key is saved as pending
+     * together with type and parameters of the operation before it is executed, and gets id of created
+     * transaction after it completes. If operation with the same key was already executed, prints its check
+     * instead of executing operation again. Key of operation rejected before any changes is deleted, so operation
+     * can be retried. Key of operation with failed or unknown result stays pending until it expires, because its
+     * changes may have been saved. Operation is not executed if key was used for another operation or its earlier
+     * operation did not finish
+     *
+     * @param input reader of type and parameters of money operation from user
      */
-    private void transferToAnotherAccount() {
-        Account receiver;
-        Account sender;
-        Transaction transaction;
-        String check;
-        long senderId;
-        long receiverId;
-        long transactionId;
-        double amount;
-
-        senderId = view.getSenderId(scanner);
-        receiverId = view.getReceiverId(scanner);
-        amount = view.getAmountForTransfer(scanner);
-        receiver = accountService.getAccount(receiverId);
-        sender = accountService.getAccount(senderId);
-
-        if (receiver.getId() == 0) {
-            System.out.println("\nReceiver account with entered id doesn't exist\n");
-
-            return;
-        }
+    private void executeOnce(Supplier<MoneyOperation> input) {
+        String key = view.getIdempotencyKey(scanner);
+        MoneyOperation operation = input.get();
+        KeyReservation reservation;
+        PaymentResult result;
 
-        if (sender.getId() == 0) {
-            System.out.println("\nSender account with entered id doesn't exist\n");
+        if (key.isEmpty()) {
+            operation.execution().get();
 
             return;
         }
 
-        if (sender.getBalance() < amount) {
-            System.out.println("\nThere are not enough money on account balance\n");
+        if (!idempotencyService.acquireKey(key)) {
+            System.out.println("\nOperation with entered key is already in progress\n");
 
             return;
         }
 
         try {
-            synchronized (connector) {
-                connector.getConnection().setAutoCommit(false);
+            reservation = idempotencyService.reserveKey(key, operation.request());
 
-                receiver.setBalance(receiver.getBalance() + amount);
-                sender.setBalance(sender.getBalance() - amount);
-                accountService.updateAccount(sender);
-                accountService.updateAccount(receiver);
+            switch (reservation.status()) {
+                case COMPLETED -> {
+                    System.out.println("\nOperation with entered key was already executed\n");
+                    System.out.println(documentFileWriter.readCheck(reservation.transactionId()));
 
-                transactionId = transactionService.addTransaction(1, amount, senderId, receiverId);
+                    return;
+                }
+                case IN_PROGRESS -> {
+                    System.out.println("\nResult of operation with entered key is unknown, check account statement\n");
 
-                if (transactionId == 0) {
-                    System.out.println("\nAn error occurred while saving transaction information\n");
+                    return;
+                }
+                case CONFLICT -> {
+                    System.out.println("\nEntered key was already used for another operation\n");
 
-                    connector.getConnection().rollback();
-                    connector.getConnection().setAutoCommit(true);
+                    return;
+                }
+                case FAILED -> {
+                    System.out.println("\nAn error occurred while checking entered key, try again later\n");
 
                     return;
                 }
+                default -> {
+                }
+            }
 
-                connector.getConnection().commit();
-                connector.getConnection().setAutoCommit(true);
+            result = operation.execution().get();
 
-                transaction = transactionService.getTransaction(transactionId);
-                check = checkView.getCheck(transaction.getId(), transaction.getTime().toLocalDate(),
-                        transaction.getTime().toLocalTime(), sender.getBankId(), receiver.getBankId(),
-                        transaction.getSender(), transaction.getReceiver(), transaction.getAmount());
+            if (result.isCompleted()) {
+                idempotencyService.completeKey(key, result.transaction().getId());
+            } else if (result.status().isRejected()) {
+                idempotencyService.cancelKey(key);
             }
+        } finally {
+            idempotencyService.releaseKey(key);
+        }
+    }
 
-            documentFileWriter.saveCheck(check, transaction);
-            System.out.println(check);
-        } catch (SQLException e) {
-            try {
-                System.out.println("\nTransfer failed due to an error\n");
+    /**
+     * Reads id of account and amount of replenishment from user
+     *
+     * @return replenishment which can be executed
+     */
+    private MoneyOperation readReplenishment() {
+        long id = view.getIdForReplenishmentFromUser(scanner);
+        double amount = view.getAmountForReplenishmentFromUser(scanner);
 
-                connector.getConnection().rollback();
-                connector.getConnection().setAutoCommit(true);
-            } catch (SQLException ex) {
-                System.err.format("SQL State: %s\n%s", ex.getSQLState(), ex.getMessage());
-            }
+        return new MoneyOperation("replenishment " + id + " " + amount, () -> replenishAccount(id, amount));
+    }
+
+    /**
+     * Reads id of account and amount of withdrawal from user
+     *
+     * @return withdrawal which can be executed
+     */
+    private MoneyOperation readWithdrawal() {
+        long id = view.getIdForWithdrawalFromUser(scanner);
+        double amount = view.getAmountForWithdrawalFromUser(scanner);
+
+        return new MoneyOperation("withdrawal " + id + " " + amount, () -> withdrawAccount(id, amount));
+    }
+
+    /**
+     * Reads ids of sender and receiver accounts and amount of transfer from user
+     *
+     * @return transfer which can be executed
+     */
+    private MoneyOperation readTransfer() {
+        long senderId = view.getSenderId(scanner);
+        long receiverId = view.getReceiverId(scanner);
+        double amount = view.getAmountForTransfer(scanner);
+
+        return new MoneyOperation("transfer " + senderId + " " + receiverId + " " + amount,
+                () -> transferToAnotherAccount(senderId, receiverId, amount));
+    }
+
+    /**
+     * Replenishes user account and creates transaction record in database. Print messages in case of errors
+     *
+     * @param id id of replenished account
+     * @param amount replenishment amount
+     *
+     * @return result of operation
+     */
+    private PaymentResult replenishAccount(long id, double amount) {
+        PaymentEvent event = new PaymentEvent();
+        PaymentResult result;
+
+        event.begin();
+        result = QueryDeadline.call(operationTimeout, () -> paymentService.replenishAccount(id, amount));
+
+        switch (result.status()) {
+            case ACCOUNT_NOT_FOUND -> System.out.println("\nAccount with entered id doesn't exist\n");
+            case UPDATE_FAILED -> System.out.println("\nAn error occurred while replenishing your account\n");
+            case TRANSACTION_FAILED -> System.out.println("\nAn error occurred while saving transaction information\n");
+            case RATE_LIMITED -> System.out.println("\nToo many operations with the account, try again later\n");
+            case OVERLOADED -> System.out.println("\nService is overloaded, try again later\n");
+            case COMPLETED -> printCheck(result);
+            case UNKNOWN -> System.out.println("\nResult of operation is unknown, check account statement\n");
+            default -> System.out.println("\nReplenishment failed due to an error\n");
+        }
+
+        commitPaymentEvent(event, "replenishment", 0, id, amount, result);
+
+        return result;
+    }
+
+    /**
+     * Withdraws money from account and creates transaction record in database. Print messages in case of errors
+     *
+     * @param id id of account for withdrawal
+     * @param amount withdrawal amount
+     *
+     * @return result of operation
+     */
+    private PaymentResult withdrawAccount(long id, double amount) {
+        PaymentEvent event = new PaymentEvent();
+        PaymentResult result;
+
+        event.begin();
+        result = QueryDeadline.call(operationTimeout, () -> paymentService.withdrawAccount(id, amount));
+
+        switch (result.status()) {
+            case ACCOUNT_NOT_FOUND -> System.out.println("\nAccount with entered id doesn't exist\n");
+            case INSUFFICIENT_FUNDS -> System.out.println("\nThere are not enough money on account balance\n");
+            case LIMIT_EXCEEDED -> System.out.println("\nWithdrawal limit of the account is exceeded\n");
+            case UPDATE_FAILED -> System.out.println("\nAn error occurred during cash withdrawal\n");
+            case TRANSACTION_FAILED -> System.out.println("\nAn error occurred while saving transaction information\n");
+            case RATE_LIMITED -> System.out.println("\nToo many operations with the account, try again later\n");
+            case OVERLOADED -> System.out.println("\nService is overloaded, try again later\n");
+            case COMPLETED -> printCheck(result);
+            case UNKNOWN -> System.out.println("\nResult of operation is unknown, check account statement\n");
+            default -> System.out.println("\nWithdrawal failed due to an error\n");
+        }
+
+        commitPaymentEvent(event, "withdrawal", id, 0, amount, result);
+
+        return result;
+    }
+
+    /**
+     * Transfers money from one account to another in single transaction and creates transaction record in database.
+     * Saves check in file. Prints message in case of errors
+     *
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount transfer amount
+     *
+     * @return result of operation
+     */
+    private PaymentResult transferToAnotherAccount(long senderId, long receiverId, double amount) {
+        PaymentEvent event = new PaymentEvent();
+        PaymentResult result;
+
+        event.begin();
+        result = QueryDeadline.call(operationTimeout,
+                () -> paymentService.transferToAnotherAccount(senderId, receiverId, amount));
+
+        switch (result.status()) {
+            case RECEIVER_NOT_FOUND -> System.out.println("\nReceiver account with entered id doesn't exist\n");
+            case SENDER_NOT_FOUND -> System.out.println("\nSender account with entered id doesn't exist\n");
+            case SAME_ACCOUNT -> System.out.println("\nSender and receiver accounts must be different\n");
+            case INSUFFICIENT_FUNDS -> System.out.println("\nThere are not enough money on account balance\n");
+            case LIMIT_EXCEEDED -> System.out.println("\nTransfer limit of the sender account is exceeded\n");
+            case TRANSACTION_FAILED -> System.out.println("\nAn error occurred while saving transaction information\n");
+            case UPDATE_FAILED -> System.out.println("\nAccounts were changed by other operations, try again\n");
+            case RATE_LIMITED -> System.out.println("\nToo many operations with the account, try again later\n");
+            case OVERLOADED -> System.out.println("\nService is overloaded, try again later\n");
+            case COMPLETED -> printCheck(result);
+            case UNKNOWN -> System.out.println("\nResult of operation is unknown, check account statement\n");
+            default -> System.out.println("\nTransfer failed due to an error\n");
+        }
+
+        commitPaymentEvent(event, "transfer", senderId, receiverId, amount, result);
+
+        return result;
+    }
+
+    /**
+     * Fills flight recorder event of money operation and commits it if event is enabled
+     *
+     * @param event started event
+     * @param operation type of money operation
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount amount of money operation
+     * @param result result of money operation
+     */
+    private void commitPaymentEvent(PaymentEvent event, String operation, long senderId, long receiverId,
+                                    double amount, PaymentResult result) {
+        if (event.shouldCommit()) {
+            event.setOperation(operation);
+            event.setSenderId(senderId);
+            event.setReceiverId(receiverId);
+            event.setAmount(amount);
+            event.setStatus(result.status().name());
+            event.setTransactionId(result.transaction().getId());
+            event.commit();
         }
     }
 
-    /** Prints account statement and saves it in file */
+    /**
+     * Creates check of completed money operation, saves it in file and prints it. If check outbox is enabled,
+     * check is generated by outbox workers and only transaction id is printed
+     *
+     * @param result result of completed money operation
+     */
+    private void printCheck(PaymentResult result) {
+        Transaction transaction = result.transaction();
+        CheckRenderEvent event = new CheckRenderEvent();
+        CharSequence check;
+
+        if (checkOutboxWorker != null) {
+            System.out.println("\nOperation completed. Check of transaction " + transaction.getId()
+                    + " will be saved in file\n");
+
+            return;
+        }
+
+        event.begin();
+        check = checkView.renderCheck(transaction.getId(), transaction.getTime().toLocalDate(),
+                transaction.getTime().toLocalTime(), result.senderBankId(), result.receiverBankId(),
+                transaction.getSender(), transaction.getReceiver(), transaction.getAmount());
+        event.setTransactionId(transaction.getId());
+        event.setLength(check.length());
+        event.commit();
+
+        documentFileWriter.saveCheck(check, transaction);
+        System.out.println(check);
+    }
+
+    /**
+     * Prints account statement and saves it in file. Statement records are streamed from database
+     * to the file and console without keeping the whole statement in memory
+     */
     private void getAccountStatement() {
         LocalDate intervalStart;
         Account account;
         long accountId;
-        String statement;
-        List<StatementDto> statementList;
+        TransactionStatementWriter recordWriter;
+        StatementEvent event = new StatementEvent();
+        int records;
 
         accountId = view.getAccountId(scanner);
         account = accountService.getAccount(accountId);
@@ -302,10 +823,23 @@ public class ApplicationController {
         }
 
         intervalStart = view.getStartOfTimeInterval(scanner, account);
-        statementList = transactionService.getTransactionListByTime(accountId, intervalStart.atStartOfDay());
-        statement = statementView.getStatement(account, statementList, intervalStart);
-        documentFileWriter.saveAccountStatement(statement, account);
-        System.out.println(statement + "\n");
+        event.begin();
+
+        try (Writer file = documentFileWriter.openAccountStatement(account)) {
+            recordWriter = statementView.openStatement(account, intervalStart, new TeeWriter(file, console));
+            records = transactionService.forEachTransactionByTime(accountId, intervalStart.atStartOfDay(),
+                    recordWriter);
+            console.write(records < 0 ? "\n\nStatement is incomplete because transactions cannot be read\n\n"
+                    : "\n\n");
+            console.flush();
+            event.setRecords(Math.max(records, 0));
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("getAccountStatement", e.getMessage(), "accountId", accountId);
+        }
+
+        event.setStatementType("transaction");
+        event.setAccountId(accountId);
+        event.commit();
     }
 
     /** Prints money statement and saves it in file */
@@ -315,6 +849,7 @@ public class ApplicationController {
         long accountId;
         String statement;
         List<StatementDto> statementList;
+        StatementEvent event = new StatementEvent();
 
         accountId = view.getAccountId(scanner);
         account = accountService.getAccount(accountId);
@@ -326,9 +861,23 @@ public class ApplicationController {
         }
 
         intervalStart = view.getStartOfTimeInterval(scanner, account);
+        event.begin();
         statementList = transactionService.getTransactionListByTime(accountId, intervalStart.atStartOfDay());
         statement = moneyStatementView.getStatement(account, statementList, intervalStart);
         documentFileWriter.saveMoneyStatement(statement, account);
+        event.setStatementType("money");
+        event.setAccountId(accountId);
+        event.setRecords(statementList.size());
+        event.commit();
         System.out.println(statement + "\n");
     }
+
+    /**
+     * Money operation entered by user
+     *
+     * @param request type and parameters of operation saved with its idempotency key
+     * @param execution execution of operation which returns its result
+     */
+    private record MoneyOperation(String request, Supplier<PaymentResult> execution) {
+    }
 }
\ No newline at end of file
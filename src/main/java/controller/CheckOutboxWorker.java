@@ -0,0 +1,328 @@
+package controller;
+
+import config.ShardedConnector;
+import config.api.IDatabaseConnector;
+import metrics.CheckRenderEvent;
+import model.entity.Transaction;
+import utils.DocumentFileWriter;
+import utils.StructuredLogger;
+import view.CheckView;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * Class which generates checks of transactions from outbox table in background. Outbox row is inserted by trigger
+ * in the same database transaction as transaction record, so check of every committed transaction is generated
+ * even if application stops right after the commit:
+ * <pre>
+ * CREATE TABLE clever_bank.check_outbox (
+ *     transaction_id BIGINT PRIMARY KEY REFERENCES clever_bank.transaction (id) ON DELETE CASCADE,
+ *     created_at TIMESTAMP NOT NULL
+ * );
+ * CREATE FUNCTION clever_bank.enqueue_check() RETURNS TRIGGER AS $$
+ * BEGIN
+ *     INSERT INTO clever_bank.check_outbox VALUES (NEW.id, NEW.time);
+ *     RETURN NEW;
+ * END $$ LANGUAGE plpgsql;
+ * CREATE TRIGGER transaction_check_outbox AFTER INSERT ON clever_bank.transaction
+ *     FOR EACH ROW EXECUTE FUNCTION clever_bank.enqueue_check();
+ * </pre>
+ * Every worker uses its own database connection and claims portion of rows with SKIP LOCKED, so workers never wait
+ * for each other. Rows are deleted in the same database transaction after checks are saved. Check is saved again
+ * if worker stops before the commit, so every check is saved at least once. Worker which loses its connection
+ * or cannot open it opens a new one with growing pause, so workers recover after restart of database
+ * and stop only when they are closed. If database is sharded,
+ * every shard has its own outbox and workers. Copies of transactions created on shard of receiver
+ * by transfers between shards are skipped, because their checks are generated on shard of sender
+ */
+public class CheckOutboxWorker implements AutoCloseable {
+
+    /** Maximum pause before opening new connection of worker */
+    private static final Duration MAX_RECONNECT_DELAY = Duration.ofSeconds(30);
+
+    /** Logger for errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** Instance of IDatabaseConnector interface for opening worker connections. May be connector of shards */
+    private final IDatabaseConnector connector;
+
+    /** Instance of CheckView object for creating checks */
+    private final CheckView checkView;
+
+    /** Instance of DocumentFileWriter for saving checks to files */
+    private final DocumentFileWriter documentFileWriter;
+
+    /** Number of worker threads of every database */
+    private final int parallelism;
+
+    /** Maximum number of checks claimed by worker at once */
+    private final int batchSize;
+
+    /** Pause of worker after portion smaller than batch size */
+    private final Duration pollInterval;
+
+    /** Worker threads. Empty if workers are not started */
+    private final List<Thread> workers = new ArrayList<>();
+
+    /** A query for claiming portion of outbox rows with data required for checks */
+    private final String claimStatement = "SELECT t.id, t.amount, t.time, t.sender_id, t.receiver_id, " +
+            "COALESCE(s.bank_id, 0) AS sender_bank_id, COALESCE(r.bank_id, 0) AS receiver_bank_id " +
+            "FROM clever_bank.check_outbox o JOIN clever_bank.transaction t ON t.id = o.transaction_id " +
+            "LEFT JOIN clever_bank.account s ON s.id = t.sender_id " +
+            "LEFT JOIN clever_bank.account r ON r.id = t.receiver_id " +
+            "ORDER BY o.transaction_id LIMIT ? FOR UPDATE OF o SKIP LOCKED";
+
+    /** A query for deleting outbox rows of saved checks */
+    private final String deleteStatement = "DELETE FROM clever_bank.check_outbox WHERE transaction_id = ANY (?)";
+
+    /**
+     * Constructor with parameters
+     *
+     * @param connector implementation of database connection interface
+     * @param checkView view for creating checks
+     * @param documentFileWriter writer of check files
+     * @param parallelism number of worker threads of every database
+     * @param batchSize maximum number of checks claimed by worker at once
+     * @param pollInterval pause of worker after portion smaller than batch size
+     */
+    public CheckOutboxWorker(IDatabaseConnector connector, CheckView checkView, DocumentFileWriter documentFileWriter,
+                             int parallelism, int batchSize, Duration pollInterval) {
+        this.connector = connector;
+        this.checkView = checkView;
+        this.documentFileWriter = documentFileWriter;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+    }
+
+    /** Starts worker threads for every database. Every thread opens its own database connection */
+    public synchronized void start() {
+        if (connector instanceof ShardedConnector sharded) {
+            for (int shard = 0; shard < sharded.getShardCount(); shard++) {
+                startWorkers(sharded.getConnector(shard), sharded, shard);
+            }
+        } else {
+            startWorkers(connector, null, 0);
+        }
+    }
+
+    /**
+     * Starts worker threads for database
+     *
+     * @param database connector of database with outbox
+     * @param sharded connector of shards or null if database is not sharded
+     * @param shard number of shard of database
+     */
+    private void startWorkers(IDatabaseConnector database, ShardedConnector sharded, int shard) {
+        LongPredicate owns = sharded == null ? id -> true : id -> sharded.getShard(id) == shard;
+        Thread worker;
+
+        for (int i = 0; i < parallelism; i++) {
+            worker = new Thread(() -> work(database, owns), "check-outbox-" + workers.size());
+            worker.setDaemon(true);
+            worker.setUncaughtExceptionHandler((thread, e) ->
+                    logger.error("checkOutbox", "Worker stopped: " + e, "thread", thread.getName()));
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Processes outbox until thread is interrupted. Worker pauses after portion smaller than batch size,
+     * so empty outbox is polled once per poll interval. Connection is opened again after failed portion,
+     * pause before opening is doubled after every failure up to maximum
+     *
+     * @param database connector of database with outbox
+     * @param owns predicate which is true for ids of transactions created in this database
+     */
+    private void work(IDatabaseConnector database, LongPredicate owns) {
+        long reconnectDelay = pollInterval.toMillis();
+        Connection connection = null;
+        int saved;
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (connection == null) {
+                    connection = openConnection(database);
+                }
+
+                try {
+                    saved = connection == null ? -1 : processBatch(connection, owns);
+                } catch (RuntimeException e) {
+                    logger.error("checkOutbox", String.valueOf(e), "thread", Thread.currentThread().getName());
+                    saved = -1;
+                }
+
+                if (saved >= 0) {
+                    reconnectDelay = pollInterval.toMillis();
+
+                    if (saved < batchSize) {
+                        Thread.sleep(pollInterval.toMillis());
+                    }
+
+                    continue;
+                }
+
+                if (connection != null) {
+                    closeConnection(connection);
+                    connection = null;
+                }
+
+                Thread.sleep(reconnectDelay);
+                reconnectDelay = Math.min(Math.max(reconnectDelay * 2, 1), MAX_RECONNECT_DELAY.toMillis());
+            }
+        } catch (InterruptedException e) {
+            // worker is stopped
+        } finally {
+            if (connection != null) {
+                closeConnection(connection);
+            }
+        }
+    }
+
+    /**
+     * Opens worker connection without auto-commit. Prints message in case of errors
+     *
+     * @param database connector of database with outbox
+     *
+     * @return connection or null if it cannot be opened
+     */
+    private Connection openConnection(IDatabaseConnector database) {
+        Connection connection = database.openConnection();
+
+        if (connection == null) {
+            logger.error("checkOutbox", "Worker connection cannot be opened");
+
+            return null;
+        }
+
+        try {
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            logger.sqlError("checkOutbox", e);
+            closeConnection(connection);
+
+            return null;
+        }
+
+        return connection;
+    }
+
+    /**
+     * Closes worker connection. Prints message in case of errors
+     *
+     * @param connection worker connection
+     */
+    private void closeConnection(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.sqlError("checkOutbox", e);
+        }
+    }
+
+    /**
+     * Claims portion of outbox rows, saves their checks and deletes rows of saved checks in one database
+     * transaction. Rows of checks which cannot be saved stay in outbox and are claimed again later.
+     * Rows of transaction copies are deleted without checks
+     *
+     * @param connection worker connection without auto-commit
+     * @param owns predicate which is true for ids of transactions created in this database
+     *
+     * @return number of saved checks, or -1 if portion failed and connection must be opened again
+     */
+    private int processBatch(Connection connection, LongPredicate owns) {
+        List<Long> saved = new ArrayList<>(batchSize);
+        ResultSet resultSet;
+        Transaction transaction;
+
+        try {
+            try (PreparedStatement statement = connection.prepareStatement(claimStatement)) {
+                statement.setInt(1, batchSize);
+                resultSet = statement.executeQuery();
+
+                while (resultSet.next()) {
+                    transaction = new Transaction(resultSet.getLong("id"), resultSet.getDouble("amount"),
+                            resultSet.getObject("time", LocalDateTime.class), resultSet.getLong("sender_id"),
+                            resultSet.getLong("receiver_id"));
+
+                    if (!owns.test(transaction.getId()) || saveCheck(transaction,
+                            resultSet.getLong("sender_bank_id"), resultSet.getLong("receiver_bank_id"))) {
+                        saved.add(transaction.getId());
+                    }
+                }
+            }
+
+            if (!saved.isEmpty()) {
+                try (PreparedStatement statement = connection.prepareStatement(deleteStatement)) {
+                    statement.setArray(1, connection.createArrayOf("bigint", saved.toArray()));
+                    statement.executeUpdate();
+                }
+            }
+
+            connection.commit();
+        } catch (SQLException e) {
+            logger.sqlError("processBatch", e, "saved", saved.size());
+
+            try {
+                connection.rollback();
+            } catch (SQLException ex) {
+                logger.sqlError("processBatch", ex);
+            }
+
+            return -1;
+        }
+
+        return saved.size();
+    }
+
+    /**
+     * Creates check of transaction and saves it in file
+     *
+     * @param transaction transaction for which check is created
+     * @param senderBankId id of sender bank. Zero if there is no sender
+     * @param receiverBankId id of receiver bank. Zero if there is no receiver
+     *
+     * @return true if check was saved
+     */
+    private boolean saveCheck(Transaction transaction, long senderBankId, long receiverBankId) {
+        CheckRenderEvent event = new CheckRenderEvent();
+        CharSequence check;
+
+        event.begin();
+        check = checkView.renderCheck(transaction.getId(), transaction.getTime().toLocalDate(),
+                transaction.getTime().toLocalTime(), senderBankId, receiverBankId,
+                transaction.getSender(), transaction.getReceiver(), transaction.getAmount());
+        event.setTransactionId(transaction.getId());
+        event.setLength(check.length());
+        event.commit();
+
+        return documentFileWriter.saveCheck(check, transaction);
+    }
+
+    /** Stops worker threads and waits until they finish current portion */
+    @Override
+    public synchronized void close() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        workers.clear();
+    }
+}
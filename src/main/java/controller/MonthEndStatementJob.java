@@ -0,0 +1,319 @@
+package controller;
+
+import config.ShardedConnector;
+import config.api.IDatabaseConnector;
+import controller.service.TransactionService;
+import controller.service.api.IAccountService;
+import controller.service.api.ITransactionService;
+import metrics.StatementEvent;
+import model.entity.Account;
+import utils.DocumentFileWriter;
+import utils.StructuredLogger;
+import view.MoneyStatementTotals;
+import view.MoneyStatementView;
+import view.TransactionStatementView;
+import view.TransactionStatementWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class which generates transaction and money statements for the current month for every account.
+ * Accounts are read in portions ordered by id and distributed across a fork-join pool. Every worker uses
+ * its own database connection, so transactions of different accounts are streamed in parallel.
+ * After every portion id of the last completed account is saved in checkpoint file,
+ * so interrupted job continues from that account. Job stops if accounts or transactions cannot be read,
+ * so database errors are not taken for the end of accounts or for empty statement
+ */
+public class MonthEndStatementJob implements Runnable {
+
+    /** Logger for errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** Instance of IDatabaseConnector interface for opening worker connections */
+    private final IDatabaseConnector connector;
+
+    /** Instance of IAccountService interface for reading accounts */
+    private final IAccountService accountService;
+
+    /** Transaction service with shared connection. Used if worker connection cannot be opened */
+    private final ITransactionService sharedTransactionService;
+
+    /** Instance of TransactionStatementView object for creating account transaction statements */
+    private final TransactionStatementView statementView;
+
+    /** Instance of MoneyStatementView object for creating account`s money statements */
+    private final MoneyStatementView moneyStatementView;
+
+    /** Instance of DocumentFileWriter for saving statements to files */
+    private final DocumentFileWriter documentFileWriter;
+
+    /** Number of worker threads */
+    private final int parallelism;
+
+    /** Expected number of processed accounts per second. Progress report warns if job is slower */
+    private final double throughputTarget;
+
+    /** File with month and id of the last account for which statements were generated */
+    private final Path checkpointFile;
+
+    /** Number of accounts read from database at once */
+    private final int portionSize = 500;
+
+    /** Transaction service of every worker thread */
+    private final ThreadLocal<ITransactionService> workerTransactionService = new ThreadLocal<>();
+
+    /** Connections opened by worker threads. Closed when job finishes */
+    private final Queue<Connection> workerConnections = new ConcurrentLinkedQueue<>();
+
+    /** Number of accounts processed during current run */
+    private final AtomicInteger processedAccounts = new AtomicInteger();
+
+    /**
+     * Constructor with parameters
+     *
+     * @param connector implementation of database connection interface
+     * @param accountService service for reading accounts
+     * @param transactionService service with shared connection for reading transactions
+     * @param statementView view for creating account transaction statements
+     * @param moneyStatementView view for creating account`s money statements
+     * @param documentFileWriter writer of statement files
+     * @param parallelism number of worker threads
+     * @param throughputTarget expected number of processed accounts per second
+     * @param checkpointFile file for saving job progress
+     */
+    public MonthEndStatementJob(IDatabaseConnector connector, IAccountService accountService,
+                                ITransactionService transactionService, TransactionStatementView statementView,
+                                MoneyStatementView moneyStatementView, DocumentFileWriter documentFileWriter,
+                                int parallelism, double throughputTarget, Path checkpointFile) {
+        this.connector = connector;
+        this.accountService = accountService;
+        this.sharedTransactionService = transactionService;
+        this.statementView = statementView;
+        this.moneyStatementView = moneyStatementView;
+        this.documentFileWriter = documentFileWriter;
+        this.parallelism = parallelism;
+        this.throughputTarget = throughputTarget;
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Generates statements for all accounts starting after the account saved in checkpoint.
+     * Stops at the first account for which statements cannot be generated or at portion of accounts which
+     * cannot be read, so it will be retried on the next run. Prints progress after every portion of accounts
+     */
+    @Override
+    public void run() {
+        YearMonth month = YearMonth.now();
+        long lastAccountId = readCheckpoint(month);
+        long startTime = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<Account> accounts;
+        List<ForkJoinTask<Boolean>> tasks = new ArrayList<>();
+        boolean failed = false;
+
+        processedAccounts.set(0);
+
+        try {
+            accounts = accountService.getAccountList(lastAccountId, portionSize);
+            failed = accounts == null;
+
+            while (!failed && !accounts.isEmpty()) {
+                tasks.clear();
+
+                for (Account account : accounts) {
+                    tasks.add(pool.submit(() -> generateStatements(account, month)));
+                }
+
+                for (int i = 0; i < tasks.size(); i++) {
+                    if (!tasks.get(i).join()) {
+                        failed = true;
+                    } else if (!failed) {
+                        lastAccountId = accounts.get(i).getId();
+                    }
+                }
+
+                writeCheckpoint(month, lastAccountId);
+                reportProgress(startTime);
+
+                if (!failed) {
+                    accounts = accountService.getAccountList(lastAccountId, portionSize);
+                    failed = accounts == null;
+                }
+            }
+        } finally {
+            pool.shutdown();
+            closeWorkerConnections();
+        }
+
+        if (failed) {
+            System.out.format("\nStatement generation stopped after account %d. Run it again to continue\n\n",
+                    lastAccountId);
+        } else {
+            System.out.println("\nStatements for all accounts were generated\n");
+        }
+    }
+
+    /**
+     * Returns number of accounts processed during current run
+     *
+     * @return number of processed accounts
+     */
+    public int getProcessedAccounts() {
+        return processedAccounts.get();
+    }
+
+    /**
+     * Generates transaction and money statements of the account. Transactions are read from database once
+     * and passed to both statements at the same time. Prints message in case of errors
+     *
+     * @param account account for which statements will be generated
+     * @param month month of the statements
+     *
+     * @return true if both statements were saved, false if they cannot be written or transactions cannot be read
+     */
+    private boolean generateStatements(Account account, YearMonth month) {
+        LocalDate creationDate = account.getCreationDate().toLocalDate();
+        LocalDate intervalStart = month.atDay(1).isBefore(creationDate) ? creationDate : month.atDay(1);
+        TransactionStatementWriter recordWriter;
+        MoneyStatementTotals totals;
+        StatementEvent event = new StatementEvent();
+        int records;
+
+        event.begin();
+
+        try (Writer statementFile = documentFileWriter.openAccountStatement(account);
+             Writer moneyStatementFile = documentFileWriter.openMoneyStatement(account)) {
+            recordWriter = statementView.openStatement(account, intervalStart, statementFile);
+            totals = moneyStatementView.openTotals(account);
+            records = getTransactionService().forEachTransactionByTime(account.getId(), intervalStart.atStartOfDay(),
+                    recordWriter.andThen(totals));
+
+            if (records < 0) {
+                return false; // incomplete statement file is overwritten on the next run
+            }
+
+            event.setRecords(records);
+            moneyStatementView.writeStatement(account, totals, intervalStart, moneyStatementFile);
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("generateStatements", e.getMessage(), "accountId", account.getId());
+
+            return false;
+        }
+
+        event.setStatementType("month-end");
+        event.setAccountId(account.getId());
+        event.commit();
+        processedAccounts.incrementAndGet();
+
+        return true;
+    }
+
+    /**
+     * Returns transaction service of the current worker thread. Opens connection for it on first usage.
+     * If database is sharded, shared service is used because it reads every account from its own shard
+     *
+     * @return transaction service with connection which is used only by current thread
+     */
+    private ITransactionService getTransactionService() {
+        ITransactionService service = workerTransactionService.get();
+        Connection connection;
+
+        if (service == null) {
+            connection = connector instanceof ShardedConnector ? null : connector.openConnection();
+
+            if (connection != null) {
+                workerConnections.add(connection);
+                service = new TransactionService(connection);
+            } else {
+                service = sharedTransactionService;
+            }
+
+            workerTransactionService.set(service);
+        }
+
+        return service;
+    }
+
+    /** Closes all connections opened by worker threads */
+    private void closeWorkerConnections() {
+        Connection connection;
+
+        while ((connection = workerConnections.poll()) != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.sqlError("closeWorkerConnections", e);
+            }
+        }
+    }
+
+    /**
+     * Prints number of processed accounts and job throughput
+     *
+     * @param startTime time of job start in nanoseconds
+     */
+    private void reportProgress(long startTime) {
+        double seconds = Math.max((System.nanoTime() - startTime) / 1.0E9, 1.0E-3);
+        double throughput = processedAccounts.get() / seconds;
+
+        System.out.format("Statements generated for %d accounts, %.1f accounts/s%s\n", processedAccounts.get(),
+                throughput, throughput < throughputTarget ? " (below target " + throughputTarget + ")" : "");
+    }
+
+    /**
+     * Reads id of the last processed account from checkpoint file
+     *
+     * @param month current month
+     *
+     * @return id of the last processed account, zero if file does not exist or was saved in another month
+     */
+    private long readCheckpoint(YearMonth month) {
+        String[] checkpoint;
+
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+
+        try {
+            checkpoint = Files.readString(checkpointFile, StandardCharsets.UTF_8).trim().split(" ");
+
+            if (checkpoint.length == 2 && checkpoint[0].equals(month.toString())) {
+                return Long.parseLong(checkpoint[1]);
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.error("readCheckpoint", e.getMessage(), "file", checkpointFile);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Saves id of the last processed account to checkpoint file
+     *
+     * @param month current month
+     * @param lastAccountId id of the last account for which statements were generated
+     */
+    private void writeCheckpoint(YearMonth month, long lastAccountId) {
+        try {
+            Files.writeString(checkpointFile, month + " " + lastAccountId, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.error("writeCheckpoint", e.getMessage(), "file", checkpointFile);
+        }
+    }
+}
@@ -2,15 +2,27 @@ package controller.service;
 
 import controller.service.api.IAccountService;
 import model.entity.Account;
+import utils.StructuredLogger;
 import utils.api.IYmlFileReader;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalTime;
-
-/** A class for CRUD operations with table "account" in database */
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class for CRUD operations with table "account" in database. Updates use optimistic concurrency: account
+ * is updated only if its version did not change since it was read. Version column is added with:
+ * <pre>
+ * ALTER TABLE clever_bank.account ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ * </pre>
+ */
 public class AccountService implements IAccountService {
 
+    /** Logger for database errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
     /** A database connection */
     private final Connection connection;
 
@@ -30,13 +42,16 @@ public class AccountService implements IAccountService {
     /** A query for retrieving account from database based on id */
     private final String readStatement = "SELECT * FROM clever_bank.account WHERE id = ?";
 
-    /** A query for updating account in database based on id */
+    /** A query for retrieving portion of accounts ordered by id */
+    private final String readPortionStatement = "SELECT * FROM clever_bank.account WHERE id > ? ORDER BY id LIMIT ?";
+
+    /** A query for updating account in database based on id if its version did not change */
     private final String updateStatement = "UPDATE clever_bank.account SET bank_id = ?, balance = ?, " +
-            "user_id = ?, creation_date = ? WHERE id = ?";
+            "user_id = ?, creation_date = ?, version = version + 1 WHERE id = ? AND version = ?";
 
     /** A query for updating balance in all bank accounts in database based on bank name and percent from config file */
-    private final String updateAllBankAccountsBalanceStatement = "UPDATE clever_bank.account SET balance = balance * ? " +
-            "WHERE bank_id = (SELECT id FROM clever_bank.bank WHERE name = ?)";
+    private final String updateAllBankAccountsBalanceStatement = "UPDATE clever_bank.account SET balance = balance * ?, " +
+            "version = version + 1 WHERE bank_id = (SELECT id FROM clever_bank.bank WHERE name = ?)";
 
     /** A query for deleting account from database based on id */
     private final String deleteStatement = "DELETE FROM clever_bank.account WHERE account.id = ?";
@@ -88,7 +103,7 @@ public class AccountService implements IAccountService {
                 numberOfAffectedRows = statement.executeUpdate();
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("addAccount", e, "accountId", id, "bankId", bankId, "userId", userId);
         }
 
         return numberOfAffectedRows;
@@ -119,21 +134,60 @@ public class AccountService implements IAccountService {
             while (resultSet.next()) {
                 account = new Account(resultSet.getLong("id"), resultSet.getLong("bank_id"),
                         resultSet.getDouble("balance"), resultSet.getLong("user_id"),
-                        resultSet.getDate("creation_date"));
+                        resultSet.getDate("creation_date"), resultSet.getLong("version"));
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("getAccount", e, "accountId", id);
         }
 
         return account;
     }
 
     /**
-     * Updates account`s info in the database. Prints message in case of errors
+     * Reads portion of accounts ordered by id from database. Prints message in case of errors
      *
-     * @param updatedAccount Account object with updated values
+     * @param afterId only accounts with id bigger than this value will be read
+     * @param limit maximum number of accounts in portion
      *
-     * @return number of affected by query rows
+     * @return list of accounts ordered by id. List is empty if there are no more accounts.
+     * Null if SQLException occurred
+     */
+    @Override
+    public List<Account> getAccountList(long afterId, int limit) {
+        List<Account> accounts = new ArrayList<>();
+        PreparedStatement statement;
+        ResultSet resultSet;
+
+        try {
+            synchronized (connection) {
+                statement = connection.prepareStatement(readPortionStatement);
+                statement.setLong(1, afterId);
+                statement.setInt(2, limit);
+                resultSet = statement.executeQuery();
+
+                while (resultSet.next()) {
+                    accounts.add(new Account(resultSet.getLong("id"), resultSet.getLong("bank_id"),
+                            resultSet.getDouble("balance"), resultSet.getLong("user_id"),
+                            resultSet.getDate("creation_date"), resultSet.getLong("version")));
+                }
+            }
+        } catch (SQLException e) {
+            logger.sqlError("getAccountList", e, "afterId", afterId, "limit", limit);
+
+            return null;
+        }
+
+        return accounts;
+    }
+
+    /**
+     * Updates account`s info in the database if account version did not change since it was read.
+     * Version of updated object is incremented after successful update. Prints message in case of errors
+     *
+     * @param updatedAccount Account object with updated values and version which was read
+     *
+     * @return number of affected by query rows. Zero if account does not exist or was changed concurrently,
+     * minus one in case of database errors
      */
     @Override
     public int updateAccount(Account updatedAccount) {
@@ -147,13 +201,19 @@ public class AccountService implements IAccountService {
             statement.setLong(3, updatedAccount.getUserId());
             statement.setDate(4, updatedAccount.getCreationDate());
             statement.setLong(5, updatedAccount.getId());
+            statement.setLong(6, updatedAccount.getVersion());
 
             synchronized (connection) {
                 numberOfAffectedRows = statement.executeUpdate();
             }
-            } catch (SQLException e) {
-                System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+
+            if (numberOfAffectedRows == 1) {
+                updatedAccount.setVersion(updatedAccount.getVersion() + 1);
             }
+        } catch (SQLException e) {
+            logger.sqlError("updateAccount", e, "accountId", updatedAccount.getId());
+            numberOfAffectedRows = -1;
+        }
 
         return numberOfAffectedRows;
     }
@@ -181,7 +241,7 @@ public class AccountService implements IAccountService {
                 numberOfAffectedRows = statement.executeUpdate();
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("updateAllBankAccountsBalance", e, "bank", bankName);
         }
 
         return numberOfAffectedRows;
@@ -207,7 +267,7 @@ public class AccountService implements IAccountService {
                 numberOfAffectedRows = statement.executeUpdate();
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("deleteAccount", e, "accountId", id);
         }
 
         return numberOfAffectedRows;
@@ -0,0 +1,245 @@
+package controller.service;
+
+import model.entity.Account;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class for event-sourced account balances. Transactions are the source of truth and balance is a projection:
+ * the last snapshot of the account plus amounts of transactions with the account created after the snapshot.
+ * Snapshots are kept in table "account_snapshot" in database:
+ * <pre>
+ * CREATE TABLE clever_bank.account_snapshot (
+ *     account_id BIGINT PRIMARY KEY REFERENCES clever_bank.account (id) ON DELETE CASCADE,
+ *     balance DOUBLE PRECISION NOT NULL,
+ *     transaction_id BIGINT NOT NULL,
+ *     created_at TIMESTAMP NOT NULL
+ * );
+ * CREATE INDEX transaction_sender_idx ON clever_bank.transaction (sender_id, id);
+ * CREATE INDEX transaction_receiver_idx ON clever_bank.transaction (receiver_id, id);
+ * </pre>
+ * Transactions of an account must be created while its row is locked, so their ids grow in order of creation
+ * and no transaction appears behind the snapshot. Methods do not synchronize on connection and do not commit:
+ * callers execute them inside their own database transactions
+ */
+public class BalanceProjection {
+
+    /** A database connection */
+    private final Connection connection;
+
+    /** A query for creating snapshots with current balances of accounts which have no snapshot */
+    private final String initializeStatement = "INSERT INTO clever_bank.account_snapshot " +
+            "SELECT a.id, a.balance, COALESCE((SELECT max(t.id) FROM clever_bank.transaction t " +
+            "WHERE t.sender_id = a.id OR t.receiver_id = a.id), 0), ? FROM clever_bank.account a " +
+            "ON CONFLICT (account_id) DO NOTHING";
+
+    /** A query for creating snapshot with current balance of account which has no snapshot */
+    private final String initializeAccountStatement = "INSERT INTO clever_bank.account_snapshot " +
+            "SELECT a.id, a.balance, COALESCE((SELECT max(t.id) FROM clever_bank.transaction t " +
+            "WHERE t.sender_id = a.id OR t.receiver_id = a.id), 0), ? FROM clever_bank.account a " +
+            "WHERE a.id = ? ON CONFLICT (account_id) DO NOTHING";
+
+    /** A query for locking accounts in order of id. Returns banks of the accounts */
+    private final String lockStatement = "SELECT id, bank_id FROM clever_bank.account WHERE id IN (?, ?) " +
+            "ORDER BY id FOR UPDATE";
+
+    /** Beginning of query for projecting accounts from snapshots and transactions after them */
+    private final String projectionStatement = "SELECT a.id, a.bank_id, a.user_id, a.creation_date, a.version, " +
+            "s.balance + COALESCE(e.delta, 0) AS balance, COALESCE(e.last_id, s.transaction_id) AS last_id, " +
+            "COALESCE(e.events, 0) AS events FROM clever_bank.account a " +
+            "JOIN clever_bank.account_snapshot s ON s.account_id = a.id " +
+            "LEFT JOIN LATERAL (SELECT sum(CASE WHEN t.receiver_id = a.id THEN t.amount ELSE 0 END) " +
+            "- sum(CASE WHEN t.sender_id = a.id THEN t.amount ELSE 0 END) AS delta, max(t.id) AS last_id, " +
+            "count(*) AS events FROM clever_bank.transaction t " +
+            "WHERE (t.sender_id = a.id OR t.receiver_id = a.id) AND t.id > s.transaction_id) e ON true ";
+
+    /** A query for projecting one account */
+    private final String readStatement = projectionStatement + "WHERE a.id = ?";
+
+    /** A query for projecting portion of accounts ordered by id */
+    private final String readPortionStatement = projectionStatement + "WHERE a.id > ? ORDER BY a.id LIMIT ?";
+
+    /** A query for replacing snapshot with projection if enough transactions were replayed after it */
+    private final String compactStatement = "UPDATE clever_bank.account_snapshot SET balance = p.balance, " +
+            "transaction_id = p.last_id, created_at = ? FROM (" + readStatement + ") p " +
+            "WHERE account_snapshot.account_id = p.id AND p.events >= ?";
+
+    /** Number of transactions after snapshot which causes creation of a new snapshot */
+    private final int snapshotInterval;
+
+    /**
+     * A constructor with parameters
+     *
+     * @param connection connection with database
+     * @param snapshotInterval number of transactions after snapshot which causes creation of a new snapshot
+     */
+    public BalanceProjection(Connection connection, int snapshotInterval) {
+        this.connection = connection;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Creates snapshots with current balances of accounts which have no snapshot.
+     * Used when event-sourced balances are enabled for existing accounts
+     *
+     * @return number of created snapshots
+     *
+     * @throws SQLException if snapshots cannot be created
+     */
+    public int initializeSnapshots() throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(initializeStatement)) {
+            statement.setObject(1, LocalDateTime.now());
+
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Creates snapshot with current balance of account if it has no snapshot
+     *
+     * @param accountId account id
+     *
+     * @throws SQLException if snapshot cannot be created
+     */
+    public void initializeSnapshot(long accountId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(initializeAccountStatement)) {
+            statement.setObject(1, LocalDateTime.now());
+            statement.setLong(2, accountId);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Locks rows of accounts until the end of database transaction. Rows are locked in order of id
+     *
+     * @param firstId id of the first account. Zero if there is no account
+     * @param secondId id of the second account. Zero if there is no account
+     *
+     * @return banks of existing accounts by account id
+     *
+     * @throws SQLException if accounts cannot be locked
+     */
+    public Map<Long, Long> lockAccounts(long firstId, long secondId) throws SQLException {
+        Map<Long, Long> banks = new HashMap<>();
+        ResultSet resultSet;
+
+        try (PreparedStatement statement = connection.prepareStatement(lockStatement)) {
+            statement.setLong(1, firstId);
+            statement.setLong(2, secondId);
+            resultSet = statement.executeQuery();
+
+            while (resultSet.next()) {
+                banks.put(resultSet.getLong("id"), resultSet.getLong("bank_id"));
+            }
+        }
+
+        return banks;
+    }
+
+    /**
+     * Projects account from its snapshot and transactions after it. Snapshot with current balance is created
+     * for account which was added without snapshot
+     *
+     * @param accountId account id
+     *
+     * @return projection or null if account does not exist
+     *
+     * @throws SQLException if account cannot be read
+     */
+    public Projection project(long accountId) throws SQLException {
+        List<Projection> projections;
+
+        try (PreparedStatement statement = connection.prepareStatement(readStatement)) {
+            statement.setLong(1, accountId);
+            projections = read(statement);
+
+            if (projections.isEmpty()) {
+                initializeSnapshot(accountId);
+                projections = read(statement);
+            }
+        }
+
+        return projections.isEmpty() ? null : projections.get(0);
+    }
+
+    /**
+     * Projects portion of accounts with id bigger than specified one ordered by id
+     *
+     * @param afterId id after which accounts are projected
+     * @param limit maximum number of projected accounts
+     *
+     * @return list of projections
+     *
+     * @throws SQLException if accounts cannot be read
+     */
+    public List<Projection> project(long afterId, int limit) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(readPortionStatement)) {
+            statement.setLong(1, afterId);
+            statement.setInt(2, limit);
+
+            return read(statement);
+        }
+    }
+
+    /**
+     * Replaces snapshot of account with its projection if the number of transactions after snapshot reached
+     * snapshot interval, so projection of the account never replays more transactions than the interval.
+     * Account must be locked, so no transaction is created behind the new snapshot
+     *
+     * @param accountId account id
+     *
+     * @return true if snapshot was replaced
+     *
+     * @throws SQLException if snapshot cannot be saved
+     */
+    public boolean compact(long accountId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(compactStatement)) {
+            statement.setObject(1, LocalDateTime.now());
+            statement.setLong(2, accountId);
+            statement.setInt(3, snapshotInterval);
+
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Reads projections returned by query
+     *
+     * @param statement prepared projection query
+     *
+     * @return list of projections
+     *
+     * @throws SQLException if query cannot be executed
+     */
+    private List<Projection> read(PreparedStatement statement) throws SQLException {
+        List<Projection> projections = new ArrayList<>();
+        ResultSet resultSet = statement.executeQuery();
+
+        while (resultSet.next()) {
+            projections.add(new Projection(new Account(resultSet.getLong("id"), resultSet.getLong("bank_id"),
+                    resultSet.getDouble("balance"), resultSet.getLong("user_id"),
+                    resultSet.getDate("creation_date"), resultSet.getLong("version")), resultSet.getLong("last_id"),
+                    resultSet.getLong("events")));
+        }
+
+        return projections;
+    }
+
+    /**
+     * A projected account
+     *
+     * @param account account with projected balance
+     * @param lastTransactionId id of the last transaction included in balance
+     * @param events number of transactions replayed after snapshot
+     */
+    public record Projection(Account account, long lastTransactionId, long events) {
+    }
+}
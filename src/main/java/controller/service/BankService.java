@@ -2,11 +2,13 @@ package controller.service;
 
 import controller.service.api.IBankService;
 import model.entity.Bank;
+import utils.StructuredLogger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.function.Supplier;
 
 /**
  * A class for CRUD operations with table "bank" in database.
@@ -15,11 +17,19 @@ import java.sql.SQLException;
  */
 public class BankService implements IBankService {
 
+    /** Logger for database errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
     /**
      * A database connection
      */
     private final Connection connection;
 
+    /**
+     * Supplier of connection for reads. Returns connection of read replica or the same connection
+     */
+    private final Supplier<Connection> readConnection;
+
     /**
      * A query for inserting bank without autogenerated id
      */
@@ -51,7 +61,18 @@ public class BankService implements IBankService {
      * @param connection connection with database
      */
     public BankService(Connection connection) {
+        this(connection, () -> connection);
+    }
+
+    /**
+     * A constructor with parameters for reading banks from read replicas
+     *
+     * @param connection connection with database
+     * @param readConnection supplier of connection for reads which tolerate stale data
+     */
+    public BankService(Connection connection, Supplier<Connection> readConnection) {
         this.connection = connection;
+        this.readConnection = readConnection;
     }
 
     /**
@@ -81,7 +102,7 @@ public class BankService implements IBankService {
                 numberOfAffectedRows = statement.executeUpdate();
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("addBank", e, "bankId", id);
         }
 
         return numberOfAffectedRows;
@@ -97,14 +118,15 @@ public class BankService implements IBankService {
      */
     public Bank getBank(long id) {
         Bank bank = new Bank();
+        Connection reader = readConnection.get();
         PreparedStatement statement;
         ResultSet resultSet;
 
         try {
-            statement = connection.prepareStatement(readStatement);
+            statement = reader.prepareStatement(readStatement);
             statement.setLong(1, id);
 
-            synchronized (connection) {
+            synchronized (reader) {
                 resultSet = statement.executeQuery();
             }
 
@@ -112,7 +134,7 @@ public class BankService implements IBankService {
                 bank = new Bank(resultSet.getLong("id"), resultSet.getString("name"));
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("getBank", e, "bankId", id);
         }
 
         return bank;
@@ -139,7 +161,7 @@ public class BankService implements IBankService {
                 numberOfAffectedRows = statement.executeUpdate();
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("updateBank", e, "bankId", id);
         }
 
         return numberOfAffectedRows;
@@ -164,7 +186,7 @@ public class BankService implements IBankService {
                 numberOfAffectedRows = statement.executeUpdate();
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("deleteBank", e, "bankId", id);
         }
 
         return numberOfAffectedRows;
@@ -0,0 +1,340 @@
+package controller.service;
+
+import controller.service.api.IAccountService;
+import controller.service.api.ITransactionService;
+import model.entity.Account;
+import utils.StructuredLogger;
+import utils.api.IYmlFileReader;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class for operations with accounts which balances are projected from transactions. Balance is never
+ * overwritten: change of balance, including accrued interest, is saved as transaction with the account.
+ * Other account values are stored by the wrapped account service
+ */
+public class EventSourcedAccountService implements IAccountService {
+
+    /** Logger for database errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** A database connection used by projection and both services */
+    private final Connection connection;
+
+    /** Projection of balances from transactions */
+    private final BalanceProjection projection;
+
+    /** Service which stores accounts in database */
+    private final IAccountService accountService;
+
+    /** Instance of ITransactionService interface for saving balance changes */
+    private final ITransactionService transactionService;
+
+    /** Interface for reading values from a YML file*/
+    private final IYmlFileReader fileReader;
+
+    /** Key with percent value in YML file*/
+    private final String percentKey = "percentagePerMonth";
+
+    /** A query for reading ids of all accounts of bank */
+    private final String readBankAccountsStatement = "SELECT a.id FROM clever_bank.account a " +
+            "JOIN clever_bank.bank b ON b.id = a.bank_id WHERE b.name = ? ORDER BY a.id";
+
+    /**
+     * A constructor with parameters
+     *
+     * @param connection connection with database used by projection and both services
+     * @param projection projection of balances from transactions
+     * @param accountService service which stores accounts in database
+     * @param transactionService service for saving balance changes as transactions
+     * @param ymlFileReader reader of percent value from YML file
+     */
+    public EventSourcedAccountService(Connection connection, BalanceProjection projection,
+                                      IAccountService accountService, ITransactionService transactionService,
+                                      IYmlFileReader ymlFileReader) {
+        this.connection = connection;
+        this.projection = projection;
+        this.accountService = accountService;
+        this.transactionService = transactionService;
+        this.fileReader = ymlFileReader;
+    }
+
+    /**
+     * Adds a new account with snapshot of its opening balance
+     *
+     * @param id account id. Id less than or equal to zero will be used. Id bigger than zero will not be used
+     *           and self-generated value will be assigned
+     * @param bankId id of bank
+     * @param balance opening balance
+     * @param userId id of account owner
+     * @param date account creation date
+     *
+     * @return number of added accounts
+     */
+    @Override
+    public int addAccount(long id, long bankId, double balance, long userId, Date date) {
+        int numberOfAddedAccounts;
+
+        synchronized (connection) {
+            numberOfAddedAccounts = accountService.addAccount(id, bankId, balance, userId, date);
+
+            try {
+                if (numberOfAddedAccounts > 0 && id <= 0) {
+                    projection.initializeSnapshot(id);
+                } else if (numberOfAddedAccounts > 0) {
+                    projection.initializeSnapshots(); // id of the new account is generated by database
+                }
+            } catch (SQLException e) {
+                logger.sqlError("addAccount", e, "accountId", id);
+            }
+        }
+
+        return numberOfAddedAccounts;
+    }
+
+    /**
+     * Reads account with balance projected from its snapshot and transactions after it
+     *
+     * @param id account id
+     *
+     * @return instance of Account class with specified id or default values if account does not exist
+     */
+    @Override
+    public Account getAccount(long id) {
+        BalanceProjection.Projection account;
+
+        try {
+            synchronized (connection) {
+                account = projection.project(id);
+            }
+
+            return account == null ? new Account() : account.account();
+        } catch (SQLException e) {
+            logger.sqlError("getAccount", e, "accountId", id);
+        }
+
+        return new Account();
+    }
+
+    /**
+     * Retrieves portion of accounts with id bigger than specified one ordered by id. Balances are projected.
+     * Prints message in case of errors
+     *
+     * @param afterId id after which accounts are retrieved
+     * @param limit maximum number of retrieved accounts
+     *
+     * @return list of accounts or null if SQLException occurred
+     */
+    @Override
+    public List<Account> getAccountList(long afterId, int limit) {
+        List<Account> accounts = new ArrayList<>();
+
+        try {
+            synchronized (connection) {
+                for (BalanceProjection.Projection account : projection.project(afterId, limit)) {
+                    accounts.add(account.account());
+                }
+            }
+        } catch (SQLException e) {
+            logger.sqlError("getAccountList", e, "afterId", afterId);
+
+            return null;
+        }
+
+        return accounts;
+    }
+
+    /**
+     * Updates account`s info. Difference between new and projected balance is saved as transaction
+     *
+     * @param updatedAccount account with new values
+     *
+     * @return number of updated accounts, minus one in case of database errors
+     */
+    @Override
+    public int updateAccount(Account updatedAccount) {
+        BalanceProjection.Projection account;
+        int numberOfUpdatedAccounts = 0;
+
+        synchronized (connection) {
+            try {
+                connection.setAutoCommit(false);
+                projection.lockAccounts(updatedAccount.getId(), 0);
+                account = projection.project(updatedAccount.getId());
+
+                if (account != null && changeBalance(updatedAccount.getId(),
+                        updatedAccount.getBalance() - account.account().getBalance())) {
+                    numberOfUpdatedAccounts = accountService.updateAccount(updatedAccount);
+                }
+
+                finish(numberOfUpdatedAccounts > 0);
+            } catch (SQLException e) {
+                logger.sqlError("updateAccount", e, "accountId", updatedAccount.getId());
+                rollback();
+
+                return -1;
+            }
+        }
+
+        return numberOfUpdatedAccounts;
+    }
+
+    /**
+     * Accrues interest to all accounts of selected bank. Interest of every account is saved as transaction.
+     * Receives percent value from YML file
+     *
+     * @param bankName name of bank which accounts will be updated
+     *
+     * @return number of updated accounts
+     */
+    @Override
+    public int updateAllBankAccountsBalance(String bankName) {
+        double percent = Double.parseDouble(fileReader.getStringValueFromFile(percentKey)) / 100.0;
+        BalanceProjection.Projection account;
+        int numberOfUpdatedAccounts = 0;
+        boolean updated;
+
+        synchronized (connection) {
+            for (long id : readBankAccounts(bankName)) {
+                try {
+                    connection.setAutoCommit(false);
+                    projection.lockAccounts(id, 0);
+                    account = projection.project(id);
+                    updated = account != null && changeBalance(id, account.account().getBalance() * percent);
+
+                    finish(updated);
+                    numberOfUpdatedAccounts += updated ? 1 : 0;
+                } catch (SQLException e) {
+                    logger.sqlError("updateAllBankAccountsBalance", e, "accountId", id);
+                    rollback();
+                }
+            }
+        }
+
+        return numberOfUpdatedAccounts;
+    }
+
+    /**
+     * Deletes account. Its snapshot is deleted by database
+     *
+     * @param id account id
+     *
+     * @return number of deleted accounts
+     */
+    @Override
+    public int deleteAccount(long id) {
+        return accountService.deleteAccount(id);
+    }
+
+    /**
+     * Checks every 30 seconds if now 2 in the morning on the last day of month.
+     * If yes, adds money to all Clever-Bank accounts. Added percentage is taken from YML file
+     */
+    @Override
+    public void run() {
+        LocalDate currentDate;
+        LocalTime currentTime;
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                currentDate = LocalDate.now();
+                currentTime = LocalTime.now();
+
+                if (currentDate.getDayOfMonth() == currentDate.lengthOfMonth()
+                        && currentTime.getHour() == 2 && currentTime.getMinute() == 0 && currentTime.getSecond() < 30) {
+                    updateAllBankAccountsBalance("Clever-Bank");
+                }
+
+                Thread.sleep(30000);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Saves change of balance as transaction: positive change as replenishment, negative as withdrawal.
+     * Account must be locked
+     *
+     * @param accountId account id
+     * @param change change of balance
+     *
+     * @return true if there was no change or transaction was saved
+     *
+     * @throws SQLException if snapshot cannot be replaced
+     */
+    private boolean changeBalance(long accountId, double change) throws SQLException {
+        if (change == 0) {
+            return true;
+        }
+
+        if (transactionService.addTransaction(1, Math.abs(change), change < 0 ? accountId : 0,
+                change > 0 ? accountId : 0) == 0) {
+            return false;
+        }
+
+        projection.compact(accountId);
+
+        return true;
+    }
+
+    /**
+     * Reads ids of all accounts of bank
+     *
+     * @param bankName name of bank
+     *
+     * @return list of account ids
+     */
+    private List<Long> readBankAccounts(String bankName) {
+        List<Long> ids = new ArrayList<>();
+        ResultSet resultSet;
+
+        try (PreparedStatement statement = connection.prepareStatement(readBankAccountsStatement)) {
+            statement.setString(1, bankName);
+            resultSet = statement.executeQuery();
+
+            while (resultSet.next()) {
+                ids.add(resultSet.getLong("id"));
+            }
+        } catch (SQLException e) {
+            logger.sqlError("updateAllBankAccountsBalance", e, "bankName", bankName);
+        }
+
+        return ids;
+    }
+
+    /**
+     * Commits or rolls back database transaction and restores auto-commit mode
+     *
+     * @param commit true if transaction must be committed
+     *
+     * @throws SQLException if transaction cannot be finished
+     */
+    private void finish(boolean commit) throws SQLException {
+        if (commit) {
+            connection.commit();
+        } else {
+            connection.rollback();
+        }
+
+        connection.setAutoCommit(true);
+    }
+
+    /** Rolls back database transaction after error and restores auto-commit mode */
+    private void rollback() {
+        try {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            logger.sqlError("rollback", e);
+        }
+    }
+}
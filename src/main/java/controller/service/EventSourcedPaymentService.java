@@ -0,0 +1,201 @@
+package controller.service;
+
+import controller.service.api.IPaymentService;
+import controller.service.api.ITransactionService;
+import model.dto.PaymentResult;
+import model.dto.PaymentStatus;
+import model.entity.Transaction;
+import utils.StructuredLogger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * A class for money operations with event-sourced balances. Operation only creates transaction, which is the event
+ * changing balances of its accounts, so there is no balance update that could be left behind after failure.
+ * Accounts are locked while balance is checked and transaction is created
+ */
+public class EventSourcedPaymentService implements IPaymentService {
+
+    /** Logger for database errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** A database connection used by projection and transaction service */
+    private final Connection connection;
+
+    /** Projection of balances from transactions */
+    private final BalanceProjection projection;
+
+    /** Instance of ITransactionService interface for operations with transactions */
+    private final ITransactionService transactionService;
+
+    /**
+     * A constructor with parameters
+     *
+     * @param connection connection with database used by projection and transaction service
+     * @param projection projection of balances from transactions
+     * @param transactionService service for operations with transactions
+     */
+    public EventSourcedPaymentService(Connection connection, BalanceProjection projection,
+                                      ITransactionService transactionService) {
+        this.connection = connection;
+        this.projection = projection;
+        this.transactionService = transactionService;
+    }
+
+    /**
+     * Replenishes account by creating transaction record
+     *
+     * @param accountId id of replenished account
+     * @param amount replenishment amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult replenishAccount(long accountId, double amount) {
+        return execute(0, accountId, amount);
+    }
+
+    /**
+     * Withdraws money from account by creating transaction record
+     *
+     * @param accountId id of account for withdrawal
+     * @param amount withdrawal amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult withdrawAccount(long accountId, double amount) {
+        return execute(accountId, 0, amount);
+    }
+
+    /**
+     * Transfers money from one account to another by creating transaction record
+     *
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount transfer amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult transferToAnotherAccount(long senderId, long receiverId, double amount) {
+        if (senderId == receiverId) {
+            return PaymentResult.failed(PaymentStatus.SAME_ACCOUNT);
+        }
+
+        return execute(senderId, receiverId, amount);
+    }
+
+    /**
+     * Checks accounts and creates transaction in single database transaction. Snapshots of accounts are replaced
+     * when enough transactions were created after them
+     *
+     * @param senderId id of sender account. Zero in case of replenishment
+     * @param receiverId id of receiver account. Zero in case of withdrawal
+     * @param amount amount of money
+     *
+     * @return result of operation with created transaction
+     */
+    private PaymentResult execute(long senderId, long receiverId, double amount) {
+        Map<Long, Long> banks;
+        PaymentStatus status;
+        Transaction transaction;
+        long transactionId = 0;
+
+        synchronized (connection) {
+            try {
+                connection.setAutoCommit(false);
+                banks = projection.lockAccounts(senderId, receiverId);
+                status = check(banks, senderId, receiverId, amount);
+
+                if (status == PaymentStatus.COMPLETED) {
+                    transactionId = transactionService.addTransaction(1, amount, senderId, receiverId);
+                    status = transactionId == 0 ? PaymentStatus.TRANSACTION_FAILED : PaymentStatus.COMPLETED;
+                }
+
+                if (status == PaymentStatus.COMPLETED) {
+                    compact(senderId);
+                    compact(receiverId);
+                    connection.commit();
+                } else {
+                    connection.rollback();
+                }
+
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                logger.sqlError("executePayment", e, "senderId", senderId, "receiverId", receiverId);
+                rollback(senderId, receiverId);
+
+                return PaymentResult.failed(PaymentStatus.FAILED);
+            }
+
+            if (status != PaymentStatus.COMPLETED) {
+                return PaymentResult.failed(status);
+            }
+
+            transaction = transactionService.getTransaction(transactionId);
+        }
+
+        return new PaymentResult(PaymentStatus.COMPLETED, transaction, banks.getOrDefault(senderId, 0L),
+                banks.getOrDefault(receiverId, 0L));
+    }
+
+    /**
+     * Checks whether operation can be executed. Accounts must be locked
+     *
+     * @param banks banks of existing accounts by account id
+     * @param senderId id of sender account. Zero in case of replenishment
+     * @param receiverId id of receiver account. Zero in case of withdrawal
+     * @param amount amount of money
+     *
+     * @return completed status if operation can be executed, or reason of failure
+     *
+     * @throws SQLException if sender balance cannot be projected
+     */
+    private PaymentStatus check(Map<Long, Long> banks, long senderId, long receiverId, double amount)
+            throws SQLException {
+        if (receiverId != 0 && !banks.containsKey(receiverId)) {
+            return senderId == 0 ? PaymentStatus.ACCOUNT_NOT_FOUND : PaymentStatus.RECEIVER_NOT_FOUND;
+        }
+
+        if (senderId != 0 && !banks.containsKey(senderId)) {
+            return receiverId == 0 ? PaymentStatus.ACCOUNT_NOT_FOUND : PaymentStatus.SENDER_NOT_FOUND;
+        }
+
+        if (senderId != 0 && projection.project(senderId).account().getBalance() < amount) {
+            return PaymentStatus.INSUFFICIENT_FUNDS;
+        }
+
+        return PaymentStatus.COMPLETED;
+    }
+
+    /**
+     * Replaces snapshot of account if enough transactions were created after it
+     *
+     * @param accountId account id. Zero if there is no account
+     *
+     * @throws SQLException if snapshot cannot be saved
+     */
+    private void compact(long accountId) throws SQLException {
+        if (accountId != 0) {
+            projection.compact(accountId);
+        }
+    }
+
+    /**
+     * Rolls back database transaction after error
+     *
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     */
+    private void rollback(long senderId, long receiverId) {
+        try {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            logger.sqlError("executePayment", e, "senderId", senderId, "receiverId", receiverId);
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package controller.service;
+
+import controller.service.api.IPaymentService;
+import model.dto.PaymentResult;
+import model.dto.PaymentStatus;
+import model.entity.Transaction;
+import utils.StructuredLogger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A class for money operations with group commit. Operations of concurrent callers are queued and executed
+ * by one committer thread in a single database transaction, which is committed when the batch is full
+ * or the oldest operation waited for the maximum delay. One commit, and one WAL flush, is shared by the whole
+ * batch, while every caller still receives result of its own operation.
+ * Balances are changed by relative updates, so operations do not need to read accounts before changing them.
+ * If an operation fails with SQL error, the batch is rolled back and executed again without it.
+ * If commit of the batch fails, its operations get unknown status, because their changes may have been saved
+ */
+public class GroupCommitPaymentService implements IPaymentService, AutoCloseable {
+
+    /** Logger for database errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** Database connection used only by the committer thread */
+    private final Connection connection;
+
+    /** Operations waiting for execution */
+    private final BlockingQueue<PaymentRequest> requests;
+
+    /** Maximum number of operations in one database transaction */
+    private final int maxBatchSize;
+
+    /** Maximum time the first operation of the batch waits for other operations, in nanoseconds */
+    private final long maxDelayNanos;
+
+    /** Maximum number of batch executions after deadlocks or serialization failures */
+    private final int maxRetries = 3;
+
+    /** Thread which executes and commits batches */
+    private final Thread committer;
+
+    /** True after committer thread stopped taking operations from the queue */
+    private volatile boolean stopped;
+
+    /** A query for withdrawing money if balance is enough. Returns bank of the account */
+    private final String withdrawStatement = "UPDATE clever_bank.account SET balance = balance - ?, " +
+            "version = version + 1 WHERE id = ? AND balance >= ? RETURNING bank_id";
+
+    /** A query for adding money to account. Returns bank of the account */
+    private final String replenishStatement = "UPDATE clever_bank.account SET balance = balance + ?, " +
+            "version = version + 1 WHERE id = ? RETURNING bank_id";
+
+    /** A query for checking whether account exists */
+    private final String existsStatement = "SELECT 1 FROM clever_bank.account WHERE id = ?";
+
+    /** A query for inserting transaction with autogenerated id */
+    private final String insertTransactionStatement = "INSERT INTO clever_bank.transaction " +
+            "(amount, time, sender_id, receiver_id) VALUES (?, ?, ?, ?) RETURNING id";
+
+    /** Prepared withdrawal query */
+    private final PreparedStatement withdrawal;
+
+    /** Prepared replenishment query */
+    private final PreparedStatement replenishment;
+
+    /** Prepared account existence query */
+    private final PreparedStatement existence;
+
+    /** Prepared transaction insertion query */
+    private final PreparedStatement insertion;
+
+    /**
+     * A constructor with parameters. Starts committer thread
+     *
+     * @param connection connection with database which is not used by other services
+     * @param maxBatchSize maximum number of operations in one database transaction
+     * @param maxDelay maximum time the first operation of the batch waits for other operations
+     *
+     * @throws SQLException if statements cannot be prepared
+     */
+    public GroupCommitPaymentService(Connection connection, int maxBatchSize, Duration maxDelay) throws SQLException {
+        this.connection = connection;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.requests = new ArrayBlockingQueue<>(maxBatchSize * 16);
+
+        connection.setAutoCommit(false);
+        withdrawal = connection.prepareStatement(withdrawStatement);
+        replenishment = connection.prepareStatement(replenishStatement);
+        existence = connection.prepareStatement(existsStatement);
+        insertion = connection.prepareStatement(insertTransactionStatement);
+
+        committer = new Thread(this::commitBatches, "group-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Replenishes account and creates transaction record. Waits until the batch with the operation is committed
+     *
+     * @param accountId id of replenished account
+     * @param amount replenishment amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult replenishAccount(long accountId, double amount) {
+        return submit(new PaymentRequest(0, accountId, amount));
+    }
+
+    /**
+     * Withdraws money from account and creates transaction record. Waits until the batch with the operation
+     * is committed
+     *
+     * @param accountId id of account for withdrawal
+     * @param amount withdrawal amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult withdrawAccount(long accountId, double amount) {
+        return submit(new PaymentRequest(accountId, 0, amount));
+    }
+
+    /**
+     * Transfers money from one account to another and creates transaction record. Waits until the batch
+     * with the operation is committed
+     *
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount transfer amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult transferToAnotherAccount(long senderId, long receiverId, double amount) {
+        if (senderId == receiverId) {
+            return PaymentResult.failed(PaymentStatus.SAME_ACCOUNT);
+        }
+
+        return submit(new PaymentRequest(senderId, receiverId, amount));
+    }
+
+    /** Stops committer thread after the current batch. Operations which were not executed fail */
+    @Override
+    public void close() {
+        PaymentRequest request;
+
+        committer.interrupt();
+
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        while ((request = requests.poll()) != null) {
+            request.result().complete(PaymentResult.failed(PaymentStatus.FAILED));
+        }
+    }
+
+    /**
+     * Queues operation and waits for its result
+     *
+     * @param request money operation
+     *
+     * @return result of the operation
+     */
+    private PaymentResult submit(PaymentRequest request) {
+        try {
+            requests.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return PaymentResult.failed(PaymentStatus.FAILED);
+        }
+
+        if (stopped && requests.remove(request)) {
+            return PaymentResult.failed(PaymentStatus.FAILED);
+        }
+
+        return request.result().join();
+    }
+
+    /**
+     * Collects operations into batches and commits them until the thread is interrupted. Unexpected error fails
+     * operations of its batch only. Operations left in the queue fail when the thread stops
+     */
+    private void commitBatches() {
+        List<PaymentRequest> batch = new ArrayList<>(maxBatchSize);
+        PaymentRequest request;
+        long deadline;
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(requests.take());
+                deadline = System.nanoTime() + maxDelayNanos;
+
+                while (batch.size() < maxBatchSize) {
+                    request = requests.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+                    if (request == null) {
+                        break;
+                    }
+
+                    batch.add(request);
+                }
+
+                try {
+                    executeBatch(batch);
+                } catch (RuntimeException e) {
+                    logger.error("groupCommit", String.valueOf(e), "batchSize", batch.size());
+                    rollback();
+                    failAll(batch);
+                }
+
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped = true;
+            failAll(batch);
+
+            while ((request = requests.poll()) != null) {
+                request.result().complete(PaymentResult.failed(PaymentStatus.FAILED));
+            }
+        }
+    }
+
+    /**
+     * Executes operations in one database transaction and completes their results after commit.
+     * Operation which fails with SQL error is excluded and the rest of the batch is executed again.
+     * The whole batch is executed again after deadlock or serialization failure. If commit fails, executed
+     * operations get unknown status and rejected operations keep their results, because they changed nothing
+     *
+     * @param batch operations of the batch
+     */
+    private void executeBatch(List<PaymentRequest> batch) {
+        List<PaymentRequest> pending = new ArrayList<>(batch);
+        List<PaymentResult> results = new ArrayList<>(batch.size());
+        int retries = 0;
+        int index;
+
+        while (!pending.isEmpty()) {
+            results.clear();
+            index = 0;
+
+            try {
+                for (; index < pending.size(); index++) {
+                    results.add(execute(pending.get(index)));
+                }
+
+                connection.commit();
+
+                for (int i = 0; i < pending.size(); i++) {
+                    pending.get(i).result().complete(results.get(i));
+                }
+
+                return;
+            } catch (SQLException e) {
+                rollback();
+                logger.sqlError("groupCommit", e, "batchSize", pending.size());
+
+                if (index == pending.size()) { // commit failed, changes may have been saved
+                    for (int i = 0; i < pending.size(); i++) {
+                        pending.get(i).result().complete(results.get(i).isCompleted()
+                                ? PaymentResult.failed(PaymentStatus.UNKNOWN) : results.get(i));
+                    }
+
+                    return;
+                }
+
+                if (!isTransient(e) || retries++ >= maxRetries) {
+                    pending.remove(index).result().complete(PaymentResult.failed(PaymentStatus.FAILED));
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes one operation inside the batch transaction
+     *
+     * @param request money operation
+     *
+     * @return result of the operation. Failed operations do not change the database
+     *
+     * @throws SQLException if database error occurred. Transaction must be rolled back
+     */
+    private PaymentResult execute(PaymentRequest request) throws SQLException {
+        LocalDateTime time = LocalDateTime.now();
+        long senderBankId = 0;
+        long receiverBankId = 0;
+        long transactionId;
+        boolean transfer = request.senderId() != 0 && request.receiverId() != 0;
+
+        if (transfer && !exists(request.receiverId())) {
+            return PaymentResult.failed(PaymentStatus.RECEIVER_NOT_FOUND);
+        }
+
+        if (request.senderId() != 0) {
+            senderBankId = changeBalance(withdrawal, request.senderId(), request.amount());
+
+            if (senderBankId == Long.MIN_VALUE) {
+                if (exists(request.senderId())) {
+                    return PaymentResult.failed(PaymentStatus.INSUFFICIENT_FUNDS);
+                }
+
+                return PaymentResult.failed(transfer ? PaymentStatus.SENDER_NOT_FOUND
+                        : PaymentStatus.ACCOUNT_NOT_FOUND);
+            }
+        }
+
+        if (request.receiverId() != 0) {
+            receiverBankId = changeBalance(replenishment, request.receiverId(), request.amount());
+
+            if (receiverBankId == Long.MIN_VALUE) {
+                if (transfer) { // receiver was deleted after the check, sender is already changed
+                    throw new SQLException("Receiver account " + request.receiverId() + " doesn't exist");
+                }
+
+                return PaymentResult.failed(PaymentStatus.ACCOUNT_NOT_FOUND);
+            }
+        }
+
+        insertion.setDouble(1, request.amount());
+        insertion.setObject(2, time);
+        insertion.setLong(3, request.senderId());
+        insertion.setLong(4, request.receiverId());
+
+        try (ResultSet resultSet = insertion.executeQuery()) {
+            resultSet.next();
+            transactionId = resultSet.getLong("id");
+        }
+
+        return new PaymentResult(PaymentStatus.COMPLETED, new Transaction(transactionId, request.amount(), time,
+                request.senderId(), request.receiverId()), senderBankId, receiverBankId);
+    }
+
+    /**
+     * Changes balance of account with prepared query
+     *
+     * @param statement prepared withdrawal or replenishment query
+     * @param accountId account id
+     * @param amount amount of change
+     *
+     * @return id of bank which owns account, or Long.MIN_VALUE if balance was not changed
+     *
+     * @throws SQLException if database error occurred
+     */
+    private long changeBalance(PreparedStatement statement, long accountId, double amount) throws SQLException {
+        statement.setDouble(1, amount);
+        statement.setLong(2, accountId);
+
+        if (statement == withdrawal) {
+            statement.setDouble(3, amount);
+        }
+
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? resultSet.getLong("bank_id") : Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Checks whether account exists
+     *
+     * @param accountId account id
+     *
+     * @return true if account exists
+     *
+     * @throws SQLException if database error occurred
+     */
+    private boolean exists(long accountId) throws SQLException {
+        existence.setLong(1, accountId);
+
+        try (ResultSet resultSet = existence.executeQuery()) {
+            return resultSet.next();
+        }
+    }
+
+    /**
+     * Checks whether error is deadlock or serialization failure after which transaction can be repeated
+     *
+     * @param e thrown exception
+     *
+     * @return true if transaction can be repeated
+     */
+    private boolean isTransient(SQLException e) {
+        return "40P01".equals(e.getSQLState()) || "40001".equals(e.getSQLState());
+    }
+
+    /** Rolls back batch transaction. Prints message in case of errors */
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            logger.sqlError("groupCommitRollback", e);
+        } catch (RuntimeException e) {
+            logger.error("groupCommitRollback", String.valueOf(e));
+        }
+    }
+
+    /**
+     * Completes all operations which are not completed yet as failed
+     *
+     * @param pending operations of the batch
+     */
+    private void failAll(List<PaymentRequest> pending) {
+        for (PaymentRequest request : pending) {
+            request.result().complete(PaymentResult.failed(PaymentStatus.FAILED));
+        }
+    }
+
+    /**
+     * Queued money operation
+     *
+     * @param senderId id of sender account. Zero in case of replenishment
+     * @param receiverId id of receiver account. Zero in case of withdrawal
+     * @param amount amount of the operation
+     * @param result result which is completed after commit
+     */
+    private record PaymentRequest(long senderId, long receiverId, double amount,
+                                  CompletableFuture<PaymentResult> result) {
+
+        /**
+         * Constructor of operation with result which is not completed yet
+         *
+         * @param senderId id of sender account. Zero in case of replenishment
+         * @param receiverId id of receiver account. Zero in case of withdrawal
+         * @param amount amount of the operation
+         */
+        private PaymentRequest(long senderId, long receiverId, double amount) {
+            this(senderId, receiverId, amount, new CompletableFuture<>());
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package controller.service;
+
+import controller.service.api.IIdempotencyService;
+import model.dto.KeyReservation;
+import model.dto.KeyStatus;
+import utils.StructuredLogger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A class for operations with table "idempotency_key" in database:
+ * <pre>
+ * CREATE TABLE clever_bank.idempotency_key (
+ *     key VARCHAR(64) PRIMARY KEY,
+ *     transaction_id BIGINT,
+ *     request VARCHAR(255) NOT NULL,
+ *     created_at TIMESTAMP NOT NULL
+ * );
+ * </pre>
+ * Key is saved as pending, without transaction id, before the operation is executed and gets transaction id
+ * after the operation completes. Key which stays pending because application stopped or transaction id
+ * was not saved blocks the operation until the key expires, so money is never moved twice.
+ * Reservation of new key is a single insert, so the first attempt of operation does no extra lookup
+ */
+public class IdempotencyService implements IIdempotencyService {
+
+    /** Logger for database errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** A database connection */
+    private final Connection connection;
+
+    /** Time during which repeated operation returns the result of the first one */
+    private final Duration timeToLive;
+
+    /** Keys of operations which are being executed now */
+    private final Set<String> acquiredKeys = ConcurrentHashMap.newKeySet();
+
+    /** Time when expired keys are deleted next time */
+    private volatile long cleanupTime;
+
+    /** A query for saving pending key. Expired key with the same value is replaced */
+    private final String reserveStatement = "INSERT INTO clever_bank.idempotency_key VALUES (?, NULL, ?, ?) " +
+            "ON CONFLICT (key) DO UPDATE SET transaction_id = NULL, request = EXCLUDED.request, " +
+            "created_at = EXCLUDED.created_at WHERE clever_bank.idempotency_key.created_at <= ?";
+
+    /** A query for retrieving transaction id and request based on key */
+    private final String readStatement = "SELECT transaction_id, request FROM clever_bank.idempotency_key " +
+            "WHERE key = ?";
+
+    /** A query for saving transaction id of pending key */
+    private final String completeStatement = "UPDATE clever_bank.idempotency_key SET transaction_id = ? " +
+            "WHERE key = ? AND transaction_id IS NULL";
+
+    /** A query for deleting pending key */
+    private final String cancelStatement = "DELETE FROM clever_bank.idempotency_key " +
+            "WHERE key = ? AND transaction_id IS NULL";
+
+    /** A query for deleting expired keys */
+    private final String deleteStatement = "DELETE FROM clever_bank.idempotency_key WHERE created_at <= ?";
+
+    /**
+     * A constructor with parameters
+     *
+     * @param connection connection with database
+     * @param timeToLive time during which repeated operation returns the result of the first one
+     */
+    public IdempotencyService(Connection connection, Duration timeToLive) {
+        this.connection = connection;
+        this.timeToLive = timeToLive;
+        this.cleanupTime = System.currentTimeMillis() + timeToLive.toMillis();
+    }
+
+    /**
+     * Marks key as used by an operation which is being executed now
+     *
+     * @param key idempotency key of the operation
+     *
+     * @return true if key was marked, false if another operation with the same key is being executed
+     */
+    @Override
+    public boolean acquireKey(String key) {
+        return acquiredKeys.add(key);
+    }
+
+    /**
+     * Removes mark of the executed operation from the key
+     *
+     * @param key idempotency key of the operation
+     */
+    @Override
+    public void releaseKey(String key) {
+        acquiredKeys.remove(key);
+    }
+
+    /**
+     * Saves key as pending before the operation is executed. If key is already saved and not expired,
+     * returns transaction of the operation which used it. Prints message in case of errors
+     *
+     * @param key idempotency key of the operation
+     * @param request type and parameters of the operation
+     *
+     * @return RESERVED if key is saved for the operation, COMPLETED with transaction id if the same operation
+     * was completed, IN_PROGRESS if it did not finish, CONFLICT if key was used for another operation
+     * and FAILED in case of database errors
+     */
+    @Override
+    public KeyReservation reserveKey(String key, String request) {
+        LocalDateTime now = LocalDateTime.now();
+        PreparedStatement statement;
+        ResultSet resultSet;
+        long transactionId;
+        boolean pending;
+
+        deleteExpiredKeysIfDue();
+
+        try {
+            statement = connection.prepareStatement(reserveStatement);
+            statement.setString(1, key);
+            statement.setString(2, request);
+            statement.setObject(3, now);
+            statement.setObject(4, now.minus(timeToLive));
+
+            synchronized (connection) {
+                if (statement.executeUpdate() == 1) {
+                    return KeyReservation.of(KeyStatus.RESERVED);
+                }
+            }
+
+            statement = connection.prepareStatement(readStatement);
+            statement.setString(1, key);
+
+            synchronized (connection) {
+                resultSet = statement.executeQuery();
+
+                if (!resultSet.next()) {
+                    return KeyReservation.of(KeyStatus.FAILED); // key was deleted after conflict
+                }
+
+                transactionId = resultSet.getLong("transaction_id");
+                pending = resultSet.wasNull();
+
+                if (!request.equals(resultSet.getString("request"))) {
+                    return KeyReservation.of(KeyStatus.CONFLICT);
+                }
+
+                return pending ? KeyReservation.of(KeyStatus.IN_PROGRESS)
+                        : new KeyReservation(KeyStatus.COMPLETED, transactionId);
+            }
+        } catch (SQLException e) {
+            logger.sqlError("reserveKey", e, "key", key);
+        }
+
+        return KeyReservation.of(KeyStatus.FAILED);
+    }
+
+    /**
+     * Saves transaction of the completed operation with pending key. Prints message in case of errors
+     *
+     * @param key idempotency key of the operation
+     * @param transactionId id of transaction created by the operation
+     *
+     * @return number of affected by query rows. Zero if key is not pending
+     */
+    @Override
+    public int completeKey(String key, long transactionId) {
+        int numberOfAffectedRows = 0;
+        PreparedStatement statement;
+
+        try {
+            statement = connection.prepareStatement(completeStatement);
+            statement.setLong(1, transactionId);
+            statement.setString(2, key);
+
+            synchronized (connection) {
+                numberOfAffectedRows = statement.executeUpdate();
+            }
+        } catch (SQLException e) {
+            logger.sqlError("completeKey", e, "key", key, "transactionId", transactionId);
+        }
+
+        return numberOfAffectedRows;
+    }
+
+    /**
+     * Deletes pending key of the failed operation. Prints message in case of errors
+     *
+     * @param key idempotency key of the operation
+     *
+     * @return number of affected by query rows. Zero if key is not pending
+     */
+    @Override
+    public int cancelKey(String key) {
+        int numberOfAffectedRows = 0;
+        PreparedStatement statement;
+
+        try {
+            statement = connection.prepareStatement(cancelStatement);
+            statement.setString(1, key);
+
+            synchronized (connection) {
+                numberOfAffectedRows = statement.executeUpdate();
+            }
+        } catch (SQLException e) {
+            logger.sqlError("cancelKey", e, "key", key);
+        }
+
+        return numberOfAffectedRows;
+    }
+
+    /**
+     * Deletes keys which are older than time to live. Prints message in case of errors
+     *
+     * @return number of affected by query rows
+     */
+    @Override
+    public int deleteExpiredKeys() {
+        int numberOfAffectedRows = 0;
+        PreparedStatement statement;
+
+        try {
+            statement = connection.prepareStatement(deleteStatement);
+            statement.setObject(1, LocalDateTime.now().minus(timeToLive));
+
+            synchronized (connection) {
+                numberOfAffectedRows = statement.executeUpdate();
+            }
+        } catch (SQLException e) {
+            logger.sqlError("deleteExpiredKeys", e);
+        }
+
+        return numberOfAffectedRows;
+    }
+
+    /** Deletes expired keys once per time to live, so the table does not grow without bound */
+    private void deleteExpiredKeysIfDue() {
+        long now = System.currentTimeMillis();
+
+        if (now < cleanupTime) {
+            return;
+        }
+
+        synchronized (this) {
+            if (now < cleanupTime) {
+                return;
+            }
+
+            cleanupTime = now + timeToLive.toMillis();
+        }
+
+        deleteExpiredKeys();
+    }
+}
@@ -0,0 +1,416 @@
+package controller.service;
+
+import config.QueryDeadline;
+import controller.service.api.IAccountService;
+import controller.service.api.IAsyncAccountService;
+import controller.service.api.IPaymentService;
+import controller.service.api.ITransactionService;
+import metrics.ContentionMetrics;
+import model.dto.PaymentResult;
+import model.dto.PaymentStatus;
+import model.entity.Account;
+import model.entity.Transaction;
+import utils.StructuredLogger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A class for money operations which change account balances and create transaction records. Balances are updated
+ * with optimistic concurrency: account update fails if account changed after it was read, then operation reads
+ * account again and retries after exponential backoff with random jitter. Number of attempts is bounded
+ */
+public class PaymentService implements IPaymentService {
+
+    /** Default number of attempts of operation */
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    /** Default backoff before the second attempt */
+    private static final Duration DEFAULT_BACKOFF = Duration.ofMillis(1);
+
+    /** Maximum exponent of backoff growth */
+    private static final int MAX_BACKOFF_SHIFT = 16;
+
+    /** Logger for database errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** A database connection used by account and transaction services */
+    private final Connection connection;
+
+    /** Instance of IAccountService interface for operations with accounts */
+    private final IAccountService accountService;
+
+    /** Instance of ITransactionService interface for operations with transactions */
+    private final ITransactionService transactionService;
+
+    /** Maximum number of attempts of operation */
+    private final int maxAttempts;
+
+    /** Backoff before the second attempt in nanoseconds. Doubled before every next attempt */
+    private final long backoffNanos;
+
+    /** Counts of conflicts and operations which failed after all attempts */
+    private final ContentionMetrics contention;
+
+    /** Service reading accounts of transfer in parallel. Null if accounts are read one after another */
+    private final IAsyncAccountService asyncAccountService;
+
+    /**
+     * A constructor with parameters. Operations are attempted up to 5 times with 1 millisecond initial backoff
+     *
+     * @param connection connection with database used by both services
+     * @param accountService service for operations with accounts
+     * @param transactionService service for operations with transactions
+     */
+    public PaymentService(Connection connection, IAccountService accountService,
+                          ITransactionService transactionService) {
+        this(connection, accountService, transactionService, DEFAULT_MAX_ATTEMPTS, DEFAULT_BACKOFF,
+                new ContentionMetrics());
+    }
+
+    /**
+     * A constructor with parameters
+     *
+     * @param connection connection with database used by both services
+     * @param accountService service for operations with accounts
+     * @param transactionService service for operations with transactions
+     * @param maxAttempts maximum number of attempts of operation
+     * @param backoff backoff before the second attempt. Doubled before every next attempt
+     * @param contention counts of conflicts and operations which failed after all attempts
+     */
+    public PaymentService(Connection connection, IAccountService accountService,
+                          ITransactionService transactionService, int maxAttempts, Duration backoff,
+                          ContentionMetrics contention) {
+        this(connection, accountService, transactionService, maxAttempts, backoff, contention, null);
+    }
+
+    /**
+     * A constructor with parameters
+     *
+     * @param connection connection with database used by both services
+     * @param accountService service for operations with accounts
+     * @param transactionService service for operations with transactions
+     * @param maxAttempts maximum number of attempts of operation
+     * @param backoff backoff before the second attempt. Doubled before every next attempt
+     * @param contention counts of conflicts and operations which failed after all attempts
+     * @param asyncAccountService service reading accounts of transfer in parallel on its own connections.
+     *                            Null if accounts are read one after another
+     */
+    public PaymentService(Connection connection, IAccountService accountService,
+                          ITransactionService transactionService, int maxAttempts, Duration backoff,
+                          ContentionMetrics contention, IAsyncAccountService asyncAccountService) {
+        this.connection = connection;
+        this.accountService = accountService;
+        this.transactionService = transactionService;
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.backoffNanos = backoff.toNanos();
+        this.contention = contention;
+        this.asyncAccountService = asyncAccountService;
+    }
+
+    /**
+     * Replenishes account and creates transaction record in database.
+     * Balance update is rolled back if transaction record cannot be saved
+     *
+     * @param accountId id of replenished account
+     * @param amount replenishment amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult replenishAccount(long accountId, double amount) {
+        Account account;
+        long transactionId;
+        int updated;
+
+        for (int attempt = 1; ; attempt++) {
+            account = accountService.getAccount(accountId);
+
+            if (account.getId() == 0) {
+                return PaymentResult.failed(PaymentStatus.ACCOUNT_NOT_FOUND);
+            }
+
+            account.setBalance(account.getBalance() + amount);
+            updated = accountService.updateAccount(account);
+
+            if (updated == 1) {
+                break;
+            }
+
+            if (updated < 0) {
+                return PaymentResult.failed(PaymentStatus.FAILED);
+            }
+
+            if (!retry("replenishAccount", attempt)) {
+                return PaymentResult.failed(PaymentStatus.UPDATE_FAILED);
+            }
+        }
+
+        transactionId = transactionService.addTransaction(1, amount, 0, accountId);
+
+        if (transactionId == 0) {
+            QueryDeadline.withoutDeadline(() -> compensate("replenishAccount", accountId, -amount));
+
+            return PaymentResult.failed(PaymentStatus.TRANSACTION_FAILED);
+        }
+
+        return new PaymentResult(PaymentStatus.COMPLETED, transactionService.getTransaction(transactionId),
+                0, account.getBankId());
+    }
+
+    /**
+     * Withdraws money from account and creates transaction record in database.
+     * Balance update is rolled back if transaction record cannot be saved
+     *
+     * @param accountId id of account for withdrawal
+     * @param amount withdrawal amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult withdrawAccount(long accountId, double amount) {
+        Account account;
+        long transactionId;
+        int updated;
+
+        for (int attempt = 1; ; attempt++) {
+            account = accountService.getAccount(accountId);
+
+            if (account.getId() == 0) {
+                return PaymentResult.failed(PaymentStatus.ACCOUNT_NOT_FOUND);
+            }
+
+            if (account.getBalance() < amount) {
+                return PaymentResult.failed(PaymentStatus.INSUFFICIENT_FUNDS);
+            }
+
+            account.setBalance(account.getBalance() - amount);
+            updated = accountService.updateAccount(account);
+
+            if (updated == 1) {
+                break;
+            }
+
+            if (updated < 0) {
+                return PaymentResult.failed(PaymentStatus.FAILED);
+            }
+
+            if (!retry("withdrawAccount", attempt)) {
+                return PaymentResult.failed(PaymentStatus.UPDATE_FAILED);
+            }
+        }
+
+        transactionId = transactionService.addTransaction(1, amount, accountId, 0);
+
+        if (transactionId == 0) {
+            QueryDeadline.withoutDeadline(() -> compensate("withdrawAccount", accountId, amount));
+
+            return PaymentResult.failed(PaymentStatus.TRANSACTION_FAILED);
+        }
+
+        return new PaymentResult(PaymentStatus.COMPLETED, transactionService.getTransaction(transactionId),
+                account.getBankId(), 0);
+    }
+
+    /**
+     * Transfers money from one account to another in single database transaction and creates transaction record.
+     * Both accounts are read in parallel if asynchronous account service is set. Accounts are updated in order
+     * of their ids, so concurrent transfers between the same accounts do not deadlock. Transfer to the same
+     * account is rejected. Only version conflicts are retried, database errors fail the transfer.
+     * Prints message in case of errors
+     *
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount transfer amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult transferToAnotherAccount(long senderId, long receiverId, double amount) {
+        List<Account> accounts;
+        Account receiver;
+        Account sender;
+        Transaction transaction;
+        long transactionId;
+        int firstUpdated;
+        int secondUpdated;
+
+        if (senderId == receiverId) {
+            return PaymentResult.failed(PaymentStatus.SAME_ACCOUNT);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            accounts = readAccounts(receiverId, senderId);
+            receiver = accounts.get(0);
+            sender = accounts.get(1);
+
+            if (receiver.getId() == 0) {
+                return PaymentResult.failed(PaymentStatus.RECEIVER_NOT_FOUND);
+            }
+
+            if (sender.getId() == 0) {
+                return PaymentResult.failed(PaymentStatus.SENDER_NOT_FOUND);
+            }
+
+            if (sender.getBalance() < amount) {
+                return PaymentResult.failed(PaymentStatus.INSUFFICIENT_FUNDS);
+            }
+
+            try {
+                synchronized (connection) {
+                    connection.setAutoCommit(false);
+
+                    receiver.setBalance(receiver.getBalance() + amount);
+                    sender.setBalance(sender.getBalance() - amount);
+                    firstUpdated = accountService.updateAccount(senderId < receiverId ? sender : receiver);
+                    secondUpdated = firstUpdated != 1 ? 0
+                            : accountService.updateAccount(senderId < receiverId ? receiver : sender);
+
+                    if (firstUpdated < 0 || secondUpdated < 0) {
+                        connection.rollback();
+                        connection.setAutoCommit(true);
+
+                        return PaymentResult.failed(PaymentStatus.FAILED);
+                    }
+
+                    if (firstUpdated + secondUpdated == 2) {
+                        transactionId = transactionService.addTransaction(1, amount, senderId, receiverId);
+
+                        if (transactionId == 0) {
+                            connection.rollback();
+                            connection.setAutoCommit(true);
+
+                            return PaymentResult.failed(PaymentStatus.TRANSACTION_FAILED);
+                        }
+
+                        connection.commit();
+                        connection.setAutoCommit(true);
+
+                        transaction = transactionService.getTransaction(transactionId);
+
+                        return new PaymentResult(PaymentStatus.COMPLETED, transaction, sender.getBankId(),
+                                receiver.getBankId());
+                    }
+
+                    connection.rollback(); // one of accounts changed after it was read
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                try {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                } catch (SQLException ex) {
+                    logger.sqlError("transferToAnotherAccount", ex, "senderId", senderId, "receiverId", receiverId);
+                }
+
+                return PaymentResult.failed(PaymentStatus.FAILED);
+            }
+
+            if (!retry("transferToAnotherAccount", attempt)) {
+                return PaymentResult.failed(PaymentStatus.UPDATE_FAILED);
+            }
+        }
+    }
+
+    /**
+     * Reads accounts in parallel with asynchronous account service or, if it is not set or cannot
+     * execute reads, one after another with account service
+     *
+     * @param ids account ids
+     *
+     * @return accounts in order of ids. Account has default values if it does not exist
+     */
+    private List<Account> readAccounts(long... ids) {
+        Account[] accounts = new Account[ids.length];
+
+        if (asyncAccountService != null) {
+            try {
+                return asyncAccountService.getAccounts(ids).join();
+            } catch (CompletionException | RejectedExecutionException e) {
+                logger.error("readAccounts", String.valueOf(e.getMessage()));
+            }
+        }
+
+        for (int i = 0; i < ids.length; i++) {
+            accounts[i] = accountService.getAccount(ids[i]);
+        }
+
+        return List.of(accounts);
+    }
+
+    /**
+     * Records conflict and waits before the next attempt if attempts are not exhausted. Backoff is random
+     * between zero and initial backoff doubled for every failed attempt, so conflicting operations spread out
+     *
+     * @param operation name of operation
+     * @param attempt number of failed attempt starting from one
+     *
+     * @return true if operation should be attempted again
+     */
+    private boolean retry(String operation, int attempt) {
+        long backoff = backoffNanos << Math.min(attempt - 1, MAX_BACKOFF_SHIFT);
+
+        contention.recordConflict(operation);
+
+        if (attempt >= maxAttempts) {
+            contention.recordExhausted(operation);
+
+            return false;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(backoff + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Rolls back balance update whose transaction record cannot be saved. Account is read again before
+     * every attempt, so concurrent updates are kept. Must be executed without deadline of the operation,
+     * which may have passed. Prints message if balance cannot be rolled back
+     *
+     * @param operation name of rolled back operation
+     * @param accountId id of updated account
+     * @param amount amount added to balance
+     *
+     * @return true if balance update was rolled back
+     */
+    private boolean compensate(String operation, long accountId, double amount) {
+        Account account;
+        int updated;
+
+        for (int attempt = 1; ; attempt++) {
+            account = accountService.getAccount(accountId);
+
+            if (account.getId() == 0) {
+                break;
+            }
+
+            account.setBalance(account.getBalance() + amount);
+            updated = accountService.updateAccount(account);
+
+            if (updated == 1) {
+                return true;
+            }
+
+            if (updated < 0 || !retry(operation, attempt)) {
+                break;
+            }
+        }
+
+        logger.error(operation, "Balance update was not rolled back", "accountId", accountId, "amount", amount);
+
+        return false;
+    }
+}
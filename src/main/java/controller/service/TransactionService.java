@@ -3,6 +3,7 @@ package controller.service;
 import controller.service.api.ITransactionService;
 import model.dto.StatementDto;
 import model.entity.Transaction;
+import utils.StructuredLogger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -11,13 +12,21 @@ import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /** A class for CRUD operations with table "transaction" in database */
 public class TransactionService implements ITransactionService {
 
+    /** Logger for database errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
     /** A database connection */
     private final Connection connection;
 
+    /** Supplier of connection for statement reads. Returns connection of read replica or the same connection */
+    private final Supplier<Connection> readConnection;
+
     /** A query for inserting transaction */
     private final String insertStatement = "INSERT INTO clever_bank.transaction VALUES (?, ?, ?, ?, ?) RETURNING id";
 
@@ -45,24 +54,41 @@ public class TransactionService implements ITransactionService {
             WHERE sender.id = ? OR receiver.id = ?
             """;
 
-    /** A query for retrieving information about all account transactions during time interval */
-    private final String readAllTransactionsByTime =
+    /** A query for retrieving page of account transactions during time interval after specified time and id */
+    private final String readTransactionPageByTime =
             """
-            SELECT transaction.time, COALESCE(sender.name, '') AS sender, COALESCE(receiver.name, '') AS receiver, transaction.amount
+            SELECT transaction.id, transaction.time, COALESCE(sender.name, '') AS sender, COALESCE(receiver.name, '') AS receiver, transaction.amount
             FROM clever_bank.transaction
             LEFT JOIN clever_bank.user AS sender on transaction.sender_id = sender.id
             LEFT JOIN clever_bank.user AS receiver on transaction.receiver_id = receiver.id
             WHERE (sender.id = ? OR receiver.id = ?)
-            AND (transaction.time BETWEEN ? AND 'NOW')
+            AND transaction.time <= ? AND (transaction.time, transaction.id) > (?, ?)
+            ORDER BY transaction.time, transaction.id
+            LIMIT ?
             """;
 
+    /** Number of transaction records read from database in one page during streaming */
+    private final int fetchSize = 256;
+
     /**
      * A constructor with parameter
      *
      * @param connection connection with database
      */
     public TransactionService(Connection connection) {
+        this(connection, () -> connection);
+    }
+
+    /**
+     * A constructor with parameters for reading statements from read replicas.
+     * Transaction created by this service is always read from the main connection
+     *
+     * @param connection connection with database
+     * @param readConnection supplier of connection for statement reads which tolerate stale data
+     */
+    public TransactionService(Connection connection, Supplier<Connection> readConnection) {
         this.connection = connection;
+        this.readConnection = readConnection;
     }
 
     /**
@@ -106,7 +132,7 @@ public class TransactionService implements ITransactionService {
                 transactionId = resultSet.getLong("id");
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("addTransaction", e, "senderId", senderId, "receiverId", receiverId);
         }
 
         return transactionId;
@@ -140,7 +166,7 @@ public class TransactionService implements ITransactionService {
                         resultSet.getLong("sender_id"), resultSet.getLong("receiver_id"));
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("getTransaction", e, "transactionId", id);
         }
 
         return transaction;
@@ -158,12 +184,13 @@ public class TransactionService implements ITransactionService {
     public List<StatementDto> getTransactionList(long id) {
         StatementDto currentStatement;
         List<StatementDto> transactions = new ArrayList<>();
+        Connection reader = readConnection.get();
         PreparedStatement statement;
         ResultSet resultSet;
 
         try {
-            synchronized (connection) {
-                statement = connection.prepareStatement(readAllTransactions);
+            synchronized (reader) {
+                statement = reader.prepareStatement(readAllTransactions);
                 statement.setLong(1, id);
                 statement.setLong(2, id);
                 resultSet = statement.executeQuery();
@@ -177,7 +204,7 @@ public class TransactionService implements ITransactionService {
                 }
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("getTransactionList", e, "accountId", id);
         }
 
         return transactions;
@@ -194,32 +221,65 @@ public class TransactionService implements ITransactionService {
      */
     @Override
     public List<StatementDto> getTransactionListByTime(long id, LocalDateTime intervalStart) {
-        StatementDto currentStatement;
         List<StatementDto> transactions = new ArrayList<>();
-        PreparedStatement statement;
-        ResultSet resultSet;
 
-        try {
-            synchronized (connection) {
-                statement = connection.prepareStatement(readAllTransactionsByTime);
-                statement.setLong(1, id);
-                statement.setLong(2, id);
-                statement.setObject(3, intervalStart);
-                resultSet = statement.executeQuery();
+        forEachTransactionByTime(id, intervalStart, transactions::add);
 
-                while (resultSet.next()) {
-                    currentStatement = new StatementDto(resultSet.getObject("time", LocalDateTime.class),
-                            resultSet.getString("sender"), resultSet.getString("receiver"),
-                            resultSet.getDouble("amount"));
+        return transactions;
+    }
 
-                    transactions.add(currentStatement);
+    /**
+     * Streams all transactions with specified account starting from specified date to the consumer in order
+     * of time. Rows are read in pages which continue after the last read row, so only one page is kept in memory.
+     * Connection is locked only while page is read, so slow consumer does not block other users of the connection.
+     * Prints message in case of errors
+     *
+     * @param id account id
+     * @param intervalStart start of statement period
+     * @param consumer receiver of transaction records in the order they are read from database
+     *
+     * @return number of streamed records, or -1 if SQLException occurred
+     */
+    @Override
+    public int forEachTransactionByTime(long id, LocalDateTime intervalStart, Consumer<StatementDto> consumer) {
+        Connection reader = readConnection.get();
+        List<StatementDto> page = new ArrayList<>(fetchSize);
+        LocalDateTime lastTime = intervalStart;
+        long lastId = Long.MIN_VALUE;
+        ResultSet resultSet;
+        int numberOfRecords = 0;
+
+        try (PreparedStatement statement = reader.prepareStatement(readTransactionPageByTime)) {
+            statement.setLong(1, id);
+            statement.setLong(2, id);
+            statement.setObject(3, LocalDateTime.now()); // later pages do not include newer transactions
+            statement.setInt(6, fetchSize);
+
+            do {
+                page.clear();
+                statement.setObject(4, lastTime);
+                statement.setLong(5, lastId);
+
+                synchronized (reader) {
+                    resultSet = statement.executeQuery();
+
+                    while (resultSet.next()) {
+                        lastTime = resultSet.getObject("time", LocalDateTime.class);
+                        lastId = resultSet.getLong("id");
+                        page.add(new StatementDto(lastTime, resultSet.getString("sender"),
+                                resultSet.getString("receiver"), resultSet.getDouble("amount")));
+                    }
                 }
-            }
+
+                page.forEach(consumer);
+                numberOfRecords += page.size();
+            } while (page.size() == fetchSize);
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("forEachTransactionByTime", e, "accountId", id);
+            numberOfRecords = -1;
         }
 
-        return transactions;
+        return numberOfRecords;
     }
 
     /**
@@ -250,7 +310,7 @@ public class TransactionService implements ITransactionService {
                 numberOfAffectedRows = statement.executeUpdate();
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("updateTransaction", e, "transactionId", id);
         }
 
         return numberOfAffectedRows;
@@ -276,7 +336,7 @@ public class TransactionService implements ITransactionService {
                 numberOfAffectedRows = statement.executeUpdate();
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("deleteTransaction", e, "transactionId", id);
         }
 
         return numberOfAffectedRows;
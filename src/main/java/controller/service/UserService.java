@@ -2,22 +2,32 @@ package controller.service;
 
 import controller.service.api.IUserService;
 import model.entity.User;
+import utils.StructuredLogger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.function.Supplier;
 
 /**
  * A class for CRUD operations with table "user" in database.
  */
 public class UserService implements IUserService {
 
+    /** Logger for database errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
     /**
      * A database connection
      */
     private final Connection connection;
 
+    /**
+     * Supplier of connection for reads. Returns connection of read replica or the same connection
+     */
+    private final Supplier<Connection> readConnection;
+
     /**
      * A query for inserting user
      */
@@ -44,7 +54,18 @@ public class UserService implements IUserService {
      * @param connection connection with database
      */
     public UserService(Connection connection) {
+        this(connection, () -> connection);
+    }
+
+    /**
+     * A constructor with parameters for reading users from read replicas
+     *
+     * @param connection connection with database
+     * @param readConnection supplier of connection for reads which tolerate stale data
+     */
+    public UserService(Connection connection, Supplier<Connection> readConnection) {
         this.connection = connection;
+        this.readConnection = readConnection;
     }
 
     /**
@@ -70,7 +91,7 @@ public class UserService implements IUserService {
                 amountOfAffectedRows = statement.executeUpdate();
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("addUser", e, "userId", id);
         }
 
         return amountOfAffectedRows;
@@ -87,14 +108,15 @@ public class UserService implements IUserService {
     @Override
     public User getUser(long id) {
         User user = new User();
+        Connection reader = readConnection.get();
         PreparedStatement statement;
         ResultSet resultSet;
 
         try {
-            statement = connection.prepareStatement(readStatement);
+            statement = reader.prepareStatement(readStatement);
             statement.setLong(1, id);
 
-            synchronized (connection) {
+            synchronized (reader) {
                 resultSet = statement.executeQuery();
             }
 
@@ -102,7 +124,7 @@ public class UserService implements IUserService {
                 user = new User(resultSet.getLong("id"), resultSet.getString("name"));
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("getUser", e, "userId", id);
         }
 
         return user;
@@ -130,7 +152,7 @@ public class UserService implements IUserService {
                 numberOfAffectedRows = statement.executeUpdate();
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("updateUser", e, "userId", id);
         }
 
         return numberOfAffectedRows;
@@ -156,7 +178,7 @@ public class UserService implements IUserService {
                 numberOfAffectedRows = statement.executeUpdate();
             }
         } catch (SQLException e) {
-            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            logger.sqlError("deleteUser", e, "userId", id);
         }
 
         return numberOfAffectedRows;
@@ -0,0 +1,84 @@
+package controller.service.admission;
+
+/**
+ * A class which limits number of operations executed at once and adapts the limit to observed latency with
+ * additive increase and multiplicative decrease. Operation slower than latency target decreases the limit
+ * by constant ratio, faster operation increases it by one per limit operations if the limit was in use.
+ * Operation over the limit is rejected at once instead of waiting in queue
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /** Ratio of limit decrease after slow operation */
+    private static final double DECREASE_RATIO = 0.9;
+
+    /** Minimum limit */
+    private final int minLimit;
+
+    /** Maximum limit */
+    private final int maxLimit;
+
+    /** Latency target in nanoseconds */
+    private final long latencyTargetNanos;
+
+    /** Current limit. Fractional part accumulates additive increases */
+    private double limit;
+
+    /** Number of operations executed at the moment */
+    private int inFlight;
+
+    /**
+     * A constructor with parameters
+     *
+     * @param initialLimit limit before the first operation
+     * @param minLimit minimum limit
+     * @param maxLimit maximum limit
+     * @param latencyTargetNanos latency target in nanoseconds
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyTargetNanos) {
+        this.minLimit = Math.max(minLimit, 1);
+        this.maxLimit = Math.max(maxLimit, this.minLimit);
+        this.latencyTargetNanos = latencyTargetNanos;
+        this.limit = Math.min(Math.max(initialLimit, this.minLimit), this.maxLimit);
+    }
+
+    /**
+     * Starts operation if number of executed operations is below the limit
+     *
+     * @return true if operation may be executed, false if it must be rejected
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+
+        inFlight++;
+
+        return true;
+    }
+
+    /**
+     * Finishes operation and adapts the limit to its latency
+     *
+     * @param latencyNanos latency of operation in nanoseconds
+     */
+    public synchronized void release(long latencyNanos) {
+        boolean limitInUse = inFlight * 2 >= (int) limit;
+
+        inFlight--;
+
+        if (latencyNanos > latencyTargetNanos) {
+            limit = Math.max(minLimit, limit * DECREASE_RATIO);
+        } else if (limitInUse) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    /**
+     * Returns current limit
+     *
+     * @return maximum number of operations executed at once
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+}
@@ -0,0 +1,115 @@
+package controller.service.admission;
+
+import controller.service.api.IPaymentService;
+import model.dto.PaymentResult;
+import model.dto.PaymentStatus;
+
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A class which admits money operations before another payment service executes them. Every operation takes
+ * token of its client, which is debited account or replenished account, so flood of operations of one client
+ * is rejected without affecting others. Admitted operation must also fit into concurrency limit which adapts
+ * to latency of executed operations, so operations are rejected at once when database slows down instead of
+ * queuing on shared connection
+ */
+public class AdmissionControlledPaymentService implements IPaymentService {
+
+    /** Service executing money operations */
+    private final IPaymentService paymentService;
+
+    /** Rate limiter of clients */
+    private final ClientRateLimiter rateLimiter;
+
+    /** Limiter of operations executed at once */
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    /** Supplier of current time in nanoseconds */
+    private final LongSupplier clock;
+
+    /**
+     * A constructor with parameters
+     *
+     * @param paymentService service executing money operations
+     * @param rateLimiter rate limiter of clients
+     * @param concurrencyLimiter limiter of operations executed at once
+     * @param clock supplier of current time in nanoseconds used for measuring latency
+     */
+    public AdmissionControlledPaymentService(IPaymentService paymentService, ClientRateLimiter rateLimiter,
+                                             AdaptiveConcurrencyLimiter concurrencyLimiter, LongSupplier clock) {
+        this.paymentService = paymentService;
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.clock = clock;
+    }
+
+    /**
+     * Replenishes account if operation is admitted
+     *
+     * @param accountId id of replenished account
+     * @param amount replenishment amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult replenishAccount(long accountId, double amount) {
+        return admit(accountId, () -> paymentService.replenishAccount(accountId, amount));
+    }
+
+    /**
+     * Withdraws money from account if operation is admitted
+     *
+     * @param accountId id of account for withdrawal
+     * @param amount withdrawal amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult withdrawAccount(long accountId, double amount) {
+        return admit(accountId, () -> paymentService.withdrawAccount(accountId, amount));
+    }
+
+    /**
+     * Transfers money from one account to another if operation of sender is admitted
+     *
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount transfer amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult transferToAnotherAccount(long senderId, long receiverId, double amount) {
+        return admit(senderId, () -> paymentService.transferToAnotherAccount(senderId, receiverId, amount));
+    }
+
+    /**
+     * Executes operation if client has token and concurrency limit is not reached. Latency of executed
+     * operation adapts concurrency limit
+     *
+     * @param clientId id of client
+     * @param operation money operation
+     *
+     * @return result of operation or RATE_LIMITED or OVERLOADED status if operation was rejected
+     */
+    private PaymentResult admit(long clientId, Supplier<PaymentResult> operation) {
+        long start;
+
+        if (!rateLimiter.tryAcquire(clientId)) {
+            return PaymentResult.failed(PaymentStatus.RATE_LIMITED);
+        }
+
+        if (!concurrencyLimiter.tryAcquire()) {
+            return PaymentResult.failed(PaymentStatus.OVERLOADED);
+        }
+
+        start = clock.getAsLong();
+
+        try {
+            return operation.get();
+        } finally {
+            concurrencyLimiter.release(clock.getAsLong() - start);
+        }
+    }
+}
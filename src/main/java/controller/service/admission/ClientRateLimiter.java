@@ -0,0 +1,137 @@
+package controller.service.admission;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * A class which limits rate of operations of every client with token bucket. Bucket holds up to burst tokens
+ * and is refilled with constant rate, every operation takes one token. Buckets of clients are created on first
+ * operation. If there are more clients than maximum, full buckets are removed, because they are the same as new
+ * buckets. Operations of new clients are not limited while all buckets are in use
+ */
+public class ClientRateLimiter {
+
+    /** Nanoseconds in one second */
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    /** Buckets of clients by client id */
+    private final Map<Long, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /** Number of tokens added to bucket per nanosecond */
+    private final double tokensPerNano;
+
+    /** Maximum number of tokens in bucket */
+    private final double burst;
+
+    /** Maximum number of buckets */
+    private final int maxClients;
+
+    /** Supplier of current time in nanoseconds */
+    private final LongSupplier clock;
+
+    /**
+     * A constructor with parameters
+     *
+     * @param ratePerSecond number of operations of client per second in the long run
+     * @param burst maximum number of operations of client at once
+     * @param maxClients maximum number of clients with buckets
+     * @param clock supplier of current time in nanoseconds
+     */
+    public ClientRateLimiter(double ratePerSecond, double burst, int maxClients, LongSupplier clock) {
+        this.tokensPerNano = ratePerSecond / NANOS_PER_SECOND;
+        this.burst = Math.max(burst, 1);
+        this.maxClients = maxClients;
+        this.clock = clock;
+    }
+
+    /**
+     * Takes token from bucket of client
+     *
+     * @param clientId id of client
+     *
+     * @return true if operation of client is allowed, false if bucket is empty
+     */
+    public boolean tryAcquire(long clientId) {
+        long now = clock.getAsLong();
+        Bucket bucket = buckets.get(clientId);
+
+        if (bucket == null) {
+            if (buckets.size() >= maxClients) {
+                buckets.values().removeIf(existing -> existing.isFull(now));
+
+                if (buckets.size() >= maxClients) {
+                    return true;
+                }
+            }
+
+            bucket = buckets.computeIfAbsent(clientId, id -> new Bucket(now));
+        }
+
+        return bucket.tryTake(now);
+    }
+
+    /** Token bucket of one client */
+    private class Bucket {
+
+        /** Number of tokens at the last refill */
+        private double tokens;
+
+        /** Time of the last refill in nanoseconds */
+        private long refilledAt;
+
+        /**
+         * Constructor with parameter. New bucket is full
+         *
+         * @param now current time in nanoseconds
+         */
+        private Bucket(long now) {
+            this.tokens = burst;
+            this.refilledAt = now;
+        }
+
+        /**
+         * Refills bucket and takes one token
+         *
+         * @param now current time in nanoseconds
+         *
+         * @return true if token was taken
+         */
+        private synchronized boolean tryTake(long now) {
+            refill(now);
+
+            if (tokens < 1) {
+                return false;
+            }
+
+            tokens--;
+
+            return true;
+        }
+
+        /**
+         * Checks whether bucket would be full after refill
+         *
+         * @param now current time in nanoseconds
+         *
+         * @return true if bucket has maximum number of tokens
+         */
+        private synchronized boolean isFull(long now) {
+            refill(now);
+
+            return tokens >= burst;
+        }
+
+        /**
+         * Adds tokens for time passed since the last refill
+         *
+         * @param now current time in nanoseconds
+         */
+        private void refill(long now) {
+            if (now > refilledAt) {
+                tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+                refilledAt = now;
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package controller.service.api;
 import model.entity.Account;
 
 import java.sql.Date;
+import java.util.List;
 
 /** An interface that can be used for CRUD operations with accounts in application */
 public interface IAccountService extends Runnable {
@@ -30,11 +31,23 @@ public interface IAccountService extends Runnable {
     Account getAccount(long id);
 
     /**
-     * Updates account`s info in the database
+     * Reads portion of accounts ordered by id from database
+     *
+     * @param afterId only accounts with id bigger than this value will be read
+     * @param limit maximum number of accounts in portion
+     *
+     * @return list of accounts ordered by id, or null if accounts cannot be read
+     */
+    List<Account> getAccountList(long afterId, int limit);
+
+    /**
+     * Updates account`s info in the database. Implementations with optimistic concurrency update account only
+     * if its version did not change since it was read
      *
      * @param updatedAccount Account object with updated values
      *
-     * @return number of affected by query rows
+     * @return number of affected by query rows. Zero if account does not exist or was changed concurrently,
+     * minus one in case of database errors
      */
     int updateAccount(Account updatedAccount);
 
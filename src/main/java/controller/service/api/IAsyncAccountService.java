@@ -0,0 +1,28 @@
+package controller.service.api;
+
+import model.entity.Account;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/** An interface that can be used for reading accounts without blocking the caller */
+public interface IAsyncAccountService {
+
+    /**
+     * Reads account with specified id
+     *
+     * @param id account id
+     *
+     * @return future with account or default values if account does not exist
+     */
+    CompletableFuture<Account> getAccount(long id);
+
+    /**
+     * Reads accounts with specified ids. Accounts are read in parallel
+     *
+     * @param ids account ids
+     *
+     * @return future with accounts in order of ids. Account has default values if it does not exist
+     */
+    CompletableFuture<List<Account>> getAccounts(long... ids);
+}
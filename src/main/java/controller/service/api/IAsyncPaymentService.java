@@ -0,0 +1,40 @@
+package controller.service.api;
+
+import model.dto.PaymentResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/** An interface that can be used for money operations with accounts without blocking the caller */
+public interface IAsyncPaymentService {
+
+    /**
+     * Replenishes account and creates transaction record
+     *
+     * @param accountId id of replenished account
+     * @param amount replenishment amount
+     *
+     * @return future with result of operation
+     */
+    CompletableFuture<PaymentResult> replenishAccount(long accountId, double amount);
+
+    /**
+     * Withdraws money from account and creates transaction record
+     *
+     * @param accountId id of account for withdrawal
+     * @param amount withdrawal amount
+     *
+     * @return future with result of operation
+     */
+    CompletableFuture<PaymentResult> withdrawAccount(long accountId, double amount);
+
+    /**
+     * Transfers money from one account to another in single transaction and creates transaction record
+     *
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount transfer amount
+     *
+     * @return future with result of operation
+     */
+    CompletableFuture<PaymentResult> transferToAnotherAccount(long senderId, long receiverId, double amount);
+}
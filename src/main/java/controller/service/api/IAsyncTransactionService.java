@@ -0,0 +1,44 @@
+package controller.service.api;
+
+import model.dto.StatementDto;
+import model.entity.Transaction;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/** An interface that can be used for operations with transactions without blocking the caller */
+public interface IAsyncTransactionService {
+
+    /**
+     * Adds a new transaction
+     *
+     * @param id transaction id. Id less than zero will be used in query. Recommended for test purposes.
+     *           Id bigger than zero will not be used in query and database will use self-generated value
+     * @param amount transaction amount
+     * @param senderId id of transaction sender. Zero in case of account replenishment
+     * @param receiverId id of transaction receiver. Zero in case of money withdrawal
+     *
+     * @return future with id of created transaction or zero in case of database errors
+     */
+    CompletableFuture<Long> addTransaction(long id, double amount, long senderId, long receiverId);
+
+    /**
+     * Reads transaction with specified id
+     *
+     * @param id transaction id
+     *
+     * @return future with transaction or default values if transaction does not exist
+     */
+    CompletableFuture<Transaction> getTransaction(long id);
+
+    /**
+     * Retrieves transactions with specified account during time interval
+     *
+     * @param id account id
+     * @param intervalStart start of time interval
+     *
+     * @return future with list of statement records
+     */
+    CompletableFuture<List<StatementDto>> getTransactionListByTime(long id, LocalDateTime intervalStart);
+}
@@ -0,0 +1,60 @@
+package controller.service.api;
+
+import model.dto.KeyReservation;
+
+/** An interface that can be used for detecting repeated money operations by client idempotency keys */
+public interface IIdempotencyService {
+
+    /**
+     * Marks key as used by an operation which is being executed now
+     *
+     * @param key idempotency key of the operation
+     *
+     * @return true if key was marked, false if another operation with the same key is being executed
+     */
+    boolean acquireKey(String key);
+
+    /**
+     * Removes mark of the executed operation from the key
+     *
+     * @param key idempotency key of the operation
+     */
+    void releaseKey(String key);
+
+    /**
+     * Saves key as pending before the operation is executed, or returns result of the operation
+     * which used the key before
+     *
+     * @param key idempotency key of the operation
+     * @param request type and parameters of the operation
+     *
+     * @return reservation status and id of transaction created by the operation with the same key
+     */
+    KeyReservation reserveKey(String key, String request);
+
+    /**
+     * Saves transaction of the completed operation with pending key
+     *
+     * @param key idempotency key of the operation
+     * @param transactionId id of transaction created by the operation
+     *
+     * @return number of affected by query rows
+     */
+    int completeKey(String key, long transactionId);
+
+    /**
+     * Deletes pending key of the failed operation, so the operation can be retried with the same key
+     *
+     * @param key idempotency key of the operation
+     *
+     * @return number of affected by query rows
+     */
+    int cancelKey(String key);
+
+    /**
+     * Deletes keys which are older than time to live
+     *
+     * @return number of affected by query rows
+     */
+    int deleteExpiredKeys();
+}
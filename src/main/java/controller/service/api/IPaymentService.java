@@ -0,0 +1,38 @@
+package controller.service.api;
+
+import model.dto.PaymentResult;
+
+/** An interface that can be used for money operations with accounts in application */
+public interface IPaymentService {
+
+    /**
+     * Replenishes account and creates transaction record
+     *
+     * @param accountId id of replenished account
+     * @param amount replenishment amount
+     *
+     * @return result of operation with created transaction
+     */
+    PaymentResult replenishAccount(long accountId, double amount);
+
+    /**
+     * Withdraws money from account and creates transaction record
+     *
+     * @param accountId id of account for withdrawal
+     * @param amount withdrawal amount
+     *
+     * @return result of operation with created transaction
+     */
+    PaymentResult withdrawAccount(long accountId, double amount);
+
+    /**
+     * Transfers money from one account to another in single transaction and creates transaction record
+     *
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount transfer amount
+     *
+     * @return result of operation with created transaction
+     */
+    PaymentResult transferToAnotherAccount(long senderId, long receiverId, double amount);
+}
@@ -6,6 +6,7 @@ import model.entity.Transaction;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * An interface that can be used for CRUD operations with transactions in application
@@ -53,6 +54,19 @@ public interface ITransactionService {
      */
     List<StatementDto> getTransactionListByTime(long id, LocalDateTime intervalStart);
 
+    /**
+     * Streams all transactions with specified account starting from specified date to the consumer
+     * without collecting them in memory
+     *
+     * @param id account id
+     * @param intervalStart start of statement period
+     * @param consumer receiver of transaction records in the order they are read from database
+     *
+     * @return number of streamed records, or -1 if records cannot be read. Consumer may receive part of records
+     * before the error
+     */
+    int forEachTransactionByTime(long id, LocalDateTime intervalStart, Consumer<StatementDto> consumer);
+
     /**
      * Updates transaction`s info in the database
      *
@@ -0,0 +1,56 @@
+package controller.service.async;
+
+import controller.service.api.IAccountService;
+import controller.service.api.IAsyncAccountService;
+import model.entity.Account;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/** A class for reading accounts on threads of pool, each with its own database connection */
+public class AsyncAccountService implements IAsyncAccountService {
+
+    /** Pool of threads with account services */
+    private final AsyncServicePool<IAccountService> pool;
+
+    /**
+     * A constructor with parameter
+     *
+     * @param pool pool of threads with account services
+     */
+    public AsyncAccountService(AsyncServicePool<IAccountService> pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Reads account with specified id on one of threads
+     *
+     * @param id account id
+     *
+     * @return future with account or default values if account does not exist
+     */
+    @Override
+    public CompletableFuture<Account> getAccount(long id) {
+        return pool.submit(service -> service.getAccount(id));
+    }
+
+    /**
+     * Reads accounts with specified ids. Every account is read on its own thread, so reads overlap
+     *
+     * @param ids account ids
+     *
+     * @return future with accounts in order of ids. Account has default values if it does not exist
+     */
+    @Override
+    public CompletableFuture<List<Account>> getAccounts(long... ids) {
+        List<CompletableFuture<Account>> futures = new ArrayList<>(ids.length);
+
+        for (long id : ids) {
+            futures.add(getAccount(id));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> futures.stream().map(CompletableFuture::join).toList());
+    }
+}
@@ -0,0 +1,67 @@
+package controller.service.async;
+
+import controller.service.api.IAsyncPaymentService;
+import controller.service.api.IPaymentService;
+import model.dto.PaymentResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A class for money operations on threads of pool, each with its own database connection. Operations with
+ * different accounts run in parallel. Conflicting operations with the same account are resolved by optimistic
+ * concurrency of payment services
+ */
+public class AsyncPaymentService implements IAsyncPaymentService {
+
+    /** Pool of threads with payment services */
+    private final AsyncServicePool<IPaymentService> pool;
+
+    /**
+     * A constructor with parameter
+     *
+     * @param pool pool of threads with payment services
+     */
+    public AsyncPaymentService(AsyncServicePool<IPaymentService> pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Replenishes account on one of threads
+     *
+     * @param accountId id of replenished account
+     * @param amount replenishment amount
+     *
+     * @return future with result of operation
+     */
+    @Override
+    public CompletableFuture<PaymentResult> replenishAccount(long accountId, double amount) {
+        return pool.submit(service -> service.replenishAccount(accountId, amount));
+    }
+
+    /**
+     * Withdraws money from account on one of threads
+     *
+     * @param accountId id of account for withdrawal
+     * @param amount withdrawal amount
+     *
+     * @return future with result of operation
+     */
+    @Override
+    public CompletableFuture<PaymentResult> withdrawAccount(long accountId, double amount) {
+        return pool.submit(service -> service.withdrawAccount(accountId, amount));
+    }
+
+    /**
+     * Transfers money from one account to another on one of threads
+     *
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount transfer amount
+     *
+     * @return future with result of operation
+     */
+    @Override
+    public CompletableFuture<PaymentResult> transferToAnotherAccount(long senderId, long receiverId, double amount) {
+        return pool.submit(service -> service.transferToAnotherAccount(senderId, receiverId, amount));
+    }
+}
@@ -0,0 +1,147 @@
+package controller.service.async;
+
+import config.api.IDatabaseConnector;
+import utils.StructuredLogger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A class which executes calls of blocking service on dedicated threads. Every thread opens its own database
+ * connection on first usage and creates its own instance of the service, so calls submitted together run
+ * in parallel instead of waiting for each other on shared connection. If connection cannot be opened,
+ * thread uses shared service and tries to open connection again after retry interval
+ *
+ * @param <T> type of service interface
+ */
+public class AsyncServicePool<T> implements AutoCloseable {
+
+    /** Minimum time between attempts of thread to open its connection, in nanoseconds */
+    private static final long RETRY_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    /** Logger for errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** Connector for opening connections of threads */
+    private final IDatabaseConnector connector;
+
+    /** Factory of service instances working with specified connection */
+    private final Function<Connection, T> factory;
+
+    /** Service with shared connection. Used if connection of thread cannot be opened */
+    private final T sharedService;
+
+    /** Threads executing calls */
+    private final ExecutorService executor;
+
+    /** Service of every thread. Not set while thread uses shared service */
+    private final ThreadLocal<T> threadService = new ThreadLocal<>();
+
+    /** Time of the next attempt to open connection of every thread which uses shared service, in nanoseconds */
+    private final ThreadLocal<Long> nextAttempt = new ThreadLocal<>();
+
+    /** Connections opened by threads. Closed when pool is closed */
+    private final Queue<Connection> connections = new ConcurrentLinkedQueue<>();
+
+    /**
+     * A constructor with parameters
+     *
+     * @param connector connector for opening connections of threads
+     * @param factory factory of service instances working with specified connection
+     * @param sharedService service with shared connection used if connection of thread cannot be opened
+     * @param threads number of threads and connections
+     * @param name prefix of thread names
+     */
+    public AsyncServicePool(IDatabaseConnector connector, Function<Connection, T> factory, T sharedService,
+                            int threads, String name) {
+        AtomicInteger number = new AtomicInteger();
+
+        this.connector = connector;
+        this.factory = factory;
+        this.sharedService = sharedService;
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, name + "-" + number.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Submits call of service which will be executed by one of threads
+     *
+     * @param call call of service
+     * @param <R> type of call result
+     *
+     * @return future completed with result of the call or exceptionally if the call threw exception
+     */
+    public <R> CompletableFuture<R> submit(Function<T, R> call) {
+        return CompletableFuture.supplyAsync(() -> call.apply(getService()), executor);
+    }
+
+    /**
+     * Returns service of the current thread. Opens connection for it on first usage. If connection cannot be
+     * opened, returns shared service until retry interval passes
+     *
+     * @return service with connection which is used only by current thread, or shared service
+     */
+    private T getService() {
+        T service = threadService.get();
+        Long attempt = nextAttempt.get();
+        Connection connection;
+
+        if (service != null) {
+            return service;
+        }
+
+        if (attempt != null && System.nanoTime() - attempt < 0) {
+            return sharedService;
+        }
+
+        connection = connector.openConnection();
+
+        if (connection == null) {
+            nextAttempt.set(System.nanoTime() + RETRY_INTERVAL_NANOS);
+
+            return sharedService;
+        }
+
+        connections.add(connection);
+        service = factory.apply(connection);
+        threadService.set(service);
+        nextAttempt.remove();
+
+        return service;
+    }
+
+    /** Waits for submitted calls and closes connections of threads */
+    @Override
+    public void close() {
+        Connection connection;
+
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        while ((connection = connections.poll()) != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.sqlError("closeAsyncServicePool", e);
+            }
+        }
+    }
+}
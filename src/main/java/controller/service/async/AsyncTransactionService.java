@@ -0,0 +1,67 @@
+package controller.service.async;
+
+import controller.service.api.IAsyncTransactionService;
+import controller.service.api.ITransactionService;
+import model.dto.StatementDto;
+import model.entity.Transaction;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/** A class for operations with transactions on threads of pool, each with its own database connection */
+public class AsyncTransactionService implements IAsyncTransactionService {
+
+    /** Pool of threads with transaction services */
+    private final AsyncServicePool<ITransactionService> pool;
+
+    /**
+     * A constructor with parameter
+     *
+     * @param pool pool of threads with transaction services
+     */
+    public AsyncTransactionService(AsyncServicePool<ITransactionService> pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Adds a new transaction on one of threads
+     *
+     * @param id transaction id. Id less than zero will be used in query. Recommended for test purposes.
+     *           Id bigger than zero will not be used in query and database will use self-generated value
+     * @param amount transaction amount
+     * @param senderId id of transaction sender. Zero in case of account replenishment
+     * @param receiverId id of transaction receiver. Zero in case of money withdrawal
+     *
+     * @return future with id of created transaction or zero in case of database errors
+     */
+    @Override
+    public CompletableFuture<Long> addTransaction(long id, double amount, long senderId, long receiverId) {
+        return pool.submit(service -> service.addTransaction(id, amount, senderId, receiverId));
+    }
+
+    /**
+     * Reads transaction with specified id on one of threads
+     *
+     * @param id transaction id
+     *
+     * @return future with transaction or default values if transaction does not exist
+     */
+    @Override
+    public CompletableFuture<Transaction> getTransaction(long id) {
+        return pool.submit(service -> service.getTransaction(id));
+    }
+
+    /**
+     * Retrieves transactions with specified account during time interval on one of threads
+     *
+     * @param id account id
+     * @param intervalStart start of time interval
+     *
+     * @return future with list of statement records
+     */
+    @Override
+    public CompletableFuture<List<StatementDto>> getTransactionListByTime(long id, LocalDateTime intervalStart) {
+        return pool.submit(service -> service.getTransactionListByTime(id, intervalStart));
+    }
+}
@@ -0,0 +1,433 @@
+package controller.service.feed;
+
+import config.api.IDatabaseConnector;
+import model.entity.Transaction;
+import utils.StructuredLogger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A class which publishes every committed transaction to subscriber of named consumer. Feed row is inserted
+ * by trigger in the same database transaction as transaction record, together with id of that database
+ * transaction:
+ * <pre>
+ * CREATE TABLE clever_bank.transaction_feed (
+ *     position BIGSERIAL PRIMARY KEY,
+ *     txid BIGINT NOT NULL DEFAULT pg_current_xact_id()::text::bigint,
+ *     transaction_id BIGINT NOT NULL
+ * );
+ * CREATE INDEX transaction_feed_order ON clever_bank.transaction_feed (txid, position);
+ * CREATE FUNCTION clever_bank.publish_transaction() RETURNS TRIGGER AS $$
+ * BEGIN
+ *     INSERT INTO clever_bank.transaction_feed (transaction_id) VALUES (NEW.id);
+ *     RETURN NEW;
+ * END $$ LANGUAGE plpgsql;
+ * CREATE TRIGGER transaction_feed AFTER INSERT ON clever_bank.transaction
+ *     FOR EACH ROW EXECUTE FUNCTION clever_bank.publish_transaction();
+ * CREATE TABLE clever_bank.transaction_feed_offset (
+ *     consumer VARCHAR(64) PRIMARY KEY,
+ *     txid BIGINT NOT NULL,
+ *     position BIGINT NOT NULL
+ * );
+ * </pre>
+ * Rows are read in order of database transaction id and position, and only rows of database transactions older
+ * than the oldest running one are read. Such rows never appear behind offset later, so no row is skipped
+ * although database transactions commit in different order than they start. Feed is read only when subscriber
+ * requested more transactions, in portions not bigger than batch size. Offset of consumer is saved after every
+ * portion, so new subscription continues after the last saved portion and every transaction is delivered
+ * at least once. Subscription holds advisory lock of consumer on its connection, so only one subscription
+ * of consumer reads the feed even across application instances. Lock is taken again with every saved offset,
+ * so subscription whose connection was reopened and lost the lock stops instead of saving offset.
+ * Subscriptions delete feed rows behind offsets of all consumers once per cleanup interval
+ */
+public class TransactionFeed implements Flow.Publisher<Transaction> {
+
+    /** First key of advisory locks of consumers. Second key is hash of consumer name */
+    private static final int LOCK_KEY = 0x46454544;
+
+    /** Minimum time between deletions of delivered feed rows, in nanoseconds */
+    private static final long CLEANUP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /** Logger for errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** Connector for opening connection of subscription */
+    private final IDatabaseConnector connector;
+
+    /** Name of consumer whose offset is used */
+    private final String consumer;
+
+    /** Maximum number of transactions read at once */
+    private final int batchSize;
+
+    /** Pause before reading feed again after it had no new transactions */
+    private final Duration pollInterval;
+
+    /** Whether feed has active subscription in this application. Only one subscription may use offset of consumer */
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /** A query for reading portion of transactions after offset */
+    private final String readStatement = "SELECT f.txid, f.position, t.id, t.amount, t.time, t.sender_id, " +
+            "t.receiver_id FROM clever_bank.transaction_feed f " +
+            "JOIN clever_bank.transaction t ON t.id = f.transaction_id " +
+            "WHERE (f.txid, f.position) > (?, ?) " +
+            "AND f.txid < pg_snapshot_xmin(pg_current_snapshot())::text::bigint " +
+            "ORDER BY f.txid, f.position LIMIT ?";
+
+    /** A query for reading offset of consumer */
+    private final String readOffsetStatement = "SELECT txid, position FROM clever_bank.transaction_feed_offset " +
+            "WHERE consumer = ?";
+
+    /** A query for taking advisory lock of consumer for the session */
+    private final String lockStatement = "SELECT pg_try_advisory_lock(?, hashtext(?)) AS locked";
+
+    /** A query for saving offset of consumer. Offset is saved only if session holds or gets lock of consumer */
+    private final String saveOffsetStatement = "INSERT INTO clever_bank.transaction_feed_offset " +
+            "SELECT ?, ?, ? WHERE pg_try_advisory_lock(?, hashtext(?)) " +
+            "ON CONFLICT (consumer) DO UPDATE SET txid = EXCLUDED.txid, position = EXCLUDED.position";
+
+    /** A query for deleting feed rows which are behind offsets of all consumers */
+    private final String cleanupStatement = "DELETE FROM clever_bank.transaction_feed " +
+            "WHERE (txid, position) <= (SELECT txid, position FROM clever_bank.transaction_feed_offset " +
+            "ORDER BY txid, position LIMIT 1)";
+
+    /**
+     * A constructor with parameters
+     *
+     * @param connector connector for opening connection of subscription
+     * @param consumer name of consumer whose offset is used
+     * @param batchSize maximum number of transactions read at once
+     * @param pollInterval pause before reading feed again after it had no new transactions
+     */
+    public TransactionFeed(IDatabaseConnector connector, String consumer, int batchSize, Duration pollInterval) {
+        this.connector = connector;
+        this.consumer = consumer;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Subscribes to transactions after saved offset of consumer. Transactions are delivered by thread
+     * of subscription. Subscriber receives error if consumer already has active subscription in this
+     * or another application
+     *
+     * @param subscriber receiver of transactions
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super Transaction> subscriber) {
+        FeedSubscription subscription;
+
+        Objects.requireNonNull(subscriber);
+
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new FeedSubscription(subscriber));
+            subscriber.onError(new IllegalStateException("Consumer " + consumer + " is already subscribed"));
+
+            return;
+        }
+
+        subscription = new FeedSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.start();
+    }
+
+    /** Subscription which reads feed on its own thread and connection while subscriber has demand */
+    private class FeedSubscription implements Flow.Subscription, Runnable {
+
+        /** Receiver of transactions */
+        private final Flow.Subscriber<? super Transaction> subscriber;
+
+        /** Number of requested and not delivered transactions. Long.MAX_VALUE means unbounded demand */
+        private final AtomicLong demand = new AtomicLong();
+
+        /** Thread reading feed. Null if subscription is not started */
+        private volatile Thread thread;
+
+        /** Whether subscription is cancelled */
+        private volatile boolean cancelled;
+
+        /** Error caused by subscriber which must be signalled to it. Null if there is no error */
+        private volatile Throwable error;
+
+        /** Database transaction id of the last delivered transaction */
+        private long offsetTxid;
+
+        /** Position of the last delivered transaction */
+        private long offsetPosition;
+
+        /** Time of the next deletion of delivered feed rows, in nanoseconds */
+        private long nextCleanup = System.nanoTime();
+
+        /**
+         * Constructor with parameter
+         *
+         * @param subscriber receiver of transactions
+         */
+        private FeedSubscription(Flow.Subscriber<? super Transaction> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /** Starts thread reading feed */
+        private void start() {
+            thread = new Thread(this, "transaction-feed-" + consumer);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Adds number of transactions to demand and wakes thread reading feed
+         *
+         * @param n number of requested transactions. Must be positive
+         */
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested number of transactions must be positive: " + n);
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+
+            LockSupport.unpark(thread);
+        }
+
+        /** Stops delivery of transactions. Transactions which are being delivered may still arrive */
+        @Override
+        public void cancel() {
+            cancelled = true;
+            LockSupport.unpark(thread);
+        }
+
+        /** Reads feed while subscription is not cancelled and delivers transactions to subscriber */
+        @Override
+        public void run() {
+            Connection connection = connector.openConnection();
+            List<FeedRow> rows;
+
+            if (connection == null) {
+                finish(new SQLException("Connection of transaction feed cannot be opened"));
+
+                return;
+            }
+
+            try {
+                if (!lock(connection)) {
+                    finish(new IllegalStateException("Consumer " + consumer + " is already subscribed"));
+
+                    return;
+                }
+
+                readOffset(connection);
+
+                while (!cancelled && error == null) {
+                    if (demand.get() == 0) {
+                        LockSupport.park(this);
+                        continue;
+                    }
+
+                    rows = readPortion(connection, (int) Math.min(demand.get(), batchSize));
+
+                    if (rows.isEmpty()) {
+                        LockSupport.parkNanos(this, pollInterval.toNanos());
+                    } else if (deliver(rows)) {
+                        saveOffset(connection);
+                    }
+
+                    if (System.nanoTime() - nextCleanup >= 0) {
+                        nextCleanup = System.nanoTime() + CLEANUP_INTERVAL_NANOS;
+                        deleteDeliveredRows(connection);
+                    }
+                }
+
+                finish(error);
+            } catch (SQLException e) {
+                logger.sqlError("transactionFeed", e, "consumer", consumer);
+                finish(e);
+            } finally {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    logger.sqlError("closeTransactionFeed", e, "consumer", consumer);
+                }
+            }
+        }
+
+        /**
+         * Delivers portion of transactions to subscriber and moves offset after every delivered transaction.
+         * Subscription is cancelled if subscriber throws exception
+         *
+         * @param rows delivered transactions with their places in feed
+         *
+         * @return true if at least one transaction was delivered
+         */
+        private boolean deliver(List<FeedRow> rows) {
+            boolean delivered = false;
+
+            for (FeedRow row : rows) {
+                if (cancelled) {
+                    break;
+                }
+
+                try {
+                    subscriber.onNext(row.transaction());
+                } catch (RuntimeException e) {
+                    logger.error("transactionFeed", e.getMessage(), "consumer", consumer);
+                    cancelled = true;
+
+                    break;
+                }
+
+                offsetTxid = row.txid();
+                offsetPosition = row.position();
+                delivered = true;
+                demand.getAndUpdate(current -> current == Long.MAX_VALUE ? current : current - 1);
+            }
+
+            return delivered;
+        }
+
+        /**
+         * Reads portion of transactions after offset
+         *
+         * @param connection connection of subscription
+         * @param limit maximum number of transactions
+         *
+         * @return transactions with their places in feed, in feed order
+         *
+         * @throws SQLException if feed cannot be read
+         */
+        private List<FeedRow> readPortion(Connection connection, int limit) throws SQLException {
+            List<FeedRow> rows = new ArrayList<>(limit);
+            ResultSet resultSet;
+
+            try (PreparedStatement statement = connection.prepareStatement(readStatement)) {
+                statement.setLong(1, offsetTxid);
+                statement.setLong(2, offsetPosition);
+                statement.setInt(3, limit);
+                resultSet = statement.executeQuery();
+
+                while (resultSet.next()) {
+                    rows.add(new FeedRow(resultSet.getLong("txid"), resultSet.getLong("position"),
+                            new Transaction(resultSet.getLong("id"), resultSet.getDouble("amount"),
+                                    resultSet.getObject("time", LocalDateTime.class),
+                                    resultSet.getLong("sender_id"), resultSet.getLong("receiver_id"))));
+                }
+            }
+
+            return rows;
+        }
+
+        /**
+         * Takes advisory lock of consumer for the session of connection. Lock is released when connection closes
+         *
+         * @param connection connection of subscription
+         *
+         * @return true if lock was taken, false if another session holds it
+         *
+         * @throws SQLException if lock cannot be taken
+         */
+        private boolean lock(Connection connection) throws SQLException {
+            ResultSet resultSet;
+
+            try (PreparedStatement statement = connection.prepareStatement(lockStatement)) {
+                statement.setInt(1, LOCK_KEY);
+                statement.setString(2, consumer);
+                resultSet = statement.executeQuery();
+
+                return resultSet.next() && resultSet.getBoolean("locked");
+            }
+        }
+
+        /**
+         * Reads saved offset of consumer. Offset is zero if it was never saved
+         *
+         * @param connection connection of subscription
+         *
+         * @throws SQLException if offset cannot be read
+         */
+        private void readOffset(Connection connection) throws SQLException {
+            ResultSet resultSet;
+
+            try (PreparedStatement statement = connection.prepareStatement(readOffsetStatement)) {
+                statement.setString(1, consumer);
+                resultSet = statement.executeQuery();
+
+                if (resultSet.next()) {
+                    offsetTxid = resultSet.getLong("txid");
+                    offsetPosition = resultSet.getLong("position");
+                }
+            }
+        }
+
+        /**
+         * Saves offset of the last delivered transaction if session holds lock of consumer
+         *
+         * @param connection connection of subscription
+         *
+         * @throws SQLException if offset cannot be saved or lock of consumer is held by another session
+         */
+        private void saveOffset(Connection connection) throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement(saveOffsetStatement)) {
+                statement.setString(1, consumer);
+                statement.setLong(2, offsetTxid);
+                statement.setLong(3, offsetPosition);
+                statement.setInt(4, LOCK_KEY);
+                statement.setString(5, consumer);
+
+                if (statement.executeUpdate() == 0) {
+                    throw new SQLException("Consumer " + consumer + " is subscribed by another session");
+                }
+            }
+        }
+
+        /**
+         * Deletes feed rows which are behind offsets of all consumers. Prints message in case of errors,
+         * rows are deleted again after cleanup interval
+         *
+         * @param connection connection of subscription
+         */
+        private void deleteDeliveredRows(Connection connection) {
+            try (PreparedStatement statement = connection.prepareStatement(cleanupStatement)) {
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                logger.sqlError("cleanTransactionFeed", e, "consumer", consumer);
+            }
+        }
+
+        /**
+         * Signals completion of subscription to subscriber unless it was cancelled and frees feed for new
+         * subscription. Feed of committed transactions never ends, so only errors are signalled
+         *
+         * @param cause error signalled to subscriber, null if subscription was cancelled
+         */
+        private void finish(Throwable cause) {
+            subscribed.set(false);
+
+            if (cause != null && !cancelled) {
+                subscriber.onError(cause);
+            }
+        }
+    }
+
+    /**
+     * Transaction read from feed with its place in feed
+     *
+     * @param txid database transaction id of feed row
+     * @param position position of feed row
+     * @param transaction transaction record
+     */
+    private record FeedRow(long txid, long position, Transaction transaction) {
+    }
+}
@@ -0,0 +1,766 @@
+package controller.service.ledger;
+
+import model.dto.PaymentResult;
+import model.dto.PaymentStatus;
+import model.entity.Account;
+import model.entity.Transaction;
+import utils.StructuredLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * An in-memory ledger engine. Accounts and balances are kept in primitive arrays and every operation is written
+ * to the local journal before its caller gets result, so the ledger survives crash by loading the last snapshot
+ * and replaying the journal after it. The database stays the system of record and is updated asynchronously
+ * from the durable journal. Snapshots are taken periodically to bound replay time, and journal segments are
+ * deleted when they are covered both by snapshot and by database.
+ * Operations change accounts under striped locks, so journal order is consistent with order of changes
+ * of every account and operations which saw a change are always after it in the journal.
+ * Change is visible before its record is flushed, so if the journal cannot be flushed the ledger stops:
+ * further writes are rejected and accounts are restored from snapshot and durable part of the journal,
+ * so they do not contain operations whose callers got failure. Ledger works again after restart
+ */
+public class Ledger implements AutoCloseable {
+
+    /** Number of bits in index of striped lock */
+    private static final int LOCK_BITS = 6;
+
+    /** Number of striped locks */
+    private static final int LOCKS = 1 << LOCK_BITS;
+
+    /** Version of snapshot file format */
+    private static final int SNAPSHOT_VERSION = 1;
+
+    /** Logger for errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** File with the last snapshot */
+    private final Path snapshotFile;
+
+    /** Lock for structural changes of accounts. Operations with existing accounts take read lock */
+    private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+
+    /** Striped locks guarding balances of accounts */
+    private final Object[] locks = new Object[LOCKS];
+
+    /** Transactions which are not in the database yet, by id */
+    private final Map<Long, Transaction> pendingTransactions = new ConcurrentHashMap<>();
+
+    /** Generator of account ids */
+    private final AtomicLong accountSequence = new AtomicLong();
+
+    /** Generator of transaction ids */
+    private final AtomicLong transactionSequence = new AtomicLong();
+
+    /** Accounts of the ledger. Replaced only under write lock when the ledger stops */
+    private volatile LedgerAccounts accounts;
+
+    /** Journal of operations */
+    private final LedgerJournal journal;
+
+    /** Writer of journal records to the database */
+    private final LedgerReplicator replicator;
+
+    /** Time between snapshots, in milliseconds */
+    private final long snapshotIntervalMillis;
+
+    /** Thread which takes snapshots */
+    private final Thread snapshotter;
+
+    /** Sequence of the last record included in snapshot */
+    private volatile long snapshotSequence;
+
+    /** Journal failure after which the ledger is stopped. Null while the ledger works */
+    private volatile IOException failure;
+
+    /**
+     * A constructor with parameters. Restores accounts from snapshot and journal, or loads them from the database
+     * if there is no snapshot, and starts replication and snapshots
+     *
+     * @param directory directory with journal, snapshot and replication progress
+     * @param connection connection with database which is not used by other services
+     * @param segmentRecords number of records in one journal segment
+     * @param syncInterval maximum time between journal flushes when nobody waits for them
+     * @param snapshotInterval time between snapshots
+     * @param replicationBatch maximum number of records written to the database in one transaction
+     *
+     * @throws IOException if journal or snapshot cannot be read or written
+     * @throws SQLException if accounts cannot be loaded from the database
+     */
+    public Ledger(Path directory, Connection connection, int segmentRecords, Duration syncInterval,
+                  Duration snapshotInterval, int replicationBatch) throws IOException, SQLException {
+        long replicatedSequence;
+        long lastSequence;
+
+        this.snapshotFile = directory.resolve("snapshot.dat");
+        this.snapshotIntervalMillis = snapshotInterval.toMillis();
+
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new Object();
+        }
+
+        Files.createDirectories(directory);
+        replicator = new LedgerReplicator(connection, directory, pendingTransactions, replicationBatch);
+
+        if (Files.exists(snapshotFile)) {
+            accounts = readSnapshot();
+        } else {
+            accounts = new LedgerAccounts(1024);
+            replicator.loadAccounts(accounts);
+            accountSequence.set(Math.max(accounts.getMaxId(), 0));
+            transactionSequence.set(Math.max(replicator.readMaxTransactionId(), 0));
+        }
+
+        replicatedSequence = replicator.readProgress();
+        lastSequence = LedgerJournal.replay(directory, snapshotSequence, (record, sequence) -> {
+            accounts.apply(record);
+
+            if (record.type() == LedgerRecord.ACCOUNT) {
+                accountSequence.accumulateAndGet(record.id(), Math::max);
+            }
+
+            if (record.hasTransaction()) {
+                transactionSequence.accumulateAndGet(record.id(), Math::max);
+
+                if (sequence > replicatedSequence) {
+                    pendingTransactions.put(record.id(), toTransaction(record));
+                }
+            }
+        });
+
+        journal = new LedgerJournal(directory, lastSequence, segmentRecords, syncInterval);
+        takeSnapshot();
+        replicator.start(journal, Math.min(replicatedSequence, lastSequence));
+
+        snapshotter = new Thread(this::takeSnapshots, "ledger-snapshot");
+        snapshotter.setDaemon(true);
+        snapshotter.start();
+    }
+
+    /**
+     * Reads account with specified id
+     *
+     * @param id account id
+     *
+     * @return instance of Account class with specified id or default values if account does not exist
+     */
+    public Account getAccount(long id) {
+        Lock lock = structureLock.readLock();
+
+        lock.lock();
+
+        try {
+            synchronized (getLock(id)) {
+                return accounts.get(id);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves portion of accounts with id bigger than specified one ordered by id
+     *
+     * @param afterId id after which accounts are retrieved
+     * @param limit maximum number of retrieved accounts
+     *
+     * @return list of accounts
+     */
+    public List<Account> getAccountList(long afterId, int limit) {
+        List<Account> portion = new ArrayList<>();
+        Account account;
+
+        for (long id : accounts.getIds(afterId, limit)) {
+            account = getAccount(id);
+
+            if (account.getId() != 0) {
+                portion.add(account);
+            }
+        }
+
+        return portion;
+    }
+
+    /**
+     * Adds a new account
+     *
+     * @param id account id. Id less than or equal to zero will be used. Id bigger than zero will not be used
+     *           and self-generated value will be assigned
+     * @param bankId id of bank
+     * @param balance account balance
+     * @param userId id of account owner
+     * @param date account creation date
+     *
+     * @return number of added accounts. Zero if account already exists or journal cannot be written
+     */
+    public int addAccount(long id, long bankId, double balance, long userId, Date date) {
+        Lock lock = structureLock.writeLock();
+        long accountId = id <= 0 ? id : accountSequence.incrementAndGet();
+        long sequence;
+
+        lock.lock();
+
+        try {
+            if (accounts.find(accountId) >= 0) {
+                return 0;
+            }
+
+            sequence = write(LedgerRecord.account(accountId, bankId, balance, userId,
+                    date.toLocalDate().toEpochDay()));
+        } catch (IOException e) {
+            logger.error("addAccount", e.getMessage(), "accountId", accountId);
+
+            return 0;
+        } finally {
+            lock.unlock();
+        }
+
+        return awaitDurable("addAccount", sequence) ? 1 : 0;
+    }
+
+    /**
+     * Updates account`s info
+     *
+     * @param updatedAccount account with new values
+     *
+     * @return number of updated accounts
+     */
+    public int updateAccount(Account updatedAccount) {
+        Lock lock = structureLock.readLock();
+        long sequence;
+
+        lock.lock();
+
+        try {
+            synchronized (getLock(updatedAccount.getId())) {
+                if (accounts.find(updatedAccount.getId()) < 0) {
+                    return 0;
+                }
+
+                sequence = write(LedgerRecord.account(updatedAccount.getId(), updatedAccount.getBankId(),
+                        updatedAccount.getBalance(), updatedAccount.getUserId(),
+                        updatedAccount.getCreationDate().toLocalDate().toEpochDay()));
+            }
+        } catch (IOException e) {
+            logger.error("updateAccount", e.getMessage(), "accountId", updatedAccount.getId());
+
+            return 0;
+        } finally {
+            lock.unlock();
+        }
+
+        return awaitDurable("updateAccount", sequence) ? 1 : 0;
+    }
+
+    /**
+     * Multiplies balances of accounts of selected banks
+     *
+     * @param bankFilter predicate which accepts ids of selected banks
+     * @param multiplier multiplier of balances
+     *
+     * @return number of updated accounts
+     */
+    public int multiplyBalances(LongPredicate bankFilter, double multiplier) {
+        Lock lock = structureLock.readLock();
+        int numberOfUpdatedAccounts = 0;
+        long sequence = 0;
+        Account account;
+
+        lock.lock();
+
+        try {
+            for (long id : accounts.getIds(Long.MIN_VALUE, Integer.MAX_VALUE)) {
+                synchronized (getLock(id)) {
+                    account = accounts.get(id);
+
+                    if (account.getId() != 0 && bankFilter.test(account.getBankId())) {
+                        sequence = write(LedgerRecord.account(id, account.getBankId(),
+                                account.getBalance() * multiplier, account.getUserId(),
+                                account.getCreationDate().toLocalDate().toEpochDay()));
+                        numberOfUpdatedAccounts++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error("multiplyBalances", e.getMessage(), "updatedAccounts", numberOfUpdatedAccounts);
+        } finally {
+            lock.unlock();
+        }
+
+        return awaitDurable("multiplyBalances", sequence) ? numberOfUpdatedAccounts : 0;
+    }
+
+    /**
+     * Deletes account
+     *
+     * @param id account id
+     *
+     * @return number of deleted accounts
+     */
+    public int deleteAccount(long id) {
+        Lock lock = structureLock.writeLock();
+        long sequence;
+
+        lock.lock();
+
+        try {
+            if (accounts.find(id) < 0) {
+                return 0;
+            }
+
+            sequence = write(LedgerRecord.deletion(id));
+        } catch (IOException e) {
+            logger.error("deleteAccount", e.getMessage(), "accountId", id);
+
+            return 0;
+        } finally {
+            lock.unlock();
+        }
+
+        return awaitDurable("deleteAccount", sequence) ? 1 : 0;
+    }
+
+    /**
+     * Moves money between accounts and creates transaction. Replenishment has no sender
+     * and withdrawal has no receiver
+     *
+     * @param senderId id of sender account. Zero in case of replenishment
+     * @param receiverId id of receiver account. Zero in case of withdrawal
+     * @param amount amount of money
+     *
+     * @return result of operation with created transaction
+     */
+    public PaymentResult pay(long senderId, long receiverId, double amount) {
+        Lock lock = structureLock.readLock();
+        int senderLock = getLockIndex(senderId == 0 ? receiverId : senderId);
+        int receiverLock = getLockIndex(receiverId == 0 ? senderId : receiverId);
+        PaymentStatus status;
+        PaymentResult result;
+        LedgerRecord record;
+        double senderBalance;
+        int senderSlot;
+        int receiverSlot;
+        long sequence;
+
+        lock.lock();
+
+        try {
+            synchronized (locks[Math.min(senderLock, receiverLock)]) {
+                synchronized (locks[Math.max(senderLock, receiverLock)]) {
+                    receiverSlot = receiverId == 0 ? -1 : accounts.find(receiverId);
+                    senderSlot = senderId == 0 ? -1 : accounts.find(senderId);
+                    status = check(senderId, senderSlot, receiverId, receiverSlot, amount);
+
+                    if (status != PaymentStatus.COMPLETED) {
+                        return PaymentResult.failed(status);
+                    }
+
+                    senderBalance = senderId == 0 ? 0 : accounts.getBalance(senderSlot) - amount;
+                    record = LedgerRecord.payment(transactionSequence.incrementAndGet(), senderId, receiverId, amount,
+                            senderBalance, receiverId == 0 ? 0 : amount + accounts.getBalance(receiverSlot),
+                            System.currentTimeMillis());
+                    sequence = write(record);
+                    result = new PaymentResult(PaymentStatus.COMPLETED, toTransaction(record),
+                            senderId == 0 ? 0 : accounts.getBankId(senderSlot),
+                            receiverId == 0 ? 0 : accounts.getBankId(receiverSlot));
+                }
+            }
+        } catch (IOException e) {
+            logger.error("pay", e.getMessage(), "senderId", senderId, "receiverId", receiverId);
+
+            return PaymentResult.failed(PaymentStatus.FAILED);
+        } finally {
+            lock.unlock();
+        }
+
+        return awaitDurable("pay", sequence) ? result : PaymentResult.failed(PaymentStatus.FAILED);
+    }
+
+    /**
+     * Adds transaction without changing balances
+     *
+     * @param id transaction id. Id less than zero will be used. Id bigger than zero will not be used
+     *           and self-generated value will be assigned
+     * @param amount transaction amount
+     * @param senderId id of transaction sender
+     * @param receiverId id of transaction receiver
+     *
+     * @return id of created transaction or zero if transaction cannot be written to journal
+     */
+    public long addTransaction(long id, double amount, long senderId, long receiverId) {
+        Lock lock = structureLock.readLock();
+        long transactionId = id < 0 ? id : transactionSequence.incrementAndGet();
+        long sequence;
+
+        lock.lock();
+
+        try {
+            sequence = write(LedgerRecord.transaction(transactionId, senderId, receiverId, amount,
+                    System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.error("addTransaction", e.getMessage(), "senderId", senderId, "receiverId", receiverId);
+
+            return 0;
+        } finally {
+            lock.unlock();
+        }
+
+        return awaitDurable("addTransaction", sequence) ? transactionId : 0;
+    }
+
+    /**
+     * Returns transaction which is not written to the database yet
+     *
+     * @param id transaction id
+     *
+     * @return transaction or null if transaction is already in the database or does not exist
+     */
+    public Transaction getPendingTransaction(long id) {
+        return pendingTransactions.get(id);
+    }
+
+    /**
+     * Waits until all operations completed before the call are written to the database
+     *
+     * @param timeout maximum waiting time
+     *
+     * @return true if operations were written
+     */
+    public boolean awaitReplication(Duration timeout) {
+        return replicator.awaitReplicated(journal.getLastSequence(), timeout);
+    }
+
+    /**
+     * Checks whether the ledger is stopped after journal failure
+     *
+     * @return true if writes are rejected until restart
+     */
+    public boolean isStopped() {
+        return failure != null;
+    }
+
+    /**
+     * Stops snapshots and replication, takes the last snapshot and flushes journal. Stopped ledger takes
+     * no snapshot, because its journal is not durable
+     */
+    @Override
+    public void close() {
+        snapshotter.interrupt();
+
+        try {
+            snapshotter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        replicator.awaitReplicated(journal.getDurableSequence(), Duration.ofSeconds(5));
+        replicator.close();
+
+        if (failure == null) {
+            takeSnapshot();
+        }
+
+        journal.close();
+    }
+
+    /**
+     * Checks whether money operation can be executed
+     *
+     * @param senderId id of sender account. Zero in case of replenishment
+     * @param senderSlot slot of sender account. Negative if sender does not exist
+     * @param receiverId id of receiver account. Zero in case of withdrawal
+     * @param receiverSlot slot of receiver account. Negative if receiver does not exist
+     * @param amount amount of money
+     *
+     * @return completed status if operation can be executed, or reason of failure
+     */
+    private PaymentStatus check(long senderId, int senderSlot, long receiverId, int receiverSlot, double amount) {
+        if (senderId == receiverId) {
+            return PaymentStatus.SAME_ACCOUNT;
+        }
+
+        if (receiverId != 0 && receiverSlot < 0) {
+            return senderId == 0 ? PaymentStatus.ACCOUNT_NOT_FOUND : PaymentStatus.RECEIVER_NOT_FOUND;
+        }
+
+        if (senderId != 0 && senderSlot < 0) {
+            return receiverId == 0 ? PaymentStatus.ACCOUNT_NOT_FOUND : PaymentStatus.SENDER_NOT_FOUND;
+        }
+
+        if (senderId != 0 && accounts.getBalance(senderSlot) < amount) {
+            return PaymentStatus.INSUFFICIENT_FUNDS;
+        }
+
+        return PaymentStatus.COMPLETED;
+    }
+
+    /**
+     * Appends record to journal and applies it to accounts. Accounts are not changed if record cannot be appended.
+     * Caller holds read or write lock of structure and locks of changed accounts
+     *
+     * @param record written record
+     *
+     * @return sequence of the record
+     *
+     * @throws IOException if record cannot be appended or the ledger is stopped
+     */
+    private long write(LedgerRecord record) throws IOException {
+        long sequence;
+
+        if (failure != null) {
+            throw new IOException("Ledger is stopped after journal failure: " + failure.getMessage());
+        }
+
+        sequence = journal.append(record);
+
+        accounts.apply(record);
+
+        if (record.hasTransaction()) {
+            pendingTransactions.put(record.id(), toTransaction(record));
+        }
+
+        return sequence;
+    }
+
+    /**
+     * Waits until journal record is flushed to disk. Interruption does not stop waiting, because the change
+     * is already visible and its result is known only after flush. Stops the ledger if record cannot be flushed.
+     * Caller holds no locks
+     *
+     * @param operation name of operation for error message
+     * @param sequence sequence of the record. Zero if nothing was written
+     *
+     * @return true if record is durable
+     */
+    private boolean awaitDurable(String operation, long sequence) {
+        boolean interrupted = false;
+
+        try {
+            while (true) {
+                try {
+                    journal.awaitDurable(sequence);
+
+                    return true;
+                } catch (InterruptedIOException e) {
+                    interrupted = Thread.interrupted();
+                }
+            }
+        } catch (IOException e) {
+            logger.error(operation, e.getMessage(), "sequence", sequence);
+            stop(e);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Stops the ledger after journal failure. Waits for operations which are changing accounts, then restores
+     * accounts and pending transactions from snapshot and records which were flushed before the failure
+     *
+     * @param cause journal failure
+     */
+    private void stop(IOException cause) {
+        Lock lock = structureLock.writeLock();
+        Set<Long> recoveredTransactions = new HashSet<>();
+        long durableSequence = journal.getDurableSequence();
+        LedgerJournal.Cursor cursor;
+        LedgerAccounts recovered;
+
+        lock.lock();
+
+        try {
+            if (failure != null) {
+                return;
+            }
+
+            failure = cause;
+            recovered = readSnapshot();
+            cursor = new LedgerJournal.Cursor(snapshotFile.getParent(), snapshotSequence + 1);
+
+            while (cursor.read(durableSequence, 1 << 16, (record, sequence) -> {
+                recovered.apply(record);
+
+                if (record.hasTransaction()) {
+                    recoveredTransactions.add(record.id());
+                }
+            }) > 0) {
+                // read until the last durable record
+            }
+
+            accounts = recovered;
+            pendingTransactions.keySet().retainAll(recoveredTransactions);
+            logger.error("stopLedger", cause.getMessage(), "durableSequence", durableSequence);
+        } catch (IOException e) {
+            logger.error("stopLedger", e.getMessage(), "durableSequence", durableSequence);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Takes snapshots until the thread is interrupted */
+    private void takeSnapshots() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(snapshotIntervalMillis);
+
+                if (failure == null && journal.getLastSequence() > snapshotSequence) {
+                    takeSnapshot();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes copy of accounts to snapshot file and deletes journal segments which are covered by snapshot
+     * and written to the database. Snapshot is written to temporary file and replaces the previous one
+     * only after it is flushed to disk
+     */
+    private void takeSnapshot() {
+        Lock lock = structureLock.writeLock();
+        Path temporaryFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        CheckedOutputStream checkedStream;
+        DataOutputStream output;
+        LedgerAccounts copy;
+        long sequence;
+
+        lock.lock();
+
+        try {
+            copy = accounts.copy(); // balances are changed only under read lock
+            sequence = journal.getLastSequence();
+        } finally {
+            lock.unlock();
+        }
+
+        try (FileOutputStream fileStream = new FileOutputStream(temporaryFile.toFile())) {
+            journal.awaitDurable(sequence); // snapshot must not contain operations lost by journal
+
+            checkedStream = new CheckedOutputStream(new BufferedOutputStream(fileStream), new CRC32());
+            output = new DataOutputStream(checkedStream);
+            output.writeInt(SNAPSHOT_VERSION);
+            output.writeLong(sequence);
+            output.writeLong(accountSequence.get());
+            output.writeLong(transactionSequence.get());
+            copy.write(output);
+            output.flush();
+            output.writeLong(checkedStream.getChecksum().getValue());
+            output.flush();
+            fileStream.getFD().sync();
+        } catch (IOException e) {
+            logger.error("takeSnapshot", e.getMessage(), "sequence", sequence);
+
+            return;
+        }
+
+        try {
+            Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            snapshotSequence = sequence;
+            journal.deleteSegmentsBefore(Math.min(sequence, replicator.getReplicatedSequence()));
+        } catch (IOException e) {
+            logger.error("takeSnapshot", e.getMessage(), "sequence", sequence);
+        }
+    }
+
+    /**
+     * Reads accounts and id generators from snapshot file
+     *
+     * @return accounts from snapshot
+     *
+     * @throws IOException if snapshot cannot be read or is corrupted
+     */
+    private LedgerAccounts readSnapshot() throws IOException {
+        CheckedInputStream checkedStream;
+        LedgerAccounts snapshot;
+        long checksum;
+
+        try (DataInputStream input = new DataInputStream(checkedStream = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshotFile)), new CRC32()))) {
+            if (input.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported ledger snapshot version");
+            }
+
+            snapshotSequence = input.readLong();
+            accountSequence.set(input.readLong());
+            transactionSequence.set(input.readLong());
+            snapshot = LedgerAccounts.read(input);
+            checksum = checkedStream.getChecksum().getValue();
+
+            if (input.readLong() != checksum) {
+                throw new IOException("Ledger snapshot is corrupted");
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Returns lock guarding account. Several accounts share the same lock
+     *
+     * @param id account id
+     *
+     * @return lock object
+     */
+    private Object getLock(long id) {
+        return locks[getLockIndex(id)];
+    }
+
+    /**
+     * Returns index of lock guarding account. Locks must be taken in order of their indexes to avoid deadlocks
+     *
+     * @param id account id
+     *
+     * @return index of lock
+     */
+    private int getLockIndex(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - LOCK_BITS)); // Fibonacci hashing
+    }
+
+    /**
+     * Creates transaction from journal record
+     *
+     * @param record record of money operation or added transaction
+     *
+     * @return new instance of Transaction class
+     */
+    private static Transaction toTransaction(LedgerRecord record) {
+        return new Transaction(record.id(), record.amount(),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(record.time()), ZoneId.systemDefault()),
+                record.first(), record.second());
+    }
+}
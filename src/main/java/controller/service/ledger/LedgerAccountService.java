@@ -0,0 +1,153 @@
+package controller.service.ledger;
+
+import controller.service.api.IAccountService;
+import controller.service.api.IBankService;
+import model.entity.Account;
+import utils.api.IYmlFileReader;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class for CRUD operations with accounts kept by the in-memory ledger. Changes are durable in the ledger journal
+ * when methods return and reach the database asynchronously
+ */
+public class LedgerAccountService implements IAccountService {
+
+    /** Ledger with accounts */
+    private final Ledger ledger;
+
+    /** Service with banks used for finding accounts by bank name */
+    private final IBankService bankService;
+
+    /** Interface for reading values from a YML file*/
+    private final IYmlFileReader fileReader;
+
+    /** Key with percent value in YML file*/
+    private final String percentKey = "percentagePerMonth";
+
+    /**
+     * A constructor with parameters
+     *
+     * @param ledger ledger with accounts
+     * @param bankService service with banks used for finding accounts by bank name
+     * @param ymlFileReader reader of percent value from YML file
+     */
+    public LedgerAccountService(Ledger ledger, IBankService bankService, IYmlFileReader ymlFileReader) {
+        this.ledger = ledger;
+        this.bankService = bankService;
+        this.fileReader = ymlFileReader;
+    }
+
+    /**
+     * Adds a new account
+     *
+     * @param id account id. Id less than or equal to zero will be used. Id bigger than zero will not be used
+     *           and self-generated value will be assigned
+     * @param bankId id of bank
+     * @param balance account balance
+     * @param userId id of account owner
+     * @param date account creation date
+     *
+     * @return number of added accounts
+     */
+    @Override
+    public int addAccount(long id, long bankId, double balance, long userId, Date date) {
+        return ledger.addAccount(id, bankId, balance, userId, date);
+    }
+
+    /**
+     * Reads account with specified id
+     *
+     * @param id account id
+     *
+     * @return instance of Account class with specified id or default values if account does not exist
+     */
+    @Override
+    public Account getAccount(long id) {
+        return ledger.getAccount(id);
+    }
+
+    /**
+     * Retrieves portion of accounts with id bigger than specified one ordered by id
+     *
+     * @param afterId id after which accounts are retrieved
+     * @param limit maximum number of retrieved accounts
+     *
+     * @return list of accounts
+     */
+    @Override
+    public List<Account> getAccountList(long afterId, int limit) {
+        return ledger.getAccountList(afterId, limit);
+    }
+
+    /**
+     * Updates account`s info
+     *
+     * @param updatedAccount account with new values
+     *
+     * @return number of updated accounts
+     */
+    @Override
+    public int updateAccount(Account updatedAccount) {
+        return ledger.updateAccount(updatedAccount);
+    }
+
+    /**
+     * Updates balance of all accounts of selected bank. Receives percent value from YML file
+     *
+     * @param bankName name of bank which accounts will be updated
+     *
+     * @return number of updated accounts
+     */
+    @Override
+    public int updateAllBankAccountsBalance(String bankName) {
+        double percent = 1.0 + Double.parseDouble(fileReader.getStringValueFromFile(percentKey)) / 100.0;
+        Map<Long, Boolean> selectedBanks = new HashMap<>();
+
+        return ledger.multiplyBalances(bankId -> selectedBanks.computeIfAbsent(bankId,
+                id -> bankName.equals(bankService.getBank(id).getName())), percent);
+    }
+
+    /**
+     * Deletes account
+     *
+     * @param id account id
+     *
+     * @return number of deleted accounts
+     */
+    @Override
+    public int deleteAccount(long id) {
+        return ledger.deleteAccount(id);
+    }
+
+    /**
+     * Checks every 30 seconds if now 2 in the morning on the last day of month.
+     * If yes, adds money to all Clever-Bank accounts. Added percentage is taken from YML file
+     */
+    @Override
+    public void run() {
+        LocalDate currentDate;
+        LocalTime currentTime;
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                currentDate = LocalDate.now();
+                currentTime = LocalTime.now();
+
+                if (currentDate.getDayOfMonth() == currentDate.lengthOfMonth()
+                        && currentTime.getHour() == 2 && currentTime.getMinute() == 0 && currentTime.getSecond() < 30) {
+                    updateAllBankAccountsBalance("Clever-Bank");
+                }
+
+                Thread.sleep(30000);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
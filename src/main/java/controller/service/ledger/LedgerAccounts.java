@@ -0,0 +1,344 @@
+package controller.service.ledger;
+
+import model.entity.Account;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * A class with accounts of the ledger stored in primitive arrays. Accounts are found by open addressing hash table
+ * without boxing, so a balance change touches only a few array elements. Not thread-safe: structural changes
+ * must be exclusive, while balances of different accounts may be changed concurrently
+ */
+class LedgerAccounts {
+
+    /** State of slot without account */
+    private static final byte FREE = 0;
+
+    /** State of slot with account */
+    private static final byte USED = 1;
+
+    /** State of slot with deleted account. Keeps probe sequences of other accounts */
+    private static final byte DELETED = 2;
+
+    /** Account ids in order of id. Used for reading accounts in portions */
+    private final NavigableSet<Long> order = new ConcurrentSkipListSet<>();
+
+    /** States of slots */
+    private byte[] states;
+
+    /** Account ids by slot */
+    private long[] ids;
+
+    /** Bank ids by slot */
+    private long[] bankIds;
+
+    /** Owner ids by slot */
+    private long[] userIds;
+
+    /** Creation dates as number of days since epoch by slot */
+    private long[] epochDays;
+
+    /** Balances by slot */
+    private double[] balances;
+
+    /** Number of slots which are not free */
+    private int occupied;
+
+    /**
+     * A constructor with parameter
+     *
+     * @param expectedAccounts expected number of accounts
+     */
+    LedgerAccounts(int expectedAccounts) {
+        allocate(Integer.highestOneBit(Math.max(16, expectedAccounts * 2 - 1)) << 1);
+    }
+
+    /**
+     * Finds slot of account
+     *
+     * @param id account id
+     *
+     * @return slot of account or -1 if account does not exist
+     */
+    int find(long id) {
+        int mask = ids.length - 1;
+        int slot = hash(id) & mask;
+
+        while (states[slot] != FREE) {
+            if (states[slot] == USED && ids[slot] == id) {
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Reads account with specified id
+     *
+     * @param id account id
+     *
+     * @return new instance of Account class or default values if account does not exist
+     */
+    Account get(long id) {
+        int slot = find(id);
+
+        if (slot < 0) {
+            return new Account();
+        }
+
+        return new Account(id, bankIds[slot], balances[slot], userIds[slot],
+                Date.valueOf(LocalDate.ofEpochDay(epochDays[slot])));
+    }
+
+    /**
+     * Returns balance of account
+     *
+     * @param slot slot of account
+     *
+     * @return account balance
+     */
+    double getBalance(int slot) {
+        return balances[slot];
+    }
+
+    /**
+     * Returns bank of account
+     *
+     * @param slot slot of account
+     *
+     * @return id of bank
+     */
+    long getBankId(int slot) {
+        return bankIds[slot];
+    }
+
+    /**
+     * Adds account or replaces values of existing account. Adding is a structural change
+     *
+     * @param id account id
+     * @param bankId id of bank
+     * @param balance account balance
+     * @param userId id of account owner
+     * @param epochDay creation date as number of days since epoch
+     */
+    void put(long id, long bankId, double balance, long userId, long epochDay) {
+        int slot = find(id);
+
+        if (slot < 0) {
+            if ((occupied + 1) * 2 > ids.length) {
+                rehash();
+            }
+
+            slot = hash(id) & (ids.length - 1);
+
+            while (states[slot] == USED) {
+                slot = (slot + 1) & (ids.length - 1);
+            }
+
+            occupied += states[slot] == FREE ? 1 : 0;
+            states[slot] = USED;
+            ids[slot] = id;
+            order.add(id);
+        }
+
+        bankIds[slot] = bankId;
+        balances[slot] = balance;
+        userIds[slot] = userId;
+        epochDays[slot] = epochDay;
+    }
+
+    /**
+     * Deletes account. Deletion is a structural change
+     *
+     * @param id account id
+     *
+     * @return true if account existed
+     */
+    boolean remove(long id) {
+        int slot = find(id);
+
+        if (slot < 0) {
+            return false;
+        }
+
+        states[slot] = DELETED;
+        order.remove(id);
+
+        return true;
+    }
+
+    /**
+     * Applies journal record to accounts
+     *
+     * @param record applied record
+     */
+    void apply(LedgerRecord record) {
+        int slot;
+
+        switch (record.type()) {
+            case LedgerRecord.ACCOUNT -> put(record.id(), record.first(), record.firstBalance(), record.second(),
+                    record.time());
+            case LedgerRecord.DELETION -> remove(record.id());
+            case LedgerRecord.PAYMENT -> {
+                if (record.first() != 0 && (slot = find(record.first())) >= 0) {
+                    balances[slot] = record.firstBalance();
+                }
+
+                if (record.second() != 0 && (slot = find(record.second())) >= 0) {
+                    balances[slot] = record.secondBalance();
+                }
+            }
+            default -> {
+                // transactions do not change accounts
+            }
+        }
+    }
+
+    /**
+     * Returns ids of accounts with id bigger than specified one in order of id
+     *
+     * @param afterId id after which accounts are returned
+     * @param limit maximum number of returned ids
+     *
+     * @return list of account ids
+     */
+    List<Long> getIds(long afterId, int limit) {
+        List<Long> portion = new ArrayList<>(Math.min(limit, 1024));
+
+        for (Long id : order.tailSet(afterId, false)) {
+            if (portion.size() == limit) {
+                break;
+            }
+
+            portion.add(id);
+        }
+
+        return portion;
+    }
+
+    /**
+     * Returns the biggest account id
+     *
+     * @return the biggest id or zero if there are no accounts
+     */
+    long getMaxId() {
+        return order.isEmpty() ? 0 : order.last();
+    }
+
+    /**
+     * Writes all accounts to snapshot stream
+     *
+     * @param output snapshot stream
+     *
+     * @throws IOException if accounts cannot be written
+     */
+    void write(DataOutputStream output) throws IOException {
+        output.writeInt(order.size());
+
+        for (int slot = 0; slot < ids.length; slot++) {
+            if (states[slot] == USED) {
+                output.writeLong(ids[slot]);
+                output.writeLong(bankIds[slot]);
+                output.writeDouble(balances[slot]);
+                output.writeLong(userIds[slot]);
+                output.writeLong(epochDays[slot]);
+            }
+        }
+    }
+
+    /**
+     * Reads accounts from snapshot stream
+     *
+     * @param input snapshot stream
+     *
+     * @return accounts from snapshot
+     *
+     * @throws IOException if accounts cannot be read
+     */
+    static LedgerAccounts read(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        LedgerAccounts accounts = new LedgerAccounts(count);
+
+        for (int i = 0; i < count; i++) {
+            accounts.put(input.readLong(), input.readLong(), input.readDouble(), input.readLong(), input.readLong());
+        }
+
+        return accounts;
+    }
+
+    /**
+     * Creates a copy of accounts
+     *
+     * @return independent copy
+     */
+    LedgerAccounts copy() {
+        LedgerAccounts copy = new LedgerAccounts(1);
+
+        copy.states = Arrays.copyOf(states, states.length);
+        copy.ids = Arrays.copyOf(ids, ids.length);
+        copy.bankIds = Arrays.copyOf(bankIds, bankIds.length);
+        copy.userIds = Arrays.copyOf(userIds, userIds.length);
+        copy.epochDays = Arrays.copyOf(epochDays, epochDays.length);
+        copy.balances = Arrays.copyOf(balances, balances.length);
+        copy.occupied = occupied;
+        copy.order.addAll(order);
+
+        return copy;
+    }
+
+    /** Rebuilds table without deleted slots, doubling its capacity if it is more than half full of accounts */
+    private void rehash() {
+        byte[] oldStates = states;
+        long[] oldIds = ids;
+        long[] oldBankIds = bankIds;
+        long[] oldUserIds = userIds;
+        long[] oldEpochDays = epochDays;
+        double[] oldBalances = balances;
+
+        allocate(order.size() * 4 > oldIds.length ? oldIds.length * 2 : oldIds.length); // ids stay in order
+
+        for (int slot = 0; slot < oldIds.length; slot++) {
+            if (oldStates[slot] == USED) {
+                put(oldIds[slot], oldBankIds[slot], oldBalances[slot], oldUserIds[slot], oldEpochDays[slot]);
+            }
+        }
+    }
+
+    /**
+     * Allocates empty arrays
+     *
+     * @param capacity number of slots. Must be a power of two
+     */
+    private void allocate(int capacity) {
+        states = new byte[capacity];
+        ids = new long[capacity];
+        bankIds = new long[capacity];
+        userIds = new long[capacity];
+        epochDays = new long[capacity];
+        balances = new double[capacity];
+        occupied = 0;
+    }
+
+    /**
+     * Calculates hash of account id
+     *
+     * @param id account id
+     *
+     * @return hash of id
+     */
+    private static int hash(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32); // Fibonacci hashing
+    }
+}
@@ -0,0 +1,511 @@
+package controller.service.ledger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of ledger records stored in memory-mapped segment files of fixed size.
+ * Every record gets the next sequence number and is protected by checksum, so torn record written during crash
+ * ends the journal on replay. Records are flushed to disk by one sync thread: callers waiting for durability
+ * of their records share one fsync, which also runs periodically when nobody waits
+ */
+public class LedgerJournal implements AutoCloseable {
+
+    /** Size of one record in bytes */
+    static final int RECORD_SIZE = 72;
+
+    /** Prefix of segment file names. Segment name contains sequence of its first record */
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    /** Suffix of segment file names */
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /** Directory with segment files */
+    private final Path directory;
+
+    /** Number of records in one segment */
+    private final int segmentRecords;
+
+    /** Maximum time between flushes of written records when nobody waits for them, in milliseconds */
+    private final long syncIntervalMillis;
+
+    /** Checksum calculator used by writers */
+    private final CRC32 checksum = new CRC32();
+
+    /** Lock for waiting for durability of records */
+    private final Object syncLock = new Object();
+
+    /** Thread which flushes records to disk */
+    private final Thread syncer;
+
+    /** Mapped segment where records are appended. Guarded by this journal */
+    private MappedByteBuffer segment;
+
+    /** Sequence of the last appended record. Guarded by this journal */
+    private long lastSequence;
+
+    /** Sequence of the last record flushed to disk */
+    private volatile long durableSequence;
+
+    /** Whether some caller waits for durability of its record. Guarded by sync lock */
+    private boolean syncRequested;
+
+    /** Error of the last flush. Null if records are flushed successfully */
+    private volatile IOException failure;
+
+    /**
+     * A constructor with parameters. Opens new segment after the last record of existing journal
+     * and starts sync thread
+     *
+     * @param directory directory with segment files
+     * @param lastSequence sequence of the last valid record in existing journal. Zero for empty journal
+     * @param segmentRecords number of records in one segment
+     * @param syncInterval maximum time between flushes of written records when nobody waits for them
+     *
+     * @throws IOException if segment cannot be created
+     */
+    public LedgerJournal(Path directory, long lastSequence, int segmentRecords, Duration syncInterval)
+            throws IOException {
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        this.syncIntervalMillis = Math.max(1, syncInterval.toMillis());
+        this.lastSequence = lastSequence;
+        this.durableSequence = lastSequence;
+
+        Files.createDirectories(directory);
+        segment = createSegment(lastSequence + 1);
+
+        syncer = new Thread(this::syncRecords, "ledger-journal-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    /**
+     * Appends record to the journal. Record is not durable until it is flushed
+     *
+     * @param record appended record
+     *
+     * @return sequence of the record
+     *
+     * @throws IOException if new segment cannot be created
+     */
+    public synchronized long append(LedgerRecord record) throws IOException {
+        int start;
+
+        if (segment.remaining() < RECORD_SIZE) {
+            segment.force();
+            segment = createSegment(lastSequence + 1);
+        }
+
+        start = segment.position();
+        segment.putInt(0)
+                .putInt(record.type())
+                .putLong(lastSequence + 1)
+                .putLong(record.id())
+                .putLong(record.first())
+                .putLong(record.second())
+                .putDouble(record.amount())
+                .putDouble(record.firstBalance())
+                .putDouble(record.secondBalance())
+                .putLong(record.time());
+
+        checksum.reset();
+        checksum.update(segment.slice(start + Integer.BYTES, RECORD_SIZE - Integer.BYTES));
+        segment.putInt(start, (int) checksum.getValue());
+
+        return ++lastSequence;
+    }
+
+    /**
+     * Waits until record is flushed to disk. Concurrent callers share one flush
+     *
+     * @param sequence sequence of the record
+     *
+     * @throws IOException if records cannot be flushed, journal is closed or thread is interrupted
+     */
+    public void awaitDurable(long sequence) throws IOException {
+        synchronized (syncLock) {
+            while (durableSequence < sequence) {
+                if (failure != null) {
+                    throw failure;
+                }
+
+                if (!syncer.isAlive()) {
+                    throw new IOException("Journal is closed");
+                }
+
+                if (!syncRequested) {
+                    syncRequested = true;
+                    syncLock.notifyAll(); // other waiters do not wake the sync thread again
+                }
+
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    throw new InterruptedIOException("Interrupted while waiting for journal flush");
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns sequence of the last appended record
+     *
+     * @return sequence of the last record
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns sequence of the last record flushed to disk
+     *
+     * @return sequence of the last durable record
+     */
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Deletes segments which contain only records with sequence less than or equal to specified one.
+     * Segment where records are appended is never deleted
+     *
+     * @param sequence sequence of the last record which is not needed anymore
+     *
+     * @throws IOException if segment cannot be deleted
+     */
+    public void deleteSegmentsBefore(long sequence) throws IOException {
+        List<Long> segments = listSegments(directory);
+
+        for (int i = 0; i < segments.size() - 1; i++) {
+            if (segments.get(i + 1) - 1 <= sequence) {
+                Files.deleteIfExists(getSegmentPath(directory, segments.get(i)));
+            }
+        }
+    }
+
+    /** Stops sync thread and flushes all appended records */
+    @Override
+    public void close() {
+        syncer.interrupt();
+
+        try {
+            syncer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            segment.force();
+            durableSequence = lastSequence;
+        }
+
+        synchronized (syncLock) {
+            syncLock.notifyAll();
+        }
+    }
+
+    /**
+     * Reads valid records of the journal in order of sequence. Reading stops at the end of the journal,
+     * at the first torn or corrupted record and at gap in sequences
+     *
+     * @param directory directory with segment files
+     * @param afterSequence sequence after which records are read
+     * @param consumer consumer of records and their sequences
+     *
+     * @return sequence of the last valid record, or specified sequence if there are no records after it
+     *
+     * @throws IOException if segment cannot be read
+     */
+    public static long replay(Path directory, long afterSequence, ObjLongConsumer<LedgerRecord> consumer)
+            throws IOException {
+        Cursor cursor = new Cursor(directory, afterSequence + 1);
+
+        while (cursor.read(Long.MAX_VALUE, 1 << 16, consumer) > 0) {
+            // read until the end of the journal
+        }
+
+        return cursor.getNextSequence() - 1;
+    }
+
+    /**
+     * Returns sorted sequences of first records of segments in directory
+     *
+     * @param directory directory with segment files
+     *
+     * @return list of first sequences
+     *
+     * @throws IOException if directory cannot be read
+     */
+    static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        String name;
+
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                name = file.getFileName().toString();
+
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())));
+                }
+            }
+        }
+
+        segments.sort(null);
+
+        return segments;
+    }
+
+    /**
+     * Returns path of segment file
+     *
+     * @param directory directory with segment files
+     * @param firstSequence sequence of the first record of segment
+     *
+     * @return path of segment file
+     */
+    private static Path getSegmentPath(Path directory, long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Creates empty segment file of fixed size and maps it to memory. Existing file with the same name
+     * is overwritten, because it can contain only records which were not replayed
+     *
+     * @param firstSequence sequence of the first record of segment
+     *
+     * @return mapped segment
+     *
+     * @throws IOException if file cannot be created
+     */
+    private MappedByteBuffer createSegment(long firstSequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(getSegmentPath(directory, firstSequence),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE);
+        }
+    }
+
+    /** Flushes appended records when somebody waits for them or sync interval passes */
+    private void syncRecords() {
+        MappedByteBuffer buffer;
+        long target;
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                synchronized (syncLock) {
+                    if (!syncRequested) {
+                        syncLock.wait(syncIntervalMillis);
+                    }
+
+                    syncRequested = false;
+                }
+
+                synchronized (this) {
+                    target = lastSequence;
+                    buffer = segment;
+                }
+
+                if (target > durableSequence) {
+                    buffer.force(); // previous segments were flushed when they were filled
+
+                    synchronized (syncLock) {
+                        durableSequence = target;
+                        syncLock.notifyAll();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (UncheckedIOException e) {
+            synchronized (syncLock) {
+                failure = e.getCause();
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    /** A class for sequential reading of journal records. Not thread-safe */
+    static class Cursor {
+
+        /** Directory with segment files */
+        private final Path directory;
+
+        /** Checksum calculator */
+        private final CRC32 checksum = new CRC32();
+
+        /** Mapped segment which is read. Null if segment must be found */
+        private ByteBuffer segment;
+
+        /** Sequence of the first record of read segment */
+        private long segmentSequence;
+
+        /** Sequence of the next record */
+        private long nextSequence;
+
+        /**
+         * A constructor with parameters
+         *
+         * @param directory directory with segment files
+         * @param nextSequence sequence of the first read record
+         */
+        Cursor(Path directory, long nextSequence) {
+            this.directory = directory;
+            this.nextSequence = nextSequence;
+        }
+
+        /**
+         * Reads valid records in order of sequence
+         *
+         * @param maxSequence sequence of the last record which may be read
+         * @param limit maximum number of read records
+         * @param consumer consumer of records and their sequences
+         *
+         * @return number of read records
+         *
+         * @throws IOException if segment cannot be read
+         */
+        int read(long maxSequence, int limit, ObjLongConsumer<LedgerRecord> consumer) throws IOException {
+            LedgerRecord record;
+            int count = 0;
+
+            while (count < limit && nextSequence <= maxSequence) {
+                if (segment == null || segment.remaining() < RECORD_SIZE) {
+                    segment = openSegment();
+
+                    if (segment == null || segment.remaining() < RECORD_SIZE) {
+                        break;
+                    }
+                }
+
+                record = readRecord();
+
+                if (record == null && (record = readNextSegment()) == null) {
+                    break;
+                }
+
+                consumer.accept(record, nextSequence++);
+                count++;
+            }
+
+            return count;
+        }
+
+        /**
+         * Returns sequence of the next record
+         *
+         * @return sequence of the next record
+         */
+        long getNextSequence() {
+            return nextSequence;
+        }
+
+        /**
+         * Reads the next record from the segment which starts with it. Used when read segment ends with torn record
+         * and journal was continued in new segment after recovery
+         *
+         * @return record or null if there is no valid record in such segment
+         *
+         * @throws IOException if segment cannot be read
+         */
+        private LedgerRecord readNextSegment() throws IOException {
+            ByteBuffer current = segment;
+            long currentSequence = segmentSequence;
+
+            segment = openSegment();
+
+            if (segment != null && segmentSequence == nextSequence && segmentSequence != currentSequence
+                    && segment.remaining() >= RECORD_SIZE) {
+                return readRecord();
+            }
+
+            segment = current;
+            segmentSequence = currentSequence;
+
+            return null;
+        }
+
+        /**
+         * Maps segment which contains the next record and positions it at the record
+         *
+         * @return mapped segment or null if there is no such segment
+         *
+         * @throws IOException if segment cannot be read
+         */
+        private ByteBuffer openSegment() throws IOException {
+            long firstSequence = -1;
+            long offset;
+
+            if (Files.exists(getSegmentPath(directory, nextSequence))) {
+                firstSequence = nextSequence; // the next segment starts after the end of the previous one
+            } else {
+                for (long sequence : listSegments(directory)) {
+                    if (sequence <= nextSequence) {
+                        firstSequence = sequence;
+                    }
+                }
+            }
+
+            if (firstSequence < 0) {
+                return null;
+            }
+
+            segmentSequence = firstSequence;
+
+            try (FileChannel channel = FileChannel.open(getSegmentPath(directory, firstSequence),
+                    StandardOpenOption.READ)) {
+                offset = (nextSequence - firstSequence) * RECORD_SIZE;
+
+                if (offset >= channel.size()) {
+                    return null;
+                }
+
+                return channel.map(FileChannel.MapMode.READ_ONLY, offset, channel.size() - offset);
+            }
+        }
+
+        /**
+         * Reads record at current position. Position is not changed if record is not valid
+         *
+         * @return record or null if record is empty, corrupted or has unexpected sequence
+         */
+        private LedgerRecord readRecord() {
+            int start = segment.position();
+            int storedChecksum = segment.getInt(start);
+            int type = segment.getInt(start + Integer.BYTES);
+
+            checksum.reset();
+            checksum.update(segment.slice(start + Integer.BYTES, RECORD_SIZE - Integer.BYTES));
+
+            if (type == 0 || storedChecksum != (int) checksum.getValue()
+                    || segment.getLong(start + 2 * Integer.BYTES) != nextSequence) {
+                return null;
+            }
+
+            segment.position(start + 2 * Integer.BYTES + Long.BYTES);
+
+            return new LedgerRecord(type, segment.getLong(), segment.getLong(), segment.getLong(),
+                    segment.getDouble(), segment.getDouble(), segment.getDouble(), segment.getLong());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package controller.service.ledger;
+
+import controller.service.api.IPaymentService;
+import model.dto.PaymentResult;
+
+/**
+ * A class for money operations of the in-memory ledger. Every operation changes balances and creates transaction
+ * atomically and is durable in the ledger journal when result is returned
+ */
+public class LedgerPaymentService implements IPaymentService {
+
+    /** Ledger with accounts */
+    private final Ledger ledger;
+
+    /**
+     * A constructor with parameter
+     *
+     * @param ledger ledger with accounts
+     */
+    public LedgerPaymentService(Ledger ledger) {
+        this.ledger = ledger;
+    }
+
+    /**
+     * Replenishes account and creates transaction record
+     *
+     * @param accountId id of replenished account
+     * @param amount replenishment amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult replenishAccount(long accountId, double amount) {
+        return ledger.pay(0, accountId, amount);
+    }
+
+    /**
+     * Withdraws money from account and creates transaction record
+     *
+     * @param accountId id of account for withdrawal
+     * @param amount withdrawal amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult withdrawAccount(long accountId, double amount) {
+        return ledger.pay(accountId, 0, amount);
+    }
+
+    /**
+     * Transfers money from one account to another and creates transaction record
+     *
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount transfer amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult transferToAnotherAccount(long senderId, long receiverId, double amount) {
+        return ledger.pay(senderId, receiverId, amount);
+    }
+}
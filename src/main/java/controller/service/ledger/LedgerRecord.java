@@ -0,0 +1,109 @@
+package controller.service.ledger;
+
+/**
+ * A record of the ledger journal. Every record describes result of one operation, so replaying records in order
+ * restores balances without repeating checks. Meaning of fields depends on type of the record:
+ * <ul>
+ *     <li>{@link #ACCOUNT} - account with id, bank id in first, user id in second, balance in first balance
+ *     and creation date as epoch day in time;</li>
+ *     <li>{@link #DELETION} - deleted account with id;</li>
+ *     <li>{@link #PAYMENT} - transaction with id, amount, time in epoch milliseconds, sender in first and
+ *     receiver in second. Balances contain new balances of sender and receiver. Zero sender or receiver
+ *     means replenishment or withdrawal;</li>
+ *     <li>{@link #TRANSACTION} - transaction record without balance changes.</li>
+ * </ul>
+ *
+ * @param type type of the record
+ * @param id id of account or transaction
+ * @param first first related id
+ * @param second second related id
+ * @param amount amount of transaction
+ * @param firstBalance balance of the first account after operation
+ * @param secondBalance balance of the second account after operation
+ * @param time time of operation
+ */
+record LedgerRecord(int type, long id, long first, long second, double amount, double firstBalance,
+                    double secondBalance, long time) {
+
+    /** Type of record with added or updated account */
+    static final int ACCOUNT = 1;
+
+    /** Type of record with deleted account */
+    static final int DELETION = 2;
+
+    /** Type of record with money operation */
+    static final int PAYMENT = 3;
+
+    /** Type of record with transaction added without balance changes */
+    static final int TRANSACTION = 4;
+
+    /**
+     * Creates record with added or updated account
+     *
+     * @param id account id
+     * @param bankId id of bank
+     * @param balance account balance
+     * @param userId id of account owner
+     * @param epochDay account creation date as number of days since epoch
+     *
+     * @return record of account
+     */
+    static LedgerRecord account(long id, long bankId, double balance, long userId, long epochDay) {
+        return new LedgerRecord(ACCOUNT, id, bankId, userId, 0, balance, 0, epochDay);
+    }
+
+    /**
+     * Creates record with deleted account
+     *
+     * @param id account id
+     *
+     * @return record of deletion
+     */
+    static LedgerRecord deletion(long id) {
+        return new LedgerRecord(DELETION, id, 0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Creates record with money operation
+     *
+     * @param transactionId id of created transaction
+     * @param senderId id of sender account. Zero in case of replenishment
+     * @param receiverId id of receiver account. Zero in case of withdrawal
+     * @param amount amount of transaction
+     * @param senderBalance balance of sender after operation
+     * @param receiverBalance balance of receiver after operation
+     * @param epochMilli time of transaction in milliseconds since epoch
+     *
+     * @return record of money operation
+     */
+    static LedgerRecord payment(long transactionId, long senderId, long receiverId, double amount,
+                                double senderBalance, double receiverBalance, long epochMilli) {
+        return new LedgerRecord(PAYMENT, transactionId, senderId, receiverId, amount, senderBalance, receiverBalance,
+                epochMilli);
+    }
+
+    /**
+     * Creates record with transaction added without balance changes
+     *
+     * @param transactionId id of created transaction
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount amount of transaction
+     * @param epochMilli time of transaction in milliseconds since epoch
+     *
+     * @return record of transaction
+     */
+    static LedgerRecord transaction(long transactionId, long senderId, long receiverId, double amount,
+                                    long epochMilli) {
+        return new LedgerRecord(TRANSACTION, transactionId, senderId, receiverId, amount, 0, 0, epochMilli);
+    }
+
+    /**
+     * Checks whether record creates transaction
+     *
+     * @return true for money operations and added transactions
+     */
+    boolean hasTransaction() {
+        return type == PAYMENT || type == TRANSACTION;
+    }
+}
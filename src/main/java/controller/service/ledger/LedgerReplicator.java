@@ -0,0 +1,420 @@
+package controller.service.ledger;
+
+import model.entity.Transaction;
+import utils.StructuredLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A class which copies durable journal records to the database, which stays the system of record.
+ * Records are written in batches in order of sequence and every statement is idempotent: accounts are upserted,
+ * balances are set to absolute values and transactions are inserted with their ids. Because of that, records
+ * after the last saved progress may be safely written again after crash or database error
+ */
+class LedgerReplicator implements AutoCloseable {
+
+    /** Logger for database errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** Database connection used only by the replicator */
+    private final Connection connection;
+
+    /** Directory with journal segments */
+    private final Path directory;
+
+    /** File with sequence of the last replicated record */
+    private final Path progressFile;
+
+    /** Transactions which are not in the database yet, by id */
+    private final Map<Long, Transaction> pendingTransactions;
+
+    /** Maximum number of records written in one database transaction */
+    private final int batchSize;
+
+    /** Time between checks for new records, in milliseconds */
+    private final long idleDelayMillis = 5;
+
+    /** Time before writing again after database error, in milliseconds */
+    private final long retryDelayMillis = 1000;
+
+    /** A query for adding or replacing account */
+    private final String upsertAccountStatement = "INSERT INTO clever_bank.account VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (id) DO UPDATE SET bank_id = EXCLUDED.bank_id, balance = EXCLUDED.balance, " +
+            "user_id = EXCLUDED.user_id, creation_date = EXCLUDED.creation_date, version = account.version + 1";
+
+    /** A query for deleting account */
+    private final String deleteAccountStatement = "DELETE FROM clever_bank.account WHERE id = ?";
+
+    /** A query for setting account balance */
+    private final String updateBalanceStatement = "UPDATE clever_bank.account SET balance = ?, " +
+            "version = version + 1 WHERE id = ?";
+
+    /** A query for inserting transaction with its id */
+    private final String insertTransactionStatement = "INSERT INTO clever_bank.transaction VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (id) DO NOTHING";
+
+    /** A query for moving account id sequence after ids assigned by the ledger */
+    private final String accountSequenceStatement = "SELECT setval(pg_get_serial_sequence('clever_bank.account', " +
+            "'id'), GREATEST(max(id), 1)) FROM clever_bank.account";
+
+    /** A query for moving transaction id sequence after ids assigned by the ledger */
+    private final String transactionSequenceStatement = "SELECT setval(pg_get_serial_sequence(" +
+            "'clever_bank.transaction', 'id'), GREATEST(max(id), 1)) FROM clever_bank.transaction";
+
+    /** A query for reading all accounts */
+    private final String readAccountsStatement = "SELECT * FROM clever_bank.account";
+
+    /** A query for reading the biggest transaction id */
+    private final String maxTransactionIdStatement = "SELECT max(id) FROM clever_bank.transaction";
+
+    /** Prepared account upsert */
+    private final PreparedStatement accountUpsert;
+
+    /** Prepared account deletion */
+    private final PreparedStatement accountDeletion;
+
+    /** Prepared balance update */
+    private final PreparedStatement balanceUpdate;
+
+    /** Prepared transaction insertion */
+    private final PreparedStatement transactionInsertion;
+
+    /** Sequence of the last record written to the database */
+    private volatile long replicatedSequence;
+
+    /** Thread which writes records. Null until replication is started */
+    private Thread replicator;
+
+    /**
+     * A constructor with parameters
+     *
+     * @param connection connection with database which is not used by other services
+     * @param directory directory with journal segments and progress file
+     * @param pendingTransactions transactions which are not in the database yet. Replicated transactions
+     *                            are removed from it
+     * @param batchSize maximum number of records written in one database transaction
+     *
+     * @throws SQLException if statements cannot be prepared
+     */
+    LedgerReplicator(Connection connection, Path directory, Map<Long, Transaction> pendingTransactions,
+                     int batchSize) throws SQLException {
+        this.connection = connection;
+        this.directory = directory;
+        this.progressFile = directory.resolve("replicated.seq");
+        this.pendingTransactions = pendingTransactions;
+        this.batchSize = batchSize;
+
+        connection.setAutoCommit(false);
+        accountUpsert = connection.prepareStatement(upsertAccountStatement);
+        accountDeletion = connection.prepareStatement(deleteAccountStatement);
+        balanceUpdate = connection.prepareStatement(updateBalanceStatement);
+        transactionInsertion = connection.prepareStatement(insertTransactionStatement);
+    }
+
+    /**
+     * Reads all accounts from the database
+     *
+     * @param accounts accounts of the ledger where read accounts are added
+     *
+     * @throws SQLException if accounts cannot be read
+     */
+    void loadAccounts(LedgerAccounts accounts) throws SQLException {
+        ResultSet resultSet;
+
+        try (Statement statement = connection.createStatement()) {
+            statement.setFetchSize(10000);
+            resultSet = statement.executeQuery(readAccountsStatement);
+
+            while (resultSet.next()) {
+                accounts.put(resultSet.getLong("id"), resultSet.getLong("bank_id"), resultSet.getDouble("balance"),
+                        resultSet.getLong("user_id"), resultSet.getDate("creation_date").toLocalDate().toEpochDay());
+            }
+        } finally {
+            connection.commit();
+        }
+    }
+
+    /**
+     * Reads the biggest transaction id from the database
+     *
+     * @return the biggest id or zero if there are no transactions
+     *
+     * @throws SQLException if id cannot be read
+     */
+    long readMaxTransactionId() throws SQLException {
+        ResultSet resultSet;
+        long id = 0;
+
+        try (Statement statement = connection.createStatement()) {
+            resultSet = statement.executeQuery(maxTransactionIdStatement);
+
+            while (resultSet.next()) {
+                id = resultSet.getLong(1);
+            }
+        } finally {
+            connection.commit();
+        }
+
+        return id;
+    }
+
+    /**
+     * Reads sequence of the last replicated record saved in progress file
+     *
+     * @return sequence of the last replicated record or zero if progress was not saved
+     *
+     * @throws IOException if file cannot be read
+     */
+    long readProgress() throws IOException {
+        return Files.exists(progressFile) ? Long.parseLong(Files.readString(progressFile).trim()) : 0;
+    }
+
+    /**
+     * Starts writing durable records after specified sequence
+     *
+     * @param journal journal of the ledger
+     * @param afterSequence sequence of the last record which is already in the database
+     */
+    void start(LedgerJournal journal, long afterSequence) {
+        replicatedSequence = afterSequence;
+        replicator = new Thread(() -> replicate(journal), "ledger-replicator");
+        replicator.setDaemon(true);
+        replicator.start();
+    }
+
+    /**
+     * Returns sequence of the last record written to the database
+     *
+     * @return sequence of the last replicated record
+     */
+    long getReplicatedSequence() {
+        return replicatedSequence;
+    }
+
+    /**
+     * Waits until record is written to the database
+     *
+     * @param sequence sequence of the record
+     * @param timeout maximum waiting time
+     *
+     * @return true if record was written
+     */
+    synchronized boolean awaitReplicated(long sequence, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long remaining;
+
+        try {
+            while (replicatedSequence < sequence && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return replicatedSequence >= sequence;
+    }
+
+    /** Stops writing records. Records which were not written are written after restart */
+    @Override
+    public void close() {
+        if (replicator == null) {
+            return;
+        }
+
+        replicator.interrupt();
+
+        try {
+            replicator.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes durable records to the database until the thread is interrupted
+     *
+     * @param journal journal of the ledger
+     */
+    private void replicate(LedgerJournal journal) {
+        LedgerJournal.Cursor cursor = new LedgerJournal.Cursor(directory, replicatedSequence + 1);
+        List<LedgerRecord> batch = new ArrayList<>(batchSize);
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.clear();
+                cursor.read(journal.getDurableSequence(), batchSize, (record, sequence) -> batch.add(record));
+
+                if (batch.isEmpty()) {
+                    Thread.sleep(idleDelayMillis);
+                    continue;
+                }
+
+                try {
+                    writeBatch(batch);
+                    saveProgress(cursor.getNextSequence() - 1);
+                } catch (SQLException e) {
+                    rollback();
+                    logger.sqlError("replicateLedger", e, "sequence", replicatedSequence + 1);
+                    cursor = new LedgerJournal.Cursor(directory, replicatedSequence + 1);
+                    Thread.sleep(retryDelayMillis);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("replicateLedger", e.getMessage(), "sequence", replicatedSequence + 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes records in one database transaction. Statements are executed in order of records
+     *
+     * @param batch written records
+     *
+     * @throws SQLException if records cannot be written
+     */
+    private void writeBatch(List<LedgerRecord> batch) throws SQLException {
+        boolean accountsAdded = false;
+        boolean transactionsAdded = false;
+        int previousType = 0;
+
+        for (LedgerRecord record : batch) {
+            if (record.type() != previousType) {
+                executeBatches(); // keeps order of records of different types
+                previousType = record.type();
+            }
+
+            switch (record.type()) {
+                case LedgerRecord.ACCOUNT -> {
+                    accountUpsert.setLong(1, record.id());
+                    accountUpsert.setLong(2, record.first());
+                    accountUpsert.setDouble(3, record.firstBalance());
+                    accountUpsert.setLong(4, record.second());
+                    accountUpsert.setDate(5, Date.valueOf(LocalDate.ofEpochDay(record.time())));
+                    accountUpsert.addBatch();
+                    accountsAdded = true;
+                }
+                case LedgerRecord.DELETION -> {
+                    accountDeletion.setLong(1, record.id());
+                    accountDeletion.addBatch();
+                }
+                case LedgerRecord.PAYMENT, LedgerRecord.TRANSACTION -> {
+                    if (record.type() == LedgerRecord.PAYMENT) {
+                        addBalanceUpdate(record.first(), record.firstBalance());
+                        addBalanceUpdate(record.second(), record.secondBalance());
+                    }
+
+                    transactionInsertion.setLong(1, record.id());
+                    transactionInsertion.setDouble(2, record.amount());
+                    transactionInsertion.setObject(3, LocalDateTime.ofInstant(Instant.ofEpochMilli(record.time()),
+                            ZoneId.systemDefault()));
+                    transactionInsertion.setLong(4, record.first());
+                    transactionInsertion.setLong(5, record.second());
+                    transactionInsertion.addBatch();
+                    transactionsAdded = true;
+                }
+                default -> {
+                    // unknown records are written by newer versions and ignored
+                }
+            }
+        }
+
+        executeBatches();
+
+        try (Statement statement = connection.createStatement()) {
+            if (accountsAdded) {
+                statement.execute(accountSequenceStatement);
+            }
+
+            if (transactionsAdded) {
+                statement.execute(transactionSequenceStatement);
+            }
+        }
+
+        connection.commit();
+
+        for (LedgerRecord record : batch) {
+            if (record.hasTransaction()) {
+                pendingTransactions.remove(record.id());
+            }
+        }
+    }
+
+    /**
+     * Adds balance update to batch
+     *
+     * @param accountId id of account. Zero if there is no account
+     * @param balance new balance
+     *
+     * @throws SQLException if parameters cannot be set
+     */
+    private void addBalanceUpdate(long accountId, double balance) throws SQLException {
+        if (accountId != 0) {
+            balanceUpdate.setDouble(1, balance);
+            balanceUpdate.setLong(2, accountId);
+            balanceUpdate.addBatch();
+        }
+    }
+
+    /**
+     * Executes batches of all statements
+     *
+     * @throws SQLException if batch cannot be executed
+     */
+    private void executeBatches() throws SQLException {
+        accountUpsert.executeBatch();
+        accountDeletion.executeBatch();
+        balanceUpdate.executeBatch();
+        transactionInsertion.executeBatch();
+    }
+
+    /**
+     * Saves sequence of the last replicated record and notifies waiting threads
+     *
+     * @param sequence sequence of the last replicated record
+     *
+     * @throws IOException if progress file cannot be written
+     */
+    private void saveProgress(long sequence) throws IOException {
+        Path temporaryFile = progressFile.resolveSibling(progressFile.getFileName() + ".tmp");
+
+        synchronized (this) {
+            replicatedSequence = sequence;
+            notifyAll();
+        }
+
+        Files.writeString(temporaryFile, Long.toString(sequence));
+        Files.move(temporaryFile, progressFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Rolls back current database transaction and clears batches */
+    private void rollback() {
+        try {
+            accountUpsert.clearBatch();
+            accountDeletion.clearBatch();
+            balanceUpdate.clearBatch();
+            transactionInsertion.clearBatch();
+            connection.rollback();
+        } catch (SQLException e) {
+            logger.sqlError("replicateLedger", e);
+        }
+    }
+}
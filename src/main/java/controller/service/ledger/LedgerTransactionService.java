@@ -0,0 +1,148 @@
+package controller.service.ledger;
+
+import controller.service.api.ITransactionService;
+import model.dto.StatementDto;
+import model.entity.Transaction;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A class for operations with transactions of the in-memory ledger. New transactions are written to the ledger
+ * journal, while statements and changes of existing transactions are made in the database after it received
+ * all transactions created before the call
+ */
+public class LedgerTransactionService implements ITransactionService {
+
+    /** Ledger which creates transactions */
+    private final Ledger ledger;
+
+    /** Service for operations with transactions in the database */
+    private final ITransactionService databaseService;
+
+    /** Maximum time of waiting for the database to receive created transactions */
+    private final Duration replicationTimeout;
+
+    /**
+     * A constructor with parameters
+     *
+     * @param ledger ledger which creates transactions
+     * @param databaseService service for operations with transactions in the database
+     * @param replicationTimeout maximum time of waiting for the database to receive created transactions.
+     *                           Statements are built from available data after timeout
+     */
+    public LedgerTransactionService(Ledger ledger, ITransactionService databaseService, Duration replicationTimeout) {
+        this.ledger = ledger;
+        this.databaseService = databaseService;
+        this.replicationTimeout = replicationTimeout;
+    }
+
+    /**
+     * Adds a new transaction. Time of transaction added automatically
+     *
+     * @param id transaction id. Id less than zero will be used. Id bigger than zero will not be used
+     *           and self-generated value will be assigned
+     * @param amount transaction amount
+     * @param senderId id of transaction sender. Zero in case of account replenishment
+     * @param receiverId id of transaction receiver. Zero in case of money withdrawal
+     *
+     * @return id of created transaction or zero in case of errors
+     */
+    @Override
+    public long addTransaction(long id, double amount, long senderId, long receiverId) {
+        return ledger.addTransaction(id, amount, senderId, receiverId);
+    }
+
+    /**
+     * Reads transaction with specified id from the ledger or, if it is already replicated, from the database
+     *
+     * @param id transaction id
+     *
+     * @return instance of Transaction class with specified id
+     */
+    @Override
+    public Transaction getTransaction(long id) {
+        Transaction transaction = ledger.getPendingTransaction(id);
+
+        return transaction != null ? transaction : databaseService.getTransaction(id);
+    }
+
+    /**
+     * Retrieves all transactions with specified account for transaction statement
+     *
+     * @param id account id
+     *
+     * @return list with all transactions with specified account
+     */
+    @Override
+    public List<StatementDto> getTransactionList(long id) {
+        ledger.awaitReplication(replicationTimeout);
+
+        return databaseService.getTransactionList(id);
+    }
+
+    /**
+     * Retrieves all transactions with specified account for transaction statement starting from specified date
+     *
+     * @param id account id
+     * @param intervalStart start of statement period
+     *
+     * @return list with all transactions with specified account during specified time period
+     */
+    @Override
+    public List<StatementDto> getTransactionListByTime(long id, LocalDateTime intervalStart) {
+        ledger.awaitReplication(replicationTimeout);
+
+        return databaseService.getTransactionListByTime(id, intervalStart);
+    }
+
+    /**
+     * Streams all transactions with specified account starting from specified date to the consumer
+     *
+     * @param id account id
+     * @param intervalStart start of statement period
+     * @param consumer receiver of transaction records
+     *
+     * @return number of streamed records, or -1 if records cannot be read
+     */
+    @Override
+    public int forEachTransactionByTime(long id, LocalDateTime intervalStart, Consumer<StatementDto> consumer) {
+        ledger.awaitReplication(replicationTimeout);
+
+        return databaseService.forEachTransactionByTime(id, intervalStart, consumer);
+    }
+
+    /**
+     * Updates transaction`s info in the database
+     *
+     * @param id transaction id
+     * @param amount transaction amount
+     * @param senderId id of transaction sender. Zero in case of account replenishment
+     * @param receiverId id of transaction receiver. Zero in case of money withdrawal
+     * @param time new time of transaction
+     *
+     * @return number of updated transactions
+     */
+    @Override
+    public int updateTransaction(long id, double amount, long senderId, long receiverId, LocalDateTime time) {
+        ledger.awaitReplication(replicationTimeout);
+
+        return databaseService.updateTransaction(id, amount, senderId, receiverId, time);
+    }
+
+    /**
+     * Deletes transaction from the database
+     *
+     * @param id transaction id
+     *
+     * @return number of deleted transactions
+     */
+    @Override
+    public int deleteTransaction(long id) {
+        ledger.awaitReplication(replicationTimeout);
+
+        return databaseService.deleteTransaction(id);
+    }
+}
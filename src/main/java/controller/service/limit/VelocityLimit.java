@@ -0,0 +1,15 @@
+package controller.service.limit;
+
+import java.time.Duration;
+
+/**
+ * Limit of number and amount of debits of one account during sliding time window. Window is divided
+ * into buckets, so debits leave the window one bucket at a time
+ *
+ * @param window duration of sliding window
+ * @param buckets number of buckets of the window
+ * @param maxCount maximum number of debits during the window, zero if number is not limited
+ * @param maxAmount maximum amount of debits during the window, zero if amount is not limited
+ */
+public record VelocityLimit(Duration window, int buckets, long maxCount, double maxAmount) {
+}
@@ -0,0 +1,96 @@
+package controller.service.limit;
+
+import controller.service.api.IPaymentService;
+import model.dto.PaymentResult;
+import model.dto.PaymentStatus;
+
+/**
+ * A class which checks velocity limits of debited account before withdrawals and transfers and executes them
+ * with another payment service. Debit which was not completed is removed from limits again.
+ * Replenishments are not limited
+ */
+public class VelocityLimitedPaymentService implements IPaymentService {
+
+    /** Service executing money operations */
+    private final IPaymentService paymentService;
+
+    /** Limiter of debits of accounts */
+    private final VelocityLimiter limiter;
+
+    /**
+     * A constructor with parameters
+     *
+     * @param paymentService service executing money operations
+     * @param limiter limiter of debits of accounts
+     */
+    public VelocityLimitedPaymentService(IPaymentService paymentService, VelocityLimiter limiter) {
+        this.paymentService = paymentService;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Replenishes account without checking limits
+     *
+     * @param accountId id of replenished account
+     * @param amount replenishment amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult replenishAccount(long accountId, double amount) {
+        return paymentService.replenishAccount(accountId, amount);
+    }
+
+    /**
+     * Withdraws money from account if withdrawal does not exceed velocity limits of account
+     *
+     * @param accountId id of account for withdrawal
+     * @param amount withdrawal amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult withdrawAccount(long accountId, double amount) {
+        long time = limiter.currentTimeMillis();
+        PaymentResult result;
+
+        if (!limiter.tryAcquire(accountId, amount, time)) {
+            return PaymentResult.failed(PaymentStatus.LIMIT_EXCEEDED);
+        }
+
+        result = paymentService.withdrawAccount(accountId, amount);
+
+        if (result.status() != PaymentStatus.COMPLETED) {
+            limiter.release(accountId, amount, time);
+        }
+
+        return result;
+    }
+
+    /**
+     * Transfers money from one account to another if transfer does not exceed velocity limits of sender
+     *
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount transfer amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult transferToAnotherAccount(long senderId, long receiverId, double amount) {
+        long time = limiter.currentTimeMillis();
+        PaymentResult result;
+
+        if (!limiter.tryAcquire(senderId, amount, time)) {
+            return PaymentResult.failed(PaymentStatus.LIMIT_EXCEEDED);
+        }
+
+        result = paymentService.transferToAnotherAccount(senderId, receiverId, amount);
+
+        if (result.status() != PaymentStatus.COMPLETED) {
+            limiter.release(senderId, amount, time);
+        }
+
+        return result;
+    }
+}
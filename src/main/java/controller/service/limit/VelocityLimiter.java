@@ -0,0 +1,391 @@
+package controller.service.limit;
+
+import utils.StructuredLogger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * A class which limits number and amount of debits of every account during sliding time windows without
+ * database queries and locks. Every account has ring of buckets for every limit. Bucket is one long word
+ * for number and one for amount in cents, each keeping number of its time period in upper bits, so stale
+ * bucket is reset by the same compare-and-set which adds new debit. Debit is added first and removed again
+ * if any limit is exceeded, so concurrent debits never pass limit together. Rings of accounts are kept in
+ * open-addressing table with fixed capacity. Ring of account without debits during the longest window
+ * is reused for another account, so memory is bounded. If table is full of active accounts,
+ * debits of new accounts are rejected until a ring becomes idle, so limits cannot be bypassed by filling the table
+ */
+public class VelocityLimiter {
+
+    /** Number of bits with time period of bucket */
+    private static final int EPOCH_BITS = 24;
+
+    /** Number of bits with value of bucket */
+    private static final int VALUE_BITS = Long.SIZE - EPOCH_BITS;
+
+    /** Mask of time period of bucket */
+    private static final long EPOCH_MASK = (1L << EPOCH_BITS) - 1;
+
+    /** Mask of value of bucket */
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+
+    /** Logger for errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** Limits checked for every debit */
+    private final List<VelocityLimit> limits;
+
+    /** Duration of bucket of every limit in milliseconds */
+    private final long[] bucketMillis;
+
+    /** Index of the first word of every limit in words of account */
+    private final int[] offsets;
+
+    /** Number of words of account */
+    private final int words;
+
+    /** Duration of the longest window in milliseconds. Account without debits during it is idle */
+    private final long idleMillis;
+
+    /** Rings of accounts. Slot is empty until account is added, slots are never emptied again */
+    private final AtomicReferenceArray<AccountWindows> table;
+
+    /** Supplier of current time in milliseconds */
+    private final LongSupplier clock;
+
+    /** A query for reading debits during the longest window */
+    private final String readDebitsStatement = "SELECT sender_id, amount, time FROM clever_bank.transaction " +
+            "WHERE sender_id <> 0 AND time > ?";
+
+    /**
+     * A constructor with parameters
+     *
+     * @param limits limits checked for every debit
+     * @param capacity maximum number of accounts. Rounded up to power of two
+     * @param clock supplier of current time in milliseconds
+     */
+    public VelocityLimiter(List<VelocityLimit> limits, int capacity, LongSupplier clock) {
+        long longestWindow = 0;
+        int offset = 0;
+
+        this.limits = List.copyOf(limits);
+        this.bucketMillis = new long[limits.size()];
+        this.offsets = new int[limits.size()];
+
+        for (int i = 0; i < limits.size(); i++) {
+            bucketMillis[i] = Math.max(limits.get(i).window().toMillis() / limits.get(i).buckets(), 1);
+            offsets[i] = offset;
+            offset += limits.get(i).buckets() * 2;
+            longestWindow = Math.max(longestWindow, bucketMillis[i] * limits.get(i).buckets());
+        }
+
+        this.words = offset;
+        this.idleMillis = longestWindow;
+        this.table = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1);
+        this.clock = clock;
+    }
+
+    /**
+     * Returns current time of limiter
+     *
+     * @return current time in milliseconds
+     */
+    public long currentTimeMillis() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Adds debit of account if it does not exceed any limit
+     *
+     * @param accountId id of debited account
+     * @param amount debit amount
+     * @param time time of debit in milliseconds
+     *
+     * @return true if debit was added, false if it exceeds limit or table is full of active accounts
+     */
+    public boolean tryAcquire(long accountId, double amount, long time) {
+        AccountWindows windows = getWindows(accountId, time);
+        long cents = Math.round(amount * 100);
+
+        if (windows == null) {
+            return false;
+        }
+
+        windows.lastDebit = time;
+        add(windows, time, 1, cents);
+
+        for (int i = 0; i < limits.size(); i++) {
+            if (exceeds(sum(windows, i, 0, time), limits.get(i).maxCount())
+                    || exceeds(sum(windows, i, 1, time), Math.round(limits.get(i).maxAmount() * 100))) {
+                add(windows, time, -1, -cents);
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes debit which was added but not executed
+     *
+     * @param accountId id of debited account
+     * @param amount debit amount
+     * @param time time of debit in milliseconds passed when debit was added
+     */
+    public void release(long accountId, double amount, long time) {
+        AccountWindows windows = findWindows(accountId);
+
+        if (windows != null) {
+            add(windows, time, -1, -Math.round(amount * 100));
+        }
+    }
+
+    /**
+     * Adds executed debit without checking limits
+     *
+     * @param accountId id of debited account
+     * @param amount debit amount
+     * @param time time of debit in milliseconds
+     */
+    public void record(long accountId, double amount, long time) {
+        AccountWindows windows = getWindows(accountId, time);
+
+        if (windows != null) {
+            windows.lastDebit = Math.max(windows.lastDebit, time);
+            add(windows, time, 1, Math.round(amount * 100));
+        }
+    }
+
+    /**
+     * Adds debits of the longest window from transaction table, so limits apply right after start.
+     * Prints message in case of errors
+     *
+     * @param connection connection with database
+     *
+     * @return number of added debits
+     */
+    public int warmUp(Connection connection) {
+        long now = clock.getAsLong();
+        ZoneId zone = ZoneId.systemDefault();
+        ResultSet resultSet;
+        int numberOfDebits = 0;
+
+        try (PreparedStatement statement = connection.prepareStatement(readDebitsStatement)) {
+            statement.setObject(1, LocalDateTime.now(zone).minus(Duration.ofMillis(idleMillis)));
+
+            synchronized (connection) {
+                resultSet = statement.executeQuery();
+
+                while (resultSet.next()) {
+                    record(resultSet.getLong("sender_id"), resultSet.getDouble("amount"), Math.min(now,
+                            resultSet.getObject("time", LocalDateTime.class).atZone(zone).toInstant().toEpochMilli()));
+                    numberOfDebits++;
+                }
+            }
+        } catch (SQLException e) {
+            logger.sqlError("warmUpVelocityLimits", e);
+        }
+
+        return numberOfDebits;
+    }
+
+    /**
+     * Checks whether value exceeds limit
+     *
+     * @param value checked value
+     * @param limit limit, zero if value is not limited
+     *
+     * @return true if value exceeds limit
+     */
+    private static boolean exceeds(long value, long limit) {
+        return limit > 0 && value > limit;
+    }
+
+    /**
+     * Adds number and amount of debits to current bucket of every limit
+     *
+     * @param windows rings of account
+     * @param time time of debit in milliseconds
+     * @param count added number of debits. Negative if debit is removed
+     * @param cents added amount in cents. Negative if debit is removed
+     */
+    private void add(AccountWindows windows, long time, long count, long cents) {
+        long epoch;
+        int index;
+
+        for (int i = 0; i < limits.size(); i++) {
+            epoch = time / bucketMillis[i];
+            index = offsets[i] + (int) (epoch % limits.get(i).buckets()) * 2;
+            addToBucket(windows.words, index, epoch, count);
+            addToBucket(windows.words, index + 1, epoch, cents);
+        }
+    }
+
+    /**
+     * Adds value to bucket. Bucket of older time period is reset first. Bucket of newer time period
+     * is not changed, because debit already left the window
+     *
+     * @param words words of account
+     * @param index index of bucket word
+     * @param epoch time period of debit
+     * @param delta added value
+     */
+    private static void addToBucket(AtomicLongArray words, int index, long epoch, long delta) {
+        long word;
+        long age;
+        long value;
+
+        do {
+            word = words.get(index);
+            age = (epoch - (word >>> VALUE_BITS)) & EPOCH_MASK;
+
+            if (age == 0) {
+                value = (word & VALUE_MASK) + delta;
+            } else if (age < 1L << (EPOCH_BITS - 1)) {
+                value = delta;
+            } else {
+                return;
+            }
+        } while (!words.compareAndSet(index, word, (epoch & EPOCH_MASK) << VALUE_BITS
+                | Math.max(Math.min(value, VALUE_MASK), 0)));
+    }
+
+    /**
+     * Sums values of buckets of limit which are inside its window
+     *
+     * @param windows rings of account
+     * @param limit number of limit
+     * @param field zero for number of debits, one for amount
+     * @param time current time in milliseconds
+     *
+     * @return sum of values during the window
+     */
+    private long sum(AccountWindows windows, int limit, int field, long time) {
+        long epoch = time / bucketMillis[limit];
+        int buckets = limits.get(limit).buckets();
+        long sum = 0;
+        long word;
+
+        for (int i = 0; i < buckets; i++) {
+            word = windows.words.get(offsets[limit] + i * 2 + field);
+
+            if (((epoch - (word >>> VALUE_BITS)) & EPOCH_MASK) < buckets) {
+                sum += word & VALUE_MASK;
+            }
+        }
+
+        return sum;
+    }
+
+    /**
+     * Finds rings of account
+     *
+     * @param accountId id of account
+     *
+     * @return rings of account or null if account has no debits
+     */
+    private AccountWindows findWindows(long accountId) {
+        int mask = table.length() - 1;
+        int start = hash(accountId) & mask;
+        AccountWindows windows;
+
+        for (int i = 0; i <= mask; i++) {
+            windows = table.get((start + i) & mask);
+
+            if (windows == null || windows.accountId == accountId) {
+                return windows;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds rings of account or adds them to empty slot or to slot of idle account
+     *
+     * @param accountId id of account
+     * @param time current time in milliseconds
+     *
+     * @return rings of account or null if table is full of active accounts
+     */
+    private AccountWindows getWindows(long accountId, long time) {
+        AccountWindows windows = findWindows(accountId);
+        AccountWindows current;
+        int mask = table.length() - 1;
+        int start = hash(accountId) & mask;
+        int slot;
+
+        if (windows != null) {
+            return windows;
+        }
+
+        windows = new AccountWindows(accountId, words, time);
+
+        for (int i = 0; i <= mask; i++) {
+            slot = (start + i) & mask;
+            current = table.get(slot);
+
+            if ((current == null || time - current.lastDebit > idleMillis)
+                    && table.compareAndSet(slot, current, windows)) {
+                return windows;
+            }
+
+            current = table.get(slot);
+
+            if (current != null && current.accountId == accountId) {
+                return current;
+            }
+        }
+
+        logger.warn("velocityLimit", "Table of velocity limits is full", "accountId", accountId);
+
+        return null;
+    }
+
+    /**
+     * Spreads bits of account id
+     *
+     * @param accountId id of account
+     *
+     * @return hash of id
+     */
+    private static int hash(long accountId) {
+        return (int) ((accountId * 0x9E3779B97F4A7C15L) >>> 32); // Fibonacci hashing
+    }
+
+    /** Rings of buckets of one account */
+    private static class AccountWindows {
+
+        /** Id of account */
+        private final long accountId;
+
+        /** Buckets of all limits. Every bucket is word with number of debits followed by word with amount */
+        private final AtomicLongArray words;
+
+        /** Time of the last debit in milliseconds */
+        private volatile long lastDebit;
+
+        /**
+         * Constructor with parameters
+         *
+         * @param accountId id of account
+         * @param words number of words of all buckets
+         * @param created time of creation in milliseconds. Account is not idle until its longest window passes
+         */
+        private AccountWindows(long accountId, int words, long created) {
+            this.accountId = accountId;
+            this.words = new AtomicLongArray(words);
+            this.lastDebit = created;
+        }
+    }
+}
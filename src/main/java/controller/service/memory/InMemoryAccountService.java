@@ -0,0 +1,253 @@
+package controller.service.memory;
+
+import controller.service.api.IAccountService;
+import model.entity.Account;
+import utils.api.IYmlFileReader;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A class for CRUD operations with accounts stored in memory. Used for testing and benchmarking without database.
+ * Every account is guarded by one of striped locks, so account is never read in the middle of a transfer
+ */
+public class InMemoryAccountService implements IAccountService {
+
+    /** Number of bits in index of striped lock */
+    private static final int LOCK_BITS = 6;
+
+    /** Number of striped locks */
+    private static final int LOCKS = 1 << LOCK_BITS;
+
+    /** Accounts by id */
+    private final ConcurrentNavigableMap<Long, Account> accounts = new ConcurrentSkipListMap<>();
+
+    /** Striped locks guarding accounts */
+    private final Object[] locks = new Object[LOCKS];
+
+    /** Generator of account ids. Imitates database sequence */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /** Service with banks used for finding accounts by bank name */
+    private final InMemoryBankService bankService;
+
+    /** Interface for reading values from a YML file*/
+    private final IYmlFileReader fileReader;
+
+    /** Key with percent value in YML file*/
+    private final String percentKey = "percentagePerMonth";
+
+    /**
+     * A constructor with parameters
+     *
+     * @param bankService service with banks used for finding accounts by bank name
+     * @param ymlFileReader reader of percent value from YML file
+     */
+    public InMemoryAccountService(InMemoryBankService bankService, IYmlFileReader ymlFileReader) {
+        this.bankService = bankService;
+        this.fileReader = ymlFileReader;
+
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Adds a new account
+     *
+     * @param id account id. Id less than or equal to zero will be used. Id bigger than zero will not be used
+     *           and self-generated value will be assigned
+     * @param bankId id of bank
+     * @param balance account balance
+     * @param userId id of account owner
+     * @param date account creation date
+     *
+     * @return number of added accounts. Zero if account with the same id already exists
+     */
+    @Override
+    public int addAccount(long id, long bankId, double balance, long userId, Date date) {
+        long accountId = id <= 0 ? id : sequence.incrementAndGet();
+
+        return accounts.putIfAbsent(accountId, new Account(accountId, bankId, balance, userId, date)) == null ? 1 : 0;
+    }
+
+    /**
+     * Reads account with specified id
+     *
+     * @param id account id
+     *
+     * @return copy of account with specified id or default values if account does not exist
+     */
+    @Override
+    public Account getAccount(long id) {
+        Account account;
+
+        synchronized (getLock(id)) {
+            account = accounts.get(id);
+
+            return account == null ? new Account() : copy(account);
+        }
+    }
+
+    /**
+     * Retrieves portion of accounts with id bigger than specified one ordered by id
+     *
+     * @param afterId id after which accounts are retrieved
+     * @param limit maximum number of retrieved accounts
+     *
+     * @return list with copies of accounts
+     */
+    @Override
+    public List<Account> getAccountList(long afterId, int limit) {
+        List<Account> portion = new ArrayList<>(Math.min(limit, 1024));
+
+        for (Long id : accounts.tailMap(afterId, false).keySet()) {
+            if (portion.size() == limit) {
+                break;
+            }
+
+            Account account = getAccount(id);
+
+            if (account.getId() != 0) {
+                portion.add(account);
+            }
+        }
+
+        return portion;
+    }
+
+    /**
+     * Updates account`s info if account version did not change since it was read.
+     * Version of updated object is incremented after successful update
+     *
+     * @param updatedAccount account with new values and version which was read
+     *
+     * @return number of updated accounts. Zero if account does not exist or was changed concurrently
+     */
+    @Override
+    public int updateAccount(Account updatedAccount) {
+        Account account;
+
+        synchronized (getLock(updatedAccount.getId())) {
+            account = accounts.get(updatedAccount.getId());
+
+            if (account == null || account.getVersion() != updatedAccount.getVersion()) {
+                return 0;
+            }
+
+            updatedAccount.setVersion(updatedAccount.getVersion() + 1);
+            accounts.put(updatedAccount.getId(), copy(updatedAccount));
+
+            return 1;
+        }
+    }
+
+    /**
+     * Updates balance of all accounts of selected bank. Receives percent value from YML file
+     *
+     * @param bankName name of bank which accounts will be updated
+     *
+     * @return number of updated accounts
+     */
+    @Override
+    public int updateAllBankAccountsBalance(String bankName) {
+        double percent = 1.0 + Double.parseDouble(fileReader.getStringValueFromFile(percentKey)) / 100.0;
+        int numberOfUpdatedAccounts = 0;
+
+        for (Account account : accounts.values()) {
+            if (bankService.hasName(account.getBankId(), bankName)) {
+                synchronized (getLock(account.getId())) {
+                    account = accounts.get(account.getId());
+
+                    if (account != null) {
+                        account.setBalance(account.getBalance() * percent);
+                        account.setVersion(account.getVersion() + 1);
+                        numberOfUpdatedAccounts++;
+                    }
+                }
+            }
+        }
+
+        return numberOfUpdatedAccounts;
+    }
+
+    /**
+     * Deletes account
+     *
+     * @param id account id
+     *
+     * @return number of deleted accounts
+     */
+    @Override
+    public int deleteAccount(long id) {
+        synchronized (getLock(id)) {
+            return accounts.remove(id) == null ? 0 : 1;
+        }
+    }
+
+    /**
+     * Checks every 30 seconds if now 2 in the morning on the last day of month.
+     * If yes, adds money to all Clever-Bank accounts. Added percentage is taken from YML file
+     */
+    @Override
+    public void run() {
+        LocalDate currentDate;
+        LocalTime currentTime;
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                currentDate = LocalDate.now();
+                currentTime = LocalTime.now();
+
+                if (currentDate.getDayOfMonth() == currentDate.lengthOfMonth()
+                        && currentTime.getHour() == 2 && currentTime.getMinute() == 0 && currentTime.getSecond() < 30) {
+                    updateAllBankAccountsBalance("Clever-Bank");
+                }
+
+                Thread.sleep(30000);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns lock guarding account. Several accounts share the same lock
+     *
+     * @param id account id
+     *
+     * @return lock object
+     */
+    Object getLock(long id) {
+        return locks[getLockIndex(id)];
+    }
+
+    /**
+     * Returns index of lock guarding account. Locks must be taken in order of their indexes to avoid deadlocks
+     *
+     * @param id account id
+     *
+     * @return index of lock
+     */
+    int getLockIndex(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - LOCK_BITS)); // Fibonacci hashing
+    }
+
+    /**
+     * Copies account, so stored account cannot be changed by caller
+     *
+     * @param account copied account
+     *
+     * @return new instance of Account class with the same values
+     */
+    private Account copy(Account account) {
+        return new Account(account.getId(), account.getBankId(), account.getBalance(), account.getUserId(),
+                account.getCreationDate(), account.getVersion());
+    }
+}
@@ -0,0 +1,87 @@
+package controller.service.memory;
+
+import controller.service.api.IBankService;
+import model.entity.Bank;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A class for CRUD operations with banks stored in memory. Used for testing and benchmarking without database */
+public class InMemoryBankService implements IBankService {
+
+    /** Banks by id */
+    private final Map<Long, Bank> banks = new ConcurrentHashMap<>();
+
+    /** Generator of bank ids. Imitates database sequence */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Adds a new bank
+     *
+     * @param id bank id. Id less than or equal to zero will be used. Id bigger than zero will not be used
+     *           and self-generated value will be assigned
+     * @param name name of bank. Cannot be null
+     *
+     * @return number of added banks. Zero if bank with the same id already exists
+     */
+    @Override
+    public int addBank(long id, String name) {
+        long bankId = id <= 0 ? id : sequence.incrementAndGet();
+
+        return banks.putIfAbsent(bankId, new Bank(bankId, name)) == null ? 1 : 0;
+    }
+
+    /**
+     * Reads bank with specified id
+     *
+     * @param id bank id
+     *
+     * @return copy of bank with specified id or default values if bank does not exist
+     */
+    @Override
+    public Bank getBank(long id) {
+        Bank bank = banks.get(id);
+
+        return bank == null ? new Bank() : new Bank(bank.getId(), bank.getName());
+    }
+
+    /**
+     * Updates bank`s name
+     *
+     * @param id bank id
+     * @param name name of bank. Cannot be null
+     *
+     * @return number of updated banks
+     */
+    @Override
+    public int updateBank(long id, String name) {
+        return banks.computeIfPresent(id, (key, bank) -> new Bank(id, name)) == null ? 0 : 1;
+    }
+
+    /**
+     * Deletes bank
+     *
+     * @param id bank id
+     *
+     * @return number of deleted banks
+     */
+    @Override
+    public int deleteBank(long id) {
+        return banks.remove(id) == null ? 0 : 1;
+    }
+
+    /**
+     * Checks whether bank with specified id has specified name
+     *
+     * @param id bank id
+     * @param name name of bank
+     *
+     * @return true if bank exists and has specified name
+     */
+    boolean hasName(long id, String name) {
+        Bank bank = banks.get(id);
+
+        return bank != null && bank.getName().equals(name);
+    }
+}
@@ -0,0 +1,164 @@
+package controller.service.memory;
+
+import controller.service.api.IPaymentService;
+import controller.service.api.ITransactionService;
+import model.dto.PaymentResult;
+import model.dto.PaymentStatus;
+import model.entity.Account;
+
+/**
+ * A class for money operations with accounts stored in memory. Every operation holds locks of changed accounts
+ * from reading balance to creating transaction record, so operations are atomic and isolated
+ */
+public class InMemoryPaymentService implements IPaymentService {
+
+    /** Service with accounts stored in memory */
+    private final InMemoryAccountService accountService;
+
+    /** Instance of ITransactionService interface for operations with transactions */
+    private final ITransactionService transactionService;
+
+    /**
+     * A constructor with parameters
+     *
+     * @param accountService service with accounts stored in memory
+     * @param transactionService service for operations with transactions
+     */
+    public InMemoryPaymentService(InMemoryAccountService accountService, ITransactionService transactionService) {
+        this.accountService = accountService;
+        this.transactionService = transactionService;
+    }
+
+    /**
+     * Replenishes account and creates transaction record
+     *
+     * @param accountId id of replenished account
+     * @param amount replenishment amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult replenishAccount(long accountId, double amount) {
+        synchronized (accountService.getLock(accountId)) {
+            return changeBalance(accountId, amount, 0, accountId);
+        }
+    }
+
+    /**
+     * Withdraws money from account and creates transaction record
+     *
+     * @param accountId id of account for withdrawal
+     * @param amount withdrawal amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult withdrawAccount(long accountId, double amount) {
+        synchronized (accountService.getLock(accountId)) {
+            return changeBalance(accountId, -amount, accountId, 0);
+        }
+    }
+
+    /**
+     * Transfers money from one account to another and creates transaction record. Locks of both accounts
+     * are taken in order of lock indexes, so concurrent transfers in opposite directions cannot deadlock
+     *
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount transfer amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult transferToAnotherAccount(long senderId, long receiverId, double amount) {
+        boolean senderFirst = accountService.getLockIndex(senderId) <= accountService.getLockIndex(receiverId);
+        Object firstLock = accountService.getLock(senderFirst ? senderId : receiverId);
+        Object secondLock = accountService.getLock(senderFirst ? receiverId : senderId);
+
+        if (senderId == receiverId) {
+            return PaymentResult.failed(PaymentStatus.SAME_ACCOUNT);
+        }
+
+        synchronized (firstLock) {
+            synchronized (secondLock) {
+                return transfer(senderId, receiverId, amount);
+            }
+        }
+    }
+
+    /**
+     * Changes balance of account and creates transaction record. Locks of account must be held by caller
+     *
+     * @param accountId id of changed account
+     * @param difference amount added to balance. Negative for withdrawal
+     * @param senderId id of transaction sender
+     * @param receiverId id of transaction receiver
+     *
+     * @return result of operation with created transaction
+     */
+    private PaymentResult changeBalance(long accountId, double difference, long senderId, long receiverId) {
+        Account account = accountService.getAccount(accountId);
+        long transactionId;
+
+        if (account.getId() == 0) {
+            return PaymentResult.failed(PaymentStatus.ACCOUNT_NOT_FOUND);
+        }
+
+        if (account.getBalance() + difference < 0) {
+            return PaymentResult.failed(PaymentStatus.INSUFFICIENT_FUNDS);
+        }
+
+        transactionId = transactionService.addTransaction(1, Math.abs(difference), senderId, receiverId);
+
+        if (transactionId == 0) {
+            return PaymentResult.failed(PaymentStatus.TRANSACTION_FAILED);
+        }
+
+        account.setBalance(account.getBalance() + difference);
+        accountService.updateAccount(account);
+
+        return new PaymentResult(PaymentStatus.COMPLETED, transactionService.getTransaction(transactionId),
+                senderId == 0 ? 0 : account.getBankId(), receiverId == 0 ? 0 : account.getBankId());
+    }
+
+    /**
+     * Transfers money between accounts. Locks of both accounts must be held by caller
+     *
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount transfer amount
+     *
+     * @return result of operation with created transaction
+     */
+    private PaymentResult transfer(long senderId, long receiverId, double amount) {
+        Account receiver = accountService.getAccount(receiverId);
+        Account sender = accountService.getAccount(senderId);
+        long transactionId;
+
+        if (receiver.getId() == 0) {
+            return PaymentResult.failed(PaymentStatus.RECEIVER_NOT_FOUND);
+        }
+
+        if (sender.getId() == 0) {
+            return PaymentResult.failed(PaymentStatus.SENDER_NOT_FOUND);
+        }
+
+        if (sender.getBalance() < amount) {
+            return PaymentResult.failed(PaymentStatus.INSUFFICIENT_FUNDS);
+        }
+
+        transactionId = transactionService.addTransaction(1, amount, senderId, receiverId);
+
+        if (transactionId == 0) {
+            return PaymentResult.failed(PaymentStatus.TRANSACTION_FAILED);
+        }
+
+        sender.setBalance(sender.getBalance() - amount);
+        accountService.updateAccount(sender);
+        receiver.setBalance(receiver.getBalance() + amount);
+        accountService.updateAccount(receiver);
+
+        return new PaymentResult(PaymentStatus.COMPLETED, transactionService.getTransaction(transactionId),
+                sender.getBankId(), receiver.getBankId());
+    }
+}
@@ -0,0 +1,180 @@
+package controller.service.memory;
+
+import controller.service.api.ITransactionService;
+import model.dto.StatementDto;
+import model.entity.Transaction;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A class for CRUD operations with transactions stored in memory. Used for testing and benchmarking without database.
+ * Statements are built the same way as database statements: sender and receiver are looked up in users
+ * and records are returned in order of transaction id
+ */
+public class InMemoryTransactionService implements ITransactionService {
+
+    /** Transactions by id */
+    private final ConcurrentNavigableMap<Long, Transaction> transactions = new ConcurrentSkipListMap<>();
+
+    /** Generator of transaction ids. Imitates database sequence */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /** Service with users which names are shown in statements */
+    private final InMemoryUserService userService;
+
+    /**
+     * A constructor with parameter
+     *
+     * @param userService service with users which names are shown in statements
+     */
+    public InMemoryTransactionService(InMemoryUserService userService) {
+        this.userService = userService;
+    }
+
+    /**
+     * Adds a new transaction. Time of transaction added automatically
+     *
+     * @param id transaction id. Id less than zero will be used. Id bigger than zero will not be used
+     *           and self-generated value will be assigned
+     * @param amount transaction amount
+     * @param senderId id of transaction sender. Zero in case of account replenishment
+     * @param receiverId id of transaction receiver. Zero in case of money withdrawal
+     *
+     * @return id of created transaction or zero if transaction with the same id already exists
+     */
+    @Override
+    public long addTransaction(long id, double amount, long senderId, long receiverId) {
+        long transactionId = id < 0 ? id : sequence.incrementAndGet();
+        Transaction transaction = new Transaction(transactionId, amount, LocalDateTime.now(), senderId, receiverId);
+
+        return transactions.putIfAbsent(transactionId, transaction) == null ? transactionId : 0;
+    }
+
+    /**
+     * Reads transaction with specified id
+     *
+     * @param id transaction id
+     *
+     * @return copy of transaction with specified id or default values if transaction does not exist
+     */
+    @Override
+    public Transaction getTransaction(long id) {
+        Transaction transaction = transactions.get(id);
+
+        return transaction == null ? new Transaction() : copy(transaction);
+    }
+
+    /**
+     * Retrieves all transactions with specified account for transaction statement
+     *
+     * @param id account id
+     *
+     * @return list with all transactions with specified account
+     */
+    @Override
+    public List<StatementDto> getTransactionList(long id) {
+        List<StatementDto> statements = new ArrayList<>();
+
+        forEachTransactionByTime(id, LocalDateTime.MIN, statements::add);
+
+        return statements;
+    }
+
+    /**
+     * Retrieves all transactions with specified account for transaction statement starting from specified date
+     *
+     * @param id account id
+     * @param intervalStart start of statement period
+     *
+     * @return list with all transactions with specified account during specified time period
+     */
+    @Override
+    public List<StatementDto> getTransactionListByTime(long id, LocalDateTime intervalStart) {
+        List<StatementDto> statements = new ArrayList<>();
+
+        forEachTransactionByTime(id, intervalStart, statements::add);
+
+        return statements;
+    }
+
+    /**
+     * Passes all transactions with specified account starting from specified date to the consumer
+     *
+     * @param id account id
+     * @param intervalStart start of statement period
+     * @param consumer receiver of transaction records in order of transaction id
+     *
+     * @return number of passed records
+     */
+    @Override
+    public int forEachTransactionByTime(long id, LocalDateTime intervalStart, Consumer<StatementDto> consumer) {
+        LocalDateTime now = LocalDateTime.now();
+        String sender;
+        String receiver;
+        int numberOfRecords = 0;
+
+        for (Transaction transaction : transactions.values()) {
+            if (transaction.getTime().isBefore(intervalStart) || transaction.getTime().isAfter(now)) {
+                continue;
+            }
+
+            sender = userService.getName(transaction.getSender());
+            receiver = userService.getName(transaction.getReceiver());
+
+            if ((sender != null && transaction.getSender() == id) || (receiver != null && transaction.getReceiver() == id)) {
+                consumer.accept(new StatementDto(transaction.getTime(), sender == null ? "" : sender,
+                        receiver == null ? "" : receiver, transaction.getAmount()));
+                numberOfRecords++;
+            }
+        }
+
+        return numberOfRecords;
+    }
+
+    /**
+     * Updates transaction`s info
+     *
+     * @param id transaction id
+     * @param amount transaction amount
+     * @param senderId id of transaction sender. Zero in case of account replenishment
+     * @param receiverId id of transaction receiver. Zero in case of money withdrawal
+     * @param time new time of transaction
+     *
+     * @return number of updated transactions
+     */
+    @Override
+    public int updateTransaction(long id, double amount, long senderId, long receiverId, LocalDateTime time) {
+        return transactions.computeIfPresent(id,
+                (key, transaction) -> new Transaction(id, amount, time, senderId, receiverId)) == null ? 0 : 1;
+    }
+
+    /**
+     * Deletes transaction
+     *
+     * @param id transaction id
+     *
+     * @return number of deleted transactions
+     */
+    @Override
+    public int deleteTransaction(long id) {
+        return transactions.remove(id) == null ? 0 : 1;
+    }
+
+    /**
+     * Copies transaction, so stored transaction cannot be changed by caller
+     *
+     * @param transaction copied transaction
+     *
+     * @return new instance of Transaction class with the same values
+     */
+    private Transaction copy(Transaction transaction) {
+        return new Transaction(transaction.getId(), transaction.getAmount(), transaction.getTime(),
+                transaction.getSender(), transaction.getReceiver());
+    }
+}
@@ -0,0 +1,86 @@
+package controller.service.memory;
+
+import controller.service.api.IUserService;
+import model.entity.User;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A class for CRUD operations with users stored in memory. Used for testing and benchmarking without database */
+public class InMemoryUserService implements IUserService {
+
+    /** Users by id */
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+
+    /** Generator of user ids. Imitates database sequence */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Adds a new user
+     *
+     * @param id user id. Id less than or equal to zero will be used. Id bigger than zero will not be used
+     *           and self-generated value will be assigned
+     * @param name name of user. Cannot be null
+     *
+     * @return number of added users. Zero if user with the same id already exists
+     */
+    @Override
+    public int addUser(long id, String name) {
+        long userId = id <= 0 ? id : sequence.incrementAndGet();
+
+        return users.putIfAbsent(userId, new User(userId, name)) == null ? 1 : 0;
+    }
+
+    /**
+     * Reads user with specified id
+     *
+     * @param id user id
+     *
+     * @return copy of user with specified id or default values if user does not exist
+     */
+    @Override
+    public User getUser(long id) {
+        User user = users.get(id);
+
+        return user == null ? new User() : new User(user.getId(), user.getName());
+    }
+
+    /**
+     * Updates user`s name
+     *
+     * @param id user id
+     * @param name name of user. Cannot be null
+     *
+     * @return number of updated users
+     */
+    @Override
+    public int updateUser(long id, String name) {
+        return users.computeIfPresent(id, (key, user) -> new User(id, name)) == null ? 0 : 1;
+    }
+
+    /**
+     * Deletes user
+     *
+     * @param id user id
+     *
+     * @return number of deleted users
+     */
+    @Override
+    public int deleteUser(long id) {
+        return users.remove(id) == null ? 0 : 1;
+    }
+
+    /**
+     * Returns name of user for statements
+     *
+     * @param id user id
+     *
+     * @return name of user or null if user does not exist
+     */
+    String getName(long id) {
+        User user = users.get(id);
+
+        return user == null ? null : user.getName();
+    }
+}
@@ -0,0 +1,543 @@
+package controller.service.shard;
+
+import config.QueryDeadline;
+import config.ShardedConnector;
+import model.dto.PaymentResult;
+import model.dto.PaymentStatus;
+import model.entity.Transaction;
+import utils.StructuredLogger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A class for transfers between accounts of different shards with two-phase commit. Sender shard debits sender
+ * and creates transaction record, receiver shard credits receiver and creates copy of the record with the same id.
+ * Both database transactions are prepared with PREPARE TRANSACTION, then decision is saved on the first shard
+ * and both are finished with COMMIT PREPARED. Decisions are kept in table "transfer_decision":
+ * <pre>
+ * CREATE TABLE clever_bank.transfer_decision (
+ *     gid VARCHAR(64) PRIMARY KEY,
+ *     committed BOOLEAN NOT NULL,
+ *     created_at TIMESTAMP NOT NULL
+ * );
+ * </pre>
+ * Every shard must allow prepared transactions (max_prepared_transactions greater than zero).
+ * Recovery thread finishes prepared transactions which stay in doubt longer than timeout: transactions with
+ * saved commit decision are committed, others are rolled back and abort decision is saved, so coordinator which
+ * is late cannot commit them any more. Coordinator uses its own connections and executes one transfer at a time,
+ * so rows locked by prepared transactions never block connection needed to finish them
+ */
+public class CrossShardTransferCoordinator implements AutoCloseable {
+
+    /** Prefix of global ids of prepared transactions created by coordinator */
+    private static final String GID_PREFIX = "clever-bank-";
+
+    /** Logger for errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
+    /** Connector of shards */
+    private final ShardedConnector connector;
+
+    /** Connection of coordinator to every shard */
+    private final ShardLocal<Connection> connections;
+
+    /** Age of prepared transaction after which it is finished by recovery */
+    private final Duration inDoubtTimeout;
+
+    /** Thread finishing prepared transactions which stay in doubt */
+    private final Thread recoveryThread;
+
+    /** A query for locking sender account */
+    private final String lockStatement = "SELECT balance, bank_id FROM clever_bank.account WHERE id = ? FOR UPDATE";
+
+    /** A query for debiting sender account */
+    private final String debitStatement = "UPDATE clever_bank.account SET balance = balance - ?, " +
+            "version = version + 1 WHERE id = ?";
+
+    /** A query for crediting receiver account. Returns bank of receiver */
+    private final String creditStatement = "UPDATE clever_bank.account SET balance = balance + ?, " +
+            "version = version + 1 WHERE id = ? RETURNING bank_id";
+
+    /** A query for inserting transaction with autogenerated id */
+    private final String insertStatement = "INSERT INTO clever_bank.transaction (amount, time, sender_id, " +
+            "receiver_id) VALUES (?, ?, ?, ?) RETURNING id";
+
+    /** A query for inserting copy of transaction with id from sender shard */
+    private final String insertCopyStatement = "INSERT INTO clever_bank.transaction VALUES (?, ?, ?, ?, ?)";
+
+    /** A query for saving decision unless decision about the same transaction already exists */
+    private final String decideStatement = "INSERT INTO clever_bank.transfer_decision VALUES (?, ?, ?) " +
+            "ON CONFLICT (gid) DO NOTHING";
+
+    /** A query for reading saved decision */
+    private final String readDecisionStatement = "SELECT committed FROM clever_bank.transfer_decision WHERE gid = ?";
+
+    /** A query for deleting decision */
+    private final String deleteDecisionStatement = "DELETE FROM clever_bank.transfer_decision WHERE gid = ?";
+
+    /** A query for reading decisions older than specified time */
+    private final String readOldDecisionsStatement = "SELECT gid FROM clever_bank.transfer_decision " +
+            "WHERE created_at < ?";
+
+    /** A query for reading prepared transactions of coordinators and whether they are in doubt for too long */
+    private final String readPreparedStatement = "SELECT gid, prepared < now() - make_interval(secs => ?) " +
+            "AS expired FROM pg_prepared_xacts WHERE gid LIKE '" + GID_PREFIX + "%'";
+
+    /**
+     * A constructor with parameters. Starts recovery thread
+     *
+     * @param connector connector of shards
+     * @param inDoubtTimeout age of prepared transaction after which it is finished by recovery.
+     *                       Must be much longer than a transfer
+     */
+    public CrossShardTransferCoordinator(ShardedConnector connector, Duration inDoubtTimeout) {
+        this.connector = connector;
+        this.connections = new ShardLocal<>(connector, shard -> connector.getConnector(shard).openConnection());
+        this.inDoubtTimeout = inDoubtTimeout;
+        this.recoveryThread = new Thread(this::recoverPeriodically, "shard-transfer-recovery");
+        recoveryThread.setDaemon(true);
+        recoveryThread.start();
+    }
+
+    /**
+     * Transfers money between accounts of different shards with two-phase commit
+     *
+     * @param senderShard number of sender shard
+     * @param senderId id of sender account
+     * @param receiverShard number of receiver shard
+     * @param receiverId id of receiver account
+     * @param amount transfer amount
+     *
+     * @return result of operation with transaction record of sender shard
+     */
+    public synchronized PaymentResult transfer(int senderShard, long senderId, int receiverShard, long receiverId,
+                                               double amount) {
+        Connection sender = connections.get(senderShard);
+        Connection receiver = connections.get(receiverShard);
+        Transfer transfer = new Transfer(GID_PREFIX + UUID.randomUUID(), senderId, receiverId, amount);
+        boolean senderPrepared = false;
+
+        if (sender == null || receiver == null || connections.get(0) == null) {
+            return PaymentResult.failed(PaymentStatus.FAILED);
+        }
+
+        try {
+            senderPrepared = prepareSender(sender, transfer);
+
+            if (!senderPrepared) {
+                return PaymentResult.failed(transfer.status);
+            }
+
+            if (!prepareReceiver(receiver, transfer)) {
+                finish(sender, transfer.gid, false);
+
+                return PaymentResult.failed(transfer.status);
+            }
+        } catch (SQLException e) {
+            logger.sqlError("prepareTransfer", e, "senderId", senderId, "receiverId", receiverId);
+
+            if (senderPrepared) {
+                finish(sender, transfer.gid, false);
+            }
+
+            return PaymentResult.failed(PaymentStatus.FAILED);
+        }
+
+        try {
+            if (!decide(transfer.gid, true)) {
+                finish(sender, transfer.gid, false);
+                finish(receiver, transfer.gid, false);
+
+                return PaymentResult.failed(PaymentStatus.FAILED);
+            }
+        } catch (SQLException e) {
+            logger.sqlError("decideTransfer", e, "gid", transfer.gid); // decision is unknown, left to recovery
+
+            return PaymentResult.failed(PaymentStatus.UNKNOWN);
+        }
+
+        if (finish(sender, transfer.gid, true) & finish(receiver, transfer.gid, true)) {
+            deleteDecision(transfer.gid);
+        }
+
+        return new PaymentResult(PaymentStatus.COMPLETED, new Transaction(transfer.transactionId, amount,
+                transfer.time, senderId, receiverId), transfer.senderBankId, transfer.receiverBankId);
+    }
+
+    /**
+     * Finishes prepared transactions of coordinators which are in doubt longer than timeout according to saved
+     * decisions. Transactions without decision are rolled back. Deletes old decisions of finished transactions
+     *
+     * @return number of finished transactions
+     */
+    public synchronized int recover() {
+        Set<String> prepared = new HashSet<>();
+        List<String> expiredGids = new ArrayList<>();
+        List<Connection> expiredConnections = new ArrayList<>();
+        Connection connection;
+        ResultSet resultSet;
+        int finished = 0;
+
+        for (int shard = 0; shard < connector.getShardCount(); shard++) {
+            if ((connection = connections.get(shard)) == null) {
+                continue;
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(readPreparedStatement)) {
+                statement.setLong(1, inDoubtTimeout.toSeconds());
+                resultSet = statement.executeQuery();
+
+                while (resultSet.next()) {
+                    prepared.add(resultSet.getString("gid"));
+
+                    if (resultSet.getBoolean("expired")) {
+                        expiredGids.add(resultSet.getString("gid"));
+                        expiredConnections.add(connection);
+                    }
+                }
+            } catch (SQLException e) {
+                logger.sqlError("recoverTransfers", e, "shard", shard);
+
+                return finished;
+            }
+        }
+
+        try {
+            for (int i = 0; i < expiredGids.size(); i++) {
+                finished += finish(expiredConnections.get(i), expiredGids.get(i), decide(expiredGids.get(i), false))
+                        ? 1 : 0;
+            }
+
+            deleteOldDecisions(prepared);
+        } catch (SQLException e) {
+            logger.sqlError("recoverTransfers", e);
+        }
+
+        return finished;
+    }
+
+    /**
+     * Locks and debits sender, creates transaction record and prepares database transaction on sender shard.
+     * Database transaction is rolled back if sender cannot pay
+     *
+     * @param connection connection to sender shard
+     * @param transfer executed transfer. Receives transaction id, sender bank and status of failure
+     *
+     * @return true if database transaction was prepared
+     *
+     * @throws SQLException if database transaction cannot be prepared
+     */
+    private boolean prepareSender(Connection connection, Transfer transfer) throws SQLException {
+        ResultSet resultSet;
+
+        connection.setAutoCommit(false);
+
+        try {
+            try (PreparedStatement statement = connection.prepareStatement(lockStatement)) {
+                statement.setLong(1, transfer.senderId);
+                resultSet = statement.executeQuery();
+
+                if (!resultSet.next()) {
+                    transfer.status = PaymentStatus.SENDER_NOT_FOUND;
+                } else if (resultSet.getDouble("balance") < transfer.amount) {
+                    transfer.status = PaymentStatus.INSUFFICIENT_FUNDS;
+                } else {
+                    transfer.senderBankId = resultSet.getLong("bank_id");
+                }
+            }
+
+            if (transfer.status != PaymentStatus.COMPLETED) {
+                rollback(connection);
+
+                return false;
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(debitStatement)) {
+                statement.setDouble(1, transfer.amount);
+                statement.setLong(2, transfer.senderId);
+                statement.executeUpdate();
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(insertStatement)) {
+                statement.setDouble(1, transfer.amount);
+                statement.setObject(2, transfer.time);
+                statement.setLong(3, transfer.senderId);
+                statement.setLong(4, transfer.receiverId);
+                resultSet = statement.executeQuery();
+                resultSet.next();
+                transfer.transactionId = resultSet.getLong("id");
+            }
+
+            prepare(connection, transfer.gid);
+        } catch (SQLException e) {
+            rollback(connection);
+
+            throw e;
+        }
+
+        return true;
+    }
+
+    /**
+     * Credits receiver, creates copy of transaction record and prepares database transaction on receiver shard.
+     * Database transaction is rolled back if receiver does not exist
+     *
+     * @param connection connection to receiver shard
+     * @param transfer executed transfer with transaction id. Receives receiver bank and status of failure
+     *
+     * @return true if database transaction was prepared
+     *
+     * @throws SQLException if database transaction cannot be prepared
+     */
+    private boolean prepareReceiver(Connection connection, Transfer transfer) throws SQLException {
+        ResultSet resultSet;
+
+        connection.setAutoCommit(false);
+
+        try {
+            try (PreparedStatement statement = connection.prepareStatement(creditStatement)) {
+                statement.setDouble(1, transfer.amount);
+                statement.setLong(2, transfer.receiverId);
+                resultSet = statement.executeQuery();
+
+                if (!resultSet.next()) {
+                    transfer.status = PaymentStatus.RECEIVER_NOT_FOUND;
+                    rollback(connection);
+
+                    return false;
+                }
+
+                transfer.receiverBankId = resultSet.getLong("bank_id");
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(insertCopyStatement)) {
+                statement.setLong(1, transfer.transactionId);
+                statement.setDouble(2, transfer.amount);
+                statement.setObject(3, transfer.time);
+                statement.setLong(4, transfer.senderId);
+                statement.setLong(5, transfer.receiverId);
+                statement.executeUpdate();
+            }
+
+            prepare(connection, transfer.gid);
+        } catch (SQLException e) {
+            rollback(connection);
+
+            throw e;
+        }
+
+        return true;
+    }
+
+    /**
+     * Prepares current database transaction for two-phase commit. Connection returns to auto-commit mode
+     *
+     * @param connection connection with current database transaction
+     * @param gid global id of prepared transaction
+     *
+     * @throws SQLException if transaction cannot be prepared
+     */
+    private void prepare(Connection connection, String gid) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PREPARE TRANSACTION '" + gid + "'");
+        }
+
+        connection.setAutoCommit(true);
+    }
+
+    /**
+     * Saves decision about prepared transactions unless decision was already saved by another coordinator
+     * or by recovery
+     *
+     * @param gid global id of prepared transactions
+     * @param commit proposed decision
+     *
+     * @return saved decision, true if transactions must be committed
+     *
+     * @throws SQLException if decision cannot be saved or read
+     */
+    private boolean decide(String gid, boolean commit) throws SQLException {
+        Connection connection = connections.get(0);
+        ResultSet resultSet;
+
+        try (PreparedStatement statement = connection.prepareStatement(decideStatement)) {
+            statement.setString(1, gid);
+            statement.setBoolean(2, commit);
+            statement.setObject(3, LocalDateTime.now());
+
+            if (statement.executeUpdate() == 1) {
+                return commit;
+            }
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(readDecisionStatement)) {
+            statement.setString(1, gid);
+            resultSet = statement.executeQuery();
+
+            return resultSet.next() && resultSet.getBoolean("committed");
+        }
+    }
+
+    /**
+     * Commits or rolls back prepared transaction without deadline of the operation, so decided transfer
+     * is finished even if the operation ran out of time. Prints message in case of errors
+     *
+     * @param connection connection to shard with prepared transaction
+     * @param gid global id of prepared transaction
+     * @param commit true if transaction must be committed
+     *
+     * @return true if transaction was finished
+     */
+    private boolean finish(Connection connection, String gid, boolean commit) {
+        return QueryDeadline.withoutDeadline(() -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute((commit ? "COMMIT PREPARED '" : "ROLLBACK PREPARED '") + gid + "'");
+
+                return true;
+            } catch (SQLException e) {
+                logger.sqlError("finishTransfer", e, "gid", gid, "commit", commit);
+            }
+
+            return false;
+        });
+    }
+
+    /**
+     * Deletes decision after both prepared transactions were finished. Prints message in case of errors
+     *
+     * @param gid global id of prepared transactions
+     */
+    private void deleteDecision(String gid) {
+        try (PreparedStatement statement = connections.get(0).prepareStatement(deleteDecisionStatement)) {
+            statement.setString(1, gid);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            logger.sqlError("deleteDecision", e, "gid", gid);
+        }
+    }
+
+    /**
+     * Deletes decisions older than in-doubt timeout which have no prepared transactions on any shard
+     *
+     * @param prepared global ids of prepared transactions on all shards
+     *
+     * @throws SQLException if decisions cannot be read
+     */
+    private void deleteOldDecisions(Set<String> prepared) throws SQLException {
+        List<String> finished = new ArrayList<>();
+        ResultSet resultSet;
+
+        try (PreparedStatement statement = connections.get(0).prepareStatement(readOldDecisionsStatement)) {
+            statement.setObject(1, LocalDateTime.now().minus(inDoubtTimeout));
+            resultSet = statement.executeQuery();
+
+            while (resultSet.next()) {
+                if (!prepared.contains(resultSet.getString("gid"))) {
+                    finished.add(resultSet.getString("gid"));
+                }
+            }
+        }
+
+        for (String gid : finished) {
+            deleteDecision(gid);
+        }
+    }
+
+    /**
+     * Rolls back current database transaction and returns connection to auto-commit mode.
+     * Prints message in case of errors
+     *
+     * @param connection connection with current database transaction
+     */
+    private void rollback(Connection connection) {
+        try {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            logger.sqlError("rollbackTransfer", e);
+        }
+    }
+
+    /** Runs recovery once per in-doubt timeout until thread is interrupted */
+    private void recoverPeriodically() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                recover();
+                Thread.sleep(inDoubtTimeout.toMillis());
+            }
+        } catch (InterruptedException e) {
+            // coordinator is closed
+        }
+    }
+
+    /** Stops recovery thread and closes connections of coordinator */
+    @Override
+    public synchronized void close() {
+        recoveryThread.interrupt();
+
+        for (Connection connection : connections.values()) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.sqlError("closeCoordinator", e);
+            }
+        }
+    }
+
+    /** State of transfer between shards */
+    private static class Transfer {
+
+        /** Global id of prepared transactions */
+        private final String gid;
+
+        /** Id of sender account */
+        private final long senderId;
+
+        /** Id of receiver account */
+        private final long receiverId;
+
+        /** Transfer amount */
+        private final double amount;
+
+        /** Time of transaction record */
+        private final LocalDateTime time = LocalDateTime.now();
+
+        /** Id of transaction record created on sender shard */
+        private long transactionId;
+
+        /** Bank of sender */
+        private long senderBankId;
+
+        /** Bank of receiver */
+        private long receiverBankId;
+
+        /** Completed status, or reason of failure */
+        private PaymentStatus status = PaymentStatus.COMPLETED;
+
+        /**
+         * A constructor with parameters
+         *
+         * @param gid global id of prepared transactions
+         * @param senderId id of sender account
+         * @param receiverId id of receiver account
+         * @param amount transfer amount
+         */
+        private Transfer(String gid, long senderId, long receiverId, double amount) {
+            this.gid = gid;
+            this.senderId = senderId;
+            this.receiverId = receiverId;
+            this.amount = amount;
+        }
+    }
+}
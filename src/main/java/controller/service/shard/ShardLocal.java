@@ -0,0 +1,71 @@
+package controller.service.shard;
+
+import config.ShardedConnector;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * A class with service instance of every shard. Instance is created on the first usage of shard,
+ * so connections of shards which are not used are not opened. Factory may return null,
+ * then creation is retried on the next usage
+ *
+ * @param <T> type of service
+ */
+class ShardLocal<T> {
+
+    /** Connector which finds shards by id */
+    private final ShardedConnector connector;
+
+    /** Factory creating service of shard with specified number */
+    private final IntFunction<T> factory;
+
+    /** Created services by shard number */
+    private final Map<Integer, T> services = new ConcurrentHashMap<>();
+
+    /**
+     * A constructor with parameters
+     *
+     * @param connector connector which finds shards by id
+     * @param factory factory creating service of shard with specified number
+     */
+    ShardLocal(ShardedConnector connector, IntFunction<T> factory) {
+        this.connector = connector;
+        this.factory = factory;
+    }
+
+    /**
+     * Returns service of shard
+     *
+     * @param shard number of shard
+     *
+     * @return service of shard
+     */
+    T get(int shard) {
+        return services.computeIfAbsent(shard, factory::apply);
+    }
+
+    /**
+     * Returns service of shard which owns account or transaction
+     *
+     * @param id account or transaction id
+     *
+     * @return service of shard or null if shard with such range does not exist
+     */
+    T forId(long id) {
+        int shard = connector.getShard(id);
+
+        return shard < 0 ? null : get(shard);
+    }
+
+    /**
+     * Returns services created so far
+     *
+     * @return view of created services
+     */
+    Collection<T> values() {
+        return services.values();
+    }
+}
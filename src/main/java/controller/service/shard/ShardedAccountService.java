@@ -0,0 +1,187 @@
+package controller.service.shard;
+
+import config.ShardedConnector;
+import controller.service.AccountService;
+import controller.service.api.IAccountService;
+import model.entity.Account;
+import utils.api.IYmlFileReader;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class for operations with accounts stored on several shards. Operations with account are executed on shard
+ * which owns its id. New accounts are placed on shards in turn
+ */
+public class ShardedAccountService implements IAccountService {
+
+    /** Connector which finds shards by id */
+    private final ShardedConnector connector;
+
+    /** Account service of every shard */
+    private final ShardLocal<IAccountService> services;
+
+    /**
+     * A constructor with parameters
+     *
+     * @param connector connector of shards
+     * @param fileReader reader of configuration file with interest percent
+     */
+    public ShardedAccountService(ShardedConnector connector, IYmlFileReader fileReader) {
+        this.connector = connector;
+        this.services = new ShardLocal<>(connector,
+                shard -> new AccountService(connector.getConnector(shard).getConnection(), fileReader));
+    }
+
+    /**
+     * Returns account service of shard
+     *
+     * @param shard number of shard
+     *
+     * @return account service working with shard connection
+     */
+    IAccountService getShardService(int shard) {
+        return services.get(shard);
+    }
+
+    /**
+     * Adds a new account to the next shard. Accounts with id less than or equal to zero are added to the first shard
+     *
+     * @param id account id. Id less than or equal to zero will be used in query. Recommended for test purposes.
+     *           Id bigger than zero will not be used in query and shard will use self-generated value
+     * @param bankId id of bank. Cannot be null
+     * @param balance account balance
+     * @param userId id of account owner
+     * @param date account creation date
+     *
+     * @return number of affected by query rows
+     */
+    @Override
+    public int addAccount(long id, long bankId, double balance, long userId, Date date) {
+        int shard = id <= 0 ? 0 : connector.nextPlacementShard();
+
+        return services.get(shard).addAccount(id, bankId, balance, userId, date);
+    }
+
+    /**
+     * Reads account with specified id from its shard
+     *
+     * @param id account id
+     *
+     * @return instance of Account class with specified id or default values if account does not exist
+     */
+    @Override
+    public Account getAccount(long id) {
+        IAccountService service = services.forId(id);
+
+        return service == null ? new Account() : service.getAccount(id);
+    }
+
+    /**
+     * Reads portion of accounts ordered by id. Shards own consecutive id ranges, so shards are read in order
+     * until the portion is full
+     *
+     * @param afterId only accounts with id bigger than this value will be read
+     * @param limit maximum number of accounts in portion
+     *
+     * @return list of accounts ordered by id, or null if accounts of any read shard cannot be read
+     */
+    @Override
+    public List<Account> getAccountList(long afterId, int limit) {
+        List<Account> accounts = new ArrayList<>();
+        List<Account> portion;
+        int shard = connector.getShard(afterId);
+
+        if (shard < 0) {
+            return accounts;
+        }
+
+        for (; shard < connector.getShardCount() && accounts.size() < limit; shard++) {
+            portion = services.get(shard).getAccountList(Math.max(afterId, ShardedConnector.getFirstId(shard) - 1),
+                    limit - accounts.size());
+
+            if (portion == null) {
+                return null;
+            }
+
+            accounts.addAll(portion);
+        }
+
+        return accounts;
+    }
+
+    /**
+     * Updates account`s info on its shard
+     *
+     * @param updatedAccount Account object with updated values
+     *
+     * @return number of affected by query rows
+     */
+    @Override
+    public int updateAccount(Account updatedAccount) {
+        IAccountService service = services.forId(updatedAccount.getId());
+
+        return service == null ? 0 : service.updateAccount(updatedAccount);
+    }
+
+    /**
+     * Updates balance of all accounts of selected bank on every shard
+     *
+     * @param bankName name of bank which accounts will be updated
+     *
+     * @return number of affected by query rows on all shards
+     */
+    @Override
+    public int updateAllBankAccountsBalance(String bankName) {
+        int numberOfAffectedRows = 0;
+
+        for (int shard = 0; shard < connector.getShardCount(); shard++) {
+            numberOfAffectedRows += services.get(shard).updateAllBankAccountsBalance(bankName);
+        }
+
+        return numberOfAffectedRows;
+    }
+
+    /**
+     * Deletes account from its shard
+     *
+     * @param id account id
+     *
+     * @return number of affected by query rows
+     */
+    @Override
+    public int deleteAccount(long id) {
+        IAccountService service = services.forId(id);
+
+        return service == null ? 0 : service.deleteAccount(id);
+    }
+
+    /**
+     * Checks every 30 seconds if now 2 in the morning on the last day of month.
+     * If yes, adds money to all Clever-Bank accounts on every shard
+     */
+    @Override
+    public void run() {
+        LocalDate currentDate;
+        LocalTime currentTime;
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                currentDate = LocalDate.now();
+                currentTime = LocalTime.now();
+
+                if (currentDate.getDayOfMonth() == currentDate.lengthOfMonth()
+                        && currentTime.getHour() == 2 && currentTime.getMinute() == 0 && currentTime.getSecond() < 30) {
+                    updateAllBankAccountsBalance("Clever-Bank");
+                }
+
+                Thread.sleep(30000);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package controller.service.shard;
+
+import config.ShardedConnector;
+import controller.service.PaymentService;
+import controller.service.api.IPaymentService;
+import model.dto.PaymentResult;
+import model.dto.PaymentStatus;
+
+/**
+ * A class for money operations with accounts stored on several shards. Operation with accounts of one shard
+ * is executed by payment service of that shard in single database transaction. Transfers between shards
+ * are executed by coordinator with two-phase commit
+ */
+public class ShardedPaymentService implements IPaymentService {
+
+    /** Connector which finds shards by id */
+    private final ShardedConnector connector;
+
+    /** Payment service of every shard */
+    private final ShardLocal<IPaymentService> services;
+
+    /** Coordinator of transfers between shards */
+    private final CrossShardTransferCoordinator coordinator;
+
+    /**
+     * A constructor with parameters
+     *
+     * @param connector connector of shards
+     * @param accountService service with accounts of every shard
+     * @param transactionService service with transactions of every shard
+     * @param coordinator coordinator of transfers between shards
+     */
+    public ShardedPaymentService(ShardedConnector connector, ShardedAccountService accountService,
+                                 ShardedTransactionService transactionService,
+                                 CrossShardTransferCoordinator coordinator) {
+        this.connector = connector;
+        this.coordinator = coordinator;
+        this.services = new ShardLocal<>(connector,
+                shard -> new PaymentService(connector.getConnector(shard).getConnection(),
+                        accountService.getShardService(shard), transactionService.getShardService(shard)));
+    }
+
+    /**
+     * Replenishes account on its shard
+     *
+     * @param accountId id of replenished account
+     * @param amount replenishment amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult replenishAccount(long accountId, double amount) {
+        IPaymentService service = services.forId(accountId);
+
+        return service == null ? PaymentResult.failed(PaymentStatus.ACCOUNT_NOT_FOUND)
+                : service.replenishAccount(accountId, amount);
+    }
+
+    /**
+     * Withdraws money from account on its shard
+     *
+     * @param accountId id of account for withdrawal
+     * @param amount withdrawal amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult withdrawAccount(long accountId, double amount) {
+        IPaymentService service = services.forId(accountId);
+
+        return service == null ? PaymentResult.failed(PaymentStatus.ACCOUNT_NOT_FOUND)
+                : service.withdrawAccount(accountId, amount);
+    }
+
+    /**
+     * Transfers money between accounts of the same shard in single database transaction of that shard,
+     * or between accounts of different shards with two-phase commit
+     *
+     * @param senderId id of sender account
+     * @param receiverId id of receiver account
+     * @param amount transfer amount
+     *
+     * @return result of operation with created transaction
+     */
+    @Override
+    public PaymentResult transferToAnotherAccount(long senderId, long receiverId, double amount) {
+        int senderShard = connector.getShard(senderId);
+        int receiverShard = connector.getShard(receiverId);
+
+        if (senderId == receiverId) {
+            return PaymentResult.failed(PaymentStatus.SAME_ACCOUNT);
+        }
+
+        if (receiverShard < 0) {
+            return PaymentResult.failed(PaymentStatus.RECEIVER_NOT_FOUND);
+        }
+
+        if (senderShard < 0) {
+            return PaymentResult.failed(PaymentStatus.SENDER_NOT_FOUND);
+        }
+
+        if (senderShard != receiverShard) {
+            return coordinator.transfer(senderShard, senderId, receiverShard, receiverId, amount);
+        }
+
+        return services.get(senderShard).transferToAnotherAccount(senderId, receiverId, amount);
+    }
+}
@@ -0,0 +1,154 @@
+package controller.service.shard;
+
+import config.ShardedConnector;
+import controller.service.TransactionService;
+import controller.service.api.ITransactionService;
+import model.dto.StatementDto;
+import model.entity.Transaction;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A class for operations with transactions stored on several shards. Transaction is saved on shard of its
+ * sender, or of its receiver if there is no sender, so its id belongs to range of that shard. Transfer between
+ * shards also saves copy of the record with the same id on shard of receiver, so statements of both accounts
+ * include it
+ */
+public class ShardedTransactionService implements ITransactionService {
+
+    /** Transaction service of every shard */
+    private final ShardLocal<ITransactionService> services;
+
+    /**
+     * A constructor with parameter
+     *
+     * @param connector connector of shards
+     */
+    public ShardedTransactionService(ShardedConnector connector) {
+        this.services = new ShardLocal<>(connector,
+                shard -> new TransactionService(connector.getConnector(shard).getConnection()));
+    }
+
+    /**
+     * Returns transaction service of shard
+     *
+     * @param shard number of shard
+     *
+     * @return transaction service working with shard connection
+     */
+    ITransactionService getShardService(int shard) {
+        return services.get(shard);
+    }
+
+    /**
+     * Adds a new transaction to shard of sender or, if there is no sender, to shard of receiver
+     *
+     * @param id transaction id. Id less than zero will be used in query. Recommended for test purposes.
+     *           Id bigger than zero will not be used in query and shard will use self-generated value
+     * @param amount transaction amount
+     * @param senderId id of transaction sender. Zero in case of account replenishment
+     * @param receiverId id of transaction receiver. Zero in case of money withdrawal
+     *
+     * @return id of created transaction or zero if shard of account does not exist or in case of database errors
+     */
+    @Override
+    public long addTransaction(long id, double amount, long senderId, long receiverId) {
+        ITransactionService service = services.forId(senderId != 0 ? senderId : receiverId);
+
+        return service == null ? 0 : service.addTransaction(id, amount, senderId, receiverId);
+    }
+
+    /**
+     * Reads transaction with specified id from its shard
+     *
+     * @param id transaction id
+     *
+     * @return instance of Transaction class with specified id or default values if transaction does not exist
+     */
+    @Override
+    public Transaction getTransaction(long id) {
+        ITransactionService service = services.forId(id);
+
+        return service == null ? new Transaction() : service.getTransaction(id);
+    }
+
+    /**
+     * Retrieves all transactions with specified account from its shard
+     *
+     * @param id account id
+     *
+     * @return list of statement records
+     */
+    @Override
+    public List<StatementDto> getTransactionList(long id) {
+        ITransactionService service = services.forId(id);
+
+        return service == null ? new ArrayList<>() : service.getTransactionList(id);
+    }
+
+    /**
+     * Retrieves transactions with specified account during time interval from its shard
+     *
+     * @param id account id
+     * @param intervalStart start of time interval
+     *
+     * @return list of statement records
+     */
+    @Override
+    public List<StatementDto> getTransactionListByTime(long id, LocalDateTime intervalStart) {
+        ITransactionService service = services.forId(id);
+
+        return service == null ? new ArrayList<>() : service.getTransactionListByTime(id, intervalStart);
+    }
+
+    /**
+     * Streams transactions with specified account during time interval from its shard
+     *
+     * @param id account id
+     * @param intervalStart start of time interval
+     * @param consumer receiver of statement records
+     *
+     * @return number of passed records
+     */
+    @Override
+    public int forEachTransactionByTime(long id, LocalDateTime intervalStart, Consumer<StatementDto> consumer) {
+        ITransactionService service = services.forId(id);
+
+        return service == null ? 0 : service.forEachTransactionByTime(id, intervalStart, consumer);
+    }
+
+    /**
+     * Updates transaction on its shard
+     *
+     * @param id transaction id
+     * @param amount transaction amount
+     * @param senderId id of transaction sender
+     * @param receiverId id of transaction receiver
+     * @param time transaction time
+     *
+     * @return number of affected by query rows
+     */
+    @Override
+    public int updateTransaction(long id, double amount, long senderId, long receiverId, LocalDateTime time) {
+        ITransactionService service = services.forId(id);
+
+        return service == null ? 0 : service.updateTransaction(id, amount, senderId, receiverId, time);
+    }
+
+    /**
+     * Deletes transaction from its shard
+     *
+     * @param id transaction id
+     *
+     * @return number of affected by query rows
+     */
+    @Override
+    public int deleteTransaction(long id) {
+        ITransactionService service = services.forId(id);
+
+        return service == null ? 0 : service.deleteTransaction(id);
+    }
+}
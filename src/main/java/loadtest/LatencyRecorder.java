@@ -0,0 +1,72 @@
+package loadtest;
+
+import java.util.Arrays;
+
+/** Class which keeps all latencies of one operation type for calculating exact percentiles. Not thread-safe */
+public class LatencyRecorder {
+
+    /** Recorded latencies in nanoseconds */
+    private long[] latencies = new long[1024];
+
+    /** Number of recorded latencies */
+    private int count;
+
+    /** Whether latencies are sorted */
+    private boolean sorted;
+
+    /**
+     * Records latency of one operation
+     *
+     * @param nanoseconds latency in nanoseconds
+     */
+    public void record(long nanoseconds) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+
+        latencies[count++] = nanoseconds;
+        sorted = false;
+    }
+
+    /**
+     * Adds all latencies of another recorder
+     *
+     * @param other recorder of the same operation type
+     */
+    public void merge(LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.latencies[i]);
+        }
+    }
+
+    /**
+     * Returns number of recorded latencies
+     *
+     * @return number of operations
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns latency percentile
+     *
+     * @param percentile percentile from 0 to 100
+     *
+     * @return latency in milliseconds, zero if nothing was recorded
+     */
+    public double getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        if (!sorted) {
+            Arrays.sort(latencies, 0, count);
+            sorted = true;
+        }
+
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+
+        return latencies[Math.max(0, Math.min(index, count - 1))] / 1.0E6;
+    }
+}
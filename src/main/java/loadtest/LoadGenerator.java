@@ -0,0 +1,195 @@
+package loadtest;
+
+import config.PostgreSQLConnector;
+import config.api.IDatabaseConnector;
+import controller.service.AccountService;
+import controller.service.BankService;
+import controller.service.GroupCommitPaymentService;
+import controller.service.UserService;
+import controller.service.api.IAccountService;
+import controller.service.api.IBankService;
+import controller.service.api.IUserService;
+import utils.YmlFileReader;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load generation tool. Seeds banks, users and accounts into local PostgreSQL, then executes a mix of
+ * replenishments, withdrawals, transfers and statements through the service layer with concurrent workers.
+ * Prints throughput, latency percentiles, deadlock and retry counts.
+ * Run with: ./gradlew loadTest --args="accounts=10000 workers=16 duration=60"
+ */
+public class LoadGenerator {
+
+    /** Initial balance of seeded accounts */
+    private static final double INITIAL_BALANCE = 1_000_000;
+
+    /**
+     * Load generator entry point
+     *
+     * @param args settings in key=value form, see {@link LoadSettings}
+     */
+    public static void main(String[] args) throws InterruptedException {
+        LoadSettings settings = new LoadSettings(args);
+        IDatabaseConnector connector = new PostgreSQLConnector(settings.getUrl(), settings.getUser(),
+                settings.getPassword());
+        List<LoadWorker> workers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        GroupCommitPaymentService paymentService;
+        long start;
+        long deadline;
+        double seconds;
+
+        if (connector.getConnection() == null) {
+            return;
+        }
+
+        seed(connector.getConnection(), settings);
+        paymentService = createPaymentService(connector, settings);
+        System.out.format("Running %d workers for %d s%s%n", settings.getWorkers(), settings.getDuration(),
+                paymentService != null ? " with group commit" : "");
+
+        start = System.nanoTime();
+        deadline = start + TimeUnit.SECONDS.toNanos(settings.getDuration());
+
+        for (int i = 0; i < settings.getWorkers(); i++) {
+            LoadWorker worker = new LoadWorker(connector, settings, deadline, paymentService);
+            Thread thread = new Thread(worker, "load-worker-" + i);
+
+            workers.add(worker);
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        seconds = (System.nanoTime() - start) / 1.0E9;
+        printReport(workers, seconds);
+
+        if (paymentService != null) {
+            paymentService.close();
+        }
+
+        connector.closeConnection();
+    }
+
+    /**
+     * Creates group commit service shared by all workers if group commit is enabled
+     *
+     * @param connector implementation of database connection interface
+     * @param settings settings of the load
+     *
+     * @return shared service for money operations or null if every worker uses its own connection
+     */
+    private static GroupCommitPaymentService createPaymentService(IDatabaseConnector connector,
+                                                                  LoadSettings settings) {
+        Connection connection;
+
+        if (!settings.isGroupCommit() || (connection = connector.openConnection()) == null) {
+            return null;
+        }
+
+        try {
+            return new GroupCommitPaymentService(connection, settings.getGroupCommitBatch(),
+                    Duration.ofMillis(settings.getGroupCommitDelay()));
+        } catch (SQLException e) {
+            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates banks, users and accounts with ids below {@link LoadSettings#FIRST_SEEDED_ID}.
+     * Seeding is skipped if the last account already exists
+     *
+     * @param connection connection with database
+     * @param settings settings of the load
+     */
+    private static void seed(Connection connection, LoadSettings settings) {
+        IBankService bankService = new BankService(connection);
+        IUserService userService = new UserService(connection);
+        IAccountService accountService = new AccountService(connection, new YmlFileReader());
+        Date creationDate = Date.valueOf(LocalDate.now().minusYears(1));
+
+        if (accountService.getAccount(settings.getAccountId(settings.getAccounts() - 1)).getId() != 0) {
+            System.out.println("Seeded data already exists");
+
+            return;
+        }
+
+        System.out.format("Seeding %d banks, %d users and %d accounts%n", settings.getBanks(), settings.getUsers(),
+                settings.getAccounts());
+
+        try {
+            connection.setAutoCommit(false);
+
+            for (int i = 0; i < settings.getBanks(); i++) {
+                bankService.addBank(LoadSettings.FIRST_SEEDED_ID - i, "Load Bank " + i);
+            }
+
+            for (int i = 0; i < settings.getUsers(); i++) {
+                userService.addUser(LoadSettings.FIRST_SEEDED_ID - i, "Load User " + i);
+            }
+
+            for (int i = 0; i < settings.getAccounts(); i++) {
+                accountService.addAccount(settings.getAccountId(i), LoadSettings.FIRST_SEEDED_ID - i % settings.getBanks(),
+                        INITIAL_BALANCE, LoadSettings.FIRST_SEEDED_ID - i % settings.getUsers(), creationDate);
+            }
+
+            connection.commit();
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+        }
+    }
+
+    /**
+     * Prints throughput and latency percentiles of every operation type, deadlock and retry counts
+     *
+     * @param workers finished workers
+     * @param seconds duration of the load in seconds
+     */
+    private static void printReport(List<LoadWorker> workers, double seconds) {
+        int deadlocks = 0;
+        int retries = 0;
+        int total = 0;
+
+        System.out.format("%n%-10s %9s %7s %8s %9s %9s %9s %9s %9s %9s%n", "operation", "count", "errors",
+                "rejected", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        for (LoadOperation operation : LoadOperation.values()) {
+            LatencyRecorder latencies = new LatencyRecorder();
+            int errors = 0;
+            int rejections = 0;
+
+            for (LoadWorker worker : workers) {
+                latencies.merge(worker.getLatencies(operation));
+                errors += worker.getErrors(operation);
+                rejections += worker.getRejections(operation);
+            }
+
+            total += latencies.getCount();
+            System.out.format("%-10s %9d %7d %8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", operation,
+                    latencies.getCount(), errors, rejections, latencies.getCount() / seconds,
+                    latencies.getPercentile(50), latencies.getPercentile(90), latencies.getPercentile(99),
+                    latencies.getPercentile(99.9), latencies.getPercentile(100));
+        }
+
+        for (LoadWorker worker : workers) {
+            deadlocks += worker.getDeadlocks();
+            retries += worker.getRetries();
+        }
+
+        System.out.format("%nTotal: %.1f ops/s, deadlocks: %d, retries: %d%n", total / seconds, deadlocks, retries);
+    }
+}
@@ -0,0 +1,17 @@
+package loadtest;
+
+/** Operation types executed by load generator */
+public enum LoadOperation {
+
+    /** Account replenishment */
+    REPLENISH,
+
+    /** Money withdrawal */
+    WITHDRAW,
+
+    /** Transfer to another account */
+    TRANSFER,
+
+    /** Account transaction statement for the last month */
+    STATEMENT
+}
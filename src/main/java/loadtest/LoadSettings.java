@@ -0,0 +1,187 @@
+package loadtest;
+
+import lombok.Getter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Class with settings of the load. Settings are parsed from command line arguments in key=value form,
+ * for example: accounts=10000 workers=16 duration=120 mix=40,30,25,5
+ */
+@Getter
+public class LoadSettings {
+
+    /** Id of the first seeded entity. Seeded banks, users and accounts have ids below it */
+    public static final long FIRST_SEEDED_ID = -1_000_000;
+
+    /** Database url */
+    private String url = "jdbc:postgresql://127.0.0.1:5432/edu";
+
+    /** Database user */
+    private String user = "postgres";
+
+    /** Database password */
+    private String password = "password";
+
+    /** Number of seeded banks */
+    private int banks = 5;
+
+    /** Number of seeded users */
+    private int users = 1000;
+
+    /** Number of seeded accounts */
+    private int accounts = 10000;
+
+    /** Number of hot accounts which receive most of the load */
+    private int hotAccounts = 10;
+
+    /** Share of operations with hot accounts */
+    private double hotShare = 0.5;
+
+    /** Number of concurrent workers */
+    private int workers = 8;
+
+    /** Duration of the load in seconds */
+    private int duration = 60;
+
+    /** Whether money operations of all workers are committed in groups by one shared service */
+    private boolean groupCommit = false;
+
+    /** Maximum number of money operations in one group commit */
+    private int groupCommitBatch = 64;
+
+    /** Maximum time the first operation of a group waits for other operations, in milliseconds */
+    private int groupCommitDelay = 5;
+
+    /** Weights of operation types */
+    private final Map<LoadOperation, Integer> weights = new EnumMap<>(LoadOperation.class);
+
+    /** Sum of operation weights */
+    private int totalWeight;
+
+    /**
+     * Constructor with parameter
+     *
+     * @param args command line arguments in key=value form
+     *
+     * @throws IllegalArgumentException if argument is unknown or has incorrect value
+     */
+    public LoadSettings(String[] args) {
+        setMix("40,30,25,5");
+
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Argument must be in key=value form: " + arg);
+            }
+
+            switch (pair[0]) {
+                case "url" -> url = pair[1];
+                case "user" -> user = pair[1];
+                case "password" -> password = pair[1];
+                case "banks" -> banks = Integer.parseInt(pair[1]);
+                case "users" -> users = Integer.parseInt(pair[1]);
+                case "accounts" -> accounts = Integer.parseInt(pair[1]);
+                case "hotAccounts" -> hotAccounts = Integer.parseInt(pair[1]);
+                case "hotShare" -> hotShare = Double.parseDouble(pair[1]);
+                case "workers" -> workers = Integer.parseInt(pair[1]);
+                case "duration" -> duration = Integer.parseInt(pair[1]);
+                case "mix" -> setMix(pair[1]);
+                case "groupCommit" -> groupCommit = Boolean.parseBoolean(pair[1]);
+                case "groupCommitBatch" -> groupCommitBatch = Integer.parseInt(pair[1]);
+                case "groupCommitDelay" -> groupCommitDelay = Integer.parseInt(pair[1]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + pair[0]);
+            }
+        }
+
+        hotAccounts = Math.max(1, Math.min(hotAccounts, accounts));
+    }
+
+    /**
+     * Returns weight of operation type
+     *
+     * @param operation operation type
+     *
+     * @return weight of operation type in operation mix
+     */
+    public int getWeight(LoadOperation operation) {
+        return weights.get(operation);
+    }
+
+    /**
+     * Returns id of seeded account with given number
+     *
+     * @param number number of account from zero
+     *
+     * @return account id
+     */
+    public long getAccountId(int number) {
+        return FIRST_SEEDED_ID - number;
+    }
+
+    /**
+     * Chooses random account. Hot accounts are chosen with probability of hot share
+     *
+     * @return id of seeded account
+     */
+    public long nextAccountId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        if (random.nextDouble() < hotShare) {
+            return getAccountId(random.nextInt(hotAccounts));
+        }
+
+        return getAccountId(random.nextInt(accounts));
+    }
+
+    /**
+     * Chooses random account different from specified one. Hot accounts are chosen with probability of hot share
+     * if there are at least two of them
+     *
+     * @param excludedId id of account which must not be chosen
+     *
+     * @return id of seeded account, or specified id if it is the only seeded account
+     */
+    public long nextAccountId(long excludedId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int range = random.nextDouble() < hotShare && hotAccounts > 1 ? hotAccounts : accounts;
+        long excluded = FIRST_SEEDED_ID - excludedId;
+        int number;
+
+        if (excluded < 0 || excluded >= range) {
+            return getAccountId(random.nextInt(range));
+        }
+
+        if (range < 2) {
+            return excludedId;
+        }
+
+        number = random.nextInt(range - 1);
+
+        return getAccountId(number >= excluded ? number + 1 : number);
+    }
+
+    /**
+     * Parses weights of replenishment, withdrawal, transfer and statement operations
+     *
+     * @param mix comma separated weights
+     */
+    private void setMix(String mix) {
+        String[] values = mix.split(",");
+        LoadOperation[] operations = LoadOperation.values();
+
+        if (values.length != operations.length) {
+            throw new IllegalArgumentException("Mix must contain " + operations.length + " weights");
+        }
+
+        totalWeight = 0;
+
+        for (int i = 0; i < operations.length; i++) {
+            weights.put(operations[i], Integer.parseInt(values[i].trim()));
+            totalWeight += weights.get(operations[i]);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package loadtest;
+
+import config.api.IDatabaseConnector;
+import controller.service.AccountService;
+import controller.service.BankService;
+import controller.service.PaymentService;
+import controller.service.TransactionService;
+import controller.service.UserService;
+import controller.service.api.IAccountService;
+import controller.service.api.IPaymentService;
+import controller.service.api.ITransactionService;
+import model.dto.PaymentStatus;
+import model.entity.Account;
+import utils.YmlFileReader;
+import view.TransactionStatementView;
+import view.TransactionStatementWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Class which executes random operations through the service layer until deadline.
+ * Every worker uses its own database connection. Operations failed due to deadlocks or serialization
+ * failures are retried with backoff
+ */
+public class LoadWorker implements Runnable {
+
+    /** Maximum number of retries of one operation */
+    private final int maxRetries = 3;
+
+    /** Implementation of database connection interface for opening worker connection */
+    private final IDatabaseConnector connector;
+
+    /** Settings of the load */
+    private final LoadSettings settings;
+
+    /** Time when worker stops in nanoseconds */
+    private final long deadline;
+
+    /** Service for money operations shared by all workers, null if every worker uses its own connection */
+    private final IPaymentService sharedPaymentService;
+
+    /** Latencies of successful operations by operation type */
+    private final Map<LoadOperation, LatencyRecorder> latencies = new EnumMap<>(LoadOperation.class);
+
+    /** Number of failed operations by operation type */
+    private final Map<LoadOperation, Integer> errors = new EnumMap<>(LoadOperation.class);
+
+    /** Number of operations rejected because of insufficient funds by operation type */
+    private final Map<LoadOperation, Integer> rejections = new EnumMap<>(LoadOperation.class);
+
+    /** Number of detected deadlocks */
+    private int deadlocks;
+
+    /** Number of retried operations */
+    private int retries;
+
+    /**
+     * Constructor with parameters
+     *
+     * @param connector implementation of database connection interface
+     * @param settings settings of the load
+     * @param deadline time when worker stops in nanoseconds
+     * @param sharedPaymentService service for money operations shared by all workers,
+     *                             null if money operations must use worker connection
+     */
+    public LoadWorker(IDatabaseConnector connector, LoadSettings settings, long deadline,
+                      IPaymentService sharedPaymentService) {
+        this.connector = connector;
+        this.settings = settings;
+        this.deadline = deadline;
+        this.sharedPaymentService = sharedPaymentService;
+
+        for (LoadOperation operation : LoadOperation.values()) {
+            latencies.put(operation, new LatencyRecorder());
+            errors.put(operation, 0);
+            rejections.put(operation, 0);
+        }
+    }
+
+    /** Executes random operations until deadline */
+    @Override
+    public void run() {
+        Connection connection = connector.openConnection();
+        SqlStateRecorder recorder;
+        IAccountService accountService;
+        ITransactionService transactionService;
+        IPaymentService paymentService;
+        TransactionStatementView statementView;
+
+        if (connection == null) {
+            return;
+        }
+
+        recorder = SqlStateRecorder.of(connection);
+        connection = recorder.getConnection();
+        accountService = new AccountService(connection, new YmlFileReader());
+        transactionService = new TransactionService(connection);
+        paymentService = sharedPaymentService != null ? sharedPaymentService
+                : new PaymentService(connection, accountService, transactionService);
+        statementView = new TransactionStatementView(new BankService(connection), new UserService(connection));
+
+        try {
+            while (System.nanoTime() < deadline) {
+                executeOperation(nextOperation(), recorder, accountService, transactionService, paymentService,
+                        statementView);
+            }
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.format("SQL State: %s\n%s", e.getSQLState(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Executes operation and records its latency. Retries operation if it failed due to deadlock
+     * or serialization failure
+     *
+     * @param operation executed operation type
+     * @param recorder recorder of SQL errors of worker connection
+     * @param accountService service for operations with accounts
+     * @param transactionService service for operations with transactions
+     * @param paymentService service for money operations
+     * @param statementView view for rendering transaction statements
+     */
+    private void executeOperation(LoadOperation operation, SqlStateRecorder recorder, IAccountService accountService,
+                                  ITransactionService transactionService, IPaymentService paymentService,
+                                  TransactionStatementView statementView) {
+        long firstAccount = settings.nextAccountId();
+        long secondAccount = settings.nextAccountId(firstAccount);
+        double amount = 1 + ThreadLocalRandom.current().nextInt(100);
+        PaymentStatus status;
+        String sqlState;
+        long start;
+
+        for (int attempt = 0; ; attempt++) {
+            recorder.clear();
+            start = System.nanoTime();
+            status = switch (operation) {
+                case REPLENISH -> paymentService.replenishAccount(firstAccount, amount).status();
+                case WITHDRAW -> paymentService.withdrawAccount(firstAccount, amount).status();
+                case TRANSFER -> paymentService.transferToAnotherAccount(firstAccount, secondAccount, amount).status();
+                case STATEMENT -> statement(accountService, transactionService, statementView, firstAccount);
+            };
+            sqlState = recorder.getSqlState();
+
+            if (status == PaymentStatus.COMPLETED && sqlState == null) {
+                latencies.get(operation).record(System.nanoTime() - start);
+
+                return;
+            } else if (status == PaymentStatus.INSUFFICIENT_FUNDS) {
+                rejections.merge(operation, 1, Integer::sum);
+
+                return;
+            }
+
+            if (SqlStateRecorder.DEADLOCK.equals(sqlState)) {
+                deadlocks++;
+            }
+
+            if (SqlStateRecorder.isRetryable(sqlState) && attempt < maxRetries) {
+                retries++;
+                backOff(attempt);
+            } else {
+                errors.merge(operation, 1, Integer::sum);
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Streams account transactions for the last month and renders statement without saving it
+     *
+     * @param accountService service for operations with accounts
+     * @param transactionService service for operations with transactions
+     * @param statementView view for rendering transaction statements
+     * @param accountId id of account for statement
+     *
+     * @return COMPLETED if statement was rendered, FAILED otherwise
+     */
+    private PaymentStatus statement(IAccountService accountService, ITransactionService transactionService,
+                                    TransactionStatementView statementView, long accountId) {
+        Account account = accountService.getAccount(accountId);
+        LocalDate intervalStart = LocalDate.now().minusMonths(1);
+        TransactionStatementWriter recordWriter;
+
+        if (account.getId() == 0) {
+            return PaymentStatus.ACCOUNT_NOT_FOUND;
+        }
+
+        try (Writer output = Writer.nullWriter()) {
+            recordWriter = statementView.openStatement(account, intervalStart, output);
+            if (transactionService.forEachTransactionByTime(accountId, intervalStart.atStartOfDay(),
+                    recordWriter) < 0) {
+                return PaymentStatus.FAILED;
+            }
+        } catch (IOException e) {
+            return PaymentStatus.FAILED;
+        }
+
+        return PaymentStatus.COMPLETED;
+    }
+
+    /**
+     * Chooses random operation according to operation mix
+     *
+     * @return next operation
+     */
+    private LoadOperation nextOperation() {
+        int value = ThreadLocalRandom.current().nextInt(settings.getTotalWeight());
+
+        for (LoadOperation operation : LoadOperation.values()) {
+            value -= settings.getWeight(operation);
+
+            if (value < 0) {
+                return operation;
+            }
+        }
+
+        return LoadOperation.STATEMENT;
+    }
+
+    /**
+     * Waits before retry. Waiting time grows exponentially with random jitter
+     *
+     * @param attempt number of failed attempts minus one
+     */
+    private void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 5L << attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns latencies of successful operations of specified type
+     *
+     * @param operation operation type
+     *
+     * @return recorder of latencies
+     */
+    public LatencyRecorder getLatencies(LoadOperation operation) {
+        return latencies.get(operation);
+    }
+
+    /**
+     * Returns number of failed operations of specified type
+     *
+     * @param operation operation type
+     *
+     * @return number of errors
+     */
+    public int getErrors(LoadOperation operation) {
+        return errors.get(operation);
+    }
+
+    /**
+     * Returns number of operations of specified type rejected because of insufficient funds
+     *
+     * @param operation operation type
+     *
+     * @return number of rejections
+     */
+    public int getRejections(LoadOperation operation) {
+        return rejections.get(operation);
+    }
+
+    /**
+     * Returns number of detected deadlocks
+     *
+     * @return number of deadlocks
+     */
+    public int getDeadlocks() {
+        return deadlocks;
+    }
+
+    /**
+     * Returns number of retried operations
+     *
+     * @return number of retries
+     */
+    public int getRetries() {
+        return retries;
+    }
+}
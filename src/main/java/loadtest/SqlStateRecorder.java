@@ -0,0 +1,115 @@
+package loadtest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Class which wraps database connection and remembers SQL state of the first error. Services print and hide
+ * SQL errors, so the recorder is used for detecting deadlocks and serialization failures of the operation.
+ * Deadlock or serialization failure replaces earlier error and is never replaced, so errors of rollback
+ * and compensation which follow it do not hide it. Every worker has its own recorder and connection
+ */
+public class SqlStateRecorder implements InvocationHandler {
+
+    /** SQL state of deadlock */
+    static final String DEADLOCK = "40P01";
+
+    /** SQL state of serialization failure */
+    static final String SERIALIZATION_FAILURE = "40001";
+
+    /** Wrapped object: connection or statement */
+    private final Object target;
+
+    /** Recorder which owns the error state. This recorder for connection, parent recorder for statements */
+    private final SqlStateRecorder owner;
+
+    /** SQL state of the recorded error or null if there were no errors since last clearing */
+    private String sqlState;
+
+    /**
+     * Constructor with parameters
+     *
+     * @param target wrapped object
+     * @param owner recorder which owns the error state, null for connection recorder
+     */
+    private SqlStateRecorder(Object target, SqlStateRecorder owner) {
+        this.target = target;
+        this.owner = owner == null ? this : owner;
+    }
+
+    /**
+     * Creates recorder for connection
+     *
+     * @param connection wrapped connection
+     *
+     * @return recorder of connection errors
+     */
+    public static SqlStateRecorder of(Connection connection) {
+        return new SqlStateRecorder(connection, null);
+    }
+
+    /**
+     * Returns connection which records SQL errors of all its statements
+     *
+     * @return wrapped connection
+     */
+    public Connection getConnection() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, this);
+    }
+
+    /**
+     * Returns SQL state of deadlock or serialization failure if there was one since last clearing,
+     * otherwise of the first error
+     *
+     * @return SQL state or null if there were no errors since last clearing
+     */
+    public String getSqlState() {
+        return sqlState;
+    }
+
+    /**
+     * Checks whether SQL state means that operation can be retried
+     *
+     * @param sqlState SQL state of error
+     *
+     * @return true for deadlock and serialization failure
+     */
+    public static boolean isRetryable(String sqlState) {
+        return DEADLOCK.equals(sqlState) || SERIALIZATION_FAILURE.equals(sqlState);
+    }
+
+    /** Forgets the recorded error */
+    public void clear() {
+        sqlState = null;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Object result;
+
+        try {
+            result = method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException sqlException
+                    && (owner.sqlState == null || !isRetryable(owner.sqlState)
+                    && isRetryable(sqlException.getSQLState()))) {
+                owner.sqlState = sqlException.getSQLState();
+            }
+
+            throw e.getCause();
+        }
+
+        if (result instanceof Statement && method.getReturnType().isInterface()) {
+            return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] {method.getReturnType()},
+                    new SqlStateRecorder(result, owner));
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,131 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A class with latency histogram, error counts and number of returned rows of one service method */
+public class CallMetrics implements CallMetricsMBean {
+
+    /** Nanoseconds in one millisecond */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /** Name of the method in form "Interface.method" */
+    private final String name;
+
+    /** Latencies of calls */
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /** Number of failed calls by SQL state or exception class name */
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    /** Number of rows returned or changed by database */
+    private final LongAdder rows = new LongAdder();
+
+    /**
+     * Constructor with parameter
+     *
+     * @param name name of the method in form "Interface.method"
+     */
+    public CallMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records finished call
+     *
+     * @param nanoseconds duration of the call
+     * @param error SQL state or exception class name, null if call succeeded
+     * @param rowCount number of rows returned or changed by database during the call
+     */
+    public void record(long nanoseconds, String error, long rowCount) {
+        latencies.record(nanoseconds);
+
+        if (error != null) {
+            errors.computeIfAbsent(error, key -> new LongAdder()).increment();
+        }
+
+        if (rowCount != 0) {
+            rows.add(rowCount);
+        }
+    }
+
+    /**
+     * Returns name of the method
+     *
+     * @return name of the method in form "Interface.method"
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns latency histogram of the method
+     *
+     * @return latency histogram
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Returns number of failed calls by SQL state or exception class name
+     *
+     * @return sorted map with error counts
+     */
+    public Map<String, Long> getErrors() {
+        Map<String, Long> snapshot = new TreeMap<>();
+
+        errors.forEach((error, counter) -> snapshot.put(error, counter.sum()));
+
+        return snapshot;
+    }
+
+    @Override
+    public long getCount() {
+        return latencies.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    @Override
+    public String getErrorsBySqlState() {
+        return getErrors().toString();
+    }
+
+    @Override
+    public long getRows() {
+        return rows.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long count = latencies.getCount();
+
+        return count == 0 ? 0 : latencies.getSum() / NANOS_PER_MILLI / count;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latencies.getValueAtPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latencies.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP999Millis() {
+        return latencies.getValueAtPercentile(99.9) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latencies.getMax() / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,23 @@
+package metrics;
+
+/** Management interface of metrics of one service method, exposed via JMX */
+public interface CallMetricsMBean {
+
+    long getCount();
+
+    long getErrorCount();
+
+    String getErrorsBySqlState();
+
+    long getRows();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+}
@@ -0,0 +1,23 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import lombok.Setter;
+
+/** Flight recorder event of check rendering */
+@Name("clever_bank.CheckRender")
+@Label("Check Rendering")
+@Category({"Clever-Bank", "Documents"})
+@Setter
+public class CheckRenderEvent extends Event {
+
+    /** Id of transaction for which check is rendered */
+    @Label("Transaction Id")
+    private long transactionId;
+
+    /** Number of characters in rendered check */
+    @Label("Length")
+    private int length;
+}
@@ -0,0 +1,89 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A class with states of circuit breakers of databases and counts of their transitions. Breaker opens after
+ * connection failures and rejects calls to its database until probe call succeeds
+ */
+public class CircuitBreakerMetrics {
+
+    /** Current state of breaker by database */
+    private final Map<String, String> states = new ConcurrentHashMap<>();
+
+    /** Number of times breaker opened by database */
+    private final Map<String, LongAdder> opened = new ConcurrentHashMap<>();
+
+    /** Number of calls rejected by open breaker by database */
+    private final Map<String, LongAdder> rejected = new ConcurrentHashMap<>();
+
+    /**
+     * Records new state of breaker. Opening of breaker is counted
+     *
+     * @param database name of database
+     * @param state name of state
+     */
+    public void recordState(String database, String state) {
+        if ("open".equals(state) && !state.equals(states.put(database, state))) {
+            opened.computeIfAbsent(database, key -> new LongAdder()).increment();
+        } else {
+            states.put(database, state);
+        }
+    }
+
+    /**
+     * Records call rejected without trying to reach database
+     *
+     * @param database name of database
+     */
+    public void recordRejected(String database) {
+        rejected.computeIfAbsent(database, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Returns current states of breakers
+     *
+     * @return copy of states sorted by database
+     */
+    public Map<String, String> getStates() {
+        return new TreeMap<>(states);
+    }
+
+    /**
+     * Returns number of times breakers opened
+     *
+     * @return copy of counts sorted by database
+     */
+    public Map<String, Long> getOpened() {
+        return snapshot(opened);
+    }
+
+    /**
+     * Returns number of calls rejected by open breakers
+     *
+     * @return copy of counts sorted by database
+     */
+    public Map<String, Long> getRejected() {
+        return snapshot(rejected);
+    }
+
+    /**
+     * Copies counters
+     *
+     * @param counters copied counters
+     *
+     * @return counter values sorted by key
+     */
+    private static Map<String, Long> snapshot(Map<String, LongAdder> counters) {
+        Map<String, Long> values = new TreeMap<>();
+
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            values.put(counter.getKey(), counter.getValue().sum());
+        }
+
+        return values;
+    }
+}
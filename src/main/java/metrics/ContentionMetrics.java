@@ -0,0 +1,72 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A class with counts of optimistic concurrency conflicts by operation. Conflict is an update which was rejected
+ * because account changed after it was read. Operation is retried after conflict until attempts are exhausted
+ */
+public class ContentionMetrics {
+
+    /** Number of conflicts by operation */
+    private final Map<String, LongAdder> conflicts = new ConcurrentHashMap<>();
+
+    /** Number of operations which failed after all attempts by operation */
+    private final Map<String, LongAdder> exhausted = new ConcurrentHashMap<>();
+
+    /**
+     * Records conflict which will be retried or not
+     *
+     * @param operation name of operation
+     */
+    public void recordConflict(String operation) {
+        conflicts.computeIfAbsent(operation, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Records operation which failed because every attempt was a conflict
+     *
+     * @param operation name of operation
+     */
+    public void recordExhausted(String operation) {
+        exhausted.computeIfAbsent(operation, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Returns number of conflicts by operation
+     *
+     * @return copy of conflict counts sorted by operation
+     */
+    public Map<String, Long> getConflicts() {
+        return snapshot(conflicts);
+    }
+
+    /**
+     * Returns number of operations which failed after all attempts by operation
+     *
+     * @return copy of counts sorted by operation
+     */
+    public Map<String, Long> getExhausted() {
+        return snapshot(exhausted);
+    }
+
+    /**
+     * Copies counters
+     *
+     * @param counters copied counters
+     *
+     * @return counter values sorted by key
+     */
+    private static Map<String, Long> snapshot(Map<String, LongAdder> counters) {
+        Map<String, Long> values = new TreeMap<>();
+
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            values.put(counter.getKey(), counter.getValue().sum());
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,27 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import lombok.Setter;
+
+/** Flight recorder event of SQL statement execution, one database round trip */
+@Name("clever_bank.DatabaseCall")
+@Label("Database Call")
+@Category({"Clever-Bank", "Services"})
+@Setter
+public class DatabaseCallEvent extends Event {
+
+    /** Text of executed SQL statement */
+    @Label("SQL")
+    private String sql;
+
+    /** Number of changed rows. Minus one for queries */
+    @Label("Rows")
+    private long rows;
+
+    /** SQL state of error, null if statement succeeded */
+    @Label("SQL State")
+    private String sqlState;
+}
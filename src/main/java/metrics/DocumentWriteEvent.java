@@ -0,0 +1,29 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import lombok.Setter;
+
+/** Flight recorder event of saving document in file */
+@Name("clever_bank.DocumentWrite")
+@Label("Document Write")
+@Category({"Clever-Bank", "Documents"})
+@Setter
+public class DocumentWriteEvent extends Event {
+
+    /** Path of saved file */
+    @Label("Path")
+    private String path;
+
+    /** Number of bytes written to the file */
+    @Label("Bytes")
+    @DataAmount
+    private long bytes;
+
+    /** Whether document was compressed */
+    @Label("Compressed")
+    private boolean compressed;
+}
@@ -0,0 +1,152 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds with log-linear buckets, similar to HdrHistogram.
+ * Values below 128 are recorded exactly, bigger values with relative error below 1/64.
+ * Recording is a few atomic increments, so the histogram can be updated from many threads without contention
+ */
+public class LatencyHistogram {
+
+    /** Number of bits of sub-bucket index. Defines precision of recorded values */
+    private static final int SUB_BUCKET_BITS = 7;
+
+    /** Number of exactly recorded values */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Number of sub-buckets in every next power of two */
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    /** Number of buckets enough for any positive long value */
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    /** Number of recorded values in every bucket */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /** Number of recorded values */
+    private final LongAdder count = new LongAdder();
+
+    /** Sum of recorded values */
+    private final LongAdder sum = new LongAdder();
+
+    /** Maximum recorded value */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records value. Negative values are recorded as zero
+     *
+     * @param nanoseconds latency in nanoseconds
+     */
+    public void record(long nanoseconds) {
+        long value = Math.max(0, nanoseconds);
+
+        counts.incrementAndGet(getIndex(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Returns number of recorded values
+     *
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns sum of recorded values
+     *
+     * @return sum of recorded values in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns maximum recorded value
+     *
+     * @return maximum recorded value in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns value below or equal to which the given percentage of recorded values lies.
+     * Value is the highest value of its bucket, but not bigger than maximum recorded value
+     *
+     * @param percentile percentile from 0 to 100
+     *
+     * @return value at the percentile in nanoseconds or zero if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long rank;
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+
+            if (seen >= rank) {
+                return Math.min(getHighestValue(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Returns index of bucket for value
+     *
+     * @param value non-negative value
+     *
+     * @return index of bucket
+     */
+    static int getIndex(long value) {
+        int shift;
+
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the highest value recorded in bucket
+     *
+     * @param index index of bucket
+     *
+     * @return the highest value of bucket
+     */
+    static long getHighestValue(int index) {
+        int shift;
+        long subBucket;
+
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
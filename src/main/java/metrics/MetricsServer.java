@@ -0,0 +1,78 @@
+package metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import utils.StructuredLogger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A class for exposing service metrics as plain text over HTTP at path /metrics. Server has no authentication,
+ * so it listens on loopback interface unless another address is configured
+ */
+public class MetricsServer {
+
+    /** Collected service metrics */
+    private final ServiceMetrics metrics;
+
+    /** HTTP server, null if server is not started */
+    private HttpServer server;
+
+    /**
+     * Constructor with parameter
+     *
+     * @param metrics collected service metrics
+     */
+    public MetricsServer(ServiceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts server in background thread. Prints message in case of errors
+     *
+     * @param host address of interface on which server listens
+     * @param port port of the server
+     */
+    public void start(String host, int port) {
+        try {
+            server = HttpServer.create(new InetSocketAddress(host, port), 0);
+            server.createContext("/metrics", this::handle);
+            server.start();
+        } catch (IOException e) {
+            StructuredLogger.getLogger().error("startMetricsServer", e.getMessage(), "host", host, "port", port);
+        }
+    }
+
+    /** Stops server if it was started */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    /**
+     * Writes metrics in response to the request
+     *
+     * @param exchange HTTP request and response
+     *
+     * @throws IOException if response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        StringWriter text = new StringWriter();
+        byte[] body;
+
+        metrics.writeText(text);
+        body = text.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+
+        try (OutputStream response = exchange.getResponseBody()) {
+            response.write(body);
+        }
+    }
+}
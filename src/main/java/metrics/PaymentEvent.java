@@ -0,0 +1,41 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import lombok.Setter;
+
+/** Flight recorder event of money operation from user input to printed check */
+@Name("clever_bank.Payment")
+@Label("Payment")
+@Category({"Clever-Bank", "Payments"})
+@Description("Replenishment, withdrawal or transfer including check rendering and saving")
+@Setter
+public class PaymentEvent extends Event {
+
+    /** Type of money operation */
+    @Label("Operation")
+    private String operation;
+
+    /** Id of sender account. Zero in case of replenishment */
+    @Label("Sender Account")
+    private long senderId;
+
+    /** Id of receiver account. Zero in case of withdrawal */
+    @Label("Receiver Account")
+    private long receiverId;
+
+    /** Amount of money operation */
+    @Label("Amount")
+    private double amount;
+
+    /** Status of money operation */
+    @Label("Status")
+    private String status;
+
+    /** Id of created transaction. Zero if operation failed */
+    @Label("Transaction Id")
+    private long transactionId;
+}
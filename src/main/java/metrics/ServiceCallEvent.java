@@ -0,0 +1,27 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import lombok.Setter;
+
+/** Flight recorder event of service method call */
+@Name("clever_bank.ServiceCall")
+@Label("Service Call")
+@Category({"Clever-Bank", "Services"})
+@Setter
+public class ServiceCallEvent extends Event {
+
+    /** Name of the method in form "Interface.method" */
+    @Label("Method")
+    private String method;
+
+    /** Number of rows returned or changed by database during the call */
+    @Label("Rows")
+    private long rows;
+
+    /** SQL state or exception class name, null if call succeeded */
+    @Label("Error")
+    private String error;
+}
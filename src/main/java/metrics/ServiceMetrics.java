@@ -0,0 +1,484 @@
+package metrics;
+
+import config.api.IDatabaseConnector;
+import utils.StructuredLogger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A class for collecting metrics of service calls. Services are wrapped by proxies which record latency of every
+ * call of interface methods. Services print and hide SQL errors, so database connection is wrapped too:
+ * SQL states of errors and numbers of returned or changed rows are attributed to the service call
+ * running in the same thread. Metrics are exposed via JMX and as text in Prometheus format.
+ * Service calls and statement executions are also emitted as flight recorder events
+ */
+public class ServiceMetrics {
+
+    /** JMX domain of registered metrics */
+    private static final String DOMAIN = "clever-bank";
+
+    /** Percentiles written in text format */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /** Nanoseconds in one second */
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    /** Metrics of service methods by name */
+    private final ConcurrentNavigableMap<String, CallMetrics> calls = new ConcurrentSkipListMap<>();
+
+    /** Time of opening new database connections */
+    private final LatencyHistogram connectionWait = new LatencyHistogram();
+
+    /** Optimistic concurrency conflicts of money operations */
+    private final ContentionMetrics contention = new ContentionMetrics();
+
+    /** States and transitions of circuit breakers of databases */
+    private final CircuitBreakerMetrics circuitBreakers = new CircuitBreakerMetrics();
+
+    /** Error and row count of the service call running in the current thread */
+    private final ThreadLocal<CallState> callState = ThreadLocal.withInitial(CallState::new);
+
+    /** Whether metrics are registered in JMX */
+    private volatile boolean registeredInJmx;
+
+    /**
+     * Wraps service, so every call of interface methods is recorded. Methods inherited from other interfaces
+     * are not recorded
+     *
+     * @param api service interface
+     * @param service wrapped service
+     * @param <T> type of service interface
+     *
+     * @return service which records metrics of its calls
+     */
+    public <T> T instrument(Class<T> api, T service) {
+        Map<Method, CallMetrics> methods = new HashMap<>();
+
+        for (Method method : api.getDeclaredMethods()) {
+            methods.put(method, getCallMetrics(api.getSimpleName() + "." + method.getName()));
+        }
+
+        return api.cast(Proxy.newProxyInstance(api.getClassLoader(), new Class<?>[] {api},
+                new ServiceHandler(service, methods)));
+    }
+
+    /**
+     * Wraps database connection, so SQL errors and row counts of its statements are recorded
+     *
+     * @param connection wrapped connection
+     *
+     * @return connection which records SQL errors and row counts or null if connection is null
+     */
+    public Connection instrument(Connection connection) {
+        if (connection == null) {
+            return null;
+        }
+
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new JdbcHandler(connection, null));
+    }
+
+    /**
+     * Wraps database connector, so its connections are instrumented and time of opening new connections is recorded
+     *
+     * @param connector wrapped connector
+     *
+     * @return connector which returns instrumented connections
+     */
+    public IDatabaseConnector instrument(IDatabaseConnector connector) {
+        Connection connection = instrument(connector.getConnection());
+
+        return new IDatabaseConnector() {
+            @Override
+            public Connection getConnection() {
+                return connection;
+            }
+
+            @Override
+            public Connection openConnection() {
+                long start = System.nanoTime();
+                Connection opened = connector.openConnection();
+
+                connectionWait.record(System.nanoTime() - start);
+
+                return instrument(opened);
+            }
+
+            @Override
+            public void closeConnection() {
+                connector.closeConnection();
+            }
+        };
+    }
+
+    /**
+     * Returns metrics of all instrumented service methods
+     *
+     * @return metrics sorted by method name
+     */
+    public Collection<CallMetrics> getCalls() {
+        return calls.values();
+    }
+
+    /**
+     * Returns histogram of time of opening new database connections
+     *
+     * @return histogram of connection wait time
+     */
+    public LatencyHistogram getConnectionWait() {
+        return connectionWait;
+    }
+
+    /**
+     * Returns counts of optimistic concurrency conflicts
+     *
+     * @return contention metrics of money operations
+     */
+    public ContentionMetrics getContention() {
+        return contention;
+    }
+
+    /**
+     * Returns states and transitions of circuit breakers
+     *
+     * @return circuit breaker metrics of databases
+     */
+    public CircuitBreakerMetrics getCircuitBreakers() {
+        return circuitBreakers;
+    }
+
+    /**
+     * Registers metrics of instrumented methods in platform MBean server. Methods instrumented later
+     * are registered as soon as they are instrumented. Prints message in case of errors
+     */
+    public void registerInJmx() {
+        registeredInJmx = true;
+
+        for (CallMetrics metrics : calls.values()) {
+            registerInJmx(metrics);
+        }
+    }
+
+    /**
+     * Writes all metrics in Prometheus text format
+     *
+     * @param writer destination of metrics
+     *
+     * @throws IOException if metrics cannot be written
+     */
+    public void writeText(Writer writer) throws IOException {
+        writer.write("# HELP clever_bank_call_duration_seconds Duration of service calls\n");
+        writer.write("# TYPE clever_bank_call_duration_seconds summary\n");
+
+        for (CallMetrics metrics : calls.values()) {
+            writeSummary(writer, "clever_bank_call_duration_seconds", "method=\"" + metrics.getName() + "\",",
+                    metrics.getLatencies());
+        }
+
+        writer.write("# HELP clever_bank_call_errors_total Failed service calls by SQL state or exception\n");
+        writer.write("# TYPE clever_bank_call_errors_total counter\n");
+
+        for (CallMetrics metrics : calls.values()) {
+            for (Map.Entry<String, Long> error : metrics.getErrors().entrySet()) {
+                writer.write("clever_bank_call_errors_total{method=\"" + metrics.getName() + "\",sql_state=\""
+                        + error.getKey() + "\"} " + error.getValue() + "\n");
+            }
+        }
+
+        writer.write("# HELP clever_bank_call_rows_total Rows returned or changed by database\n");
+        writer.write("# TYPE clever_bank_call_rows_total counter\n");
+
+        for (CallMetrics metrics : calls.values()) {
+            writer.write("clever_bank_call_rows_total{method=\"" + metrics.getName() + "\"} " + metrics.getRows()
+                    + "\n");
+        }
+
+        writer.write("# HELP clever_bank_connection_wait_seconds Time of opening database connections\n");
+        writer.write("# TYPE clever_bank_connection_wait_seconds summary\n");
+        writeSummary(writer, "clever_bank_connection_wait_seconds", "", connectionWait);
+
+        writer.write("# HELP clever_bank_optimistic_conflicts_total Updates rejected because account changed\n");
+        writer.write("# TYPE clever_bank_optimistic_conflicts_total counter\n");
+
+        for (Map.Entry<String, Long> conflicts : contention.getConflicts().entrySet()) {
+            writer.write("clever_bank_optimistic_conflicts_total{operation=\"" + conflicts.getKey() + "\"} "
+                    + conflicts.getValue() + "\n");
+        }
+
+        writer.write("# HELP clever_bank_optimistic_retries_exhausted_total Operations failed after all attempts\n");
+        writer.write("# TYPE clever_bank_optimistic_retries_exhausted_total counter\n");
+
+        for (Map.Entry<String, Long> exhausted : contention.getExhausted().entrySet()) {
+            writer.write("clever_bank_optimistic_retries_exhausted_total{operation=\"" + exhausted.getKey() + "\"} "
+                    + exhausted.getValue() + "\n");
+        }
+
+        writer.write("# HELP clever_bank_circuit_breaker_state Current state of circuit breaker of database\n");
+        writer.write("# TYPE clever_bank_circuit_breaker_state gauge\n");
+
+        for (Map.Entry<String, String> state : circuitBreakers.getStates().entrySet()) {
+            writer.write("clever_bank_circuit_breaker_state{database=\"" + state.getKey() + "\",state=\""
+                    + state.getValue() + "\"} 1\n");
+        }
+
+        writer.write("# HELP clever_bank_circuit_breaker_opened_total Times circuit breaker opened\n");
+        writer.write("# TYPE clever_bank_circuit_breaker_opened_total counter\n");
+
+        for (Map.Entry<String, Long> opened : circuitBreakers.getOpened().entrySet()) {
+            writer.write("clever_bank_circuit_breaker_opened_total{database=\"" + opened.getKey() + "\"} "
+                    + opened.getValue() + "\n");
+        }
+
+        writer.write("# HELP clever_bank_circuit_breaker_rejected_total Calls rejected by open circuit breaker\n");
+        writer.write("# TYPE clever_bank_circuit_breaker_rejected_total counter\n");
+
+        for (Map.Entry<String, Long> rejected : circuitBreakers.getRejected().entrySet()) {
+            writer.write("clever_bank_circuit_breaker_rejected_total{database=\"" + rejected.getKey() + "\"} "
+                    + rejected.getValue() + "\n");
+        }
+    }
+
+    /**
+     * Writes percentiles, sum and count of histogram in Prometheus text format
+     *
+     * @param writer destination of metrics
+     * @param metric name of metric
+     * @param labels labels of metric, each followed by comma
+     * @param histogram written histogram
+     *
+     * @throws IOException if metrics cannot be written
+     */
+    private void writeSummary(Writer writer, String metric, String labels, LatencyHistogram histogram)
+            throws IOException {
+        for (double quantile : QUANTILES) {
+            writer.write(String.format(Locale.ROOT, "%s{%squantile=\"%s\"} %.9f\n", metric, labels, quantile,
+                    histogram.getValueAtPercentile(quantile * 100) / NANOS_PER_SECOND));
+        }
+
+        labels = labels.isEmpty() ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+        writer.write(String.format(Locale.ROOT, "%s_sum%s %.9f\n", metric, labels,
+                histogram.getSum() / NANOS_PER_SECOND));
+        writer.write(metric + "_count" + labels + " " + histogram.getCount() + "\n");
+    }
+
+    /**
+     * Returns metrics of method, creating them if necessary
+     *
+     * @param name name of the method in form "Interface.method"
+     *
+     * @return metrics of the method
+     */
+    private CallMetrics getCallMetrics(String name) {
+        CallMetrics metrics = calls.get(name);
+
+        if (metrics == null) {
+            metrics = calls.computeIfAbsent(name, CallMetrics::new);
+
+            if (registeredInJmx) {
+                registerInJmx(metrics);
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Registers metrics of one method in platform MBean server. Prints message in case of errors
+     *
+     * @param metrics metrics of the method
+     */
+    private void registerInJmx(CallMetrics metrics) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=ServiceMetrics,name=" + metrics.getName());
+
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            StructuredLogger.getLogger().error("registerMetrics", e.getMessage(), "name", metrics.getName());
+        }
+    }
+
+    /**
+     * Invokes method of wrapped object and rethrows its exceptions unwrapped
+     *
+     * @param target wrapped object
+     * @param method invoked method
+     * @param args arguments of the method
+     *
+     * @return result of the method
+     *
+     * @throws Throwable exception thrown by the method
+     */
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Error and row count of the service call running in a thread */
+    private static class CallState {
+
+        /** SQL state or exception class name of the last error, null if there were no errors */
+        private String error;
+
+        /** Number of rows returned or changed by database */
+        private long rows;
+    }
+
+    /** Handler of service proxy which records calls of interface methods */
+    private class ServiceHandler implements InvocationHandler {
+
+        /** Wrapped service */
+        private final Object target;
+
+        /** Metrics of recorded methods */
+        private final Map<Method, CallMetrics> methods;
+
+        /**
+         * Constructor with parameters
+         *
+         * @param target wrapped service
+         * @param methods metrics of recorded methods
+         */
+        private ServiceHandler(Object target, Map<Method, CallMetrics> methods) {
+            this.target = target;
+            this.methods = methods;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            CallMetrics metrics = methods.get(method);
+            ServiceCallEvent event;
+            CallState state;
+            String outerError;
+            long outerRows;
+            long start;
+
+            if (metrics == null) {
+                return invokeTarget(target, method, args);
+            }
+
+            state = callState.get();
+            outerError = state.error;
+            outerRows = state.rows;
+            state.error = null;
+            state.rows = 0;
+            event = new ServiceCallEvent();
+            event.begin();
+            start = System.nanoTime();
+
+            try {
+                return invokeTarget(target, method, args);
+            } catch (Throwable e) {
+                if (state.error == null) {
+                    state.error = e.getClass().getSimpleName();
+                }
+
+                throw e;
+            } finally {
+                metrics.record(System.nanoTime() - start, state.error, state.rows);
+                event.setMethod(metrics.getName());
+                event.setRows(state.rows);
+                event.setError(state.error);
+                event.commit();
+                state.error = outerError; // calls of nested services are recorded separately
+                state.rows = outerRows;
+            }
+        }
+    }
+
+    /**
+     * Handler of connection, statement and result set proxies which records SQL errors and row counts.
+     * Every statement execution is recorded as flight recorder event
+     */
+    private class JdbcHandler implements InvocationHandler {
+
+        /** Wrapped connection, statement or result set */
+        private final Object target;
+
+        /** Text of prepared statement, null for other objects */
+        private final String sql;
+
+        /**
+         * Constructor with parameters
+         *
+         * @param target wrapped connection, statement or result set
+         * @param sql text of prepared statement, null for other objects
+         */
+        private JdbcHandler(Object target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            boolean execution = target instanceof Statement && method.getName().startsWith("execute");
+            DatabaseCallEvent event = execution ? new DatabaseCallEvent() : null;
+            CallState state = callState.get();
+            long rows = -1;
+            Object result;
+
+            if (execution) {
+                event.begin();
+                event.setSql(sql != null ? sql : args != null && args.length > 0 ? String.valueOf(args[0]) : null);
+            }
+
+            try {
+                result = invokeTarget(target, method, args);
+            } catch (SQLException e) {
+                state.error = e.getSQLState() == null ? "unknown" : e.getSQLState();
+
+                if (execution) {
+                    event.setSqlState(state.error);
+                    event.setRows(rows);
+                    event.commit();
+                }
+
+                throw e;
+            }
+
+            if (target instanceof ResultSet && Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+                state.rows++;
+            }
+
+            if (execution) {
+                if (result instanceof Integer || result instanceof Long) {
+                    rows = ((Number) result).longValue();
+                    state.rows += rows;
+                }
+
+                event.setRows(rows);
+                event.commit();
+            }
+
+            if ((result instanceof Statement || result instanceof ResultSet) && method.getReturnType().isInterface()) {
+                return Proxy.newProxyInstance(method.getReturnType().getClassLoader(),
+                        new Class<?>[] {method.getReturnType()}, new JdbcHandler(result,
+                                method.getName().startsWith("prepare") ? (String) args[0] : null));
+            }
+
+            return result;
+        }
+    }
+}
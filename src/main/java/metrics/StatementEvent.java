@@ -0,0 +1,27 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import lombok.Setter;
+
+/** Flight recorder event of statement generation, from reading transactions to saving file */
+@Name("clever_bank.Statement")
+@Label("Statement")
+@Category({"Clever-Bank", "Documents"})
+@Setter
+public class StatementEvent extends Event {
+
+    /** Type of statement: transaction or money statement */
+    @Label("Statement Type")
+    private String statementType;
+
+    /** Id of account for which statement is generated */
+    @Label("Account Id")
+    private long accountId;
+
+    /** Number of transaction records in statement */
+    @Label("Records")
+    private int records;
+}
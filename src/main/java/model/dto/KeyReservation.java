@@ -0,0 +1,22 @@
+package model.dto;
+
+/**
+ * An object with result of reservation of idempotency key
+ *
+ * @param status result status of reservation
+ * @param transactionId id of transaction created by the operation with the same key. Zero unless status
+ *                      is COMPLETED
+ */
+public record KeyReservation(KeyStatus status, long transactionId) {
+
+    /**
+     * Creates result of reservation without transaction
+     *
+     * @param status result status of reservation
+     *
+     * @return result without transaction id
+     */
+    public static KeyReservation of(KeyStatus status) {
+        return new KeyReservation(status, 0);
+    }
+}
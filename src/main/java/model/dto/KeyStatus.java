@@ -0,0 +1,20 @@
+package model.dto;
+
+/** Result status of reservation of idempotency key */
+public enum KeyStatus {
+
+    /** Key was not used before and is reserved for the operation, which must be executed */
+    RESERVED,
+
+    /** Operation with the same key and parameters was completed before */
+    COMPLETED,
+
+    /** Operation with the same key was started before and did not finish, its result is unknown */
+    IN_PROGRESS,
+
+    /** Key was used before for operation with other parameters */
+    CONFLICT,
+
+    /** Key cannot be checked because of database error */
+    FAILED
+}
@@ -0,0 +1,34 @@
+package model.dto;
+
+import model.entity.Transaction;
+
+/**
+ * An object with result of money operation and information required for its check
+ *
+ * @param status result status of operation
+ * @param transaction created transaction. Transaction with default values if operation failed
+ * @param senderBankId id of bank which owns sender account. Zero in case of account replenishment
+ * @param receiverBankId id of bank which owns receiver account. Zero in case of money withdrawal
+ */
+public record PaymentResult(PaymentStatus status, Transaction transaction, long senderBankId, long receiverBankId) {
+
+    /**
+     * Creates result of failed operation
+     *
+     * @param status reason of failure
+     *
+     * @return result without transaction
+     */
+    public static PaymentResult failed(PaymentStatus status) {
+        return new PaymentResult(status, new Transaction(), 0, 0);
+    }
+
+    /**
+     * Checks whether operation completed
+     *
+     * @return true if transaction was saved
+     */
+    public boolean isCompleted() {
+        return status == PaymentStatus.COMPLETED;
+    }
+}
@@ -0,0 +1,57 @@
+package model.dto;
+
+/** Result status of money operation */
+public enum PaymentStatus {
+
+    /** Operation completed and transaction was saved */
+    COMPLETED,
+
+    /** Account of replenishment or withdrawal doesn't exist */
+    ACCOUNT_NOT_FOUND,
+
+    /** Sender account of transfer doesn't exist */
+    SENDER_NOT_FOUND,
+
+    /** Receiver account of transfer doesn't exist */
+    RECEIVER_NOT_FOUND,
+
+    /** Sender and receiver of transfer are the same account */
+    SAME_ACCOUNT,
+
+    /** There are not enough money on account balance */
+    INSUFFICIENT_FUNDS,
+
+    /** Account balance was not updated */
+    UPDATE_FAILED,
+
+    /** Transaction record was not saved, balance changes were rolled back */
+    TRANSACTION_FAILED,
+
+    /** Operation would exceed velocity limit of debited account and was not executed */
+    LIMIT_EXCEEDED,
+
+    /** Client sent too many operations and operation was not executed */
+    RATE_LIMITED,
+
+    /** Too many operations are executed at once and operation was not executed */
+    OVERLOADED,
+
+    /** Operation failed due to database error, changes were rolled back */
+    FAILED,
+
+    /** Commit of operation failed, so it is unknown whether its changes were saved */
+    UNKNOWN;
+
+    /**
+     * Checks whether operation was rejected before any changes were made, so it can safely be executed again
+     *
+     * @return true if operation was rejected by checks of accounts, limits or load
+     */
+    public boolean isRejected() {
+        return switch (this) {
+            case ACCOUNT_NOT_FOUND, SENDER_NOT_FOUND, RECEIVER_NOT_FOUND, SAME_ACCOUNT, INSUFFICIENT_FUNDS,
+                 LIMIT_EXCEEDED, RATE_LIMITED, OVERLOADED -> true;
+            default -> false;
+        };
+    }
+}
@@ -27,6 +27,9 @@ public class Account {
     /** Account creation date */
     private Date creationDate;
 
+    /** Version of account row. Incremented by every update of account in database */
+    private long version;
+
     /** Constructor without arguments with default values for class variables */
     public Account() {
         id = 0;
@@ -34,5 +37,19 @@ public class Account {
         balance = 0.0;
         userId = 0;
         creationDate = Date.valueOf(LocalDate.MIN);
+        version = 0;
+    }
+
+    /**
+     * Constructor with parameters for account which was not read from database. Version is zero
+     *
+     * @param id account id
+     * @param bankId bank where the user account is located
+     * @param balance account balance
+     * @param userId owner of account
+     * @param creationDate account creation date
+     */
+    public Account(long id, long bankId, double balance, long userId, Date creationDate) {
+        this(id, bankId, balance, userId, creationDate, 0);
     }
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+package utils;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * A class for compressing checks and statements with zlib and a preset dictionary.
+ * Dictionary is built from document templates, so template boilerplate of every document is replaced
+ * by short references. Documents can be decompressed only with the same dictionary
+ */
+public class DocumentCompressor {
+
+    /** Preset dictionary with document templates */
+    private final byte[] dictionary;
+
+    /** Checksum of the dictionary which is stored in every compressed document */
+    private final int dictionaryChecksum;
+
+    /** Reusable compressor for every thread */
+    private final ThreadLocal<Deflater> deflater = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+
+    /** Reusable buffer with compressed document for every thread */
+    private final ThreadLocal<ByteBuffer> compressedBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1024));
+
+    /**
+     * Constructor with parameter. The most frequent documents should be the last, because zlib finds
+     * closer matches cheaper
+     *
+     * @param templates texts of document templates
+     */
+    public DocumentCompressor(String... templates) {
+        StringBuilder text = new StringBuilder();
+        Adler32 checksum = new Adler32();
+
+        for (String template : templates) {
+            text.append(template);
+        }
+
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        dictionary = Arrays.copyOfRange(bytes, Math.max(0, bytes.length - 32768), bytes.length); // zlib window
+        checksum.update(dictionary);
+        dictionaryChecksum = (int) checksum.getValue();
+    }
+
+    /**
+     * Compresses document. Returned buffer is reused by the current thread and stays valid
+     * only until the next compression in the same thread
+     *
+     * @param document bytes of the document. Buffer will be fully consumed
+     *
+     * @return buffer with compressed document ready for reading
+     */
+    public ByteBuffer compress(ByteBuffer document) {
+        Deflater currentDeflater = deflater.get();
+        ByteBuffer output = compressedBuffer.get();
+        ByteBuffer grown;
+
+        currentDeflater.reset();
+        currentDeflater.setDictionary(dictionary);
+        currentDeflater.setInput(document);
+        currentDeflater.finish();
+        output.clear();
+
+        while (!currentDeflater.finished()) {
+            if (!output.hasRemaining()) {
+                grown = ByteBuffer.allocate(output.capacity() * 2);
+                grown.put(output.flip());
+                output = grown;
+                compressedBuffer.set(output);
+            }
+
+            currentDeflater.deflate(output);
+        }
+
+        document.position(document.limit());
+
+        return output.flip();
+    }
+
+    /**
+     * Wraps stream, so everything written to it is compressed. Closing returned stream closes wrapped stream
+     *
+     * @param output destination of compressed bytes
+     *
+     * @return stream which compresses data
+     */
+    public OutputStream compressingStream(OutputStream output) {
+        Deflater streamDeflater = new Deflater(Deflater.BEST_SPEED);
+
+        streamDeflater.setDictionary(dictionary);
+
+        return new FilterOutputStream(new DeflaterOutputStream(output, streamDeflater, 8192)) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    streamDeflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Decompresses document
+     *
+     * @param compressed bytes of the compressed document
+     *
+     * @return bytes of the document
+     *
+     * @throws DataFormatException if document is corrupted or was compressed with another dictionary
+     */
+    public byte[] decompress(byte[] compressed) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        byte[] document = new byte[Math.max(compressed.length * 8, 256)];
+        int length = 0;
+
+        try {
+            inflater.setInput(compressed);
+
+            while (!inflater.finished()) {
+                if (length == document.length) {
+                    document = Arrays.copyOf(document, document.length * 2);
+                }
+
+                length += inflater.inflate(document, length, document.length - length);
+
+                if (inflater.needsDictionary()) {
+                    if (inflater.getAdler() != dictionaryChecksum) {
+                        throw new DataFormatException("Document was compressed with another dictionary");
+                    }
+
+                    inflater.setDictionary(dictionary);
+                } else if (inflater.needsInput() && !inflater.finished()) {
+                    throw new DataFormatException("Compressed document is truncated");
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+
+        return Arrays.copyOf(document, length);
+    }
+}
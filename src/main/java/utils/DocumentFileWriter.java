@@ -1,15 +1,31 @@
 package utils;
 
+import metrics.DocumentWriteEvent;
 import model.entity.Account;
 import model.entity.Transaction;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-
-/** A class for saving check in file */
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+
+/**
+ * A class for saving check in file. Documents can be saved as plain UTF-8 text
+ * or compressed with document template dictionary
+ */
 public class DocumentFileWriter {
 
+    /** Logger for errors */
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
     /** A path for creating directory for saving checks */
     private final String checkPath = System.getProperty("user.dir") + File.separator + "check";
 
@@ -19,8 +35,25 @@ public class DocumentFileWriter {
     /** A path for creating directory for saving account money statements */
     private final String moneyStatementPath = System.getProperty("user.dir") + File.separator + "money-statement";
 
-    /** A constructor without parameters for creating directories where files will be saved */
+    /** Compressor of saved documents. Null if documents are saved as plain text */
+    private final DocumentCompressor compressor;
+
+    /** Extension of saved documents */
+    private final String extension;
+
+    /** A constructor without parameters for creating directories where files will be saved as plain text */
     public DocumentFileWriter() {
+        this(null);
+    }
+
+    /**
+     * A constructor with parameter for creating directories where files will be saved
+     *
+     * @param compressor compressor of saved documents. Null if documents must be saved as plain text
+     */
+    public DocumentFileWriter(DocumentCompressor compressor) {
+        this.compressor = compressor;
+        this.extension = compressor == null ? ".txt" : ".txt.z";
         createDirectories();
     }
 
@@ -31,6 +64,9 @@ public class DocumentFileWriter {
 
         file = new File(accountStatementPath);
         file.mkdir();
+
+        file = new File(moneyStatementPath);
+        file.mkdir();
     }
 
     /**
@@ -38,11 +74,48 @@ public class DocumentFileWriter {
      *
      * @param check data which will be saved in file
      * @param transaction transaction for which the check was generated. Used to name a file
+     *
+     * @return true if check was saved
+     */
+    public boolean saveCheck(CharSequence check, Transaction transaction) {
+        return saveCheck(DocumentFormatter.encode(check), transaction);
+    }
+
+    /**
+     * Saves check encoded in UTF-8 in file. File name depends on transaction id
+     *
+     * @param check bytes which will be saved in file. Buffer will be fully consumed
+     * @param transaction transaction for which the check was generated. Used to name a file
+     *
+     * @return true if check was saved
      */
-    public void saveCheck(String check, Transaction transaction) {
-        File file = new File(checkPath + File.separator + "check_" + transaction.getId() + ".txt");
+    public boolean saveCheck(ByteBuffer check, Transaction transaction) {
+        return saveFile(check, getCheckFile(transaction.getId()));
+    }
+
+    /**
+     * Reads check from file. Compressed checks are decompressed. Prints message in case of errors
+     *
+     * @param transactionId id of transaction for which the check was generated
+     *
+     * @return text of the check, or empty string if check cannot be read
+     */
+    public String readCheck(long transactionId) {
+        byte[] data;
+
+        try {
+            data = Files.readAllBytes(getCheckFile(transactionId).toPath());
+
+            if (compressor != null) {
+                data = compressor.decompress(data);
+            }
 
-        saveFile(check, file);
+            return new String(data, StandardCharsets.UTF_8);
+        } catch (IOException | DataFormatException e) {
+            logger.error("readCheck", e.getMessage(), "transactionId", transactionId);
+        }
+
+        return "";
     }
 
     /**
@@ -52,9 +125,43 @@ public class DocumentFileWriter {
      * @param account account for which statement was generated. Used to name a file
      */
     public void saveAccountStatement(String accountStatement, Account account) {
-        File file = new File(accountStatementPath + File.separator + "account_statement_" + account.getId() + ".txt");
+        File file = new File(accountStatementPath + File.separator + "account_statement_" + account.getId()
+                + extension);
 
-        saveFile(accountStatement, file);
+        saveFile(DocumentFormatter.encode(accountStatement), file);
+    }
+
+    /**
+     * Opens file for writing account statement in UTF-8. File name depends on account id.
+     * Existing file is overwritten. Caller is responsible for closing returned writer
+     *
+     * @param account account for which statement will be generated. Used to name a file
+     *
+     * @return buffered writer to the statement file
+     *
+     * @throws IOException if file cannot be opened
+     */
+    public Writer openAccountStatement(Account account) throws IOException {
+        File file = new File(accountStatementPath + File.separator + "account_statement_" + account.getId()
+                + extension);
+
+        return openFile(file);
+    }
+
+    /**
+     * Opens file for writing account`s money statement in UTF-8. File name depends on account id.
+     * Existing file is overwritten. Caller is responsible for closing returned writer
+     *
+     * @param account account for which statement will be generated. Used to name a file
+     *
+     * @return buffered writer to the statement file
+     *
+     * @throws IOException if file cannot be opened
+     */
+    public Writer openMoneyStatement(Account account) throws IOException {
+        File file = new File(moneyStatementPath + File.separator + "money_statement_" + account.getId() + extension);
+
+        return openFile(file);
     }
 
     /**
@@ -64,22 +171,77 @@ public class DocumentFileWriter {
      * @param account account for which statement was generated. Used to name a file
      */
     public void saveMoneyStatement(String accountStatement, Account account) {
-        File file = new File(moneyStatementPath + File.separator + "money_statement_" + account.getId() + ".txt");
+        File file = new File(moneyStatementPath + File.separator + "money_statement_" + account.getId() + extension);
 
-        saveFile(accountStatement, file);
+        saveFile(DocumentFormatter.encode(accountStatement), file);
     }
 
     /**
-     * Saves file, according to its pathname
+     * Returns file of the check
+     *
+     * @param transactionId id of transaction for which the check was generated
+     *
+     * @return File object with check pathname
+     */
+    private File getCheckFile(long transactionId) {
+        return new File(checkPath + File.separator + "check_" + transactionId + extension);
+    }
+
+    /**
+     * Opens buffered writer to the file. Written characters are compressed if compression is enabled
      *
-     * @param data information that will be saved in file
      * @param file File object with defined save pathname
+     *
+     * @return buffered writer to the file
+     *
+     * @throws IOException if file cannot be opened
      */
-    private void saveFile(String data, File file) {
-        try (FileWriter fileWriter = new FileWriter(file)) {
-            fileWriter.write(data);
+    private Writer openFile(File file) throws IOException {
+        OutputStream stream = Files.newOutputStream(file.toPath());
+
+        if (compressor != null) {
+            stream = compressor.compressingStream(stream);
+        }
+
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Saves bytes in file, according to its pathname. Bytes are compressed if compression is enabled
+     *
+     * @param data bytes that will be saved in file
+     * @param file File object with defined save pathname
+     *
+     * @return true if file was saved
+     */
+    private boolean saveFile(ByteBuffer data, File file) {
+        DocumentWriteEvent event = new DocumentWriteEvent();
+        boolean saved = true;
+
+        event.begin();
+
+        if (compressor != null) {
+            data = compressor.compress(data);
+        }
+
+        event.setBytes(data.remaining());
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
         } catch (IOException e) {
-            System.err.println(e.getMessage());
+            logger.error("saveFile", e.getMessage(), "file", file);
+            saved = false;
+        }
+
+        if (event.shouldCommit()) {
+            event.setPath(file.getPath());
+            event.setCompressed(compressor != null);
+            event.commit();
         }
+
+        return saved;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,240 @@
+package utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * A class with allocation-free helpers for rendering checks and statements.
+ * All methods append directly to the provided StringBuilder instead of creating intermediate Strings
+ */
+public final class DocumentFormatter {
+
+    /** Precomputed padding which is copied into documents instead of creating new Strings with spaces */
+    private static final char[] SPACES = new char[64];
+
+    /** Maximum absolute amount which can be formatted using fixed-point arithmetic */
+    private static final double MAX_FIXED_POINT_AMOUNT = 9.0E15;
+
+    /** Reusable UTF-8 encoder for every thread */
+    private static final ThreadLocal<CharsetEncoder> ENCODER =
+            ThreadLocal.withInitial(StandardCharsets.UTF_8::newEncoder);
+
+    /** Reusable byte buffer for every thread. Grows when a document does not fit */
+    private static final ThreadLocal<ByteBuffer> BYTE_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(2048));
+
+    static {
+        Arrays.fill(SPACES, ' ');
+    }
+
+    private DocumentFormatter() { }
+
+    /**
+     * Appends specified number of spaces. Nothing will be appended if count is less than or equal to zero
+     *
+     * @param builder destination of the spaces
+     * @param count number of spaces
+     *
+     * @return provided builder
+     */
+    public static StringBuilder appendSpaces(StringBuilder builder, int count) {
+        while (count > 0) {
+            int chunk = Math.min(count, SPACES.length);
+
+            builder.append(SPACES, 0, chunk);
+            count -= chunk;
+        }
+
+        return builder;
+    }
+
+    /**
+     * Returns number of characters in decimal representation of the value
+     *
+     * @param value number
+     *
+     * @return length of the number as it will be appended by StringBuilder
+     */
+    public static int length(long value) {
+        if (value == Long.MIN_VALUE) {
+            return 20;
+        }
+
+        int length = value < 0 ? 2 : 1;
+        long current = Math.abs(value);
+
+        while (current >= 10) {
+            current /= 10;
+            length++;
+        }
+
+        return length;
+    }
+
+    /**
+     * Appends money amount with two fractional digits. Result is the same as String.format("%.2f", amount)
+     * with a dot as decimal separator
+     *
+     * @param builder destination of the amount
+     * @param amount money amount
+     *
+     * @return provided builder
+     */
+    public static StringBuilder appendAmount(StringBuilder builder, double amount) {
+        if (!Double.isFinite(amount)) {
+            return builder.append(amount);
+        } else if (Math.abs(amount) >= MAX_FIXED_POINT_AMOUNT) {
+            return builder.append(BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).toPlainString());
+        }
+
+        long cents = toCents(Math.abs(amount));
+
+        if (Double.doubleToRawLongBits(amount) < 0) {
+            builder.append('-');
+        }
+
+        builder.append(cents / 100).append('.');
+        appendTwoDigits(builder, (int) (cents % 100));
+
+        return builder;
+    }
+
+    /**
+     * Returns number of characters which will be appended by {@link #appendAmount(StringBuilder, double)}
+     *
+     * @param amount money amount
+     *
+     * @return length of formatted amount
+     */
+    public static int amountLength(double amount) {
+        if (!Double.isFinite(amount)) {
+            return String.valueOf(amount).length();
+        } else if (Math.abs(amount) >= MAX_FIXED_POINT_AMOUNT) {
+            return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).toPlainString().length();
+        }
+
+        int sign = Double.doubleToRawLongBits(amount) < 0 ? 1 : 0;
+
+        return sign + length(toCents(Math.abs(amount)) / 100) + 3;
+    }
+
+    /**
+     * Appends date in dd-MM-yyyy format
+     *
+     * @param builder destination of the date
+     * @param date date for appending
+     *
+     * @return provided builder
+     */
+    public static StringBuilder appendDate(StringBuilder builder, LocalDate date) {
+        appendTwoDigits(builder, date.getDayOfMonth()).append('-');
+        appendTwoDigits(builder, date.getMonthValue()).append('-');
+
+        int year = date.getYear();
+
+        if (year >= 0 && year < 1000) {
+            builder.append(year < 10 ? "000" : year < 100 ? "00" : "0");
+        }
+
+        return builder.append(year);
+    }
+
+    /**
+     * Appends time in HH:mm or HH:mm:ss format
+     *
+     * @param builder destination of the time
+     * @param time time for appending
+     * @param withSeconds true if seconds must be appended
+     *
+     * @return provided builder
+     */
+    public static StringBuilder appendTime(StringBuilder builder, LocalTime time, boolean withSeconds) {
+        appendTwoDigits(builder, time.getHour()).append(':');
+        appendTwoDigits(builder, time.getMinute());
+
+        if (withSeconds) {
+            appendTwoDigits(builder.append(':'), time.getSecond());
+        }
+
+        return builder;
+    }
+
+    /**
+     * Encodes document in UTF-8. Returned buffer is reused by the current thread and stays valid
+     * only until the next call of this method in the same thread
+     *
+     * @param document text of the document
+     *
+     * @return buffer with encoded document ready for reading
+     */
+    public static ByteBuffer encode(CharSequence document) {
+        CharsetEncoder encoder = ENCODER.get();
+        ByteBuffer buffer = BYTE_BUFFER.get();
+        int required = (int) Math.ceil(document.length() * (double) encoder.maxBytesPerChar());
+
+        if (buffer.capacity() < required) {
+            buffer = ByteBuffer.allocate(required);
+            BYTE_BUFFER.set(buffer);
+        }
+
+        buffer.clear();
+        encoder.reset();
+
+        try {
+            CharBuffer input = CharBuffer.wrap(document);
+            CoderResult result = encoder.encode(input, buffer, true);
+
+            if (!result.isUnderflow()) {
+                result.throwException();
+            }
+
+            result = encoder.flush(buffer);
+
+            if (!result.isUnderflow()) {
+                result.throwException();
+            }
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException("Document cannot be encoded in UTF-8", e);
+        }
+
+        return buffer.flip();
+    }
+
+    /**
+     * Converts non-negative amount to cents using half-up rounding of its decimal representation
+     *
+     * @param amount non-negative amount
+     *
+     * @return amount in cents
+     */
+    private static long toCents(double amount) {
+        double scaled = amount * 100;
+        double fraction = scaled - Math.floor(scaled);
+
+        if (Math.abs(fraction - 0.5) < 1.0E-6) { // binary representation may be on either side of the tie
+            return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        }
+
+        return Math.round(scaled);
+    }
+
+    /**
+     * Appends number from 0 to 99 as two digits
+     *
+     * @param builder destination of the number
+     * @param value number from 0 to 99
+     *
+     * @return provided builder
+     */
+    private static StringBuilder appendTwoDigits(StringBuilder builder, int value) {
+        return builder.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
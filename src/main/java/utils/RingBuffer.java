@@ -0,0 +1,110 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded lock-free queue for many producer threads and one consumer thread.
+ * Every slot has a sequence number which tells producers and consumer whether the slot is free or filled,
+ * so producers only compete for the tail counter and never block each other
+ *
+ * @param <T> type of queued items
+ */
+public class RingBuffer<T> {
+
+    /** Queued items */
+    private final Object[] items;
+
+    /** Sequence numbers of slots */
+    private final AtomicLongArray sequences;
+
+    /** Mask for calculating slot index from position */
+    private final int mask;
+
+    /** Position of the next item offered by producers */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Position of the next item polled by consumer. Changed only by consumer thread */
+    private volatile long head;
+
+    /**
+     * Constructor with parameter
+     *
+     * @param capacity maximum number of queued items. Rounded up to a power of two
+     */
+    public RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+
+        items = new Object[size];
+        sequences = new AtomicLongArray(size);
+        mask = size - 1;
+
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds item to the queue without blocking. May be called from any thread
+     *
+     * @param item added item
+     *
+     * @return true if item was added, false if queue is full
+     */
+    public boolean offer(T item) {
+        long position = tail.get();
+        long difference;
+        int index;
+
+        while (true) {
+            index = (int) (position & mask);
+            difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items[index] = item;
+                    sequences.set(index, position + 1); // publishes item to consumer
+
+                    return true;
+                }
+
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest item from the queue. Must be called only from consumer thread
+     *
+     * @return the oldest item or null if queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        int index = (int) (head & mask);
+        T item;
+
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+
+        item = (T) items[index];
+        items[index] = null;
+        sequences.set(index, head + items.length); // frees slot for producers
+        head++;
+
+        return item;
+    }
+
+    /**
+     * Checks whether queue is empty. Result may be outdated as soon as it is returned
+     *
+     * @return true if there are no queued items
+     */
+    public boolean isEmpty() {
+        return tail.get() == head;
+    }
+}
@@ -0,0 +1,375 @@
+package utils;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A class for asynchronous logging of errors with key/value fields. Threads only put records into a lock-free
+ * ring buffer and never wait for output: records are formatted and written to the standard error stream
+ * by a background thread. If buffer is full, records are dropped and counted. Repeated records of the same
+ * operation and error are written at most once per second, the number of suppressed duplicates is written
+ * with the next record or in a summary line, so a database outage does not flood the output.
+ * Lines look like: 2023-07-24T12:30:15.123 ERROR operation=addAccount sqlState=08006 accountId=5 message="..."
+ */
+public class StructuredLogger {
+
+    /** Logger shared by the application */
+    private static final StructuredLogger LOGGER = new StructuredLogger(8192, TimeUnit.SECONDS.toNanos(1));
+
+    /** Maximum number of remembered duplicate keys. Keys are forgotten when the limit is reached */
+    private static final int MAX_DUPLICATE_KEYS = 10000;
+
+    /** Time the writer thread sleeps if there are no records, in nanoseconds */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /** Queued records */
+    private final RingBuffer<LogRecord> records;
+
+    /** Duration of duplicate suppression window in nanoseconds */
+    private final long windowNanos;
+
+    /** Suppression windows by operation and error */
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    /** Number of records dropped because buffer was full */
+    private final AtomicLong droppedRecords = new AtomicLong();
+
+    /** Number of written lines */
+    private final AtomicLong writtenRecords = new AtomicLong();
+
+    /** Number of accepted records */
+    private final AtomicLong acceptedRecords = new AtomicLong();
+
+    /** Background thread writing records */
+    private final Thread writer;
+
+    /** Severity of log record */
+    public enum Level { INFO, WARN, ERROR }
+
+    /**
+     * Constructor with parameters. Starts background writer thread
+     *
+     * @param capacity maximum number of records waiting for output
+     * @param windowNanos duration of duplicate suppression window in nanoseconds
+     */
+    StructuredLogger(int capacity, long windowNanos) {
+        this.records = new RingBuffer<>(capacity);
+        this.windowNanos = windowNanos;
+        this.writer = new Thread(this::writeRecords, "log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+    }
+
+    /**
+     * Returns logger shared by the application
+     *
+     * @return shared logger
+     */
+    public static StructuredLogger getLogger() {
+        return LOGGER;
+    }
+
+    /**
+     * Logs SQL error. Duplicates are detected by operation and SQL state
+     *
+     * @param operation name of failed operation
+     * @param e thrown exception
+     * @param fields additional fields as key, value pairs, for example "accountId", 5
+     */
+    public void sqlError(String operation, SQLException e, Object... fields) {
+        log(Level.ERROR, operation, e.getSQLState(), e.getMessage(), fields);
+    }
+
+    /**
+     * Logs error. Duplicates are detected by operation and message
+     *
+     * @param operation name of failed operation
+     * @param message description of the error
+     * @param fields additional fields as key, value pairs
+     */
+    public void error(String operation, String message, Object... fields) {
+        log(Level.ERROR, operation, null, message, fields);
+    }
+
+    /**
+     * Logs warning. Duplicates are detected by operation and message
+     *
+     * @param operation name of operation
+     * @param message description of the problem
+     * @param fields additional fields as key, value pairs
+     */
+    public void warn(String operation, String message, Object... fields) {
+        log(Level.WARN, operation, null, message, fields);
+    }
+
+    /**
+     * Waits until all accepted records are written, but not longer than one second
+     */
+    public void flush() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+
+        while (writtenRecords.get() < acceptedRecords.get() && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Puts record into the buffer unless it is a suppressed duplicate
+     *
+     * @param level severity of the record
+     * @param operation name of operation
+     * @param sqlState SQL state of the error, null for other errors
+     * @param message description of the error
+     * @param fields additional fields as key, value pairs
+     */
+    private void log(Level level, String operation, String sqlState, String message, Object[] fields) {
+        String key = level + " " + operation + " " + (sqlState != null ? sqlState : message);
+        long now = System.nanoTime();
+        Window window = windows.get(key);
+        int suppressed;
+
+        if (window == null) {
+            if (windows.size() >= MAX_DUPLICATE_KEYS) {
+                windows.clear();
+            }
+
+            window = windows.computeIfAbsent(key, newKey -> new Window(level, operation, sqlState, message));
+        }
+
+        suppressed = window.tryAcquire(now, windowNanos);
+
+        if (suppressed < 0) {
+            return;
+        }
+
+        if (records.offer(new LogRecord(System.currentTimeMillis(), level, operation, sqlState, message, fields,
+                suppressed))) {
+            acceptedRecords.incrementAndGet();
+        } else {
+            droppedRecords.incrementAndGet();
+        }
+    }
+
+    /** Writes records until application stops. Reports suppressed duplicates and dropped records every second */
+    private void writeRecords() {
+        StringBuilder batch = new StringBuilder(4096);
+        long lastSweep = System.nanoTime();
+        LogRecord record = null;
+        int written;
+
+        while (true) {
+            written = 0;
+
+            while (batch.length() < 65536 && (record = records.poll()) != null) { // full batch leaves record queued
+                format(batch, record.time(), record.level(), record.operation(), record.sqlState(), record.message(),
+                        record.fields(), record.suppressed());
+                written++;
+            }
+
+            if (System.nanoTime() - lastSweep >= windowNanos) {
+                lastSweep = System.nanoTime();
+                reportSuppressed(batch, lastSweep);
+            }
+
+            if (batch.length() > 0) {
+                System.err.print(batch);
+                System.err.flush();
+                batch.setLength(0);
+                writtenRecords.addAndGet(written);
+            }
+
+            if (record == null) {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Appends summary lines for duplicates suppressed in finished windows and for dropped records
+     *
+     * @param batch destination of lines
+     * @param now current time in nanoseconds
+     */
+    private void reportSuppressed(StringBuilder batch, long now) {
+        Iterator<Window> iterator = windows.values().iterator();
+        long dropped = droppedRecords.getAndSet(0);
+        Window window;
+        int suppressed;
+
+        while (iterator.hasNext()) {
+            window = iterator.next();
+
+            if (now - window.start.get() >= windowNanos) {
+                suppressed = window.suppressed.getAndSet(0);
+
+                if (suppressed > 0) {
+                    format(batch, System.currentTimeMillis(), window.level, window.operation, window.sqlState,
+                            window.message, new Object[0], suppressed);
+                } else if (now - window.start.get() >= windowNanos * 60) {
+                    iterator.remove(); // forget keys which were not seen for a minute
+                }
+            }
+        }
+
+        if (dropped > 0) {
+            format(batch, System.currentTimeMillis(), Level.WARN, "log", null, "log buffer overflow",
+                    new Object[] {"dropped", dropped}, 0);
+        }
+    }
+
+    /**
+     * Appends line with record fields
+     *
+     * @param batch destination of the line
+     * @param time time of the record in milliseconds since epoch
+     * @param level severity of the record
+     * @param operation name of operation
+     * @param sqlState SQL state of the error, null for other errors
+     * @param message description of the error
+     * @param fields additional fields as key, value pairs
+     * @param suppressed number of duplicates suppressed before the record
+     */
+    private void format(StringBuilder batch, long time, Level level, String operation, String sqlState,
+                        String message, Object[] fields, int suppressed) {
+        batch.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault())).append(' ')
+                .append(level);
+        appendField(batch, "operation", operation);
+
+        if (sqlState != null) {
+            appendField(batch, "sqlState", sqlState);
+        }
+
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            appendField(batch, String.valueOf(fields[i]), fields[i + 1]);
+        }
+
+        appendField(batch, "message", message);
+
+        if (suppressed > 0) {
+            appendField(batch, "suppressed", suppressed);
+        }
+
+        batch.append('\n');
+    }
+
+    /**
+     * Appends field in key=value form. Values with spaces, quotes or line breaks are quoted
+     *
+     * @param batch destination of the field
+     * @param key name of the field
+     * @param value value of the field
+     */
+    private void appendField(StringBuilder batch, String key, Object value) {
+        String text = String.valueOf(value);
+        char symbol;
+
+        batch.append(' ').append(key).append('=');
+
+        if (!text.isEmpty() && text.chars().noneMatch(c -> c == ' ' || c == '"' || c == '=' || c < 32)) {
+            batch.append(text);
+
+            return;
+        }
+
+        batch.append('"');
+
+        for (int i = 0; i < text.length(); i++) {
+            symbol = text.charAt(i);
+
+            switch (symbol) {
+                case '"' -> batch.append("\\\"");
+                case '\\' -> batch.append("\\\\");
+                case '\n' -> batch.append("\\n");
+                case '\r' -> batch.append("\\r");
+                case '\t' -> batch.append("\\t");
+                default -> batch.append(symbol);
+            }
+        }
+
+        batch.append('"');
+    }
+
+    /**
+     * Queued log record
+     *
+     * @param time time of the record in milliseconds since epoch
+     * @param level severity of the record
+     * @param operation name of operation
+     * @param sqlState SQL state of the error, null for other errors
+     * @param message description of the error
+     * @param fields additional fields as key, value pairs
+     * @param suppressed number of duplicates suppressed before the record
+     */
+    private record LogRecord(long time, Level level, String operation, String sqlState, String message,
+                             Object[] fields, int suppressed) { }
+
+    /** Duplicate suppression window of one operation and error */
+    private static class Window {
+
+        /** Severity of records */
+        private final Level level;
+
+        /** Name of operation */
+        private final String operation;
+
+        /** SQL state of the error, null for other errors */
+        private final String sqlState;
+
+        /** Description of the error */
+        private final String message;
+
+        /** Start of the current window in nanoseconds */
+        private final AtomicLong start = new AtomicLong(Long.MIN_VALUE);
+
+        /** Number of records suppressed in the current window */
+        private final AtomicInteger suppressed = new AtomicInteger();
+
+        /**
+         * Constructor with parameters
+         *
+         * @param level severity of records
+         * @param operation name of operation
+         * @param sqlState SQL state of the error, null for other errors
+         * @param message description of the error
+         */
+        private Window(Level level, String operation, String sqlState, String message) {
+            this.level = level;
+            this.operation = operation;
+            this.sqlState = sqlState;
+            this.message = message;
+        }
+
+        /**
+         * Decides whether record should be written. The first record of every window is written
+         *
+         * @param now current time in nanoseconds
+         * @param windowNanos duration of window in nanoseconds
+         *
+         * @return number of duplicates suppressed in previous window if record should be written,
+         * minus one if record is suppressed
+         */
+        private int tryAcquire(long now, long windowNanos) {
+            long windowStart = start.get();
+
+            if ((windowStart == Long.MIN_VALUE || now - windowStart >= windowNanos)
+                    && start.compareAndSet(windowStart, now)) {
+                return suppressed.getAndSet(0);
+            }
+
+            suppressed.incrementAndGet();
+
+            return -1;
+        }
+    }
+}
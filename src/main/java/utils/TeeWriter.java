@@ -0,0 +1,51 @@
+package utils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A class which writes the same characters to two writers, for example to a file and to the console.
+ * Closing this writer only flushes both writers, their owners are responsible for closing them
+ */
+public class TeeWriter extends Writer {
+
+    /** First destination of characters */
+    private final Writer first;
+
+    /** Second destination of characters */
+    private final Writer second;
+
+    /**
+     * Constructor with parameters
+     *
+     * @param first first destination of characters
+     * @param second second destination of characters
+     */
+    public TeeWriter(Writer first, Writer second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        first.write(buffer, offset, length);
+        second.write(buffer, offset, length);
+    }
+
+    @Override
+    public void write(String string, int offset, int length) throws IOException {
+        first.write(string, offset, length);
+        second.write(string, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        first.flush();
+        second.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
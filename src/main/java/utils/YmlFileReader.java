@@ -1,5 +1,6 @@
 package utils;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.yaml.snakeyaml.Yaml;
@@ -13,6 +14,11 @@ import java.util.Map;
 @Setter
 public class YmlFileReader implements IYmlFileReader {
 
+    /** Logger for errors */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final StructuredLogger logger = StructuredLogger.getLogger();
+
     /** Path to configuration YML file */
     private String path = "src/main/resources/config.yml";
 
@@ -34,7 +40,7 @@ public class YmlFileReader implements IYmlFileReader {
             data = String.valueOf(fileData.get(key));
 
         } catch (IOException e) {
-            System.err.println("Cannot read YML file");
+            logger.error("readConfig", "Cannot read YML file", "file", path);
         }
 
         return data;
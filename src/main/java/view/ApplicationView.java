@@ -10,7 +10,8 @@ public class ApplicationView {
 
     /** Array of main menu options */
     private final String[] mainMenu = {"1 - account replenishment", "2 - money withdrawal",
-            "3 - transfer to another account", "4 - account statement", "5 - money statement", "6 - exit"};
+            "3 - transfer to another account", "4 - account statement", "5 - money statement",
+            "6 - month-end statements for all accounts", "7 - exit"};
 
     /** Array of time periods for account statement */
     private final String[] intervalOptions = {"1 - month", "2 - year", "3 - entire service period"};
@@ -45,6 +46,12 @@ public class ApplicationView {
     /** String with message before entering transfer amount */
     private final String transferAmount = "Enter transfer amount: ";
 
+    /** String with message before entering idempotency key of money operation */
+    private final String idempotencyKey = "Enter operation key to prevent repeated execution or - to skip: ";
+
+    /** Maximum length of idempotency key */
+    private final int idempotencyKeyMaxLength = 64;
+
     /**
      * Prints menu and reads user input
      *
@@ -179,6 +186,28 @@ public class ApplicationView {
         return getLong(accountId, scanner);
     }
 
+    /**
+     * Retrieves entered idempotency key of money operation from console
+     *
+     * @param scanner Scanner object for reading input from console
+     *
+     * @return key entered by user or empty string if user skipped it
+     */
+    public String getIdempotencyKey(Scanner scanner) {
+        String key;
+
+        System.out.print(idempotencyKey);
+        key = scanner.next();
+
+        while (key.length() > idempotencyKeyMaxLength) {
+            System.out.println("Please, enter key not longer than " + idempotencyKeyMaxLength + " characters");
+            System.out.print(idempotencyKey);
+            key = scanner.next();
+        }
+
+        return key.equals("-") ? "" : key;
+    }
+
     /**
      * Retrieves entered money amount from console
      *
@@ -1,10 +1,11 @@
 package view;
 
 import controller.service.api.IBankService;
+import utils.DocumentFormatter;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 
 /** Class which creates transaction check for printing on console and saving in file */
 public class CheckView {
@@ -12,26 +13,17 @@ public class CheckView {
     /** Instance of service for retrieving bank name from database */
     private final IBankService bankService;
 
-    /** Template for transaction checks */
-    private final String checkTemplate = """
-                                   ----------------------------------------
-                                   |            Банковский чек            |
-                                   | Чек:%s%s |
-                                   | %s%s%s |
-                                   | Тип транзакции:%s%s |
-                                   | Банк отправителя:%s%s |
-                                   | Банк получателя:%s%s |
-                                   | Счёт отправителя:%s%d |
-                                   | Счёт получателя:%s%d |
-                                   | Сумма:%s%s BYN |
-                                   |--------------------------------------|
-                                   """;
-
-    /** Formatter for transaction date */
-    private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
-
-    /** Formatter for transaction time */
-    private final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
+    /** Upper border of transaction check */
+    private final String checkHeader = """
+                                       ----------------------------------------
+                                       |            Банковский чек            |
+                                       """;
+
+    /** Lower border of transaction check */
+    private final String checkFooter = "|--------------------------------------|\n";
+
+    /** Reusable check builder for every thread. Check is rendered into it without intermediate Strings */
+    private final ThreadLocal<StringBuilder> checkBuilder = ThreadLocal.withInitial(() -> new StringBuilder(640));
 
     /** Constructor with parameter for accessing bank information */
     public CheckView(IBankService service) {
@@ -54,21 +46,102 @@ public class CheckView {
      */
     public String getCheck(long id, LocalDate date, LocalTime time, long senderBankId, long receiverBankId,
                            long senderId, long receiverId, double amount) {
-        String checkDate = dateFormatter.format(date);
-        String checkTime = timeFormatter.format(time);
+        return renderCheck(id, date, time, senderBankId, receiverBankId, senderId, receiverId, amount).toString();
+    }
+
+    /**
+     * Fills all aligned fields in template with provided data and encodes check in UTF-8.
+     * Returned buffer is reused by the current thread and stays valid only until the next encoding in the same thread
+     *
+     * @param id transaction id
+     * @param date transaction date
+     * @param time transaction time
+     * @param senderBankId id of bank which owns sender account
+     * @param receiverBankId id of bank which owns receiver account
+     * @param senderId sender account id
+     * @param receiverId receiver account id
+     * @param amount transaction amount
+     *
+     * @return buffer with encoded check ready for reading
+     */
+    public ByteBuffer getCheckBytes(long id, LocalDate date, LocalTime time, long senderBankId, long receiverBankId,
+                                    long senderId, long receiverId, double amount) {
+        return DocumentFormatter.encode(renderCheck(id, date, time, senderBankId, receiverBankId,
+                senderId, receiverId, amount));
+    }
+
+    /**
+     * Fills all aligned fields in template with provided data. Returned builder is reused by the current thread
+     * and stays valid only until the next rendering in the same thread
+     *
+     * @param id transaction id
+     * @param date transaction date
+     * @param time transaction time
+     * @param senderBankId id of bank which owns sender account
+     * @param receiverBankId id of bank which owns receiver account
+     * @param senderId sender account id
+     * @param receiverId receiver account id
+     * @param amount transaction amount
+     *
+     * @return character sequence with complete check
+     */
+    public CharSequence renderCheck(long id, LocalDate date, LocalTime time, long senderBankId, long receiverBankId,
+                                    long senderId, long receiverId, double amount) {
+        StringBuilder check = checkBuilder.get();
         String transactionType = getOperationType(senderId, receiverId);
         String senderBank = senderBankId != 0 ? bankService.getBank(senderBankId).getName() : "";
         String receiverBank = receiverBankId != 0 ? bankService.getBank(receiverBankId).getName() : "";
-        String amountStringValue = String.format("%.2f", amount);
-
-        return checkTemplate.formatted(" ".repeat(32 - String.valueOf(id).length()), id,
-                checkDate, " ".repeat(18), checkTime,
-                " ".repeat(21 - transactionType.length()), transactionType,
-                " ".repeat(19 - senderBank.length()), senderBank,
-                " ".repeat(20 - receiverBank.length()), receiverBank,
-                " ".repeat(19 - String.valueOf(senderId).length()), senderId,
-                " ".repeat(20 - String.valueOf(receiverId).length()), receiverId,
-                " ".repeat(26 - String.valueOf(amountStringValue).length()), amountStringValue);
+
+        check.setLength(0);
+        check.append(checkHeader);
+
+        check.append("| Чек:");
+        DocumentFormatter.appendSpaces(check, 32 - DocumentFormatter.length(id)).append(id).append(" |\n");
+
+        DocumentFormatter.appendDate(check.append("| "), date);
+        DocumentFormatter.appendSpaces(check, 18);
+        DocumentFormatter.appendTime(check, time, true).append(" |\n");
+
+        appendField(check, "| Тип транзакции:", 21, transactionType);
+        appendField(check, "| Банк отправителя:", 19, senderBank);
+        appendField(check, "| Банк получателя:", 20, receiverBank);
+
+        check.append("| Счёт отправителя:");
+        DocumentFormatter.appendSpaces(check, 19 - DocumentFormatter.length(senderId)).append(senderId).append(" |\n");
+
+        check.append("| Счёт получателя:");
+        DocumentFormatter.appendSpaces(check, 20 - DocumentFormatter.length(receiverId)).append(receiverId)
+                .append(" |\n");
+
+        check.append("| Сумма:");
+        DocumentFormatter.appendSpaces(check, 26 - DocumentFormatter.amountLength(amount));
+        DocumentFormatter.appendAmount(check, amount).append(" BYN |\n");
+
+        return check.append(checkFooter);
+    }
+
+    /**
+     * Returns text with check layout and all operation types. Used as compression dictionary for saved checks,
+     * so it must not change while compressed checks are stored
+     *
+     * @return text of check template
+     */
+    public String getTemplateText() {
+        return getOperationType(1, 0) + getOperationType(0, 1) + getOperationType(0, 0)
+                + renderCheck(0, LocalDate.EPOCH, LocalTime.MIDNIGHT, 0, 0, 1, 1, 0);
+    }
+
+    /**
+     * Appends check line with right-aligned text value
+     *
+     * @param check builder with check
+     * @param label field label with left border
+     * @param width width of the value column
+     * @param value field value
+     */
+    private void appendField(StringBuilder check, String label, int width, String value) {
+        check.append(label);
+        DocumentFormatter.appendSpaces(check, width - value.length()).append(value).append(" |\n");
     }
 
     /**
@@ -0,0 +1,43 @@
+package view;
+
+import lombok.Getter;
+import model.dto.StatementDto;
+
+import java.util.function.Consumer;
+
+/** Class which accumulates incoming and outgoing funds of the account for money statement */
+@Getter
+public class MoneyStatementTotals implements Consumer<StatementDto> {
+
+    /** Name of account owner for which money statement is done */
+    private final String accountOwner;
+
+    /** Sum of incoming funds */
+    private double income;
+
+    /** Sum of outgoing funds. Less than or equal to zero */
+    private double outcome;
+
+    /**
+     * Constructor with parameter
+     *
+     * @param accountOwner name of account owner for which money statement is done
+     */
+    MoneyStatementTotals(String accountOwner) {
+        this.accountOwner = accountOwner;
+    }
+
+    /**
+     * Adds transaction amount to incoming or outgoing funds according to operation type
+     *
+     * @param statementDto information about transaction
+     */
+    @Override
+    public void accept(StatementDto statementDto) {
+        if (!statementDto.receiver().isEmpty() && statementDto.receiver().equals(accountOwner)) {
+            income += statementDto.amount();
+        } else {
+            outcome -= statementDto.amount();
+        }
+    }
+}
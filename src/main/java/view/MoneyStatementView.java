@@ -4,7 +4,12 @@ import controller.service.api.IBankService;
 import controller.service.api.IUserService;
 import model.dto.StatementDto;
 import model.entity.Account;
+import utils.DocumentFormatter;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -40,9 +45,6 @@ public class MoneyStatementView {
                      ---------------------------------
             """;
 
-    /** Template for record in money statement */
-    private String recordTemplate = "%s%s BYN   |   %s BYN";
-
     /** Constructor with parameter for accessing bank and user information */
     public MoneyStatementView(IBankService service, IUserService userService) {
         this.bankService = service;
@@ -59,44 +61,70 @@ public class MoneyStatementView {
      * @return formatted string with account money statement
      */
     public String getStatement(Account account, List<StatementDto> statementList, LocalDate intervalStart) {
-        StringBuilder statement = new StringBuilder();
+        StringWriter statement = new StringWriter();
+        MoneyStatementTotals totals = openTotals(account);
+
+        statementList.forEach(totals);
+
+        try {
+            writeStatement(account, totals, intervalStart, statement);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter never throws IOException
+        }
+
+        return statement.toString();
+    }
+
+    /**
+     * Creates accumulator of incoming and outgoing funds of the account. Transaction records can be passed
+     * to it one by one, so they are never kept in memory
+     *
+     * @param account account for which money statement will be done
+     *
+     * @return empty accumulator of account transaction records
+     */
+    public MoneyStatementTotals openTotals(Account account) {
+        return new MoneyStatementTotals(userService.getUser(account.getUserId()).getName());
+    }
+
+    /**
+     * Fills money statement template with accumulated values and writes it to the output.
+     * Output is not flushed or closed
+     *
+     * @param account account for which money statement will be done
+     * @param totals accumulated incoming and outgoing funds of the account
+     * @param intervalStart user selected interval start for money statement
+     * @param output destination of the statement
+     *
+     * @throws IOException if statement cannot be written to the output
+     */
+    public void writeStatement(Account account, MoneyStatementTotals totals, LocalDate intervalStart, Writer output)
+            throws IOException {
         String bank = bankService.getBank(account.getBankId()).getName();
-        String client = userService.getUser(account.getUserId()).getName();
         LocalDateTime requestDateTime = LocalDateTime.now();
         String requestDate = dateFormatter.format(requestDateTime.toLocalDate());
         String creationDate = dateFormatter.format(account.getCreationDate().toLocalDate());
         String periodStart = dateFormatter.format(intervalStart);
-        String amountStringValue = String.format("%.2f", account.getBalance());
-        double income = 0;
-        double outcome = 0;
+        String amountStringValue = DocumentFormatter.appendAmount(new StringBuilder(), account.getBalance()).toString();
+        StringBuilder record = new StringBuilder();
 
-        statement.append(statementTemplate.formatted(" ".repeat(35 - bank.length() / 2), bank, client,
+        output.write(statementTemplate.formatted(" ".repeat(35 - bank.length() / 2), bank, totals.getAccountOwner(),
                 account.getBankId(), creationDate, periodStart, requestDate, requestDate,
                 timeFormatter.format(requestDateTime.toLocalTime()), amountStringValue));
 
-        for (StatementDto statementDto : statementList) {
-            if (getOperationType(statementDto, client)) {
-                income += statementDto.amount();
-            } else {
-                outcome -= statementDto.amount();
-            }
-        }
-
-        statement.append(recordTemplate.formatted(" ".repeat(18 - String.format("%.2f", income).length()),
-                String.format("%.2f", income), String.format("%.2f", outcome))).append("\n");
-
-        return statement.toString().stripTrailing();
+        DocumentFormatter.appendSpaces(record, 18 - DocumentFormatter.amountLength(totals.getIncome()));
+        DocumentFormatter.appendAmount(record, totals.getIncome()).append(" BYN   |   ");
+        DocumentFormatter.appendAmount(record, totals.getOutcome()).append(" BYN");
+        output.append(record);
     }
 
     /**
-     * Returns operation type for use in statement record
-     *
-     * @param statementDto information about transaction
-     * @param accountOwner name of account owner for which transaction statement will be done
+     * Returns text with money statement layout. Used as compression dictionary for saved statements,
+     * so it must not change while compressed statements are stored
      *
-     * @return true in case of incoming funds, else otherwise
+     * @return text of money statement template
      */
-    private boolean getOperationType(StatementDto statementDto, String accountOwner) {
-        return !statementDto.receiver().isEmpty() && statementDto.receiver().equals(accountOwner);
+    public String getTemplateText() {
+        return statementTemplate;
     }
-}
\ No newline at end of file
+}
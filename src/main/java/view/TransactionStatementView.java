@@ -4,7 +4,12 @@ import controller.service.api.IBankService;
 import controller.service.api.IUserService;
 import model.dto.StatementDto;
 import model.entity.Account;
+import utils.DocumentFormatter;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -40,9 +45,6 @@ public class TransactionStatementView {
             --------------------------------------------------------------
             """;
 
-    /** Template for record in transaction statement */
-    private String recordTemplate = "%s | %s%s| %s BYN";
-
     /** Constructor with parameter for accessing bank and user information */
     public TransactionStatementView(IBankService service, IUserService userService) {
         this.bankService = service;
@@ -60,66 +62,65 @@ public class TransactionStatementView {
      * @return formatted string with account transaction statement
      */
     public String getStatement(Account account, List<StatementDto> statementList, LocalDate intervalStart) {
-        StringBuilder statement = new StringBuilder();
-        String bank = bankService.getBank(account.getBankId()).getName();
-        String client = userService.getUser(account.getUserId()).getName();
-        LocalDateTime requestDateTime = LocalDateTime.now();
-        String requestDate = dateFormatter.format(requestDateTime.toLocalDate());
-        String creationDate = dateFormatter.format(account.getCreationDate().toLocalDate());
-        String periodStart = dateFormatter.format(intervalStart);
-        String amountStringValue = String.format("%.2f", account.getBalance());
-        String operationNote;
-        double recordAmount;
+        StringWriter statement = new StringWriter();
 
-        statement.append(statementTemplate.formatted(" ".repeat(35 - bank.length() / 2), bank, client,
-                account.getBankId(), creationDate, periodStart, requestDate, requestDate,
-                timeFormatter.format(requestDateTime.toLocalTime()), amountStringValue));
-
-        for (StatementDto statementDto : statementList) {
-            operationNote = getOperationNote(statementDto, client);
-            recordAmount = getRecordAmount(statementDto, client);
-            statement.append(recordTemplate.formatted(dateFormatter.format(statementDto.time()),
-                    operationNote, " ".repeat(41 - operationNote.length()), String.format("%.2f", recordAmount)));
-            statement.append("\n");
+        try {
+            TransactionStatementWriter recordWriter = openStatement(account, intervalStart, statement);
+            statementList.forEach(recordWriter);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter never throws IOException
         }
 
-        return statement.toString().stripTrailing();
+        return statement.toString();
     }
 
     /**
-     * Returns transaction note for use in statement record
+     * Writes transaction statement header to the output and returns writer for statement records.
+     * Records are written to the output as soon as they are passed to the returned writer,
+     * so the whole statement is never kept in memory. Output is not flushed or closed
+     *
+     * @param account account for which transaction statement will be done
+     * @param intervalStart user selected interval start for transaction statement
+     * @param output destination of the statement
      *
-     * @param statementDto information about transaction
-     * @param accountOwner name of account owner for which transaction statement will be done
+     * @return writer which appends transaction records to the output
      *
-     * @return String which describes transaction in statement
+     * @throws IOException if header cannot be written to the output
      */
-    private String getOperationNote(StatementDto statementDto, String accountOwner) {
-        if (statementDto.receiver().isEmpty()) {
-            return "Снятие средств";
-        } else if (statementDto.sender().isEmpty()) {
-            return "Пополнение счёта";
-        } else if (!statementDto.receiver().equals(accountOwner)) {
-            return "Перевод для " + statementDto.receiver().split(" ")[0];
-        } else {
-            return "Пополнение от " + statementDto.receiver().split(" ")[0];
-        }
+    public TransactionStatementWriter openStatement(Account account, LocalDate intervalStart, Writer output)
+            throws IOException {
+        String bank = bankService.getBank(account.getBankId()).getName();
+        String client = userService.getUser(account.getUserId()).getName();
+        LocalDateTime requestDateTime = LocalDateTime.now();
+        String requestDate = dateFormatter.format(requestDateTime.toLocalDate());
+        String creationDate = dateFormatter.format(account.getCreationDate().toLocalDate());
+        String periodStart = dateFormatter.format(intervalStart);
+        String amountStringValue = DocumentFormatter.appendAmount(new StringBuilder(), account.getBalance()).toString();
+        String header = statementTemplate.formatted(" ".repeat(35 - bank.length() / 2), bank, client,
+                account.getBankId(), creationDate, periodStart, requestDate, requestDate,
+                timeFormatter.format(requestDateTime.toLocalTime()), amountStringValue);
+
+        output.write(header, 0, header.length() - 1); // line break is written before every record
+
+        return new TransactionStatementWriter(output, client);
     }
 
     /**
-     * Formats transaction amount for display in transaction statement according to transaction type
-     *
-     * @param statementDto information about transaction
-     * @param accountOwner name of account owner for which transaction statement will be done
+     * Returns text with statement layout and records of every operation type. Used as compression dictionary
+     * for saved statements, so it must not change while compressed statements are stored
      *
-     * @return transaction value prepared for printing in transaction statement.
-     * Bigger than zero for incoming transactions, less than zero otherwise
+     * @return text of statement template
      */
-    private double getRecordAmount(StatementDto statementDto, String accountOwner) {
-        if (statementDto.receiver().isEmpty() || !statementDto.receiver().equals(accountOwner)) {
-            return -1 * statementDto.amount();
-        } else {
-            return statementDto.amount();
-        }
+    public String getTemplateText() {
+        StringWriter text = new StringWriter();
+        TransactionStatementWriter recordWriter = new TransactionStatementWriter(text, "");
+        LocalDateTime time = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+        text.write(statementTemplate);
+        recordWriter.accept(new StatementDto(time, "", "-", 0));
+        recordWriter.accept(new StatementDto(time, "-", "", 0));
+        recordWriter.accept(new StatementDto(time, "-", "-", 0));
+
+        return text.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,147 @@
+package view;
+
+import model.dto.StatementDto;
+import utils.DocumentFormatter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.function.Consumer;
+
+/**
+ * Class which writes transaction statement records to the output one by one.
+ * Every record is rendered into reusable buffers, so no objects are created per record
+ */
+public class TransactionStatementWriter implements Consumer<StatementDto> {
+
+    /** Destination of the statement records */
+    private final Writer output;
+
+    /** Name of account owner for which transaction statement is done */
+    private final String accountOwner;
+
+    /** Note for money withdrawal */
+    private final String withdrawalNote = "Снятие средств";
+
+    /** Note for account replenishment */
+    private final String replenishmentNote = "Пополнение счёта";
+
+    /** Reusable builder for rendering single record */
+    private final StringBuilder record = new StringBuilder(128);
+
+    /** Reusable buffer for passing rendered record to the output */
+    private char[] buffer = new char[128];
+
+    /** Number of written records */
+    private int numberOfRecords;
+
+    /**
+     * Constructor with parameters
+     *
+     * @param output destination of the statement records
+     * @param accountOwner name of account owner for which transaction statement is done
+     */
+    TransactionStatementWriter(Writer output, String accountOwner) {
+        this.output = output;
+        this.accountOwner = accountOwner;
+    }
+
+    /**
+     * Renders transaction record and writes it to the output
+     *
+     * @param statementDto information about transaction
+     *
+     * @throws UncheckedIOException if record cannot be written to the output
+     */
+    @Override
+    public void accept(StatementDto statementDto) {
+        int noteLength;
+
+        record.setLength(0);
+        DocumentFormatter.appendDate(record.append('\n'), statementDto.time().toLocalDate()).append(" | ");
+        noteLength = appendOperationNote(statementDto);
+        DocumentFormatter.appendSpaces(record, 41 - noteLength).append("| ");
+        DocumentFormatter.appendAmount(record, getRecordAmount(statementDto)).append(" BYN");
+
+        if (buffer.length < record.length()) {
+            buffer = new char[record.length() * 2];
+        }
+
+        record.getChars(0, record.length(), buffer, 0);
+
+        try {
+            output.write(buffer, 0, record.length());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        numberOfRecords++;
+    }
+
+    /**
+     * Returns number of records written to the output
+     *
+     * @return number of written records
+     */
+    public int getNumberOfRecords() {
+        return numberOfRecords;
+    }
+
+    /**
+     * Appends transaction note for use in statement record. Only first word of the name is used
+     *
+     * @param statementDto information about transaction
+     *
+     * @return length of appended note
+     */
+    private int appendOperationNote(StatementDto statementDto) {
+        if (statementDto.receiver().isEmpty()) {
+            record.append(withdrawalNote);
+
+            return withdrawalNote.length();
+        } else if (statementDto.sender().isEmpty()) {
+            record.append(replenishmentNote);
+
+            return replenishmentNote.length();
+        } else if (!statementDto.receiver().equals(accountOwner)) {
+            return appendNoteWithName("Перевод для ", statementDto.receiver());
+        } else {
+            return appendNoteWithName("Пополнение от ", statementDto.receiver());
+        }
+    }
+
+    /**
+     * Appends transaction note with the first word of the name
+     *
+     * @param note beginning of the note
+     * @param name full name
+     *
+     * @return length of appended note
+     */
+    private int appendNoteWithName(String note, String name) {
+        int nameEnd = name.indexOf(' ');
+
+        if (nameEnd < 0) {
+            nameEnd = name.length();
+        }
+
+        record.append(note).append(name, 0, nameEnd);
+
+        return note.length() + nameEnd;
+    }
+
+    /**
+     * Returns transaction amount according to transaction type
+     *
+     * @param statementDto information about transaction
+     *
+     * @return bigger than zero for incoming transactions, less than zero otherwise
+     */
+    private double getRecordAmount(StatementDto statementDto) {
+        if (statementDto.receiver().isEmpty() || !statementDto.receiver().equals(accountOwner)) {
+            return -1 * statementDto.amount();
+        } else {
+            return statementDto.amount();
+        }
+    }
+}
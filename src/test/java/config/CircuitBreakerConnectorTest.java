@@ -0,0 +1,253 @@
+package config;
+
+import config.api.IDatabaseConnector;
+import metrics.CircuitBreakerMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** Class for testing circuit breaker of database connector */
+public class CircuitBreakerConnectorTest {
+
+    /** Time after which open breaker lets probe call through in nanoseconds */
+    private static final long OPEN_NANOS = 1000;
+
+    /** Metrics of breaker */
+    private final CircuitBreakerMetrics metrics = new CircuitBreakerMetrics();
+
+    /** Current time in nanoseconds */
+    private long now;
+
+    /** Whether database is reachable */
+    private boolean available;
+
+    /** Number of connection attempts */
+    private int connects;
+
+    /** Number of executed queries */
+    private int executions;
+
+    /** Number of queries executed in auto-commit mode */
+    private int autoCommitted;
+
+    /** Breaker of database */
+    private final CircuitBreaker breaker = new CircuitBreaker("db", 2, OPEN_NANOS, () -> now, metrics);
+
+    /** Connector protected by breaker */
+    private final CircuitBreakerConnector connector = new CircuitBreakerConnector(new TestConnector(), breaker);
+
+    /** Tests that breaker opens after failures and rejects calls without connecting */
+    @Test
+    public void openTest() {
+        assertThrows(SQLTransientConnectionException.class, this::execute);
+        assertThrows(SQLTransientConnectionException.class, this::execute);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        assertThrows(SQLTransientConnectionException.class, this::execute);
+        assertNull(connector.openConnection());
+        assertEquals(2, connects);
+        assertEquals(Map.of("db", 2L), metrics.getRejected());
+        assertEquals(Map.of("db", 1L), metrics.getOpened());
+    }
+
+    /** Tests that failed connection is replaced by probe call after open interval */
+    @Test
+    public void recoveryTest() throws SQLException {
+        available = true;
+        execute();
+        available = false;
+        assertThrows(SQLException.class, this::execute);
+        assertThrows(SQLException.class, this::execute);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        available = true;
+        now += OPEN_NANOS;
+        execute();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(3, connects);
+        assertEquals(2, executions);
+        assertNotNull(connector.openConnection());
+        assertEquals(Map.of("db", "closed"), metrics.getStates());
+    }
+
+    /** Tests that failed probe opens breaker again */
+    @Test
+    public void failedProbeTest() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        now += OPEN_NANOS;
+
+        assertThrows(SQLTransientConnectionException.class, this::execute);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(SQLTransientConnectionException.class, this::execute);
+        assertEquals(1, connects);
+        assertEquals(Map.of("db", 2L), metrics.getOpened());
+    }
+
+    /** Tests that probe call of half-open breaker is the query when shared connection keeps its target */
+    @Test
+    public void liveConnectionProbeTest() throws SQLException {
+        available = true;
+        execute();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertThrows(SQLTransientConnectionException.class, this::execute);
+
+        now += OPEN_NANOS;
+        execute();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1, connects);
+        assertEquals(2, executions);
+    }
+
+    /** Tests that connection failed inside transaction is not replaced until transaction is rolled back */
+    @Test
+    public void transactionFailureTest() throws SQLException {
+        Connection connection = connector.getConnection();
+
+        available = true;
+        connection.setAutoCommit(false);
+        execute(connection);
+        available = false;
+        assertThrows(SQLException.class, () -> execute(connection));
+        available = true;
+
+        assertThrows(SQLTransientConnectionException.class, () -> execute(connection));
+        assertThrows(SQLTransientConnectionException.class, connection::commit);
+        assertEquals(1, connects);
+        assertEquals(1, executions);
+        assertEquals(0, autoCommitted);
+
+        connection.rollback();
+        connection.setAutoCommit(true);
+        execute(connection);
+
+        assertEquals(2, connects);
+        assertEquals(2, executions);
+        assertEquals(1, autoCommitted);
+    }
+
+    /** Tests that opened connection reconnects after failure and stays closed after closing */
+    @Test
+    public void openedConnectionTest() throws SQLException {
+        Connection connection;
+
+        available = true;
+        connection = connector.openConnection();
+        available = false;
+        assertThrows(SQLException.class, () -> execute(connection));
+        available = true;
+        execute(connection);
+
+        assertEquals(2, connects);
+        assertEquals(1, executions);
+
+        connection.close();
+
+        assertThrows(SQLException.class, () -> execute(connection));
+        assertEquals(2, connects);
+    }
+
+    /**
+     * Executes query with shared connection of connector
+     *
+     * @throws SQLException if query failed
+     */
+    private void execute() throws SQLException {
+        execute(connector.getConnection());
+    }
+
+    /**
+     * Executes query with connection
+     *
+     * @param connection connection used for query
+     *
+     * @throws SQLException if query failed
+     */
+    private void execute(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+            statement.execute();
+        }
+    }
+
+    /** Connector of database which is reachable or not */
+    private class TestConnector implements IDatabaseConnector {
+
+        /**
+         * Connects to database
+         *
+         * @return connection whose queries fail with connection error when database is unreachable,
+         * null if database is unreachable
+         */
+        @Override
+        public Connection getConnection() {
+            connects++;
+
+            return available ? connection() : null;
+        }
+
+        /**
+         * Connects to database
+         *
+         * @return new connection, null if database is unreachable
+         */
+        @Override
+        public Connection openConnection() {
+            return getConnection();
+        }
+
+        /** Does nothing */
+        @Override
+        public void closeConnection() {
+        }
+
+        /**
+         * Creates connection whose statements fail when database is unreachable. Connection is
+         * in auto-commit mode until it is disabled
+         *
+         * @return proxy implementing connection
+         */
+        private Connection connection() {
+            boolean[] autoCommit = {true};
+            PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(), new Class<?>[] {PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        if (!method.getName().equals("execute")) {
+                            return null;
+                        }
+
+                        if (!available) {
+                            throw new SQLException("An I/O error occurred while sending to the backend", "08006");
+                        }
+
+                        executions++;
+                        autoCommitted += autoCommit[0] ? 1 : 0;
+
+                        return true;
+                    });
+
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] {Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "setAutoCommit" -> {
+                            autoCommit[0] = (Boolean) args[0];
+                            yield null;
+                        }
+                        case "getAutoCommit" -> autoCommit[0];
+                        case "prepareStatement" -> statement;
+                        default -> method.getReturnType() == boolean.class ? false : null;
+                    });
+        }
+    }
+}
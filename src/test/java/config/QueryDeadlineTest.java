@@ -0,0 +1,113 @@
+package config;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Class for testing query timeouts set from deadlines of operations */
+public class QueryDeadlineTest {
+
+    /** Query timeouts set on statement in seconds */
+    private final List<Integer> timeouts = new ArrayList<>();
+
+    /** Number of executed queries */
+    private int executions;
+
+    /** Tests that statements without deadline get default timeout */
+    @Test
+    public void defaultTimeoutTest() throws Exception {
+        Connection connection = QueryDeadline.withTimeouts(connection(), Duration.ofMillis(1500));
+
+        connection.prepareStatement("SELECT 1").executeQuery();
+
+        assertEquals(List.of(2), timeouts);
+        assertEquals(1, executions);
+    }
+
+    /** Tests that statements get time left until deadline and nested operation cannot extend it */
+    @Test
+    public void deadlineTest() {
+        Connection connection = QueryDeadline.withTimeouts(connection(), Duration.ofMinutes(1));
+
+        QueryDeadline.call(Duration.ofSeconds(3), () -> QueryDeadline.call(Duration.ofSeconds(30), () -> {
+            try {
+                return connection.prepareStatement("SELECT 1").executeUpdate();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+
+        assertEquals(1, executions);
+        assertEquals(1, timeouts.size());
+        assertTrue(timeouts.get(0) >= 1 && timeouts.get(0) <= 3);
+    }
+
+    /** Tests that statement is not executed when deadline passed */
+    @Test
+    public void passedDeadlineTest() {
+        Connection connection = QueryDeadline.withTimeouts(connection(), Duration.ZERO);
+
+        QueryDeadline.call(Duration.ofNanos(1), () -> {
+            assertThrows(SQLTimeoutException.class, () -> connection.prepareStatement("SELECT 1").execute());
+
+            return null;
+        });
+
+        assertEquals(0, executions);
+    }
+
+    /** Tests that cleanup work is executed without passed deadline and deadline is restored after it */
+    @Test
+    public void withoutDeadlineTest() {
+        Connection connection = QueryDeadline.withTimeouts(connection(), Duration.ofSeconds(5));
+
+        QueryDeadline.call(Duration.ofNanos(1), () -> {
+            QueryDeadline.withoutDeadline(() -> {
+                try {
+                    return connection.prepareStatement("SELECT 1").execute();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            assertThrows(SQLTimeoutException.class, () -> connection.prepareStatement("SELECT 1").execute());
+
+            return null;
+        });
+
+        assertEquals(List.of(5), timeouts);
+        assertEquals(1, executions);
+    }
+
+    /**
+     * Creates connection whose statements record query timeouts and executions
+     *
+     * @return proxy implementing connection
+     */
+    private Connection connection() {
+        PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(), new Class<?>[] {PreparedStatement.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("setQueryTimeout")) {
+                        timeouts.add((Integer) args[0]);
+                    } else if (method.getName().startsWith("execute")) {
+                        executions++;
+                    }
+
+                    return method.getReturnType() == boolean.class ? false
+                            : method.getReturnType() == int.class ? 0 : null;
+                });
+
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> statement);
+    }
+}
@@ -0,0 +1,144 @@
+package config;
+
+import config.api.IDatabaseConnector;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/** Class for testing routing of reads to replicas */
+public class ReplicatedConnectorTest {
+
+    /** Tests that reads use replicas in turn while their lag is within staleness bound */
+    @Test
+    public void freshReplicaTest() {
+        TestConnector primary = new TestConnector(0);
+        TestConnector first = new TestConnector(100);
+        TestConnector second = new TestConnector(0);
+        ReplicatedConnector connector = new ReplicatedConnector(primary, List.of(first, second),
+                Duration.ofMillis(500), Duration.ofMinutes(1));
+
+        assertSame(first.connection, connector.getReadConnection());
+        assertSame(second.connection, connector.getReadConnection());
+        assertSame(primary.connection, connector.getConnection());
+    }
+
+    /** Tests that stale replicas and databases which are not replicas are skipped */
+    @Test
+    public void staleReplicaTest() {
+        TestConnector primary = new TestConnector(0);
+        TestConnector stale = new TestConnector(5000);
+        TestConnector notReplica = new TestConnector(-1);
+        ReplicatedConnector connector = new ReplicatedConnector(primary, List.of(stale, notReplica),
+                Duration.ofMillis(500), Duration.ofMinutes(1));
+
+        assertSame(primary.connection, connector.getReadConnection());
+        assertSame(primary.connection, connector.getReadConnection());
+    }
+
+    /** Tests that replica without running WAL receiver is skipped even if it replayed everything it received */
+    @Test
+    public void disconnectedReplicaTest() {
+        TestConnector primary = new TestConnector(0);
+        TestConnector replica = new TestConnector(0);
+        ReplicatedConnector connector;
+
+        replica.receiving = false;
+        connector = new ReplicatedConnector(primary, List.of(replica), Duration.ofMillis(500), Duration.ofMinutes(1));
+
+        assertSame(primary.connection, connector.getReadConnection());
+    }
+
+    /** Tests that lag is measured again only after check interval */
+    @Test
+    public void checkIntervalTest() throws InterruptedException {
+        TestConnector primary = new TestConnector(0);
+        TestConnector replica = new TestConnector(5000);
+        ReplicatedConnector connector = new ReplicatedConnector(primary, List.of(replica),
+                Duration.ofMillis(500), Duration.ofMillis(50));
+
+        assertSame(primary.connection, connector.getReadConnection());
+        replica.lag = 0;
+        assertSame(primary.connection, connector.getReadConnection());
+        Thread.sleep(60);
+        assertSame(replica.connection, connector.getReadConnection());
+    }
+
+    /** Connector with connection which returns configured replication lag */
+    private static class TestConnector implements IDatabaseConnector {
+
+        /** Replication lag in milliseconds. Negative if database is not a replica */
+        private volatile double lag;
+
+        /** Whether WAL receiver of replica is streaming */
+        private volatile boolean receiving = true;
+
+        /** Connection returned by connector */
+        private final Connection connection;
+
+        /**
+         * Constructor with parameter
+         *
+         * @param lag replication lag in milliseconds. Negative if database is not a replica
+         */
+        private TestConnector(double lag) {
+            this.lag = lag;
+            this.connection = proxy(Connection.class, proxy(PreparedStatement.class, proxy(ResultSet.class, null)));
+        }
+
+        /**
+         * Creates JDBC object which returns specified value from methods returning objects, replication lag
+         * from getDouble, state of WAL receiver from getBoolean and true from other boolean methods,
+         * except wasNull which is true if lag is negative
+         *
+         * @param type JDBC interface
+         * @param result value returned from methods returning objects
+         * @param <T> type of JDBC interface
+         *
+         * @return proxy implementing interface
+         */
+        private <T> T proxy(Class<T> type, Object result) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "getDouble" -> Math.max(lag, 0);
+                        case "getBoolean" -> receiving;
+                        case "wasNull" -> lag < 0;
+                        case "next" -> true;
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        default -> method.getReturnType() == void.class ? null : result;
+                    }));
+        }
+
+        /**
+         * Returns connection of connector
+         *
+         * @return connection
+         */
+        @Override
+        public Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Returns connection of connector
+         *
+         * @return connection
+         */
+        @Override
+        public Connection openConnection() {
+            return connection;
+        }
+
+        /** Does nothing */
+        @Override
+        public void closeConnection() {
+        }
+    }
+}
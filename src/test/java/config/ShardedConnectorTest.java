@@ -0,0 +1,74 @@
+package config;
+
+import config.api.IDatabaseConnector;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** Class for testing routing of ids to shards */
+public class ShardedConnectorTest {
+
+    /** Tests that shard is found by range of id and ids outside of existing ranges have no shard */
+    @Test
+    public void getShardTest() {
+        ShardedConnector connector = new ShardedConnector(List.of(new TestConnector(), new TestConnector()));
+
+        assertEquals(0, connector.getShard(-5));
+        assertEquals(0, connector.getShard(1));
+        assertEquals(0, connector.getShard(ShardedConnector.getFirstId(1) - 1));
+        assertEquals(1, connector.getShard(ShardedConnector.getFirstId(1)));
+        assertEquals(-1, connector.getShard(ShardedConnector.getFirstId(2) + 7));
+    }
+
+    /** Tests that new accounts are placed on shards in turn */
+    @Test
+    public void placementTest() {
+        ShardedConnector connector = new ShardedConnector(List.of(new TestConnector(), new TestConnector(),
+                new TestConnector()));
+
+        assertEquals(0, connector.nextPlacementShard());
+        assertEquals(1, connector.nextPlacementShard());
+        assertEquals(2, connector.getShard(ShardedConnector.getFirstId(2) + 7));
+        assertEquals(2, connector.nextPlacementShard());
+        assertEquals(0, connector.nextPlacementShard());
+    }
+
+    /** Tests that connector cannot be created without shards */
+    @Test
+    public void noShardsTest() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedConnector(List.of()));
+    }
+
+    /** Connector without database used as a shard */
+    private static class TestConnector implements IDatabaseConnector {
+
+        /**
+         * Returns no connection
+         *
+         * @return null
+         */
+        @Override
+        public Connection getConnection() {
+            return null;
+        }
+
+        /**
+         * Returns no connection
+         *
+         * @return null
+         */
+        @Override
+        public Connection openConnection() {
+            return null;
+        }
+
+        /** Does nothing */
+        @Override
+        public void closeConnection() {
+        }
+    }
+}
@@ -11,9 +11,9 @@ import java.sql.Connection;
 import java.sql.Date;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
 /** Class for testing CRUD operations with accounts */
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
@@ -113,20 +113,43 @@ public class AccountServiceTest {
         assertEquals(testBalance + testBalanceUpdate, updated.getBalance());
     }
 
-    /** Tests updating information about account balance of specific bank in the database */
+    /** Tests that account is not updated with version which was read before the last update */
     @Test
     @Order(4)
+    public void updateStaleAccountTest() {
+        Account stale = new Account(testId, testBankId, testBalance, testUserId, testDate, 0);
+        assertEquals(0, accountService.updateAccount(stale));
+        assertEquals(testBalance + testBalanceUpdate, accountService.getAccount(testId).getBalance());
+    }
+
+    /** Tests updating information about account balance of specific bank in the database */
+    @Test
+    @Order(5)
     public void updateAllBankAccountsBalanceTest() {
-        accountService.updateAccount(new Account(testId, testBankId, testBalance, testUserId, testDate));
+        double percent = Double.parseDouble(new YmlFileReader().getStringValueFromFile("percentagePerMonth"));
+        Account account = accountService.getAccount(testId);
+
+        account.setBalance(testBalance);
+        assertEquals(1, accountService.updateAccount(account));
         accountService.updateAllBankAccountsBalance("Clever-Bank");
 
         Account updated = accountService.getAccount(testId);
-        assertNotEquals(testBalance, updated.getBalance());
+        assertEquals(testBalance * (1.0 + percent / 100.0), updated.getBalance(), 1e-9);
+    }
+
+    /** Tests reading portion of accounts ordered by id from the database */
+    @Test
+    @Order(6)
+    public void getAccountListTest() {
+        List<Account> accounts = accountService.getAccountList(testId - 1, 1);
+
+        assertEquals(1, accounts.size());
+        assertEquals(testId, accounts.get(0).getId());
     }
 
     /** Tests deleting account from the database */
     @Test
-    @Order(5)
+    @Order(7)
     public void deleteAccountTest() {
         assertEquals(1, accountService.deleteAccount(testId));
         Account actual = accountService.getAccount(testId);
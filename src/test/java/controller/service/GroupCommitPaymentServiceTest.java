@@ -0,0 +1,250 @@
+package controller.service;
+
+import model.dto.PaymentResult;
+import model.dto.PaymentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Class for testing batching and failures of group commit payment service */
+public class GroupCommitPaymentServiceTest {
+
+    /** Tests that concurrent operations are committed in one batch and every caller gets its own result */
+    @Test
+    public void batchTest() throws Exception {
+        TestDatabase database = new TestDatabase();
+        CompletableFuture<PaymentResult> replenishment;
+        CompletableFuture<PaymentResult> withdrawal;
+        CompletableFuture<PaymentResult> transfer;
+        CompletableFuture<PaymentResult> missing;
+
+        try (GroupCommitPaymentService service = new GroupCommitPaymentService(database.connection(), 4,
+                Duration.ofSeconds(5))) {
+            replenishment = async(() -> service.replenishAccount(1, 10));
+            withdrawal = async(() -> service.withdrawAccount(2, 100));
+            transfer = async(() -> service.transferToAnotherAccount(1, 2, 50));
+            missing = async(() -> service.replenishAccount(3, 10));
+
+            assertEquals(PaymentStatus.COMPLETED, replenishment.get(5, TimeUnit.SECONDS).status());
+            assertEquals(PaymentStatus.INSUFFICIENT_FUNDS, withdrawal.get(5, TimeUnit.SECONDS).status());
+            assertEquals(PaymentStatus.COMPLETED, transfer.get(5, TimeUnit.SECONDS).status());
+            assertEquals(PaymentStatus.ACCOUNT_NOT_FOUND, missing.get(5, TimeUnit.SECONDS).status());
+            assertEquals(1, database.commits.get());
+        }
+    }
+
+    /** Tests that executed operations get unknown status when commit fails, and rejected keep their status */
+    @Test
+    public void commitFailureTest() throws Exception {
+        TestDatabase database = new TestDatabase();
+        CompletableFuture<PaymentResult> replenishment;
+        CompletableFuture<PaymentResult> withdrawal;
+
+        database.failure = new SQLException("Connection reset", "08006");
+
+        try (GroupCommitPaymentService service = new GroupCommitPaymentService(database.connection(), 2,
+                Duration.ofSeconds(5))) {
+            replenishment = async(() -> service.replenishAccount(1, 10));
+            withdrawal = async(() -> service.withdrawAccount(2, 100));
+
+            assertEquals(PaymentStatus.UNKNOWN, replenishment.get(5, TimeUnit.SECONDS).status());
+            assertEquals(PaymentStatus.INSUFFICIENT_FUNDS, withdrawal.get(5, TimeUnit.SECONDS).status());
+        }
+    }
+
+    /** Tests that unexpected error fails only its batch and committer keeps executing next operations */
+    @Test
+    public void runtimeFailureTest() throws Exception {
+        TestDatabase database = new TestDatabase();
+
+        database.failure = new IllegalStateException("Broken driver");
+
+        try (GroupCommitPaymentService service = new GroupCommitPaymentService(database.connection(), 1,
+                Duration.ofMillis(1))) {
+            assertEquals(PaymentStatus.FAILED, service.replenishAccount(1, 10).status());
+            assertEquals(PaymentStatus.COMPLETED, service.replenishAccount(1, 10).status());
+        }
+    }
+
+    /**
+     * Executes operation in another thread
+     *
+     * @param operation money operation
+     *
+     * @return future result of the operation
+     */
+    private static CompletableFuture<PaymentResult> async(Supplier<PaymentResult> operation) {
+        return CompletableFuture.supplyAsync(operation, runnable -> new Thread(runnable).start());
+    }
+
+    /** Database with accounts 1 and 2 which answers queries of the service and can fail the first commit */
+    private static class TestDatabase {
+
+        /** Balances of existing accounts */
+        private final Map<Long, Double> balances = new HashMap<>(Map.of(1L, 100.0, 2L, 0.0));
+
+        /** Number of successful commits */
+        private final AtomicInteger commits = new AtomicInteger();
+
+        /** Id of the last inserted transaction */
+        private final AtomicInteger transactionId = new AtomicInteger();
+
+        /** Exception thrown by the first commit, or null */
+        private volatile Exception failure;
+
+        /**
+         * Creates connection to this database
+         *
+         * @return proxy implementing connection
+         */
+        private Connection connection() {
+            return proxy(Connection.class, (method, args) -> switch (method) {
+                case "prepareStatement" -> statement((String) args[0]);
+                case "commit" -> commit();
+                default -> null;
+            });
+        }
+
+        /**
+         * Commits transaction or throws the first failure
+         *
+         * @return null
+         *
+         * @throws Exception failure of the first commit
+         */
+        private Object commit() throws Exception {
+            Exception exception = failure;
+
+            if (exception != null) {
+                failure = null;
+
+                throw exception;
+            }
+
+            commits.incrementAndGet();
+
+            return null;
+        }
+
+        /**
+         * Creates prepared statement which remembers parameters and answers query by its text
+         *
+         * @param sql query text
+         *
+         * @return proxy implementing prepared statement
+         */
+        private PreparedStatement statement(String sql) {
+            Map<Integer, Object> parameters = new HashMap<>();
+
+            return proxy(PreparedStatement.class, (method, args) -> switch (method) {
+                case "setDouble", "setLong", "setObject" -> parameters.put((Integer) args[0], args[1]);
+                case "executeQuery" -> resultSet(answer(sql, parameters));
+                default -> null;
+            });
+        }
+
+        /**
+         * Answers query of the service
+         *
+         * @param sql query text
+         * @param parameters query parameters
+         *
+         * @return value of the returned row, or null if no rows are returned
+         */
+        private synchronized Long answer(String sql, Map<Integer, Object> parameters) {
+            Object account = parameters.get(2);
+
+            if (sql.startsWith("INSERT")) {
+                return (long) transactionId.incrementAndGet();
+            }
+
+            if (sql.startsWith("SELECT")) {
+                return balances.containsKey((Long) parameters.get(1)) ? 1L : null;
+            }
+
+            if (!balances.containsKey((Long) account)) {
+                return null;
+            }
+
+            if (sql.contains("balance - ?")) {
+                if (balances.get(account) < (Double) parameters.get(1)) {
+                    return null;
+                }
+
+                balances.merge((Long) account, -(Double) parameters.get(1), Double::sum);
+            } else {
+                balances.merge((Long) account, (Double) parameters.get(1), Double::sum);
+            }
+
+            return 1L;
+        }
+
+        /**
+         * Creates result set with one row containing value, or without rows
+         *
+         * @param value value of every column, or null for empty result
+         *
+         * @return proxy implementing result set
+         */
+        private ResultSet resultSet(Long value) {
+            AtomicInteger rows = new AtomicInteger(value == null ? 0 : 1);
+
+            return proxy(ResultSet.class, (method, args) -> switch (method) {
+                case "next" -> rows.getAndDecrement() > 0;
+                case "getLong" -> value;
+                default -> null;
+            });
+        }
+    }
+
+    /** Answer of JDBC proxy to method call */
+    private interface Handler {
+
+        /**
+         * Answers method call
+         *
+         * @param method method name
+         * @param args method arguments
+         *
+         * @return method result
+         *
+         * @throws Exception error of the method
+         */
+        Object answer(String method, Object[] args) throws Exception;
+    }
+
+    /**
+     * Creates JDBC object answering calls with handler
+     *
+     * @param type JDBC interface
+     * @param handler answer to method calls
+     * @param <T> type of JDBC interface
+     *
+     * @return proxy implementing interface
+     */
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> {
+                        Object result = handler.answer(method.getName(), args);
+
+                        yield method.getReturnType() == void.class ? null : result;
+                    }
+                }));
+    }
+}
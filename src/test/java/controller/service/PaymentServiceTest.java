@@ -0,0 +1,241 @@
+package controller.service;
+
+import config.QueryDeadline;
+import controller.service.memory.InMemoryAccountService;
+import controller.service.memory.InMemoryBankService;
+import controller.service.memory.InMemoryTransactionService;
+import controller.service.memory.InMemoryUserService;
+import metrics.ContentionMetrics;
+import model.dto.PaymentResult;
+import model.dto.PaymentStatus;
+import model.entity.Account;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Class for testing retries of money operations after optimistic concurrency conflicts */
+public class PaymentServiceTest {
+
+    /** Maximum number of attempts of operation */
+    private final int maxAttempts = 3;
+
+    /** Service with accounts which rejects configured number of updates as conflicts */
+    private ConflictingAccountService accountService;
+
+    /** Counts of conflicts */
+    private ContentionMetrics contention;
+
+    /** Service with money operations */
+    private PaymentService paymentService;
+
+    /** Creates services with one account with id -1 and balance 100 */
+    @BeforeEach
+    public void setServices() {
+        InMemoryBankService bankService = new InMemoryBankService();
+        InMemoryUserService userService = new InMemoryUserService();
+
+        accountService = new ConflictingAccountService(bankService);
+        contention = new ContentionMetrics();
+        paymentService = new PaymentService(null, accountService, new InMemoryTransactionService(userService),
+                maxAttempts, Duration.ZERO, contention);
+
+        bankService.addBank(-1, "Clever-Bank");
+        userService.addUser(-1, "User");
+        accountService.addAccount(-1, -1, 100, -1, Date.valueOf(LocalDate.now()));
+    }
+
+    /** Tests that operation is retried after conflicts and conflicts are counted */
+    @Test
+    public void retryTest() {
+        accountService.conflicts = maxAttempts - 1;
+
+        PaymentResult result = paymentService.withdrawAccount(-1, 30);
+
+        assertEquals(PaymentStatus.COMPLETED, result.status());
+        assertEquals(70, accountService.getAccount(-1).getBalance());
+        assertEquals(Map.of("withdrawAccount", 2L), contention.getConflicts());
+        assertEquals(Map.of(), contention.getExhausted());
+    }
+
+    /** Tests that operation fails without changing balance when every attempt is a conflict */
+    @Test
+    public void exhaustedTest() {
+        accountService.conflicts = maxAttempts;
+
+        PaymentResult result = paymentService.replenishAccount(-1, 30);
+
+        assertEquals(PaymentStatus.UPDATE_FAILED, result.status());
+        assertEquals(100, accountService.getAccount(-1).getBalance());
+        assertEquals(Map.of("replenishAccount", 3L), contention.getConflicts());
+        assertEquals(Map.of("replenishAccount", 1L), contention.getExhausted());
+    }
+
+    /** Tests that database error fails operation without retries and is not counted as conflict */
+    @Test
+    public void databaseErrorTest() {
+        accountService.errors = 1;
+
+        PaymentResult result = paymentService.withdrawAccount(-1, 30);
+
+        assertEquals(PaymentStatus.FAILED, result.status());
+        assertEquals(100, accountService.getAccount(-1).getBalance());
+        assertEquals(Map.of(), contention.getConflicts());
+    }
+
+    /** Tests that transfer to the same account is rejected before accounts are read */
+    @Test
+    public void selfTransferTest() {
+        PaymentResult result = paymentService.transferToAnotherAccount(-1, -1, 30);
+
+        assertEquals(PaymentStatus.SAME_ACCOUNT, result.status());
+        assertEquals(100, accountService.getAccount(-1).getBalance());
+        assertEquals(Map.of(), contention.getConflicts());
+    }
+
+    /** Tests that balance update is rolled back after transaction record failed because deadline passed */
+    @Test
+    public void compensationAfterDeadlineTest() {
+        InMemoryBankService bankService = new InMemoryBankService();
+        InMemoryUserService userService = new InMemoryUserService();
+        DeadlineAccountService deadlineAccountService = new DeadlineAccountService(bankService);
+        PaymentService service = new PaymentService(null, deadlineAccountService,
+                new SlowTransactionService(userService), maxAttempts, Duration.ZERO, contention);
+        PaymentResult result;
+
+        bankService.addBank(-1, "Clever-Bank");
+        userService.addUser(-1, "User");
+        deadlineAccountService.addAccount(-1, -1, 100, -1, Date.valueOf(LocalDate.now()));
+        result = QueryDeadline.call(Duration.ofMillis(200), () -> service.replenishAccount(-1, 30));
+
+        assertEquals(PaymentStatus.TRANSACTION_FAILED, result.status());
+        assertEquals(100, deadlineAccountService.getAccount(-1).getBalance());
+    }
+
+    /** Service with accounts stored in memory which rejects configured number of updates */
+    private static class ConflictingAccountService extends InMemoryAccountService {
+
+        /** Number of the next updates which will be rejected */
+        private int conflicts;
+
+        /** Number of the next updates which will fail with database error */
+        private int errors;
+
+        /**
+         * Constructor with parameter
+         *
+         * @param bankService service with banks
+         */
+        private ConflictingAccountService(InMemoryBankService bankService) {
+            super(bankService, key -> "1");
+        }
+
+        /**
+         * Fails update if there are errors left, rejects it if there are conflicts left, otherwise updates account
+         *
+         * @param updatedAccount account with new values
+         *
+         * @return number of updated accounts, minus one in case of error
+         */
+        @Override
+        public int updateAccount(Account updatedAccount) {
+            if (errors > 0) {
+                errors--;
+
+                return -1;
+            }
+
+            if (conflicts > 0) {
+                conflicts--;
+
+                return 0;
+            }
+
+            return super.updateAccount(updatedAccount);
+        }
+    }
+
+    /**
+     * Service with accounts stored in memory which executes query before every read like database service,
+     * so read fails when deadline of operation passed
+     */
+    private static class DeadlineAccountService extends InMemoryAccountService {
+
+        /** Connection which sets query timeouts from deadlines */
+        private final Connection connection = QueryDeadline.withTimeouts((Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                (proxy, method, args) -> Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                        new Class<?>[] {PreparedStatement.class}, (statement, statementMethod, statementArgs) ->
+                                statementMethod.getReturnType() == boolean.class ? false : null)), Duration.ZERO);
+
+        /**
+         * Constructor with parameter
+         *
+         * @param bankService service with banks
+         */
+        private DeadlineAccountService(InMemoryBankService bankService) {
+            super(bankService, key -> "1");
+        }
+
+        /**
+         * Executes query and reads account
+         *
+         * @param id account id
+         *
+         * @return account or account with default values if query failed
+         */
+        @Override
+        public Account getAccount(long id) {
+            try {
+                connection.prepareStatement("SELECT 1").execute();
+            } catch (SQLException e) {
+                return new Account();
+            }
+
+            return super.getAccount(id);
+        }
+    }
+
+    /** Service with transactions stored in memory which fails to save transaction after deadline passed */
+    private static class SlowTransactionService extends InMemoryTransactionService {
+
+        /**
+         * Constructor with parameter
+         *
+         * @param userService service with users
+         */
+        private SlowTransactionService(InMemoryUserService userService) {
+            super(userService);
+        }
+
+        /**
+         * Waits until deadline of operation passes and fails
+         *
+         * @param id transaction id
+         * @param amount transaction amount
+         * @param senderId id of transaction sender
+         * @param receiverId id of transaction receiver
+         *
+         * @return zero
+         */
+        @Override
+        public long addTransaction(long id, double amount, long senderId, long receiverId) {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return 0;
+        }
+    }
+}
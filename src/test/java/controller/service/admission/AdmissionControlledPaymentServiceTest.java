@@ -0,0 +1,100 @@
+package controller.service.admission;
+
+import controller.service.api.IPaymentService;
+import model.dto.PaymentResult;
+import model.dto.PaymentStatus;
+import model.entity.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Class for testing admission of money operations */
+public class AdmissionControlledPaymentServiceTest {
+
+    /** Current time of tests in nanoseconds */
+    private final AtomicLong time = new AtomicLong();
+
+    /** Tests that flood of one client is rejected without affecting other clients and bucket is refilled */
+    @Test
+    public void rateLimitTest() {
+        AdmissionControlledPaymentService service = new AdmissionControlledPaymentService(new TestPaymentService(),
+                new ClientRateLimiter(1, 2, 10, time::get), new AdaptiveConcurrencyLimiter(4, 1, 4, 1000),
+                time::get);
+
+        assertEquals(PaymentStatus.COMPLETED, service.withdrawAccount(1, 10).status());
+        assertEquals(PaymentStatus.COMPLETED, service.transferToAnotherAccount(1, 2, 10).status());
+        assertEquals(PaymentStatus.RATE_LIMITED, service.replenishAccount(1, 10).status());
+        assertEquals(PaymentStatus.COMPLETED, service.replenishAccount(2, 10).status());
+        time.addAndGet(1_000_000_000L);
+        assertEquals(PaymentStatus.COMPLETED, service.replenishAccount(1, 10).status());
+    }
+
+    /** Tests that operations over concurrency limit are rejected at once */
+    @Test
+    public void concurrencyLimitTest() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 4, 1000);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        limiter.release(10);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    /**
+     * Tests that slow operations decrease concurrency limit and fast operations increase it again
+     * while they use at least half of the limit
+     */
+    @Test
+    public void adaptiveLimitTest() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 4, 1000);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.release(5000);
+        }
+
+        assertEquals(1, limiter.getLimit());
+
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire();
+            limiter.release(10);
+        }
+
+        assertEquals(3, limiter.getLimit());
+    }
+
+    /** Payment service which completes every operation and advances time by fast latency */
+    private class TestPaymentService implements IPaymentService {
+
+        /**
+         * Completes operation
+         *
+         * @return completed result
+         */
+        private PaymentResult complete() {
+            time.addAndGet(10);
+
+            return new PaymentResult(PaymentStatus.COMPLETED, new Transaction(), 0, 0);
+        }
+
+        @Override
+        public PaymentResult replenishAccount(long accountId, double amount) {
+            return complete();
+        }
+
+        @Override
+        public PaymentResult withdrawAccount(long accountId, double amount) {
+            return complete();
+        }
+
+        @Override
+        public PaymentResult transferToAnotherAccount(long senderId, long receiverId, double amount) {
+            return complete();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package controller.service.async;
+
+import config.api.IDatabaseConnector;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Class for testing execution of service calls on threads with their own connections */
+public class AsyncServicePoolTest {
+
+    /** Tests that calls submitted together overlap and run on services with different connections */
+    @Test
+    public void parallelCallsTest() throws Exception {
+        TestConnector connector = new TestConnector();
+        CountDownLatch started = new CountDownLatch(2);
+        List<Connection> connections;
+
+        try (AsyncServicePool<Connection> pool = new AsyncServicePool<>(connector, connection -> connection,
+                null, 2, "test")) {
+            CompletableFuture<Connection> first = pool.submit(connection -> await(started, connection));
+            CompletableFuture<Connection> second = pool.submit(connection -> await(started, connection));
+
+            connections = List.of(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        }
+
+        assertNotSame(connections.get(0), connections.get(1));
+        assertEquals(2, connector.opened.get());
+    }
+
+    /** Tests that shared service is used if connection cannot be opened and connection is opened later */
+    @Test
+    public void sharedServiceTest() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        IDatabaseConnector connector = new TestConnector() {
+            @Override
+            public Connection openConnection() {
+                return attempts.incrementAndGet() == 1 ? null : super.openConnection();
+            }
+        };
+        Object shared = new Object();
+
+        try (AsyncServicePool<Object> pool = new AsyncServicePool<>(connector, connection -> connection, shared,
+                1, "test")) {
+            assertSame(shared, pool.submit(service -> service).get(5, TimeUnit.SECONDS));
+            assertSame(shared, pool.submit(service -> service).get(5, TimeUnit.SECONDS));
+            assertEquals(1, attempts.get());
+            Thread.sleep(600); // retry interval passes
+            assertNotSame(shared, pool.submit(service -> service).get(5, TimeUnit.SECONDS));
+            assertEquals(2, attempts.get());
+        }
+    }
+
+    /**
+     * Counts down latch and waits until other calls count it down too
+     *
+     * @param latch latch counted down by every call
+     * @param connection connection of the call
+     *
+     * @return connection of the call
+     */
+    private Connection await(CountDownLatch latch, Connection connection) {
+        latch.countDown();
+
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return connection;
+    }
+
+    /** Connector which opens new fake connection on every call */
+    private static class TestConnector implements IDatabaseConnector {
+
+        /** Number of opened connections */
+        private final AtomicInteger opened = new AtomicInteger();
+
+        /**
+         * Returns null because shared connection is not used
+         *
+         * @return null
+         */
+        @Override
+        public Connection getConnection() {
+            return null;
+        }
+
+        /**
+         * Creates new fake connection
+         *
+         * @return connection which ignores all calls
+         */
+        @Override
+        public Connection openConnection() {
+            opened.incrementAndGet();
+
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] {Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        default -> null;
+                    });
+        }
+
+        /** Does nothing */
+        @Override
+        public void closeConnection() {
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package controller.service.feed;
+
+import config.api.IDatabaseConnector;
+import model.entity.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Class for testing subscription protocol of transaction feed */
+public class TransactionFeedTest {
+
+    /** Tests that only one subscription may use offset of consumer and errors of connection are signalled */
+    @Test
+    public void singleSubscriptionTest() throws Exception {
+        CountDownLatch opening = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TransactionFeed feed = new TransactionFeed(new TestConnector(opening, release), "test", 10,
+                Duration.ofMillis(10));
+        TestSubscriber first = new TestSubscriber();
+        TestSubscriber second = new TestSubscriber();
+
+        feed.subscribe(first);
+        assertTrue(opening.await(5, TimeUnit.SECONDS));
+        feed.subscribe(second);
+        assertInstanceOf(IllegalStateException.class, second.error.get(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertInstanceOf(SQLException.class, first.error.get(5, TimeUnit.SECONDS));
+    }
+
+    /** Tests that subscription fails if advisory lock of consumer is held by another session */
+    @Test
+    public void lockedConsumerTest() throws Exception {
+        IDatabaseConnector connector = new TestConnector(new CountDownLatch(1), new CountDownLatch(0)) {
+            @Override
+            public Connection openConnection() {
+                return proxy(Connection.class, proxy(PreparedStatement.class, proxy(ResultSet.class, null)));
+            }
+        };
+        TransactionFeed feed = new TransactionFeed(connector, "test", 10, Duration.ofMillis(10));
+        TestSubscriber subscriber = new TestSubscriber();
+
+        feed.subscribe(subscriber);
+
+        assertInstanceOf(IllegalStateException.class, subscriber.error.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Creates JDBC object which returns specified value from methods returning objects, true from next
+     * and false from getBoolean, so advisory lock is never taken
+     *
+     * @param type JDBC interface
+     * @param result value returned from methods returning objects
+     * @param <T> type of JDBC interface
+     *
+     * @return proxy implementing interface
+     */
+    private static <T> T proxy(Class<T> type, Object result) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "next" -> true;
+                    case "getBoolean" -> false;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> method.getReturnType() == void.class ? null : result;
+                }));
+    }
+
+    /** Subscriber which requests transactions and remembers error */
+    private static class TestSubscriber implements Flow.Subscriber<Transaction> {
+
+        /** Error signalled to subscriber */
+        private final CompletableFuture<Throwable> error = new CompletableFuture<>();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(Transaction item) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.complete(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    /** Connector which cannot open connection and waits for permission before reporting it */
+    private static class TestConnector implements IDatabaseConnector {
+
+        /** Counted down when connection is being opened */
+        private final CountDownLatch opening;
+
+        /** Awaited before reporting that connection cannot be opened */
+        private final CountDownLatch release;
+
+        /**
+         * Constructor with parameters
+         *
+         * @param opening latch counted down when connection is being opened
+         * @param release latch awaited before reporting that connection cannot be opened
+         */
+        private TestConnector(CountDownLatch opening, CountDownLatch release) {
+            this.opening = opening;
+            this.release = release;
+        }
+
+        /**
+         * Returns null because shared connection is not used
+         *
+         * @return null
+         */
+        @Override
+        public Connection getConnection() {
+            return null;
+        }
+
+        /**
+         * Waits for permission and reports that connection cannot be opened
+         *
+         * @return null
+         */
+        @Override
+        public Connection openConnection() {
+            opening.countDown();
+
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return null;
+        }
+
+        /** Does nothing */
+        @Override
+        public void closeConnection() {
+        }
+    }
+}
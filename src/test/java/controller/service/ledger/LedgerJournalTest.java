@@ -0,0 +1,86 @@
+package controller.service.ledger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Class for testing journal of the in-memory ledger */
+public class LedgerJournalTest {
+
+    /** Directory with journal segments, created for every test */
+    @TempDir
+    public Path directory;
+
+    /** Tests that records are replayed in order after journal is closed and opened again in several segments */
+    @Test
+    public void replayTest() throws IOException {
+        List<LedgerRecord> records = new ArrayList<>();
+        LedgerJournal journal = new LedgerJournal(directory, 0, 4, Duration.ofMillis(10));
+
+        for (int i = 1; i <= 10; i++) {
+            journal.append(LedgerRecord.payment(i, i, i + 1, i * 10.0, 100.0 - i, 100.0 + i, 1000L * i));
+        }
+
+        journal.awaitDurable(10);
+        journal.close();
+
+        assertEquals(10, LedgerJournal.replay(directory, 0, (record, sequence) -> records.add(record)));
+        assertEquals(10, records.size());
+        assertEquals(LedgerRecord.payment(7, 7, 8, 70.0, 93.0, 107.0, 7000L), records.get(6));
+        assertEquals(3, LedgerJournal.listSegments(directory).size());
+    }
+
+    /** Tests that replay stops at torn record and continues in segment written after recovery */
+    @Test
+    public void tornRecordTest() throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        LedgerJournal journal = new LedgerJournal(directory, 0, 100, Duration.ofMillis(10));
+
+        for (int i = 1; i <= 3; i++) {
+            journal.append(LedgerRecord.deletion(i));
+        }
+
+        journal.close();
+
+        try (FileChannel channel = FileChannel.open(directory.resolve(String.format("journal-%020d.log", 1)),
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3}), 2L * LedgerJournal.RECORD_SIZE + 20);
+        }
+
+        assertEquals(2, LedgerJournal.replay(directory, 0, (record, sequence) -> { }));
+
+        journal = new LedgerJournal(directory, 2, 100, Duration.ofMillis(10));
+        journal.append(LedgerRecord.deletion(30));
+        journal.close();
+
+        assertEquals(3, LedgerJournal.replay(directory, 0, (record, sequence) -> sequences.add(record.id())));
+        assertEquals(List.of(1L, 2L, 30L), sequences);
+    }
+
+    /** Tests that only segments covered by specified sequence are deleted */
+    @Test
+    public void deleteSegmentsTest() throws IOException {
+        LedgerJournal journal = new LedgerJournal(directory, 0, 2, Duration.ofMillis(10));
+
+        for (int i = 1; i <= 7; i++) {
+            journal.append(LedgerRecord.deletion(i));
+        }
+
+        journal.deleteSegmentsBefore(4);
+
+        assertEquals(List.of(5L, 7L), LedgerJournal.listSegments(directory));
+        assertEquals(7, LedgerJournal.replay(directory, 4, (record, sequence) -> { }));
+
+        journal.close();
+    }
+}
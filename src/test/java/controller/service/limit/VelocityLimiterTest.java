@@ -0,0 +1,92 @@
+package controller.service.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Class for testing sliding-window limits of account debits */
+public class VelocityLimiterTest {
+
+    /** Start time of tests in milliseconds */
+    private final long start = 1_000_000_000L;
+
+    /** Tests that number of debits is limited during window and debits leave window with their buckets */
+    @Test
+    public void countLimitTest() {
+        VelocityLimiter limiter = new VelocityLimiter(List.of(new VelocityLimit(Duration.ofMinutes(1), 6, 2, 0)),
+                16, () -> start);
+
+        assertTrue(limiter.tryAcquire(1, 10, start));
+        assertTrue(limiter.tryAcquire(1, 10, start + 30_000));
+        assertFalse(limiter.tryAcquire(1, 10, start + 50_000));
+        assertTrue(limiter.tryAcquire(2, 10, start + 50_000));
+        assertTrue(limiter.tryAcquire(1, 10, start + 60_000));
+    }
+
+    /** Tests that amount is limited by every window and released debit does not count */
+    @Test
+    public void amountLimitTest() {
+        VelocityLimiter limiter = new VelocityLimiter(List.of(new VelocityLimit(Duration.ofMinutes(1), 6, 0, 100),
+                new VelocityLimit(Duration.ofHours(1), 6, 0, 150)), 16, () -> start);
+
+        assertTrue(limiter.tryAcquire(1, 60, start));
+        assertFalse(limiter.tryAcquire(1, 60, start));
+        limiter.release(1, 60, start);
+        assertTrue(limiter.tryAcquire(1, 100, start));
+        assertFalse(limiter.tryAcquire(1, 60, start + 120_000));
+        assertTrue(limiter.tryAcquire(1, 50, start + 120_000));
+    }
+
+    /** Tests that debits of new account are rejected when table is full and ring of idle account is reused */
+    @Test
+    public void capacityTest() {
+        VelocityLimiter limiter = new VelocityLimiter(List.of(new VelocityLimit(Duration.ofMinutes(1), 6, 1, 0)),
+                2, () -> start);
+
+        assertTrue(limiter.tryAcquire(1, 10, start));
+        assertTrue(limiter.tryAcquire(2, 10, start));
+        assertFalse(limiter.tryAcquire(3, 10, start));
+        assertFalse(limiter.tryAcquire(3, 10, start));
+        assertTrue(limiter.tryAcquire(3, 10, start + 61_000));
+        assertFalse(limiter.tryAcquire(3, 10, start + 61_000));
+    }
+
+    /** Tests that concurrent debits never pass limit together */
+    @Test
+    public void concurrentDebitsTest() throws Exception {
+        VelocityLimiter limiter = new VelocityLimiter(List.of(new VelocityLimit(Duration.ofMinutes(1), 6, 100, 0)),
+                16, () -> start);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        int acquired = 0;
+
+        for (int i = 0; i < 8; i++) {
+            tasks.add(() -> {
+                int count = 0;
+
+                for (int j = 0; j < 1000; j++) {
+                    count += limiter.tryAcquire(1, 1, start) ? 1 : 0;
+                }
+
+                return count;
+            });
+        }
+
+        for (Future<Integer> result : executor.invokeAll(tasks)) {
+            acquired += result.get();
+        }
+
+        executor.shutdown();
+        assertEquals(100, acquired);
+    }
+}
@@ -0,0 +1,149 @@
+package controller.service.memory;
+
+import model.dto.PaymentResult;
+import model.dto.PaymentStatus;
+import model.dto.StatementDto;
+import model.entity.Account;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Class for testing money operations with services stored in memory */
+public class InMemoryPaymentServiceTest {
+
+    /** Number of accounts that will be used in tests */
+    private final int testAccounts = 10;
+
+    /** Initial balance of every test account */
+    private final double testBalance = 1000;
+
+    /** Service with users */
+    private InMemoryUserService userService;
+
+    /** Service with accounts */
+    private InMemoryAccountService accountService;
+
+    /** Service with transactions */
+    private InMemoryTransactionService transactionService;
+
+    /** Service with money operations */
+    private InMemoryPaymentService paymentService;
+
+    /** Creates services with one bank, users and accounts with ids from -1 to -testAccounts */
+    @BeforeEach
+    public void setServices() {
+        InMemoryBankService bankService = new InMemoryBankService();
+
+        userService = new InMemoryUserService();
+        accountService = new InMemoryAccountService(bankService, key -> "1");
+        transactionService = new InMemoryTransactionService(userService);
+        paymentService = new InMemoryPaymentService(accountService, transactionService);
+
+        bankService.addBank(-1, "Clever-Bank");
+
+        for (int i = 1; i <= testAccounts; i++) {
+            userService.addUser(-i, "User " + i);
+            accountService.addAccount(-i, -1, testBalance, -i, Date.valueOf(LocalDate.now()));
+        }
+    }
+
+    /** Tests that transfer changes both balances and creates transaction record */
+    @Test
+    public void transferTest() {
+        PaymentResult result = paymentService.transferToAnotherAccount(-1, -2, 100);
+
+        assertTrue(result.isCompleted());
+        assertEquals(testBalance - 100, accountService.getAccount(-1).getBalance());
+        assertEquals(testBalance + 100, accountService.getAccount(-2).getBalance());
+        assertEquals(100, transactionService.getTransaction(result.transaction().getId()).getAmount());
+    }
+
+    /** Tests that operations without enough money are rejected and do not change balances */
+    @Test
+    public void insufficientFundsTest() {
+        assertEquals(PaymentStatus.INSUFFICIENT_FUNDS,
+                paymentService.transferToAnotherAccount(-1, -2, testBalance + 1).status());
+        assertEquals(PaymentStatus.INSUFFICIENT_FUNDS, paymentService.withdrawAccount(-1, testBalance + 1).status());
+        assertEquals(testBalance, accountService.getAccount(-1).getBalance());
+        assertEquals(testBalance, accountService.getAccount(-2).getBalance());
+        assertEquals(0, transactionService.getTransactionList(-1).size());
+    }
+
+    /** Tests that transfer to the same account is rejected and does not create transaction */
+    @Test
+    public void sameAccountTest() {
+        assertEquals(PaymentStatus.SAME_ACCOUNT, paymentService.transferToAnotherAccount(-1, -1, 100).status());
+        assertEquals(testBalance, accountService.getAccount(-1).getBalance());
+        assertEquals(0, transactionService.getTransactionList(-1).size());
+    }
+
+    /** Tests that account read before a transfer cannot overwrite balance changed by the transfer */
+    @Test
+    public void staleUpdateTest() {
+        Account stale = accountService.getAccount(-1);
+
+        assertTrue(paymentService.withdrawAccount(-1, 100).isCompleted());
+        stale.setBalance(testBalance + 100);
+
+        assertEquals(0, accountService.updateAccount(stale));
+        assertEquals(testBalance - 100, accountService.getAccount(-1).getBalance());
+    }
+
+    /** Tests that concurrent transfers in both directions neither lose money nor deadlock */
+    @Test
+    public void concurrentTransfersTest() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        double total = 0;
+
+        for (int i = 0; i < 8; i++) {
+            int seed = i;
+
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    long sender = -1 - (seed + j) % testAccounts;
+                    long receiver = -1 - (seed * 7 + j * 3) % testAccounts;
+
+                    paymentService.transferToAnotherAccount(sender, receiver, 1);
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 1; i <= testAccounts; i++) {
+            assertFalse(accountService.getAccount(-i).getBalance() < 0);
+            total += accountService.getAccount(-i).getBalance();
+        }
+
+        assertEquals(testBalance * testAccounts, total);
+    }
+
+    /** Tests that statement contains names of transaction participants */
+    @Test
+    public void statementTest() {
+        paymentService.transferToAnotherAccount(-1, -2, 10);
+        paymentService.replenishAccount(-1, 5);
+
+        List<StatementDto> statement = transactionService.getTransactionListByTime(-1, LocalDateTime.now().minusDays(1));
+
+        assertEquals(2, statement.size());
+        assertEquals("User 1", statement.get(0).sender());
+        assertEquals("User 2", statement.get(0).receiver());
+        assertEquals("", statement.get(1).sender());
+    }
+}
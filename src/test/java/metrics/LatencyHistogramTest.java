@@ -0,0 +1,56 @@
+package metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Class for testing latency histogram */
+public class LatencyHistogramTest {
+
+    /** Tests that small values are recorded exactly */
+    @Test
+    public void smallValuesTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(5050, histogram.getSum());
+    }
+
+    /** Tests that percentiles of big values have relative error below 1/64 */
+    @Test
+    public void precisionTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long value;
+
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        for (double percentile : new double[] {1, 50, 90, 99, 99.9}) {
+            value = histogram.getValueAtPercentile(percentile);
+
+            assertTrue(Math.abs(value - percentile * 100000) <= percentile * 100000 / 64, "p" + percentile);
+        }
+
+        assertEquals(10_000_000, histogram.getMax());
+    }
+
+    /** Tests that every value is in the bucket with bounds around it */
+    @Test
+    public void bucketBoundsTest() {
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+            int index = LatencyHistogram.getIndex(value);
+
+            assertTrue(LatencyHistogram.getHighestValue(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.getHighestValue(index - 1) < value);
+        }
+    }
+}
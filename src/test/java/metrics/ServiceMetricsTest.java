@@ -0,0 +1,65 @@
+package metrics;
+
+import controller.service.api.IUserService;
+import controller.service.memory.InMemoryUserService;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Class for testing metrics of service calls */
+public class ServiceMetricsTest {
+
+    /** Tests that calls and exceptions of instrumented service are recorded */
+    @Test
+    public void instrumentTest() {
+        ServiceMetrics metrics = new ServiceMetrics();
+        IUserService userService = metrics.instrument(IUserService.class, new InMemoryUserService() {
+            @Override
+            public int deleteUser(long id) {
+                throw new IllegalStateException();
+            }
+        });
+
+        userService.addUser(-1, "Test User");
+        userService.getUser(-1);
+        assertThrows(IllegalStateException.class, () -> userService.deleteUser(-1));
+
+        assertEquals(4, metrics.getCalls().size());
+        assertEquals(1, getCallMetrics(metrics, "IUserService.addUser").getCount());
+        assertEquals(0, getCallMetrics(metrics, "IUserService.addUser").getErrorCount());
+        assertEquals(Map.of("IllegalStateException", 1L), getCallMetrics(metrics, "IUserService.deleteUser").getErrors());
+    }
+
+    /** Tests that metrics are written in Prometheus text format */
+    @Test
+    public void writeTextTest() throws IOException {
+        ServiceMetrics metrics = new ServiceMetrics();
+        IUserService userService = metrics.instrument(IUserService.class, new InMemoryUserService());
+        StringWriter text = new StringWriter();
+
+        userService.getUser(1);
+        metrics.writeText(text);
+
+        assertTrue(text.toString().contains(
+                "clever_bank_call_duration_seconds_count{method=\"IUserService.getUser\"} 1\n"));
+        assertTrue(text.toString().contains("clever_bank_call_rows_total{method=\"IUserService.deleteUser\"} 0\n"));
+    }
+
+    /**
+     * Finds metrics of method
+     *
+     * @param metrics metrics of service calls
+     * @param name name of the method in form "Interface.method"
+     *
+     * @return metrics of the method
+     */
+    private CallMetrics getCallMetrics(ServiceMetrics metrics, String name) {
+        return metrics.getCalls().stream().filter(call -> call.getName().equals(name)).findFirst().orElseThrow();
+    }
+}
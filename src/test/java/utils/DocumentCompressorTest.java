@@ -0,0 +1,75 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Class for testing compression of documents with template dictionary */
+public class DocumentCompressorTest {
+
+    /** Template that will be used in tests */
+    private final String testTemplate = """
+            ----------------------------------------
+            |            Банковский чек            |
+            | Тип транзакции:              Перевод |
+            |--------------------------------------|
+            """;
+
+    /** Document that will be used in tests */
+    private final String testDocument = """
+            ----------------------------------------
+            |            Банковский чек            |
+            | Тип транзакции:       Снятие средств |
+            |--------------------------------------|
+            """;
+
+    /** Instance of DocumentCompressor class */
+    private final DocumentCompressor compressor = new DocumentCompressor(testTemplate);
+
+    /** Tests that compressed document is smaller and is decompressed without changes */
+    @Test
+    public void compressAndDecompressTest() throws DataFormatException {
+        byte[] document = testDocument.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer compressed = compressor.compress(ByteBuffer.wrap(document));
+        byte[] compressedBytes = new byte[compressed.remaining()];
+
+        compressed.get(compressedBytes);
+
+        assertTrue(compressedBytes.length * 3 < document.length);
+        assertArrayEquals(document, compressor.decompress(compressedBytes));
+    }
+
+    /** Tests that document compressed by stream is decompressed without changes */
+    @Test
+    public void compressingStreamTest() throws IOException, DataFormatException {
+        byte[] document = testDocument.repeat(100).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        try (OutputStream stream = compressor.compressingStream(compressed)) {
+            stream.write(document);
+        }
+
+        assertArrayEquals(document, compressor.decompress(compressed.toByteArray()));
+    }
+
+    /** Tests that document cannot be decompressed with another dictionary */
+    @Test
+    public void anotherDictionaryTest() {
+        ByteBuffer compressed = compressor.compress(ByteBuffer.wrap(testDocument.getBytes(StandardCharsets.UTF_8)));
+        byte[] compressedBytes = new byte[compressed.remaining()];
+
+        compressed.get(compressedBytes);
+
+        assertThrows(DataFormatException.class,
+                () -> new DocumentCompressor(testDocument).decompress(compressedBytes));
+    }
+}
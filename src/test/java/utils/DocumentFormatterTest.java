@@ -0,0 +1,64 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Class for testing allocation-free document formatting */
+public class DocumentFormatterTest {
+
+    /** Amounts that will be used in tests */
+    private final double[] testAmounts = {0, 0.5, 1.005, 2.675, 12.345, -7.5, -0.001, 1234567.891, 99.995};
+
+    /** Tests that amounts are formatted the same way as String.format does */
+    @Test
+    public void appendAmountTest() {
+        for (double amount : testAmounts) {
+            String expected = String.format(Locale.ROOT, "%.2f", amount);
+            String actual = DocumentFormatter.appendAmount(new StringBuilder(), amount).toString();
+
+            assertEquals(expected, actual);
+            assertEquals(expected.length(), DocumentFormatter.amountLength(amount));
+        }
+    }
+
+    /** Tests that length of numbers is calculated correctly */
+    @Test
+    public void lengthTest() {
+        assertEquals(1, DocumentFormatter.length(0));
+        assertEquals(3, DocumentFormatter.length(-15));
+        assertEquals(String.valueOf(Long.MAX_VALUE).length(), DocumentFormatter.length(Long.MAX_VALUE));
+        assertEquals(String.valueOf(Long.MIN_VALUE).length(), DocumentFormatter.length(Long.MIN_VALUE));
+    }
+
+    /** Tests date, time and padding formatting */
+    @Test
+    public void appendDateAndTimeTest() {
+        StringBuilder builder = new StringBuilder();
+
+        DocumentFormatter.appendDate(builder, LocalDate.of(2023, 7, 4));
+        DocumentFormatter.appendSpaces(builder, 3);
+        DocumentFormatter.appendTime(builder, LocalTime.of(9, 5, 7), true);
+        DocumentFormatter.appendSpaces(builder, -1);
+        DocumentFormatter.appendTime(builder.append(' '), LocalTime.of(23, 59), false);
+
+        assertEquals("04-07-2023   09:05:07 23:59", builder.toString());
+    }
+
+    /** Tests UTF-8 encoding of documents */
+    @Test
+    public void encodeTest() {
+        String document = "Банковский чек " + " ".repeat(5000);
+        ByteBuffer buffer = DocumentFormatter.encode(document);
+        byte[] bytes = new byte[buffer.remaining()];
+
+        buffer.get(bytes);
+        assertEquals(document, new String(bytes, StandardCharsets.UTF_8));
+    }
+}
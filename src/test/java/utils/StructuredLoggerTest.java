@@ -0,0 +1,121 @@
+package utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Class for testing asynchronous structured logging */
+public class StructuredLoggerTest {
+
+    /** System stream for error messages */
+    private final PrintStream errorStream = System.err;
+
+    /** Stream which receives log lines during test */
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    /** Redirects error stream before every test */
+    @BeforeEach
+    public void redirectErrorStream() {
+        System.setErr(new PrintStream(outputStream));
+    }
+
+    /** Restores error stream after every test */
+    @AfterEach
+    public void restoreErrorStream() {
+        System.setErr(errorStream);
+    }
+
+    /** Tests that SQL error is written as key/value fields */
+    @Test
+    public void sqlErrorTest() {
+        StructuredLogger logger = new StructuredLogger(16, TimeUnit.SECONDS.toNanos(1));
+
+        logger.sqlError("getAccount", new SQLException("connection \"refused\"", "08001"), "accountId", 5);
+        logger.flush();
+
+        assertTrue(outputStream.toString().endsWith(
+                " ERROR operation=getAccount sqlState=08001 accountId=5 message=\"connection \\\"refused\\\"\"\n"),
+                outputStream.toString());
+    }
+
+    /** Tests that repeated errors are written once per window with the number of suppressed duplicates */
+    @Test
+    public void duplicateSuppressionTest() throws InterruptedException {
+        StructuredLogger logger = new StructuredLogger(16, TimeUnit.MILLISECONDS.toNanos(200));
+        SQLException exception = new SQLException("Connection refused", "08001");
+
+        for (int i = 0; i < 1000; i++) {
+            logger.sqlError("getAccount", exception, "accountId", i);
+        }
+
+        logger.flush();
+        Thread.sleep(100);
+        logger.sqlError("getAccount", exception, "accountId", 1000);
+        logger.flush();
+
+        assertEquals(1, outputStream.toString().lines().count(), outputStream.toString());
+        Thread.sleep(700); // summary is written after the window ends
+        assertTrue(outputStream.toString().contains("message=\"Connection refused\" suppressed=1000\n"),
+                outputStream.toString());
+    }
+
+    /** Tests that records which do not fit into one write batch are written in the next one */
+    @Test
+    public void fullBatchTest() {
+        StructuredLogger logger = new StructuredLogger(256, TimeUnit.SECONDS.toNanos(1));
+
+        for (int i = 0; i < 200; i++) {
+            logger.error("renderCheck", "x".repeat(1000) + i);
+        }
+
+        logger.flush();
+
+        assertEquals(200, outputStream.toString().lines().count());
+    }
+
+    /** Tests that items offered by many threads are polled exactly once */
+    @Test
+    public void ringBufferTest() throws InterruptedException {
+        RingBuffer<Integer> buffer = new RingBuffer<>(1024);
+        Thread[] producers = new Thread[4];
+        boolean[] polled = new boolean[producers.length * 10000];
+        Integer item;
+        int count = 0;
+
+        for (int i = 0; i < producers.length; i++) {
+            int first = i * 10000;
+
+            producers[i] = new Thread(() -> {
+                for (int j = first; j < first + 10000; j++) {
+                    while (!buffer.offer(j)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            producers[i].start();
+        }
+
+        while (count < polled.length) {
+            if ((item = buffer.poll()) != null) {
+                assertFalse(polled[item]);
+                polled[item] = true;
+                count++;
+            }
+        }
+
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertTrue(buffer.isEmpty());
+    }
+}